@@ -31,10 +31,7 @@ import java.nio.charset.StandardCharsets;
 import java.text.*;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
 import java.util.regex.*;
 import java.util.zip.*;
 
@@ -3849,6 +3846,10 @@ public class PApplet implements PConstants {
       if (g != null) {
         g.dispose();
       }
+      // stop loading images that were requested but never started
+      if (requestImageLoader != null) {
+        requestImageLoader.dispose();
+      }
       // run dispose() methods registered by libraries
       handleMethods("dispose");
     }
@@ -5579,9 +5580,9 @@ public class PApplet implements PConstants {
   }
 
 
-  static private final String REQUEST_IMAGE_THREAD_PREFIX = "requestImage";
-  // fixed-size thread pool used by requestImage()
-  ExecutorService requestImagePool;
+  static final String REQUEST_IMAGE_THREAD_PREFIX = "requestImage";
+  // loader used by requestImage(), created the first time it's needed
+  PImageLoader requestImageLoader;
 
 
   public PImage requestImage(String filename) {
@@ -5616,21 +5617,13 @@ public class PApplet implements PConstants {
    * @see PApplet#loadImage(String, String)
    */
   public PImage requestImage(String filename, String extension) {
-    // Make sure saving to this file completes before trying to load it
-    // Has to be called on main thread, because P2D and P3D need GL functions
-    if (g != null) {
-      g.awaitAsyncSaveCompletion(filename);
-    }
     PImage vessel = createImage(0, 0, ARGB);
 
-    // if the image loading thread pool hasn't been created, create it
-    if (requestImagePool == null) {
-      ThreadFactory factory = r -> new Thread(r, REQUEST_IMAGE_THREAD_PREFIX);
-      requestImagePool = Executors.newFixedThreadPool(4, factory);
+    // if the image loader hasn't been created, create it
+    if (requestImageLoader == null) {
+      requestImageLoader = new PImageLoader(this);
     }
-    requestImagePool.execute(() -> {
-      PImage actual = loadImage(filename, extension);
-
+    requestImageLoader.request(filename, extension, 0).whenComplete((actual, e) -> {
       // An error message should have already printed
       if (actual == null) {
         vessel.width = -1;
@@ -5721,6 +5714,34 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Read a large XML file one piece at a time, instead of loading all of
+   * it into memory like loadXML(). Use on() to choose the elements to
+   * read, then read() to go through the file:
+   * <pre>
+   * streamXML("track.gpx").on("gpx/trk/trkseg/trkpt", pt -&gt; {
+   *   println(pt.getFloat("lat"), pt.getFloat("lon"));
+   * }).read();
+   * </pre>
+   *
+   * @param filename name of a file in the data folder or a URL.
+   * @see XMLStream
+   * @see PApplet#loadXML(String)
+   */
+  public XMLStream streamXML(String filename) {
+    InputStream input = createInput(filename);
+    if (input == null) {
+      System.err.println(filename + " does not exist or could not be read");
+      return null;
+    }
+    try {
+      return new XMLStream(input);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+
   /**
    * Takes a String, parses its contents, and returns an XML object. If the
    * String does not contain XML data or cannot be parsed, a null value is
@@ -5838,6 +5859,9 @@ public class PApplet implements PConstants {
    * @see PApplet#saveJSONArray(JSONArray, String)
    */
   public JSONObject loadJSONObject(String filename) {
+    if ("cbor".equals(checkExtension(filename))) {
+      return (JSONObject) loadJSONBinary(createInput(filename), false);
+    }
     // can't pass of createReader() to the constructor b/c of resource leak
     BufferedReader reader = createReader(filename);
     if (reader != null) {
@@ -5857,6 +5881,9 @@ public class PApplet implements PConstants {
    * @nowebref
    */
   static public JSONObject loadJSONObject(File file) {
+    if ("cbor".equals(checkExtension(file.getName()))) {
+      return (JSONObject) loadJSONBinary(createInput(file), false);
+    }
     // can't pass of createReader() to the constructor b/c of resource leak
     BufferedReader reader = createReader(file);
     if (reader != null) {
@@ -5901,7 +5928,8 @@ public class PApplet implements PConstants {
 
 
   /**
-   * @param options "compact" and "indent=N", replace N with the number of spaces
+   * @param options "compact" and "indent=N", replace N with the number of spaces,
+   * or "cbor" for binary data (also used for file names ending in .cbor)
    */
   public boolean saveJSONObject(JSONObject json, String filename, String options) {
     return json.save(saveFile(filename), options);
@@ -5954,6 +5982,9 @@ public class PApplet implements PConstants {
    * @see PApplet#saveJSONArray(JSONArray, String)
    */
   public JSONArray loadJSONArray(String filename) {
+    if ("cbor".equals(checkExtension(filename))) {
+      return (JSONArray) loadJSONBinary(createInput(filename), true);
+    }
     // can't pass of createReader() to the constructor b/c of resource leak
     BufferedReader reader = createReader(filename);
     if (reader != null) {
@@ -5970,6 +6001,9 @@ public class PApplet implements PConstants {
 
 
   static public JSONArray loadJSONArray(File file) {
+    if ("cbor".equals(checkExtension(file.getName()))) {
+      return (JSONArray) loadJSONBinary(createInput(file), true);
+    }
     // can't pass of createReader() to the constructor b/c of resource leak
     BufferedReader reader = createReader(file);
     if (reader != null) {
@@ -5985,6 +6019,53 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Read the objects of a JSON array one at a time, instead of loading all
+   * of them into memory like loadJSONArray(). Use it in a for loop, or with
+   * stream() for a java.util.stream.Stream. Memory use stays the same no
+   * matter how large the file is. For other layouts, JSONReader reads any
+   * JSON file as a series of events.
+   *
+   * @param filename name of a file in the data folder or a URL.
+   * @see JSONStream
+   * @see PApplet#loadJSONArray(String)
+   */
+  public JSONStream streamJSONArray(String filename) {
+    BufferedReader reader = createReader(filename);
+    if (reader != null) {
+      return new JSONStream(reader);
+    }
+    return null;
+  }
+
+
+  static public JSONStream streamJSONArray(File file) {
+    BufferedReader reader = createReader(file);
+    if (reader != null) {
+      return new JSONStream(reader);
+    }
+    return null;
+  }
+
+
+  /** Read binary JSON data, see JSONObject.save(File, String). */
+  static private Object loadJSONBinary(InputStream input, boolean array) {
+    if (input == null) {
+      return null;
+    }
+    try {
+      try {
+        return array ? JSONArray.parseBinary(input) : JSONObject.parseBinary(input);
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+
   /**
    * Writes the contents of a <b>JSONArray</b> object to a file. By default,
    * this file is saved to the sketch's folder. This folder is opened by
@@ -6013,7 +6094,8 @@ public class PApplet implements PConstants {
   }
 
   /**
-   * @param options "compact" and "indent=N", replace N with the number of spaces
+   * @param options "compact" and "indent=N", replace N with the number of spaces,
+   * or "cbor" for binary data (also used for file names ending in .cbor)
    */
   public boolean saveJSONArray(JSONArray json, String filename, String options) {
     return json.save(saveFile(filename), options);
@@ -6081,7 +6163,16 @@ public class PApplet implements PConstants {
    * dictionary file can only be tab separated values (.tsv) and its extension
    * will be ignored. This option was added in Processing 2.0.2.
    *
-   * @param options may contain "header", "tsv", "csv", or "bin" separated by commas
+   * For very large CSV or TSV files, the "parallel" option splits the file
+   * into chunks at row boundaries and parses them on multiple threads. The
+   * rows come out in the same order, but quoted fields must be well-formed
+   * (no stray unescaped quotes) for the file to be split correctly.
+   *
+   * Tables saved in the columnar "cbin" format can be opened with the
+   * "mapped" option, which maps the file into memory instead of reading it,
+   * so that only the columns that are used get loaded. See MappedTable.
+   *
+   * @param options may contain "header", "tsv", "csv", "bin", "cbin", "mapped", or "parallel" separated by commas
    */
   public Table loadTable(String filename, String options) {
     try {
@@ -6092,6 +6183,12 @@ public class PApplet implements PConstants {
         if (opt.startsWith("dictionary=")) {
           Table dictionary = loadTable(opt.substring(opt.indexOf('=') + 1), "tsv");
           return dictionary.typedParse(createInput(filename), optionStr);
+        } else if (opt.equals("mapped")) {
+          // only possible for local files, otherwise read as usual
+          File file = dataFile(filename);
+          if (file != null && file.exists()) {
+            return new MappedTable(file);
+          }
         }
       }
       InputStream input = createInput(filename);
@@ -6108,6 +6205,50 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Read the rows of a table file one at a time, instead of loading all of
+   * them into memory like loadTable(). Use it in a for loop, or with
+   * stream() for a java.util.stream.Stream. Memory use stays the same no
+   * matter how large the file is.
+   *
+   * @param filename name of a file in the data folder or a URL.
+   * @see TableStream
+   * @see PApplet#loadTable(String, String)
+   */
+  public TableStream streamTable(String filename) {
+    return streamTable(filename, null);
+  }
+
+
+  /**
+   * @param options may contain "header", "tsv", "csv", "bin", "ods",
+   * "encoding=", or "dictionary=" separated by commas, as with loadTable()
+   */
+  public TableStream streamTable(String filename, String options) {
+    try {
+      String optionStr = Table.extensionOptions(true, filename, options);
+      Table template = null;
+      for (String opt : trim(split(optionStr, ','))) {
+        if (opt.startsWith("dictionary=")) {
+          Table dictionary = loadTable(opt.substring(opt.indexOf('=') + 1), "tsv");
+          template = new Table();
+          template.setColumnTypes(dictionary);
+        }
+      }
+      InputStream input = createInput(filename);
+      if (input == null) {
+        System.err.println(filename + " does not exist or could not be read");
+        return null;
+      }
+      return new TableStream(input, optionStr, template);
+
+    } catch (IOException e) {
+      printStackTrace(e);
+      return null;
+    }
+  }
+
+
   /**
    * Writes the contents of a Table object to a file. By default, this file is
    * saved to the sketch's folder. This folder is opened by selecting "Show
@@ -6161,6 +6302,35 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Open a file that rows can be added to one at a time, for logging data
+   * while a sketch runs without saving the whole Table again each time.
+   * The columns are the same as the Table passed in, but none of its rows
+   * are written. The file is closed automatically when the sketch quits.
+   *
+   * @param filename the file to write, ending in .csv, .tsv, or .bin
+   * @param table a Table with the columns to be written
+   * @see TableWriter
+   */
+  public TableWriter createTableWriter(String filename, Table table) {
+    return createTableWriter(filename, table, null);
+  }
+
+
+  /**
+   * @param options "csv", "tsv", or "bin", and "append" to add rows to an
+   * existing CSV or TSV file instead of replacing it
+   */
+  public TableWriter createTableWriter(String filename, Table table, String options) {
+    try {
+      return new TableWriter(this, saveFile(filename), table, options);
+
+    } catch (IOException e) {
+      throw new RuntimeException("Couldn't create a TableWriter for " + filename, e);
+    }
+  }
+
+
 
   //////////////////////////////////////////////////////////////
 
@@ -15836,6 +16006,10 @@ public class PApplet implements PConstants {
    * the blurring. If no parameter is used, the blur is equivalent to Gaussian
    * blur of radius 1. Larger values increase the blur.<br />
    * <br />
+   * FAST_BLUR<br />
+   * A close approximation of BLUR that takes the same time for any level, so
+   * it's much faster for large values. Used the same way as BLUR.<br />
+   * <br />
    * ERODE<br />
    * Reduces the light areas. No parameter is used.<br />
    * <br />
@@ -15847,6 +16021,7 @@ public class PApplet implements PConstants {
    * <P>
    * <UL>
    * <LI>filter(BLUR) provides a basic blur.
+   * <LI>filter(FAST_BLUR) a blur whose speed doesn't depend on the radius.
    * <LI>filter(GRAY) converts the image to grayscale based on luminance.
    * <LI>filter(INVERT) will invert the color components in the image.
    * <LI>filter(OPAQUE) set all the high bits in the image to opaque
@@ -15863,8 +16038,8 @@ public class PApplet implements PConstants {
    * @webref image:pixels
    * @webBrief Converts the image to grayscale or black and white
    * @usage web_application
-   * @param kind  Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR, ERODE,
-   *              or DILATE
+   * @param kind  Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR,
+   *              FAST_BLUR, ERODE, or DILATE
    * @param param unique for each, see above
    */
   public void filter(int kind, float param) {
@@ -250,6 +250,15 @@ public interface PConstants {
   static final int THRESHOLD = 16;
   static final int ERODE     = 17;
   static final int DILATE    = 18;
+  static final int FAST_BLUR = 19;
+
+
+  // resampling filters for resize()
+
+  static final int BILINEAR = 1;
+  static final int BICUBIC  = 2;
+  static final int LANCZOS  = 3;
+  static final int AREA     = 4;
 
 
   // blend mode keyword definitions
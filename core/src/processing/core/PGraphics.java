@@ -3896,6 +3896,16 @@ public class PGraphics extends PImage implements PConstants {
   // IMAGE
 
 
+  /**
+   * Not available for PGraphics, for the same reasons as resize(w, h).
+   * Use get() to make a copy of the image data, and resize that.
+   */
+  @Override
+  public void resize(int w, int h, int filter) {
+    showMethodWarning("resize");
+  }
+
+
   /**
    *
    * Modifies the location from which images are drawn by changing the way in
@@ -30,6 +30,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 
 import processing.awt.ShimAWT;
 
@@ -148,13 +149,6 @@ public class PImage implements PConstants, Cloneable {
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
-  // private fields
-  private int fracU, ifU, fracV, ifV, u1, u2, v1, v2, sX, sY, iw, iw1, ih1;
-  private int ul, ll, ur, lr, cUL, cLL, cUR, cLR;
-  private int srcXOffset, srcYOffset;
-  private int r, g, b, a;
-  private int[] srcBuffer;
-
   // fixed point precision is limited to 15 bits!!
   static final int PRECISIONB = 15;
   static final int PRECISIONF = 1 << PRECISIONB;
@@ -493,6 +487,44 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
+  /**
+   * Resize the image using a specific resampling filter: BILINEAR, BICUBIC,
+   * LANCZOS (Lanczos3, the sharpest, and usually best for photos), or AREA,
+   * which averages everything each new pixel covers and is the smoothest
+   * when shrinking. As with resize(w, h), use 0 for either the width or
+   * the height to keep the image in proportion.
+   *
+   * @param filter BILINEAR, BICUBIC, LANCZOS, or AREA
+   */
+  public void resize(int w, int h, int filter) {
+    if (w <= 0 && h <= 0) {
+      throw new IllegalArgumentException("width or height must be > 0 for resize");
+    }
+    if (w == 0) {  // Use height to determine relative size
+      w = Math.max(1, Math.round(width * (float) h / height));
+    } else if (h == 0) {  // Use the width to determine relative size
+      h = Math.max(1, Math.round(height * (float) w / width));
+    }
+
+    loadPixels();
+    int[] resized = Resampler.resize(pixels, pixelWidth, pixelHeight,
+                                     w * pixelDensity, h * pixelDensity, filter);
+    if (format == RGB) {
+      for (int i = 0; i < resized.length; i++) {
+        resized[i] |= 0xff000000;
+      }
+    }
+    pixels = resized;
+    pixelWidth = w * pixelDensity;
+    pixelHeight = h * pixelDensity;
+    width = w;
+    height = h;
+
+    // Mark the pixels array as altered
+    updatePixels();
+  }
+
+
   //////////////////////////////////////////////////////////////
 
   // MARKING IMAGE AS LOADED / FOR USE IN RENDERERS
@@ -842,6 +874,8 @@ public class PImage implements PConstants, Cloneable {
 
   public void filter(int kind) {
     loadPixels();
+    final int[] px = pixels;
+    final int w = pixelWidth;
 
     switch (kind) {
       case BLUR:
@@ -851,36 +885,45 @@ public class PImage implements PConstants, Cloneable {
         filter(BLUR, 1);
         break;
 
+      case FAST_BLUR:
+        filter(FAST_BLUR, 1);
+        break;
+
       case GRAY:
         if (format == ALPHA) {
           // for an alpha image, convert it to an opaque grayscale
-          for (int i = 0; i < pixels.length; i++) {
-            int col = 255 - pixels[i];
-            pixels[i] = 0xff000000 | (col << 16) | (col << 8) | col;
-          }
+          PixelBands.run(w, pixelHeight, (start, stop) -> {
+            for (int i = start * w; i < stop * w; i++) {
+              int col = 255 - px[i];
+              px[i] = 0xff000000 | (col << 16) | (col << 8) | col;
+            }
+          });
           format = RGB;
 
         } else {
           // Converts RGB image data into grayscale using
           // weighted RGB components, and keeps alpha channel intact.
           // [toxi 040115]
-          for (int i = 0; i < pixels.length; i++) {
-            int col = pixels[i];
-            // luminance = 0.3*red + 0.59*green + 0.11*blue
-            // 0.30 * 256 =  77
-            // 0.59 * 256 = 151
-            // 0.11 * 256 =  28
-            int lum = (77*(col>>16&0xff) + 151*(col>>8&0xff) + 28*(col&0xff))>>8;
-            pixels[i] = (col & ALPHA_MASK) | lum<<16 | lum<<8 | lum;
-          }
+          PixelBands.run(w, pixelHeight, (start, stop) -> {
+            for (int i = start * w; i < stop * w; i++) {
+              int col = px[i];
+              // luminance = 0.3*red + 0.59*green + 0.11*blue
+              // 0.30 * 256 =  77
+              // 0.59 * 256 = 151
+              // 0.11 * 256 =  28
+              int lum = (77*(col>>16&0xff) + 151*(col>>8&0xff) + 28*(col&0xff))>>8;
+              px[i] = (col & ALPHA_MASK) | lum<<16 | lum<<8 | lum;
+            }
+          });
         }
         break;
 
       case INVERT:
-        for (int i = 0; i < pixels.length; i++) {
-          //pixels[i] = 0xff000000 |
-          pixels[i] ^= 0xffffff;
-        }
+        PixelBands.run(w, pixelHeight, (start, stop) -> {
+          for (int i = start * w; i < stop * w; i++) {
+            px[i] ^= 0xffffff;
+          }
+        });
         break;
 
       case POSTERIZE:
@@ -888,9 +931,7 @@ public class PImage implements PConstants, Cloneable {
         "instead of filter(POSTERIZE)");
 
       case OPAQUE:
-        for (int i = 0; i < pixels.length; i++) {
-          pixels[i] |= 0xff000000;
-        }
+        opaque();
         format = RGB;
         break;
 
@@ -941,6 +982,10 @@ public class PImage implements PConstants, Cloneable {
    * the blurring. If no parameter is used, the blur is equivalent to Gaussian
    * blur of radius 1. Larger values increase the blur.<br />
    * <br />
+   * FAST_BLUR<br />
+   * A close approximation of BLUR that takes the same time for any level, so
+   * it's much faster for large values. Used the same way as BLUR.<br />
+   * <br />
    * ERODE<br />
    * Reduces the light areas. No parameter is used.<br />
    * <br />
@@ -952,6 +997,7 @@ public class PImage implements PConstants, Cloneable {
    * <P>
    * <UL>
    * <LI>filter(BLUR) provides a basic blur.
+   * <LI>filter(FAST_BLUR) a blur whose speed doesn't depend on the radius.
    * <LI>filter(GRAY) converts the image to grayscale based on luminance.
    * <LI>filter(INVERT) will invert the color components in the image.
    * <LI>filter(OPAQUE) set all the high bits in the image to opaque
@@ -968,12 +1014,14 @@ public class PImage implements PConstants, Cloneable {
    * @webref image:pixels
    * @webBrief Converts the image to grayscale or black and white
    * @usage web_application
-   * @param kind  Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR, ERODE,
-   *              or DILATE
+   * @param kind  Either THRESHOLD, GRAY, OPAQUE, INVERT, POSTERIZE, BLUR,
+   *              FAST_BLUR, ERODE, or DILATE
    * @param param unique for each, see above
    */
   public void filter(int kind, float param) {
     loadPixels();
+    final int[] px = pixels;
+    final int w = pixelWidth;
 
     switch (kind) {
       case BLUR:
@@ -985,6 +1033,10 @@ public class PImage implements PConstants, Cloneable {
           blurRGB(param);
         break;
 
+      case FAST_BLUR:
+        fastBlur(param);
+        break;
+
       case GRAY:
         throw new RuntimeException("Use filter(GRAY) instead of " +
                                    "filter(GRAY, param)");
@@ -998,35 +1050,39 @@ public class PImage implements PConstants, Cloneable {
                                    "filter(OPAQUE, param)");
 
       case POSTERIZE:
-        int levels = (int)param;
+        final int levels = (int)param;
         if ((levels < 2) || (levels > 255)) {
           throw new RuntimeException("Levels must be between 2 and 255 for " +
                                      "filter(POSTERIZE, levels)");
         }
-        int levels1 = levels - 1;
-        for (int i = 0; i < pixels.length; i++) {
-          int rlevel = (pixels[i] >> 16) & 0xff;
-          int glevel = (pixels[i] >> 8) & 0xff;
-          int blevel = pixels[i] & 0xff;
-          rlevel = (((rlevel * levels) >> 8) * 255) / levels1;
-          glevel = (((glevel * levels) >> 8) * 255) / levels1;
-          blevel = (((blevel * levels) >> 8) * 255) / levels1;
-          pixels[i] = ((0xff000000 & pixels[i]) |
-                       (rlevel << 16) |
-                       (glevel << 8) |
-                       blevel);
-        }
+        final int levels1 = levels - 1;
+        PixelBands.run(w, pixelHeight, (start, stop) -> {
+          for (int i = start * w; i < stop * w; i++) {
+            int rlevel = (px[i] >> 16) & 0xff;
+            int glevel = (px[i] >> 8) & 0xff;
+            int blevel = px[i] & 0xff;
+            rlevel = (((rlevel * levels) >> 8) * 255) / levels1;
+            glevel = (((glevel * levels) >> 8) * 255) / levels1;
+            blevel = (((blevel * levels) >> 8) * 255) / levels1;
+            px[i] = ((0xff000000 & px[i]) |
+                     (rlevel << 16) |
+                     (glevel << 8) |
+                     blevel);
+          }
+        });
         break;
 
       case THRESHOLD:  // greater than or equal to the threshold
-        int thresh = (int) (param * 255);
-        for (int i = 0; i < pixels.length; i++) {
-          int max = Math.max((pixels[i] & RED_MASK) >> 16,
-                             Math.max((pixels[i] & GREEN_MASK) >> 8,
-                                      (pixels[i] & BLUE_MASK)));
-          pixels[i] = (pixels[i] & ALPHA_MASK) |
-            ((max < thresh) ? 0x000000 : 0xffffff);
-        }
+        final int thresh = (int) (param * 255);
+        PixelBands.run(w, pixelHeight, (start, stop) -> {
+          for (int i = start * w; i < stop * w; i++) {
+            int max = Math.max((px[i] & RED_MASK) >> 16,
+                               Math.max((px[i] & GREEN_MASK) >> 8,
+                                        (px[i] & BLUE_MASK)));
+            px[i] = (px[i] & ALPHA_MASK) |
+              ((max < thresh) ? 0x000000 : 0xffffff);
+          }
+        });
         break;
 
         // [toxi20050728] added new filters
@@ -1043,9 +1099,13 @@ public class PImage implements PConstants, Cloneable {
 
   /** Set the high bits of all pixels to opaque. */
   protected void opaque() {
-    for (int i = 0; i < pixels.length; i++) {
-      pixels[i] = 0xFF000000 | pixels[i];
-    }
+    final int[] px = pixels;
+    final int w = pixelWidth;
+    PixelBands.run(w, pixelHeight, (start, stop) -> {
+      for (int i = start * w; i < stop * w; i++) {
+        px[i] = 0xFF000000 | px[i];
+      }
+    });
   }
 
 
@@ -1083,242 +1143,402 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
-  protected void blurAlpha(float r) {
-    int sum, cb;
-    int read, ri, ym, ymi, bk0;
-    int[] b2 = new int[pixels.length];
-    int yi = 0;
+  /*
+   * The blurs make two passes, first across each row and then down each
+   * column, and both are split into bands of rows with PixelBands. The
+   * first pass keeps its result packed into a single int per pixel (each
+   * channel is 0..255 after dividing by the sum), in a scratch array that's
+   * borrowed from PixelBands rather than allocated for each call. The
+   * second pass works a row at a time, adding whole rows of the first pass
+   * into per-band totals, which gives the same sums in a cache-friendly order.
+   */
 
-    buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        //cb = cg = cr = sum = 0;
-        cb = sum = 0;
-        read = x - blurRadius;
-        if (read<0) {
-          bk0=-read;
-          read=0;
-        } else {
-          if (read >= pixelWidth)
-            break;
-          bk0=0;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (read >= pixelWidth)
-            break;
-          int c = pixels[read + yi];
-          int[] bm = blurMult[i];
-          cb += bm[c & BLUE_MASK];
-          sum += blurKernel[i];
-          read++;
+  protected void blurAlpha(float r) {
+    buildBlurKernel(r);
+    final int[] px = pixels;
+    final int w = pixelWidth;
+    final int h = pixelHeight;
+    final int radius = blurRadius;
+    final int size = blurKernelSize;
+    final int[] kernel = blurKernel;
+    final int[][] mult = blurMult;
+    final int[] b2 = PixelBands.borrow(w * h);
+
+    PixelBands.run(w, h, (start, stop) -> {
+      for (int y = start; y < stop; y++) {
+        int yi = y * w;
+        for (int x = 0; x < w; x++) {
+          int cb = 0;
+          int sum = 0;
+          int read = x - radius;
+          int bk0 = 0;
+          if (read < 0) {
+            bk0 = -read;
+            read = 0;
+          }
+          for (int i = bk0; i < size && read < w; i++) {
+            int[] bm = mult[i];
+            cb += bm[px[read + yi] & BLUE_MASK];
+            sum += kernel[i];
+            read++;
+          }
+          b2[yi + x] = cb / sum;
         }
-        ri = yi + x;
-        b2[ri] = cb / sum;
       }
-      yi += pixelWidth;
-    }
-
-    yi = 0;
-    ym = -blurRadius;
-    ymi = ym * pixelWidth;
-
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = sum = 0;
-        if (ym < 0) {
-          bk0 = ri = -ym;
-          read = x;
-        } else {
-          if (ym >= pixelHeight)
-            break;
-          bk0 = 0;
-          ri = ym;
-          read = x + ymi;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (ri >= pixelHeight)
-            break;
-          int[] bm = blurMult[i];
-          cb += bm[b2[read]];
-          sum += blurKernel[i];
+    });
+
+    PixelBands.run(w, h, (start, stop) -> {
+      int[] cb = new int[w];
+      for (int y = start; y < stop; y++) {
+        Arrays.fill(cb, 0);
+        int sum = 0;
+        int ym = y - radius;
+        int bk0 = (ym < 0) ? -ym : 0;
+        int ri = (ym < 0) ? -ym : ym;
+        int read = (ym < 0) ? 0 : ym * w;
+        for (int i = bk0; i < size && ri < h; i++) {
+          int[] bm = mult[i];
+          for (int x = 0; x < w; x++) {
+            cb[x] += bm[b2[read + x]];
+          }
+          sum += kernel[i];
           ri++;
-          read += pixelWidth;
+          read += w;
+        }
+        int yi = y * w;
+        for (int x = 0; x < w; x++) {
+          px[yi + x] = cb[x] / sum;
         }
-        pixels[x+yi] = (cb/sum);
       }
-      yi += pixelWidth;
-      ymi += pixelWidth;
-      ym++;
-    }
+    });
+    PixelBands.release(b2);
   }
 
 
   protected void blurRGB(float r) {
-    int sum, cr, cg, cb; //, k;
-    int /*pixel,*/ read, ri, /*roff,*/ ym, ymi, /*riw,*/ bk0;
-    int[] r2 = new int[pixels.length];
-    int[] g2 = new int[pixels.length];
-    int[] b2 = new int[pixels.length];
-    int yi = 0;
-
     buildBlurKernel(r);
-
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = sum = 0;
-        read = x - blurRadius;
-        if (read < 0) {
-          bk0 = -read;
-          read = 0;
-        } else {
-          if (read >= pixelWidth) {
-            break;
+    final int[] px = pixels;
+    final int w = pixelWidth;
+    final int h = pixelHeight;
+    final int radius = blurRadius;
+    final int size = blurKernelSize;
+    final int[] kernel = blurKernel;
+    final int[][] mult = blurMult;
+    final int[] rgb2 = PixelBands.borrow(w * h);
+
+    PixelBands.run(w, h, (start, stop) -> {
+      for (int y = start; y < stop; y++) {
+        int yi = y * w;
+        for (int x = 0; x < w; x++) {
+          int cr = 0, cg = 0, cb = 0;
+          int sum = 0;
+          int read = x - radius;
+          int bk0 = 0;
+          if (read < 0) {
+            bk0 = -read;
+            read = 0;
           }
-          bk0 = 0;
+          for (int i = bk0; i < size && read < w; i++) {
+            int c = px[read + yi];
+            int[] bm = mult[i];
+            cr += bm[(c & RED_MASK) >> 16];
+            cg += bm[(c & GREEN_MASK) >> 8];
+            cb += bm[c & BLUE_MASK];
+            sum += kernel[i];
+            read++;
+          }
+          rgb2[yi + x] = (cr / sum) << 16 | (cg / sum) << 8 | (cb / sum);
         }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (read >= pixelWidth) {
-            break;
+      }
+    });
+
+    PixelBands.run(w, h, (start, stop) -> {
+      int[] cr = new int[w];
+      int[] cg = new int[w];
+      int[] cb = new int[w];
+      for (int y = start; y < stop; y++) {
+        Arrays.fill(cr, 0);
+        Arrays.fill(cg, 0);
+        Arrays.fill(cb, 0);
+        int sum = 0;
+        int ym = y - radius;
+        int bk0 = (ym < 0) ? -ym : 0;
+        int ri = (ym < 0) ? -ym : ym;
+        int read = (ym < 0) ? 0 : ym * w;
+        for (int i = bk0; i < size && ri < h; i++) {
+          int[] bm = mult[i];
+          for (int x = 0; x < w; x++) {
+            int c = rgb2[read + x];
+            cr[x] += bm[c >> 16];
+            cg[x] += bm[(c >> 8) & 0xff];
+            cb[x] += bm[c & 0xff];
           }
-          int c = pixels[read + yi];
-          int[] bm = blurMult[i];
-          cr += bm[(c & RED_MASK) >> 16];
-          cg += bm[(c & GREEN_MASK) >> 8];
-          cb += bm[c & BLUE_MASK];
-          sum += blurKernel[i];
-          read++;
+          sum += kernel[i];
+          ri++;
+          read += w;
+        }
+        int yi = y * w;
+        for (int x = 0; x < w; x++) {
+          px[yi + x] =
+            0xff000000 | (cr[x]/sum)<<16 | (cg[x]/sum)<<8 | (cb[x]/sum);
         }
-        ri = yi + x;
-        r2[ri] = cr / sum;
-        g2[ri] = cg / sum;
-        b2[ri] = cb / sum;
       }
-      yi += pixelWidth;
-    }
+    });
+    PixelBands.release(rgb2);
+  }
 
-    yi = 0;
-    ym = -blurRadius;
-    ymi = ym * pixelWidth;
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = sum = 0;
-        if (ym < 0) {
-          bk0 = ri = -ym;
-          read = x;
-        } else {
-          if (ym >= pixelHeight) {
-            break;
+  protected void blurARGB(float r) {
+    buildBlurKernel(r);
+    final int[] px = pixels;
+    final int w = pixelWidth;
+    final int h = pixelHeight;
+    final int radius = blurRadius;
+    final int size = blurKernelSize;
+    final int[] kernel = blurKernel;
+    final int[][] mult = blurMult;
+    final int[] argb2 = PixelBands.borrow(w * h);
+
+    PixelBands.run(w, h, (start, stop) -> {
+      for (int y = start; y < stop; y++) {
+        int yi = y * w;
+        for (int x = 0; x < w; x++) {
+          int ca = 0, cr = 0, cg = 0, cb = 0;
+          int sum = 0;
+          int read = x - radius;
+          int bk0 = 0;
+          if (read < 0) {
+            bk0 = -read;
+            read = 0;
+          }
+          for (int i = bk0; i < size && read < w; i++) {
+            int c = px[read + yi];
+            int[] bm = mult[i];
+            ca += bm[(c & ALPHA_MASK) >>> 24];
+            cr += bm[(c & RED_MASK) >> 16];
+            cg += bm[(c & GREEN_MASK) >> 8];
+            cb += bm[c & BLUE_MASK];
+            sum += kernel[i];
+            read++;
           }
-          bk0 = 0;
-          ri = ym;
-          read = x + ymi;
+          argb2[yi + x] =
+            (ca / sum) << 24 | (cr / sum) << 16 | (cg / sum) << 8 | (cb / sum);
         }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (ri >= pixelHeight) {
-            break;
+      }
+    });
+
+    PixelBands.run(w, h, (start, stop) -> {
+      int[] ca = new int[w];
+      int[] cr = new int[w];
+      int[] cg = new int[w];
+      int[] cb = new int[w];
+      for (int y = start; y < stop; y++) {
+        Arrays.fill(ca, 0);
+        Arrays.fill(cr, 0);
+        Arrays.fill(cg, 0);
+        Arrays.fill(cb, 0);
+        int sum = 0;
+        int ym = y - radius;
+        int bk0 = (ym < 0) ? -ym : 0;
+        int ri = (ym < 0) ? -ym : ym;
+        int read = (ym < 0) ? 0 : ym * w;
+        for (int i = bk0; i < size && ri < h; i++) {
+          int[] bm = mult[i];
+          for (int x = 0; x < w; x++) {
+            int c = argb2[read + x];
+            ca[x] += bm[c >>> 24];
+            cr[x] += bm[(c >> 16) & 0xff];
+            cg[x] += bm[(c >> 8) & 0xff];
+            cb[x] += bm[c & 0xff];
           }
-          int[] bm = blurMult[i];
-          cr += bm[r2[read]];
-          cg += bm[g2[read]];
-          cb += bm[b2[read]];
-          sum += blurKernel[i];
+          sum += kernel[i];
           ri++;
-          read += pixelWidth;
+          read += w;
+        }
+        int yi = y * w;
+        for (int x = 0; x < w; x++) {
+          px[yi + x] =
+            (ca[x]/sum)<<24 | (cr[x]/sum)<<16 | (cg[x]/sum)<<8 | (cb[x]/sum);
+        }
+      }
+    });
+    PixelBands.release(argb2);
+  }
+
+
+  /**
+   * Approximate the Gaussian from blur() with three box blurs in each
+   * direction, each done with a running sum, so the time it takes is the
+   * same for any radius. The box widths are picked so the result has the
+   * same variance as the kernel from buildBlurKernel(). As with blur(),
+   * only the part of each box that's inside the image is averaged.
+   */
+  protected void fastBlur(float r) {
+    int radius = (int) (r * 3.5f);
+    radius = (radius < 1) ? 1 : radius;
+    // variance of the (radius - |d|)^2 weights in buildBlurKernel()
+    double weights = 0;
+    double moments = 0;
+    for (int d = -radius + 1; d < radius; d++) {
+      double k = (radius - Math.abs(d)) * (radius - Math.abs(d));
+      weights += k;
+      moments += k * d * d;
+    }
+    final int[] boxes = boxRadii(moments / weights);
+
+    final int[] px = pixels;
+    final int w = pixelWidth;
+    final int h = pixelHeight;
+    final int[] temp = PixelBands.borrow(w * h);
+    // same as blurRGB() and blurAlpha(), which don't keep the other bits
+    final int opaque = (format == RGB) ? 0xff000000 : 0;
+    final int keep = (format == ALPHA) ? 0xff : 0xffffffff;
+    // only depends on the sizes, so it's shared by every row and column
+    int widest = 2 * Math.max(boxes[0], Math.max(boxes[1], boxes[2])) + 1;
+    final long[] recip = reciprocals(Math.min(Math.max(w, h), widest));
+
+    PixelBands.run(w, h, (start, stop) -> {
+      int[] line = new int[w];
+      for (int y = start; y < stop; y++) {
+        int yi = y * w;
+        boxRow(px, yi, line, 0, w, boxes[0], recip);
+        boxRow(line, 0, temp, yi, w, boxes[1], recip);
+        boxRow(temp, yi, px, yi, w, boxes[2], recip);
+      }
+    });
+
+    // strips of columns, each run down the height of the image
+    PixelBands.run(h, w, (left, right) -> {
+      boxColumns(px, temp, w, h, left, right, boxes[0], recip);
+      boxColumns(temp, px, w, h, left, right, boxes[1], recip);
+      boxColumns(px, temp, w, h, left, right, boxes[2], recip);
+      for (int y = 0; y < h; y++) {
+        for (int i = y*w + left; i < y*w + right; i++) {
+          px[i] = (temp[i] & keep) | opaque;
         }
-        pixels[x+yi] = 0xff000000 | (cr/sum)<<16 | (cg/sum)<<8 | (cb/sum);
       }
-      yi += pixelWidth;
-      ymi += pixelWidth;
-      ym++;
+    });
+    PixelBands.release(temp);
+  }
+
+
+  /**
+   * Radius of three box blurs that together have about the same variance
+   * as a Gaussian. Widths are odd, and differ by at most two.
+   */
+  static private int[] boxRadii(double variance) {
+    int n = 3;
+    // each box of width w adds (w*w - 1) / 12 to the variance
+    int lower = (int) Math.sqrt(12 * variance / n + 1);
+    if (lower % 2 == 0) lower--;
+    int upper = lower + 2;
+    int m = (int) Math.round((12 * variance - n*lower*lower - 4*n*lower - 3*n) /
+                             (-4*lower - 4));
+    int[] radii = new int[n];
+    for (int i = 0; i < n; i++) {
+      radii[i] = ((i < m) ? lower : upper) / 2;
     }
+    return radii;
   }
 
 
-  protected void blurARGB(float r) {
-    int sum, cr, cg, cb, ca;
-    int /*pixel,*/ read, ri, /*roff,*/ ym, ymi, /*riw,*/ bk0;
-    int wh = pixels.length;
-    int[] r2 = new int[wh];
-    int[] g2 = new int[wh];
-    int[] b2 = new int[wh];
-    int[] a2 = new int[wh];
-    int yi = 0;
+  /** Reciprocals of 1..count, for dividing with a multiply and a shift. */
+  static private long[] reciprocals(int count) {
+    long[] recip = new long[count + 1];
+    for (int i = 1; i <= count; i++) {
+      recip[i] = ((1L << 32) + i - 1) / i;
+    }
+    return recip;
+  }
 
-    buildBlurKernel(r);
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = ca = sum = 0;
-        read = x - blurRadius;
-        if (read < 0) {
-          bk0 = -read;
-          read = 0;
-        } else {
-          if (read >= pixelWidth) {
-            break;
-          }
-          bk0=0;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (read >= pixelWidth) {
-            break;
-          }
-          int c = pixels[read + yi];
-          int[] bm=blurMult[i];
-          ca += bm[(c & ALPHA_MASK) >>> 24];
-          cr += bm[(c & RED_MASK) >> 16];
-          cg += bm[(c & GREEN_MASK) >> 8];
-          cb += bm[c & BLUE_MASK];
-          sum += blurKernel[i];
-          read++;
-        }
-        ri = yi + x;
-        a2[ri] = ca / sum;
-        r2[ri] = cr / sum;
-        g2[ri] = cg / sum;
-        b2[ri] = cb / sum;
+  /** Average of the channels in sums, each rounded to the nearest. */
+  static private int average(int a, int r, int g, int b, long recip) {
+    final long half = 1L << 31;
+    return (int) ((a * recip + half) >>> 32) << 24 |
+      (int) ((r * recip + half) >>> 32) << 16 |
+      (int) ((g * recip + half) >>> 32) << 8 |
+      (int) ((b * recip + half) >>> 32);
+  }
+
+
+  /**
+   * Box blur n pixels of src starting at srcIndex, into dst at dstIndex.
+   * recip is from reciprocals(), for at least min(n, 2*radius + 1).
+   */
+  static private void boxRow(int[] src, int srcIndex, int[] dst, int dstIndex,
+                             int n, int radius, long[] recip) {
+    int sa = 0, sr = 0, sg = 0, sb = 0;
+    int ahead = Math.min(radius, n - 1);
+    for (int i = 0; i <= ahead; i++) {
+      int c = src[srcIndex + i];
+      sa += c >>> 24; sr += (c >> 16) & 0xff; sg += (c >> 8) & 0xff; sb += c & 0xff;
+    }
+    int count = ahead + 1;
+    for (int x = 0; x < n; x++) {
+      dst[dstIndex + x] = average(sa, sr, sg, sb, recip[count]);
+      int enter = x + radius + 1;
+      if (enter < n) {
+        int c = src[srcIndex + enter];
+        sa += c >>> 24; sr += (c >> 16) & 0xff; sg += (c >> 8) & 0xff; sb += c & 0xff;
+        count++;
+      }
+      int leave = x - radius;
+      if (leave >= 0) {
+        int c = src[srcIndex + leave];
+        sa -= c >>> 24; sr -= (c >> 16) & 0xff; sg -= (c >> 8) & 0xff; sb -= c & 0xff;
+        count--;
       }
-      yi += pixelWidth;
     }
+  }
 
-    yi = 0;
-    ym = -blurRadius;
-    ymi = ym * pixelWidth;
 
-    for (int y = 0; y < pixelHeight; y++) {
-      for (int x = 0; x < pixelWidth; x++) {
-        cb = cg = cr = ca = sum = 0;
-        if (ym < 0) {
-          bk0 = ri = -ym;
-          read = x;
-        } else {
-          if (ym >= pixelHeight) {
-            break;
-          }
-          bk0 = 0;
-          ri = ym;
-          read = x + ymi;
-        }
-        for (int i = bk0; i < blurKernelSize; i++) {
-          if (ri >= pixelHeight) {
-            break;
-          }
-          int[] bm=blurMult[i];
-          ca += bm[a2[read]];
-          cr += bm[r2[read]];
-          cg += bm[g2[read]];
-          cb += bm[b2[read]];
-          sum += blurKernel[i];
-          ri++;
-          read += pixelWidth;
-        }
-        pixels[x+yi] = (ca/sum)<<24 | (cr/sum)<<16 | (cg/sum)<<8 | (cb/sum);
+  /**
+   * Box blur columns left to right (not inclusive) of src into dst, moving
+   * down a row at a time so that memory is read in order.
+   */
+  static private void boxColumns(int[] src, int[] dst, int w, int h,
+                                 int left, int right, int radius,
+                                 long[] recip) {
+    int span = right - left;
+    int[] sa = new int[span];
+    int[] sr = new int[span];
+    int[] sg = new int[span];
+    int[] sb = new int[span];
+    int ahead = Math.min(radius, h - 1);
+    for (int y = 0; y <= ahead; y++) {
+      addRow(src, y*w + left, span, sa, sr, sg, sb, 1);
+    }
+    int count = ahead + 1;
+    for (int y = 0; y < h; y++) {
+      long rc = recip[count];
+      int index = y*w + left;
+      for (int x = 0; x < span; x++) {
+        dst[index + x] = average(sa[x], sr[x], sg[x], sb[x], rc);
+      }
+      int enter = y + radius + 1;
+      if (enter < h) {
+        addRow(src, enter*w + left, span, sa, sr, sg, sb, 1);
+        count++;
+      }
+      int leave = y - radius;
+      if (leave >= 0) {
+        addRow(src, leave*w + left, span, sa, sr, sg, sb, -1);
+        count--;
       }
-      yi += pixelWidth;
-      ymi += pixelWidth;
-      ym++;
+    }
+  }
+
+
+  static private void addRow(int[] src, int index, int span,
+                             int[] sa, int[] sr, int[] sg, int[] sb, int sign) {
+    for (int x = 0; x < span; x++) {
+      int c = src[index + x];
+      sa[x] += sign * (c >>> 24);
+      sr[x] += sign * ((c >> 16) & 0xff);
+      sg[x] += sign * ((c >> 8) & 0xff);
+      sb[x] += sign * (c & 0xff);
     }
   }
 
@@ -1328,140 +1548,95 @@ public class PImage implements PConstants, Cloneable {
    * as decision factor. [toxi 050728]
    */
   protected void dilate() {  // formerly dilate(false)
-    int index = 0;
-    int maxIndex = pixels.length;
-    int[] outgoing = new int[maxIndex];
-
     // erosion (grow light areas)
-    while (index < maxIndex) {
-      int curRowIndex = index;
-      int maxRowIndex = index + pixelWidth;
-      while (index < maxRowIndex) {
-        int orig = pixels[index];
-        int result = orig;
-        int idxLeft = index - 1;
-        int idxRight = index + 1;
-        int idxUp = index - pixelWidth;
-        int idxDown = index + pixelWidth;
-        if (idxLeft < curRowIndex) {
-          idxLeft = index;
-        }
-        if (idxRight >= maxRowIndex) {
-          idxRight = index;
-        }
-        if (idxUp < 0) {
-          idxUp = index;
-        }
-        if (idxDown >= maxIndex) {
-          idxDown = index;
-        }
-
-        int colUp = pixels[idxUp];
-        int colLeft = pixels[idxLeft];
-        int colDown = pixels[idxDown];
-        int colRight = pixels[idxRight];
-
-        // compute luminance
-        int currLum =
-          77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
-        int lumLeft =
-          77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
-        int lumRight =
-          77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
-        int lumUp =
-          77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
-        int lumDown =
-          77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
-
-        if (lumLeft > currLum) {
-          result = colLeft;
-          currLum = lumLeft;
-        }
-        if (lumRight > currLum) {
-          result = colRight;
-          currLum = lumRight;
-        }
-        if (lumUp > currLum) {
-          result = colUp;
-          currLum = lumUp;
-        }
-        if (lumDown > currLum) {
-          result = colDown;
-          currLum = lumDown;
-        }
-        outgoing[index++] = result;
-      }
-    }
-    System.arraycopy(outgoing, 0, pixels, 0, maxIndex);
+    dilate(false);
   }
 
 
   protected void erode() {  // formerly dilate(true)
-    int index = 0;
-    int maxIndex = pixels.length;
-    int[] outgoing = new int[maxIndex];
-
     // dilate (grow dark areas)
-    while (index < maxIndex) {
-      int curRowIndex = index;
-      int maxRowIndex = index + pixelWidth;
-      while (index < maxRowIndex) {
-        int orig = pixels[index];
-        int result = orig;
-        int idxLeft = index - 1;
-        int idxRight = index + 1;
-        int idxUp = index - pixelWidth;
-        int idxDown = index + pixelWidth;
-        if (idxLeft < curRowIndex) {
-          idxLeft = index;
-        }
-        if (idxRight >= maxRowIndex) {
-          idxRight = index;
-        }
-        if (idxUp < 0) {
-          idxUp = index;
-        }
-        if (idxDown >= maxIndex) {
-          idxDown = index;
-        }
+    dilate(true);
+  }
+
+
+  private void dilate(final boolean erode) {
+    final int[] px = pixels;
+    final int w = pixelWidth;
+    final int maxIndex = pixels.length;
+    final int[] outgoing = PixelBands.borrow(maxIndex);
+
+    PixelBands.run(w, maxIndex / w, (start, stop) -> {
+      int index = start * w;
+      while (index < stop * w) {
+        int curRowIndex = index;
+        int maxRowIndex = index + w;
+        while (index < maxRowIndex) {
+          int orig = px[index];
+          int result = orig;
+          int idxLeft = index - 1;
+          int idxRight = index + 1;
+          int idxUp = index - w;
+          int idxDown = index + w;
+          if (idxLeft < curRowIndex) {
+            idxLeft = index;
+          }
+          if (idxRight >= maxRowIndex) {
+            idxRight = index;
+          }
+          if (idxUp < 0) {
+            idxUp = index;
+          }
+          if (idxDown >= maxIndex) {
+            idxDown = index;
+          }
 
-        int colUp = pixels[idxUp];
-        int colLeft = pixels[idxLeft];
-        int colDown = pixels[idxDown];
-        int colRight = pixels[idxRight];
-
-        // compute luminance
-        int currLum =
-          77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
-        int lumLeft =
-          77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
-        int lumRight =
-          77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
-        int lumUp =
-          77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
-        int lumDown =
-          77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
-
-        if (lumLeft < currLum) {
-          result = colLeft;
-          currLum = lumLeft;
-        }
-        if (lumRight < currLum) {
-          result = colRight;
-          currLum = lumRight;
-        }
-        if (lumUp < currLum) {
-          result = colUp;
-          currLum = lumUp;
-        }
-        if (lumDown < currLum) {
-          result = colDown;
-          currLum = lumDown;
+          int colUp = px[idxUp];
+          int colLeft = px[idxLeft];
+          int colDown = px[idxDown];
+          int colRight = px[idxRight];
+
+          // compute luminance
+          int currLum =
+            77*(orig>>16&0xff) + 151*(orig>>8&0xff) + 28*(orig&0xff);
+          int lumLeft =
+            77*(colLeft>>16&0xff) + 151*(colLeft>>8&0xff) + 28*(colLeft&0xff);
+          int lumRight =
+            77*(colRight>>16&0xff) + 151*(colRight>>8&0xff) + 28*(colRight&0xff);
+          int lumUp =
+            77*(colUp>>16&0xff) + 151*(colUp>>8&0xff) + 28*(colUp&0xff);
+          int lumDown =
+            77*(colDown>>16&0xff) + 151*(colDown>>8&0xff) + 28*(colDown&0xff);
+
+          // flipping the sign for erode() picks the darkest instead
+          if (erode) {
+            currLum = -currLum;
+            lumLeft = -lumLeft;
+            lumRight = -lumRight;
+            lumUp = -lumUp;
+            lumDown = -lumDown;
+          }
+          if (lumLeft > currLum) {
+            result = colLeft;
+            currLum = lumLeft;
+          }
+          if (lumRight > currLum) {
+            result = colRight;
+            currLum = lumRight;
+          }
+          if (lumUp > currLum) {
+            result = colUp;
+            currLum = lumUp;
+          }
+          if (lumDown > currLum) {
+            result = colDown;
+            currLum = lumDown;
+          }
+          outgoing[index++] = result;
         }
-        outgoing[index++] = result;
       }
-    }
-    System.arraycopy(outgoing, 0, pixels, 0, maxIndex);
+    });
+    System.arraycopy(outgoing, 0, px, 0, maxIndex);
+    PixelBands.release(outgoing);
   }
 
 
@@ -1769,12 +1944,17 @@ public class PImage implements PConstants, Cloneable {
    * Internal blitter/resizer/copier from toxi.
    * Uses bilinear filtering if smooth() has been enabled
    * 'mode' determines the blending mode used in the process.
+   * <p/>
+   * Each row of the destination is first sampled from the source into a
+   * scratch row (or straight into the destination for REPLACE), and then
+   * blended with a loop for that mode. Nothing is kept in fields, so rows
+   * are done in parallel bands, except when the source is the destination.
    */
   private void blit_resize(PImage img,
                            int srcX1, int srcY1, int srcX2, int srcY2,
-                           int[] destPixels, int screenW, int screenH,
+                           final int[] destPixels, final int screenW, int screenH,
                            int destX1, int destY1, int destX2, int destY2,
-                           int mode) {
+                           final int mode) {
     if (srcX1 < 0) srcX1 = 0;
     if (srcY1 < 0) srcY1 = 0;
     if (srcX2 > img.pixelWidth) srcX2 = img.pixelWidth;
@@ -1785,7 +1965,7 @@ public class PImage implements PConstants, Cloneable {
     int destW = destX2 - destX1;
     int destH = destY2 - destY1;
 
-    boolean smooth = true;  // may as well go with the smoothing these days
+    final boolean smooth = true;  // may as well go with the smoothing these days
 
     if (!smooth) {
       srcW++; srcH++;
@@ -1798,11 +1978,11 @@ public class PImage implements PConstants, Cloneable {
       return;
     }
 
-    int dx = (int) (srcW / (float) destW * PRECISIONF);
-    int dy = (int) (srcH / (float) destH * PRECISIONF);
+    final int dx = (int) (srcW / (float) destW * PRECISIONF);
+    final int dy = (int) (srcH / (float) destH * PRECISIONF);
 
-    srcXOffset = destX1 < 0 ? -destX1 * dx : srcX1 * PRECISIONF;
-    srcYOffset = destY1 < 0 ? -destY1 * dy : srcY1 * PRECISIONF;
+    final int srcXOffset = destX1 < 0 ? -destX1 * dx : srcX1 * PRECISIONF;
+    final int srcYOffset = destY1 < 0 ? -destY1 * dy : srcY1 * PRECISIONF;
 
     if (destX1 < 0) {
       destW += destX1;
@@ -1813,498 +1993,214 @@ public class PImage implements PConstants, Cloneable {
       destY1 = 0;
     }
 
-    destW = min(destW, screenW - destX1);
-    destH = min(destH, screenH - destY1);
-
-    int destOffset = destY1 * screenW + destX1;
-    srcBuffer = img.pixels;
-
-    if (smooth) {
-      // use bilinear filtering
-      iw = img.pixelWidth;
-      iw1 = img.pixelWidth - 1;
-      ih1 = img.pixelHeight - 1;
-
-      switch (mode) {
-
-      case BLEND:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            // davbol  - renamed old blend_multiply to blend_blend
-            destPixels[destOffset + x] =
-              blend_blend(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case ADD:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_add_pin(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case SUBTRACT:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_sub_pin(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case LIGHTEST:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_lightest(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case DARKEST:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_darkest(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case REPLACE:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] = filter_bilinear();
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case DIFFERENCE:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_difference(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case EXCLUSION:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_exclusion(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case MULTIPLY:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_multiply(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case SCREEN:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_screen(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case OVERLAY:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_overlay(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case HARD_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_hard_light(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case SOFT_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_soft_light(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    final int width = min(destW, screenW - destX1);
+    final int height = min(destH, screenH - destY1);
+    if (width <= 0 || height <= 0) {
+      return;  // entirely off the left or top edge
+    }
 
-      // davbol - proposed 2007-01-09
-      case DODGE:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_dodge(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+    final int destStart = destY1 * screenW + destX1;
+    final int[] srcBuffer = img.pixels;
+    final int iw = img.pixelWidth;
+    final int ih1 = img.pixelHeight - 1;
+
+    PixelBands.Band band = (start, stop) -> {
+      int[] row = (mode == REPLACE) ? null : new int[width];
+      for (int y = start; y < stop; y++) {
+        int destOffset = destStart + y * screenW;
+        int[] samples = (row == null) ? destPixels : row;
+        int sampleOffset = (row == null) ? destOffset : 0;
+        // same as adding dy for each row, overflow included
+        int v = srcYOffset + y * dy;
+        if (smooth) {
+          sampleBilinear(srcBuffer, iw, ih1, srcXOffset, dx, v,
+                         samples, sampleOffset, width);
+        } else {
+          sampleNearest(srcBuffer, iw, srcXOffset, dx, v,
+                        samples, sampleOffset, width);
         }
-        break;
-
-      case BURN:
-        for (int y = 0; y < destH; y++) {
-          filter_new_scanline();
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_burn(destPixels[destOffset + x], filter_bilinear());
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
+        if (row != null) {
+          blendRow(row, destPixels, destOffset, width, mode);
         }
-        break;
-
       }
-
+    };
+    if (srcBuffer == destPixels) {
+      // the samples may include pixels just written
+      band.run(0, height);
     } else {
-      // nearest neighbour scaling (++fast!)
-      switch (mode) {
-
-      case BLEND:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            // davbol - renamed old blend_multiply to blend_blend
-            destPixels[destOffset + x] =
-              blend_blend(destPixels[destOffset + x],
-                          srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case ADD:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_add_pin(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case SUBTRACT:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_sub_pin(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case LIGHTEST:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_lightest(destPixels[destOffset + x],
-                             srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case DARKEST:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_darkest(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
-
-      case REPLACE:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] = srcBuffer[sY + (sX >> PRECISIONB)];
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+      PixelBands.run(width, height, band);
+    }
+  }
 
-      case DIFFERENCE:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_difference(destPixels[destOffset + x],
-                               srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
 
-      case EXCLUSION:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_exclusion(destPixels[destOffset + x],
-                              srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+  /**
+   * Bilinear samples along one row of the source, for count pixels of
+   * 'row' starting at offset. u and v are the position of the first
+   * sample in fixed point, and du is the step from one to the next.
+   */
+  static private void sampleBilinear(int[] src, int iw, int ih1,
+                                     int u, int du, int v,
+                                     int[] row, int offset, int count) {
+    final int iw1 = iw - 1;
+    final int fracV = v & PREC_MAXVAL;
+    final int ifV = PREC_MAXVAL - fracV + 1;
+    final int v1 = (v >> PRECISIONB) * iw;
+    final int v2 = min((v >> PRECISIONB) + 1, ih1) * iw;
+
+    if (du == PRECISIONF && ((u | v) & PREC_MAXVAL) == 0) {
+      // not scaled and lined up with the pixels, so all the weight goes to
+      // the upper left texel, and the samples are an exact copy
+      System.arraycopy(src, v1 + (u >> PRECISIONB), row, offset, count);
+      return;
+    }
 
-      case MULTIPLY:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_multiply(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    for (int x = 0; x < count; x++) {
+      int fracU = u & PREC_MAXVAL;
+      int ifU = PREC_MAXVAL - fracU + 1;
+      int ul = (ifU * ifV) >> PRECISIONB;
+      int ll = ifU - ul;
+      int ur = ifV - ul;
+      int lr = PREC_MAXVAL + 1 - ul - ll - ur;
+      int u1 = (u >> PRECISIONB);
+      int u2 = min(u1 + 1, iw1);
+
+      // get color values of the 4 neighbouring texels
+      int cUL = src[v1 + u1];
+      int cUR = src[v1 + u2];
+      int cLL = src[v2 + u1];
+      int cLR = src[v2 + u2];
+
+      int r = ((ul*((cUL&RED_MASK)>>16) + ll*((cLL&RED_MASK)>>16) +
+                ur*((cUR&RED_MASK)>>16) + lr*((cLR&RED_MASK)>>16))
+               << PREC_RED_SHIFT) & RED_MASK;
+
+      int g = ((ul*(cUL&GREEN_MASK) + ll*(cLL&GREEN_MASK) +
+                ur*(cUR&GREEN_MASK) + lr*(cLR&GREEN_MASK))
+               >>> PRECISIONB) & GREEN_MASK;
+
+      int b = (ul*(cUL&BLUE_MASK) + ll*(cLL&BLUE_MASK) +
+               ur*(cUR&BLUE_MASK) + lr*(cLR&BLUE_MASK))
+                 >>> PRECISIONB;
+
+      int a = ((ul*((cUL&ALPHA_MASK)>>>24) + ll*((cLL&ALPHA_MASK)>>>24) +
+                ur*((cUR&ALPHA_MASK)>>>24) + lr*((cLR&ALPHA_MASK)>>>24))
+               << PREC_ALPHA_SHIFT) & ALPHA_MASK;
+
+      row[offset + x] = a | r | g | b;
+      u += du;
+    }
+  }
 
-      case SCREEN:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_screen(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
 
-      case OVERLAY:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_overlay(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+  /** Nearest neighbour scaling (++fast!), otherwise as sampleBilinear(). */
+  static private void sampleNearest(int[] src, int iw,
+                                    int u, int du, int v,
+                                    int[] row, int offset, int count) {
+    final int sY = (v >> PRECISIONB) * iw;
+    for (int x = 0; x < count; x++) {
+      row[offset + x] = src[sY + (u >> PRECISIONB)];
+      u += du;
+    }
+  }
 
-      case HARD_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_hard_light(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
 
-      case SOFT_LIGHT:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_soft_light(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+  /**
+   * Blend count pixels of src into dest starting at offset. Each mode has
+   * its own loop, so that the blend function can be inlined into it.
+   * (REPLACE doesn't come through here, it's sampled right into dest.)
+   */
+  static private void blendRow(int[] src, int[] dest, int offset,
+                               int count, int mode) {
+    switch (mode) {
+    case BLEND:
+      // davbol - renamed old blend_multiply to blend_blend
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_blend(dest[offset + x], src[x]);
+      }
+      break;
 
-      // davbol - proposed 2007-01-09
-      case DODGE:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_dodge(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case ADD:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_add_pin(dest[offset + x], src[x]);
+      }
+      break;
 
-      case BURN:
-        for (int y = 0; y < destH; y++) {
-          sX = srcXOffset;
-          sY = (srcYOffset >> PRECISIONB) * img.pixelWidth;
-          for (int x = 0; x < destW; x++) {
-            destPixels[destOffset + x] =
-              blend_burn(destPixels[destOffset + x],
-                            srcBuffer[sY + (sX >> PRECISIONB)]);
-            sX += dx;
-          }
-          destOffset += screenW;
-          srcYOffset += dy;
-        }
-        break;
+    case SUBTRACT:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_sub_pin(dest[offset + x], src[x]);
+      }
+      break;
 
+    case LIGHTEST:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_lightest(dest[offset + x], src[x]);
       }
-    }
-  }
+      break;
 
+    case DARKEST:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_darkest(dest[offset + x], src[x]);
+      }
+      break;
 
-  private void filter_new_scanline() {
-    sX = srcXOffset;
-    fracV = srcYOffset & PREC_MAXVAL;
-    ifV = PREC_MAXVAL - fracV + 1;
-    v1 = (srcYOffset >> PRECISIONB) * iw;
-    v2 = min((srcYOffset >> PRECISIONB) + 1, ih1) * iw;
-  }
+    case DIFFERENCE:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_difference(dest[offset + x], src[x]);
+      }
+      break;
 
+    case EXCLUSION:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_exclusion(dest[offset + x], src[x]);
+      }
+      break;
 
-  private int filter_bilinear() {
-    fracU = sX & PREC_MAXVAL;
-    ifU = PREC_MAXVAL - fracU + 1;
-    ul = (ifU * ifV) >> PRECISIONB;
-    ll = ifU - ul;
-    ur = ifV - ul;
-    lr = PREC_MAXVAL + 1 - ul - ll - ur;
-    u1 = (sX >> PRECISIONB);
-    u2 = min(u1 + 1, iw1);
+    case MULTIPLY:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_multiply(dest[offset + x], src[x]);
+      }
+      break;
 
-    // get color values of the 4 neighbouring texels
-    cUL = srcBuffer[v1 + u1];
-    cUR = srcBuffer[v1 + u2];
-    cLL = srcBuffer[v2 + u1];
-    cLR = srcBuffer[v2 + u2];
+    case SCREEN:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_screen(dest[offset + x], src[x]);
+      }
+      break;
 
-    r = ((ul*((cUL&RED_MASK)>>16) + ll*((cLL&RED_MASK)>>16) +
-          ur*((cUR&RED_MASK)>>16) + lr*((cLR&RED_MASK)>>16))
-         << PREC_RED_SHIFT) & RED_MASK;
+    case OVERLAY:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_overlay(dest[offset + x], src[x]);
+      }
+      break;
 
-    g = ((ul*(cUL&GREEN_MASK) + ll*(cLL&GREEN_MASK) +
-          ur*(cUR&GREEN_MASK) + lr*(cLR&GREEN_MASK))
-         >>> PRECISIONB) & GREEN_MASK;
+    case HARD_LIGHT:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_hard_light(dest[offset + x], src[x]);
+      }
+      break;
 
-    b = (ul*(cUL&BLUE_MASK) + ll*(cLL&BLUE_MASK) +
-         ur*(cUR&BLUE_MASK) + lr*(cLR&BLUE_MASK))
-           >>> PRECISIONB;
+    case SOFT_LIGHT:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_soft_light(dest[offset + x], src[x]);
+      }
+      break;
 
-    a = ((ul*((cUL&ALPHA_MASK)>>>24) + ll*((cLL&ALPHA_MASK)>>>24) +
-          ur*((cUR&ALPHA_MASK)>>>24) + lr*((cLR&ALPHA_MASK)>>>24))
-         << PREC_ALPHA_SHIFT) & ALPHA_MASK;
+    // davbol - proposed 2007-01-09
+    case DODGE:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_dodge(dest[offset + x], src[x]);
+      }
+      break;
 
-    return a | r | g | b;
+    case BURN:
+      for (int x = 0; x < count; x++) {
+        dest[offset + x] = blend_burn(dest[offset + x], src[x]);
+      }
+      break;
+    }
   }
 
 
-
   //////////////////////////////////////////////////////////////
 
   // internal blending methods
@@ -0,0 +1,338 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Loads images on background threads. This is what requestImage() uses,
+ * and it can also be used directly by sketches that load a lot of images
+ * (a folder of thousands of thumbnails, say) and need more control:
+ * <pre>
+ * PImageLoader loader = new PImageLoader(this);
+ * loader.request("photo.jpg").thenAccept(img -&gt; photo = img);
+ * </pre>
+ * Requests with a higher priority are loaded first, and requests with the
+ * same priority are loaded in the order they were made. The returned
+ * CompletableFuture finishes with the image (on one of the loading threads,
+ * so hand it off to draw() rather than drawing it right there), finishes
+ * exceptionally if the image couldn't be loaded, and can be cancelled.
+ * <p/>
+ * The number of images being decoded at once is limited both by the number
+ * of threads (the number of cores, by default) and by a memory budget. Each
+ * decode counts as 8 bytes per pixel (the decoded image plus the copy that's
+ * made from it). The size isn't known until an image has been read, so the
+ * average of the images loaded so far is used instead, which keeps a folder
+ * of large photos from all being decoded at once. One image is always let
+ * through, even if it's larger than the whole budget.
+ * <p/>
+ * The threads are daemon threads, so they don't keep a sketch from
+ * quitting; call dispose() to stop them sooner.
+ */
+public class PImageLoader {
+  /** Bytes counted for each pixel of an image while it's being decoded. */
+  static final int BYTES_PER_PIXEL = 8;
+
+  protected PApplet sketch;
+  protected ThreadPoolExecutor executor;
+  protected long budget;
+
+  private final Object budgetLock = new Object();
+  private long reserved;
+  private long estimate;
+  private boolean measured;
+
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicInteger requested = new AtomicInteger();
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger completed = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+  private final AtomicInteger cancelled = new AtomicInteger();
+  private final AtomicLong decodeNanos = new AtomicLong();
+
+
+  /**
+   * Create a loader with a thread for each core, and a budget of a quarter
+   * of the maximum heap size.
+   */
+  public PImageLoader(PApplet sketch) {
+    this(sketch, Runtime.getRuntime().availableProcessors(),
+         Runtime.getRuntime().maxMemory() / 4);
+  }
+
+
+  /**
+   * @param threads number of images that can be loaded at once
+   * @param budget approximate bytes that images being decoded can use
+   */
+  public PImageLoader(PApplet sketch, int threads, long budget) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("PImageLoader needs at least one thread");
+    }
+    if (budget < 1) {
+      throw new IllegalArgumentException("PImageLoader budget must be > 0");
+    }
+    this.sketch = sketch;
+    this.budget = budget;
+    this.estimate = budget / threads;
+
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory factory = r -> {
+      // loadImage() checks for this name, see PApplet.loadImage()
+      Thread thread = new Thread(r, PApplet.REQUEST_IMAGE_THREAD_PREFIX +
+                                 "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                      new PriorityBlockingQueue<>(), factory);
+  }
+
+
+  public CompletableFuture<PImage> request(String filename) {
+    return request(filename, null, 0);
+  }
+
+
+  public CompletableFuture<PImage> request(String filename, int priority) {
+    return request(filename, null, priority);
+  }
+
+
+  /**
+   * Queue an image to be loaded.
+   *
+   * @param extension type of image to load, or null to use the filename
+   * @param priority higher numbers are loaded first
+   */
+  public CompletableFuture<PImage> request(String filename, String extension,
+                                           int priority) {
+    // Make sure saving to this file completes before trying to load it
+    // Has to be called on main thread, because P2D and P3D need GL functions
+    if (sketch.g != null) {
+      sketch.g.awaitAsyncSaveCompletion(filename);
+    }
+    Task task = new Task(filename, extension, priority);
+    requested.incrementAndGet();
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // dispose() was called
+      task.future.cancel(false);
+    }
+    return task.future;
+  }
+
+
+  /** Cancel everything that's waiting to be loaded. */
+  public void cancelAll() {
+    List<Runnable> waiting = new ArrayList<>();
+    executor.getQueue().drainTo(waiting);
+    for (Runnable task : waiting) {
+      ((Task) task).future.cancel(false);
+    }
+  }
+
+
+  /**
+   * Cancel everything that's waiting, and stop the threads. Images that
+   * are already being decoded are finished, but nothing else is loaded.
+   */
+  public void dispose() {
+    cancelAll();
+    executor.shutdown();
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Number of requests that haven't been started. */
+  public int pending() {
+    return executor.getQueue().size();
+  }
+
+
+  /** Number of images being loaded right now. */
+  public int running() {
+    return running.get();
+  }
+
+
+  public int completed() {
+    return completed.get();
+  }
+
+
+  public int failed() {
+    return failed.get();
+  }
+
+
+  public int cancelled() {
+    return cancelled.get();
+  }
+
+
+  /**
+   * Fraction of the requests so far that are finished (loaded, failed, or
+   * cancelled), from 0 to 1. Returns 1 if nothing has been requested.
+   */
+  public float progress() {
+    int total = requested.get();
+    if (total == 0) return 1;
+    return (completed.get() + failed.get() + cancelled.get()) / (float) total;
+  }
+
+
+  /** Average time in milliseconds to load one image. */
+  public float averageMillis() {
+    int count = completed.get() + failed.get();
+    return (count == 0) ? 0 : decodeNanos.get() / 1e6f / count;
+  }
+
+
+  /** Bytes currently set aside for images being decoded. */
+  public long bytesInFlight() {
+    synchronized (budgetLock) {
+      return reserved;
+    }
+  }
+
+
+  public long budget() {
+    return budget;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Wait until there's room in the budget for another image. */
+  private long reserve() throws InterruptedException {
+    synchronized (budgetLock) {
+      long cost = estimate;
+      while (reserved > 0 && reserved + cost > budget) {
+        budgetLock.wait();
+      }
+      reserved += cost;
+      return cost;
+    }
+  }
+
+
+  private void release(long cost, PImage image) {
+    synchronized (budgetLock) {
+      reserved -= cost;
+      if (image != null && image.pixels != null) {
+        long actual = (long) image.pixels.length * BYTES_PER_PIXEL;
+        // the first real size replaces the guess, after that it's a
+        // moving average, so a few odd sizes don't throw it off
+        estimate = measured ? (estimate * 3 + actual) / 4 : actual;
+        measured = true;
+      }
+      budgetLock.notifyAll();
+    }
+  }
+
+
+  private class Task implements Runnable, Comparable<Task> {
+    final String filename;
+    final String extension;
+    final int priority;
+    final long order;
+    final CompletableFuture<PImage> future = new CompletableFuture<>();
+
+
+    Task(String filename, String extension, int priority) {
+      this.filename = filename;
+      this.extension = extension;
+      this.priority = priority;
+      this.order = sequence.getAndIncrement();
+
+      future.whenComplete((image, e) -> {
+        if (future.isCancelled()) {
+          cancelled.incrementAndGet();
+          executor.remove(this);
+        }
+      });
+    }
+
+
+    @Override
+    public int compareTo(Task o) {
+      if (priority != o.priority) {
+        return Integer.compare(o.priority, priority);
+      }
+      return Long.compare(order, o.order);
+    }
+
+
+    @Override
+    public void run() {
+      if (future.isDone()) return;  // cancelled while waiting
+
+      long cost;
+      try {
+        cost = reserve();
+      } catch (InterruptedException e) {
+        future.cancel(false);
+        return;
+      }
+      PImage image = null;
+      Throwable error = null;
+      running.incrementAndGet();
+      long start = System.nanoTime();
+      try {
+        if (!future.isDone()) {
+          image = sketch.loadImage(filename, extension);
+        }
+      } catch (Throwable t) {
+        // including errors like running out of memory for a huge image,
+        // which would otherwise leave the future waiting forever
+        error = t;
+      } finally {
+        running.decrementAndGet();
+        release(cost, image);
+      }
+      if (future.isDone()) return;  // cancelled while loading
+
+      decodeNanos.addAndGet(System.nanoTime() - start);
+      if (image == null) {
+        failed.incrementAndGet();
+        future.completeExceptionally(new RuntimeException("Could not load " + filename, error));
+      } else {
+        completed.incrementAndGet();
+        future.complete(image);
+      }
+    }
+  }
+}
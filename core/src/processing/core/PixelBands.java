@@ -0,0 +1,106 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.core;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * Splits the rows of an image into bands that are worked on in parallel,
+ * for the filters in PImage. Each row of the result is always calculated
+ * the same way, no matter which band it's in, so the pixels come out
+ * identical with any number of threads.
+ * <p/>
+ * Also keeps the scratch arrays used by the filters, so that a sketch that
+ * blurs every frame doesn't allocate new arrays (as large as the image)
+ * for each one. They're held with soft references, so they can still be
+ * collected when memory runs low.
+ */
+class PixelBands {
+  /** Roughly how many pixels each task works on. */
+  static final int BAND_PIXELS = 1 << 16;
+  /** Number of scratch arrays kept around for reuse. */
+  static final int POOL_SIZE = 4;
+
+  static private final List<SoftReference<int[]>> pool = new ArrayList<>();
+
+
+  interface Band {
+    void run(int startRow, int stopRow);
+  }
+
+
+  /**
+   * Run band on rows [0, height) of an image that's width pixels wide,
+   * in parallel when the image is large enough to make it worthwhile.
+   */
+  static void run(int width, int height, Band band) {
+    int rows = Math.max(1, BAND_PIXELS / Math.max(1, width));
+    if (rows >= height || Runtime.getRuntime().availableProcessors() == 1) {
+      band.run(0, height);
+    } else {
+      List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (int start = 0; start < height; start += rows) {
+        final int first = start;
+        final int last = Math.min(start + rows, height);
+        tasks.add(ForkJoinPool.commonPool().submit(() -> band.run(first, last)));
+      }
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+    }
+  }
+
+
+  /**
+   * Get a scratch array with at least length elements. The contents are
+   * left over from whatever used it before.
+   */
+  static int[] borrow(int length) {
+    synchronized (pool) {
+      for (int i = pool.size() - 1; i >= 0; i--) {
+        int[] array = pool.get(i).get();
+        if (array == null) {
+          pool.remove(i);  // collected
+        } else if (array.length >= length) {
+          pool.remove(i);
+          return array;
+        }
+      }
+    }
+    return new int[length];
+  }
+
+
+  /** Give back an array from borrow() so that it can be used again. */
+  static void release(int[] array) {
+    synchronized (pool) {
+      if (pool.size() == POOL_SIZE) {
+        pool.remove(0);  // the oldest
+      }
+      pool.add(new SoftReference<>(array));
+    }
+  }
+}
@@ -0,0 +1,296 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Resampling for PImage.resize(w, h, filter). Each filter is a kernel
+ * that's stretched over more of the source when shrinking, so that every
+ * source pixel counts toward the result and nothing aliases. The weights
+ * only depend on the sizes, so they're worked out once for all the columns
+ * and once for all the rows, as fixed point tables, and then the image is
+ * resized across and then down, each in bands of rows with PixelBands.
+ * <p/>
+ * Shrinking by a whole number in both directions with AREA is a plain
+ * average of each block of pixels. For the other filters, large reductions
+ * are first halved (as many times as needed, in one pass) while the image
+ * stays at least four times the target size, which is much less work for
+ * the filter, and doesn't lose anything it wouldn't remove anyway.
+ */
+class Resampler implements PConstants {
+  /** Fixed point precision of the weights. */
+  static final int WEIGHT_BITS = 14;
+  static final int ONE = 1 << WEIGHT_BITS;
+
+
+  /**
+   * Weights for resizing one dimension. Pixel i of the result is made
+   * from 'count' source pixels, starting at start[i], using the weights
+   * from weights[i*count] up to weights[i*count + count].
+   */
+  static private class Weights {
+    int count;
+    int[] start;
+    int[] weights;
+  }
+
+
+  static int[] resize(int[] src, int srcW, int srcH,
+                      int destW, int destH, int filter) {
+    if (filter != BILINEAR && filter != BICUBIC &&
+        filter != LANCZOS && filter != AREA) {
+      throw new IllegalArgumentException("resize() filter should be " +
+                                         "BILINEAR, BICUBIC, LANCZOS, or AREA");
+    }
+    if (filter == AREA && srcW % destW == 0 && srcH % destH == 0) {
+      return shrink(src, srcW, srcH, srcW / destW, srcH / destH);
+    }
+    // all the halving is done in a single pass
+    int factor = 1;
+    while ((srcW / factor) % 2 == 0 && (srcH / factor) % 2 == 0 &&
+           srcW / factor >= destW * 4 && srcH / factor >= destH * 4) {
+      factor *= 2;
+    }
+    if (factor > 1) {
+      src = shrink(src, srcW, srcH, factor, factor);
+      srcW /= factor;
+      srcH /= factor;
+    }
+
+    final int[] source = src;
+    final int sw = srcW;
+    final Weights across = weights(srcW, destW, filter);
+    final Weights down = weights(srcH, destH, filter);
+    final int[] middle = new int[destW * srcH];
+    final int[] outgoing = new int[destW * destH];
+
+    PixelBands.run(destW, srcH, (start, stop) -> {
+      int count = across.count;
+      for (int y = start; y < stop; y++) {
+        int row = y * sw;
+        int index = y * destW;
+        for (int x = 0; x < destW; x++) {
+          int a = 0, r = 0, g = 0, b = 0;
+          int read = row + across.start[x];
+          int k = x * count;
+          for (int i = 0; i < count; i++) {
+            int c = source[read + i];
+            int w = across.weights[k + i];
+            a += w * (c >>> 24);
+            r += w * ((c >> 16) & 0xff);
+            g += w * ((c >> 8) & 0xff);
+            b += w * (c & 0xff);
+          }
+          middle[index + x] = pack(a, r, g, b);
+        }
+      }
+    });
+
+    PixelBands.run(destW, destH, (start, stop) -> {
+      int count = down.count;
+      int[] sa = new int[destW];
+      int[] sr = new int[destW];
+      int[] sg = new int[destW];
+      int[] sb = new int[destW];
+      for (int y = start; y < stop; y++) {
+        for (int x = 0; x < destW; x++) {
+          sa[x] = sr[x] = sg[x] = sb[x] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+          int w = down.weights[y * count + i];
+          if (w != 0) {
+            int read = (down.start[y] + i) * destW;
+            for (int x = 0; x < destW; x++) {
+              int c = middle[read + x];
+              sa[x] += w * (c >>> 24);
+              sr[x] += w * ((c >> 16) & 0xff);
+              sg[x] += w * ((c >> 8) & 0xff);
+              sb[x] += w * (c & 0xff);
+            }
+          }
+        }
+        int index = y * destW;
+        for (int x = 0; x < destW; x++) {
+          outgoing[index + x] = pack(sa[x], sr[x], sg[x], sb[x]);
+        }
+      }
+    });
+    return outgoing;
+  }
+
+
+  /** Round and clamp weighted sums (the negative lobes can overshoot). */
+  static private int pack(int a, int r, int g, int b) {
+    return channel(a) << 24 | channel(r) << 16 | channel(g) << 8 | channel(b);
+  }
+
+
+  static private int channel(int sum) {
+    int value = (sum + (ONE >> 1)) >> WEIGHT_BITS;
+    return (value < 0) ? 0 : ((value > 255) ? 255 : value);
+  }
+
+
+  /**
+   * Average each block of across x down pixels into one. The sums are
+   * longs, since a block of more than about 8 million pixels (a whole
+   * photo shrunk to a few pixels) would overflow an int.
+   */
+  static private int[] shrink(final int[] src, final int srcW, int srcH,
+                              final int across, final int down) {
+    final int destW = srcW / across;
+    final int destH = srcH / down;
+    final int[] outgoing = new int[destW * destH];
+    final long area = (long) across * down;
+
+    PixelBands.run(destW, destH, (start, stop) -> {
+      long[] sa = new long[destW];
+      long[] sr = new long[destW];
+      long[] sg = new long[destW];
+      long[] sb = new long[destW];
+      for (int y = start; y < stop; y++) {
+        for (int x = 0; x < destW; x++) {
+          sa[x] = sr[x] = sg[x] = sb[x] = 0;
+        }
+        for (int row = y * down; row < (y + 1) * down; row++) {
+          int read = row * srcW;
+          for (int x = 0; x < destW; x++) {
+            for (int i = 0; i < across; i++) {
+              int c = src[read++];
+              sa[x] += c >>> 24;
+              sr[x] += (c >> 16) & 0xff;
+              sg[x] += (c >> 8) & 0xff;
+              sb[x] += c & 0xff;
+            }
+          }
+        }
+        int index = y * destW;
+        for (int x = 0; x < destW; x++) {
+          outgoing[index + x] =
+            (int) ((sa[x] + area/2) / area) << 24 |
+            (int) ((sr[x] + area/2) / area) << 16 |
+            (int) ((sg[x] + area/2) / area) << 8 |
+            (int) ((sb[x] + area/2) / area);
+        }
+      }
+    });
+    return outgoing;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** How far the kernel reaches on either side, before it's stretched. */
+  static private double support(int filter) {
+    switch (filter) {
+      case BICUBIC: return 2;
+      case LANCZOS: return 3;
+      default: return 1;  // BILINEAR
+    }
+  }
+
+
+  static private double kernel(int filter, double x) {
+    x = Math.abs(x);
+    switch (filter) {
+      case BICUBIC:
+        // Catmull-Rom (a = -0.5), the usual "bicubic" in image editors
+        if (x < 1) return (1.5*x - 2.5)*x*x + 1;
+        if (x < 2) return ((-0.5*x + 2.5)*x - 4)*x + 2;
+        return 0;
+      case LANCZOS:
+        if (x < 1e-8) return 1;
+        if (x >= 3) return 0;
+        double px = Math.PI * x;
+        return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+      default:  // BILINEAR
+        return (x < 1) ? 1 - x : 0;
+    }
+  }
+
+
+  static private Weights weights(int srcLength, int destLength, int filter) {
+    double scale = (double) srcLength / destLength;
+    // shrinking stretches the kernel, so each result covers its share
+    double stretch = Math.max(scale, 1);
+    double support = (filter == AREA) ?
+      Math.max(scale, 1) / 2 + 0.5 : support(filter) * stretch;
+
+    Weights outgoing = new Weights();
+    // the most source pixels used for any one result
+    int count = 1;
+    for (int i = 0; i < destLength; i++) {
+      double center = (i + 0.5) * scale;
+      int first = (int) Math.ceil(center - support - 0.5);
+      int last = (int) Math.floor(center + support - 0.5);
+      count = Math.max(count, last - first + 1);
+    }
+    count = Math.min(count, srcLength);
+    outgoing.count = count;
+    outgoing.start = new int[destLength];
+    outgoing.weights = new int[destLength * count];
+    double[] taps = new double[count];
+
+    for (int i = 0; i < destLength; i++) {
+      // centers of source pixels are at j + 0.5
+      double center = (i + 0.5) * scale;
+      int first = (int) Math.ceil(center - support - 0.5);
+      int last = (int) Math.floor(center + support - 0.5);
+      int start = Math.max(0, Math.min(first, srcLength - count));
+      outgoing.start[i] = start;
+
+      Arrays.fill(taps, 0);
+      double total = 0;
+      for (int j = first; j <= last; j++) {
+        double w;
+        if (filter == AREA) {
+          // how much of source pixel j is inside this one
+          double left = Math.max(j, i * scale);
+          double right = Math.min(j + 1, (i + 1) * scale);
+          w = Math.max(0, right - left);
+        } else {
+          w = kernel(filter, (j + 0.5 - center) / stretch);
+        }
+        // past the edges, use the pixel at the edge
+        int at = Math.max(0, Math.min(j, srcLength - 1)) - start;
+        taps[at] += w;
+        total += w;
+      }
+
+      // make the weights add up to exactly ONE, so flat areas stay flat
+      int sum = 0;
+      int largest = 0;
+      for (int k = 0; k < count; k++) {
+        int w = (int) Math.round(taps[k] / total * ONE);
+        outgoing.weights[i * count + k] = w;
+        sum += w;
+        if (w > outgoing.weights[i * count + largest]) {
+          largest = k;
+        }
+      }
+      outgoing.weights[i * count + largest] += ONE - sum;
+    }
+    return outgoing;
+  }
+}
@@ -5,6 +5,7 @@ import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Random;
+import java.util.function.DoubleUnaryOperator;
 
 import processing.core.PApplet;
 
@@ -550,6 +551,211 @@ public class DoubleList implements Iterable<Double> {
   }
 
 
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  // Math on the whole list. Long lists are split up to run in parallel.
+
+
+  private void checkSameSize(DoubleList list, String functionName) {
+    if (list.count != count) {
+      String msg =
+        String.format("%s() needs lists of the same size, not %d and %d",
+                      functionName, count, list.count);
+      throw new IllegalArgumentException(msg);
+    }
+  }
+
+
+  /**
+   * Add an amount to every value.
+   */
+  public void add(double amount) {
+    final double[] d = data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] += amount;
+      }
+    });
+  }
+
+
+  /**
+   * Add each value from another list of the same size to the value
+   * at the same index in this one.
+   */
+  public void add(DoubleList list) {
+    checkSameSize(list, "add");
+    final double[] d = data;
+    final double[] other = list.data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] += other[i];
+      }
+    });
+  }
+
+
+  public void sub(double amount) {
+    add(-amount);
+  }
+
+
+  public void sub(DoubleList list) {
+    checkSameSize(list, "sub");
+    final double[] d = data;
+    final double[] other = list.data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] -= other[i];
+      }
+    });
+  }
+
+
+  /**
+   * Multiply every value by an amount.
+   */
+  public void mult(double amount) {
+    final double[] d = data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] *= amount;
+      }
+    });
+  }
+
+
+  public void mult(DoubleList list) {
+    checkSameSize(list, "mult");
+    final double[] d = data;
+    final double[] other = list.data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] *= other[i];
+      }
+    });
+  }
+
+
+  public void div(double amount) {
+    final double[] d = data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] /= amount;
+      }
+    });
+  }
+
+
+  public void div(DoubleList list) {
+    checkSameSize(list, "div");
+    final double[] d = data;
+    final double[] other = list.data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] /= other[i];
+      }
+    });
+  }
+
+
+  /**
+   * Replace every value with the result of a function, for instance
+   * <b>list.map(v -&gt; v * v)</b> to square each value.
+   */
+  public void map(DoubleUnaryOperator function) {
+    final double[] d = data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] = function.applyAsDouble(d[i]);
+      }
+    });
+  }
+
+
+  /**
+   * Multiply each value by the value at the same index in another list of
+   * the same size, and add up the results.
+   */
+  public double dot(DoubleList list) {
+    checkSameSize(list, "dot");
+    final double[] d = data;
+    final double[] other = list.data;
+    return ListMath.reduce(count, (start, stop) -> {
+      double partial = 0;
+      for (int i = start; i < stop; i++) {
+        partial += d[i] * other[i];
+      }
+      return partial;
+    }, Double::sum);
+    
+  }
+
+
+  /**
+   * Replace each value with the sum of itself and all values before it.
+   */
+  public void cumulativeSum() {
+    // each value depends on the one before, so this one isn't split up
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += data[i];
+      data[i] = sum;
+    }
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * between min() and max().
+   */
+  public IntList histogram(int bins) {
+    checkMinMax("histogram");
+    return histogram(bins, min(), max());
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * from low to high. Values equal to high go in the last bin, and values
+   * outside the range (and NaN) aren't counted.
+   */
+  public IntList histogram(int bins, double low, double high) {
+    if (bins < 1) {
+      throw new IllegalArgumentException("histogram() needs at least 1 bin");
+    }
+    final double[] d = data;
+    final double scale = (high > low) ? bins / (high - low) : 0;
+    int[] counts = ListMath.reduce(count, (start, stop) -> {
+      int[] partial = new int[bins];
+      for (int i = start; i < stop; i++) {
+        double value = d[i];
+        if (value >= low && value <= high) {
+          partial[Math.min((int) ((value - low) * scale), bins - 1)]++;
+        }
+      }
+      return partial;
+    }, (a, b) -> {
+      for (int i = 0; i < bins; i++) {
+        a[i] += b[i];
+      }
+      return a;
+    });
+    return new IntList(counts);
+  }
+
+
+  /**
+   * Return the value that p percent of the values are below, from 0 to 100,
+   * interpolating between the two closest values. NaN values are ignored.
+   * percentile(50) is the median.
+   */
+  public double percentile(double p) {
+    return ListMath.percentile(Arrays.copyOf(data, count), p);
+  }
+
+
   private void checkMinMax(String functionName) {
     if (count == 0) {
       String msg =
@@ -648,7 +854,7 @@ public class DoubleList implements Iterable<Double> {
    * @brief Sorts an array, lowest to highest
    */
   public void sort() {
-    Arrays.sort(data, 0, count);
+    RadixSort.sort(data, count);
   }
 
 
@@ -659,45 +865,17 @@ public class DoubleList implements Iterable<Double> {
    * @brief Reverse sort, orders values from highest to lowest
    */
   public void sortReverse() {
-    new Sort() {
-      @Override
-      public int size() {
-        // if empty, don't even mess with the NaN check, it'll AIOOBE
-        if (count == 0) {
-          return 0;
-        }
-        // move NaN values to the end of the list and don't sort them
-        int right = count - 1;
-        while (data[right] != data[right]) {
-          right--;
-          if (right == -1) {  // all values are NaN
-            return 0;
-          }
-        }
-        for (int i = right; i >= 0; --i) {
-          double v = data[i];
-          if (v != v) {
-            data[i] = data[right];
-            data[right] = v;
-            --right;
-          }
-        }
-        return right + 1;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        double diff = data[b] - data[a];
-        return diff == 0 ? 0 : (diff < 0 ? -1 : 1);
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        double temp = data[a];
-        data[a] = data[b];
-        data[b] = temp;
-      }
-    }.run();
+    sort();
+    // NaN values are sorted to the end, leave them there
+    int right = count;
+    while (right > 0 && data[right-1] != data[right-1]) {
+      right--;
+    }
+    for (int i = 0, j = right - 1; i < j; i++, j--) {
+      double t = data[i];
+      data[i] = data[j];
+      data[j] = t;
+    }
   }
 
 
@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -27,7 +26,7 @@ public class FloatDict {
   protected float[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private HashIndex indices = new HashIndex();
 
 
   public FloatDict() {
@@ -66,7 +65,7 @@ public class FloatDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseFloat(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, count);
         count++;
       }
     }
@@ -84,7 +83,7 @@ public class FloatDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -105,7 +104,7 @@ public class FloatDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Float) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -154,14 +153,14 @@ public class FloatDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    indices.clear();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
+    indices = new HashIndex(count);
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -616,8 +615,7 @@ public class FloatDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.find(keys, what);
   }
 
 
@@ -626,7 +624,7 @@ public class FloatDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
+    indices.add(HashIndex.hash(what), count);
     keys[count] = what;
     values[count] = much;
     count++;
@@ -655,11 +653,10 @@ public class FloatDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     float value = values[index];
-    indices.remove(keys[index]);
+    indices.remove(HashIndex.hash(keys[index]), index);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
     count--;
     keys[count] = null;
@@ -744,62 +741,45 @@ public class FloatDict {
 
   protected void sortImpl(final boolean useKeys, final boolean reverse,
                           final boolean stable) {
-    Sort s = new Sort() {
-      @Override
-      public int size() {
-        if (useKeys) {
-          return count;  // don't worry about NaN values
-
-        } else if (count == 0) {  // skip the NaN check, it'll AIOOBE
-          return 0;
-
-        } else {  // first move NaN values to the end of the list
-          int right = count - 1;
-          while (values[right] != values[right]) {
-            right--;
-            if (right == -1) {
-              return 0;  // all values are NaN
-            }
-          }
-          for (int i = right; i >= 0; --i) {
-            if (Float.isNaN(values[i])) {
-              swap(i, right);
-              --right;
-            }
-          }
-          return right + 1;
-        }
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        float diff = 0;
-        if (useKeys) {
-          diff = keys[a].compareToIgnoreCase(keys[b]);
-          if (diff == 0) {
-            diff = values[a] - values[b];
-          }
-        } else {  // sort values
-          diff = values[a] - values[b];
-          if (diff == 0 && stable) {
-            diff = keys[a].compareToIgnoreCase(keys[b]);
-          }
-        }
-        if (diff == 0) {
-          return 0;
-        } else if (reverse) {
-          return diff < 0 ? 1 : -1;
-        } else {
-          return diff < 0 ? -1 : 1;
-        }
+    TableSort.Key byKey = new TableSort.Key() {
+      int compare(int a, int b) {
+        return keys[a].compareToIgnoreCase(keys[b]);
       }
-
-      @Override
-      public void swap(int a, int b) {
-        FloatDict.this.swap(a, b);
+    };
+    TableSort.Key byValue = new TableSort.Key() {
+      int compare(int a, int b) {
+        return Float.compare(values[a], values[b]);
       }
     };
-    s.run();
+    int[] order;
+    int stop = count;
+    if (useKeys) {
+      order = RadixSort.order(count, byKey, byValue);
+    } else {
+      // all the values are put in order at once, and then keys are
+      // compared only where values are equal
+      order = RadixSort.order(values, count);
+      if (stable) {
+        RadixSort.breakTies(order, count, byValue, byKey);
+      }
+      // NaN values stay at the end, also when sorting in reverse
+      while (stop > 0 && Float.isNaN(values[order[stop-1]])) {
+        stop--;
+      }
+    }
+    if (reverse) {
+      RadixSort.reverse(order, stop);
+    }
+
+    // move everything into place in one pass
+    String[] sortedKeys = new String[keys.length];
+    float[] sortedValues = new float[values.length];
+    for (int i = 0; i < count; i++) {
+      sortedKeys[i] = keys[order[i]];
+      sortedValues[i] = values[order[i]];
+    }
+    keys = sortedKeys;
+    values = sortedValues;
 
     // Set the indices after sort/swaps (performance fix 160411)
     resetIndices();
@@ -827,10 +807,8 @@ public class FloatDict {
     FloatDict outgoing = new FloatDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
     outgoing.count = count;
+    outgoing.resetIndices();
     return outgoing;
   }
 
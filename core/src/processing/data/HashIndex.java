@@ -0,0 +1,210 @@
+package processing.data;
+
+import java.util.Arrays;
+
+
+/**
+ * Open addressing hash table of positions in a separate array of keys.
+ * Used by the Dict and Map classes in place of HashMap&lt;key, Integer&gt;,
+ * so that lookups don't box anything, and each entry takes two ints.
+ * <p/>
+ * The table is linear probing, kept at most half full. Along with each
+ * position, it keeps the hash of the key, which makes for fewer key
+ * comparisons, and means it can grow without looking at the keys.
+ */
+class HashIndex {
+  /** Position in the keys array plus one, or 0 for an empty slot. */
+  int[] slots;
+  /** Hash of the key in each slot. */
+  int[] hashes;
+  int mask;
+  int size;
+
+
+  HashIndex() {
+    this(8);
+  }
+
+
+  HashIndex(int expected) {
+    allocate(tableSize(expected));
+  }
+
+
+  static private int tableSize(int expected) {
+    int length = 16;
+    while (length < expected * 2 && length < (1 << 30)) {
+      length <<= 1;
+    }
+    return length;
+  }
+
+
+  private void allocate(int length) {
+    slots = new int[length];
+    hashes = new int[length];
+    mask = length - 1;
+  }
+
+
+  static int hash(int key) {
+    // spread the bits so that nearby keys don't end up in one long run
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+
+  static int hash(long key) {
+    return hash((int) (key ^ (key >>> 32)));
+  }
+
+
+  static int hash(String key) {
+    return (key == null) ? 0 : hash(key.hashCode());
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Position of key in keys, or -1 if it's not there. */
+  int find(int[] keys, int key) {
+    int hash = hash(key);
+    for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash && keys[slots[slot] - 1] == key) {
+        return slots[slot] - 1;
+      }
+    }
+    return -1;
+  }
+
+
+  int find(long[] keys, long key) {
+    int hash = hash(key);
+    for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash && keys[slots[slot] - 1] == key) {
+        return slots[slot] - 1;
+      }
+    }
+    return -1;
+  }
+
+
+  int find(String[] keys, String key) {
+    int hash = hash(key);
+    for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash) {
+        String found = keys[slots[slot] - 1];
+        if (found == key || (key != null && key.equals(found))) {
+          return slots[slot] - 1;
+        }
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * Add a position for a key that's known not to be in the table.
+   */
+  void add(int hash, int index) {
+    if ((size + 1) * 2 > slots.length) {
+      grow();
+    }
+    int slot = hash & mask;
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = index + 1;
+    hashes[slot] = hash;
+    size++;
+  }
+
+
+  /**
+   * Point keys[index] at index, replacing an earlier key that's equal,
+   * the same as HashMap.put() would.
+   */
+  void put(String[] keys, int index) {
+    int found = find(keys, keys[index]);
+    if (found == -1) {
+      add(hash(keys[index]), index);
+    } else {
+      slots[slotOf(hash(keys[index]), found)] = index + 1;
+    }
+  }
+
+
+  /**
+   * Swap the positions of two entries, for when the keys at positions a
+   * and b trade places. Called with the hashes of the keys still at a and b.
+   */
+  void swap(int hashA, int a, int hashB, int b) {
+    int slotA = slotOf(hashA, a);
+    int slotB = slotOf(hashB, b);
+    slots[slotA] = b + 1;
+    slots[slotB] = a + 1;
+  }
+
+
+  private void grow() {
+    int[] oldSlots = slots;
+    int[] oldHashes = hashes;
+    allocate(slots.length * 2);
+    for (int i = 0; i < oldSlots.length; i++) {
+      if (oldSlots[i] != 0) {
+        int slot = oldHashes[i] & mask;
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = oldSlots[i];
+        hashes[slot] = oldHashes[i];
+      }
+    }
+  }
+
+
+  private int slotOf(int hash, int index) {
+    for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (slots[slot] == index + 1) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * Remove the entry for the key at position index, then move down all
+   * the positions after it, for when the arrays of keys and values are
+   * shifted down to fill the gap.
+   */
+  void remove(int hash, int index) {
+    int hole = slotOf(hash, index);
+    if (hole != -1) {
+      // move entries back into the hole if they were pushed past it,
+      // so that there's never an empty slot in the middle of a run
+      for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+        int home = hashes[slot] & mask;
+        if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+          slots[hole] = slots[slot];
+          hashes[hole] = hashes[slot];
+          hole = slot;
+        }
+      }
+      slots[hole] = 0;
+      size--;
+    }
+    for (int slot = 0; slot < slots.length; slot++) {
+      if (slots[slot] > index + 1) {
+        slots[slot]--;
+      }
+    }
+  }
+
+
+  void clear() {
+    Arrays.fill(slots, 0);
+    size = 0;
+  }
+}
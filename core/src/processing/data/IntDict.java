@@ -1,7 +1,6 @@
 package processing.data;
 
 import java.io.*;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -26,7 +25,7 @@ public class IntDict {
   protected int[] values;
 
   /** Internal implementation for faster lookups */
-  private HashMap<String, Integer> indices = new HashMap<>();
+  private HashIndex indices = new HashIndex();
 
 
   public IntDict() {
@@ -65,7 +64,7 @@ public class IntDict {
       if (pieces.length == 2) {
         keys[count] = pieces[0];
         values[count] = PApplet.parseInt(pieces[1]);
-        indices.put(pieces[0], count);
+        indices.put(keys, count);
         count++;
       }
     }
@@ -82,7 +81,7 @@ public class IntDict {
     this.values = values;
     count = keys.length;
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -103,7 +102,7 @@ public class IntDict {
     for (int i = 0; i < count; i++) {
       keys[i] = (String) pairs[i][0];
       values[i] = (Integer) pairs[i][1];
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -150,14 +149,14 @@ public class IntDict {
    */
   public void clear() {
     count = 0;
-    indices = new HashMap<>();
+    indices.clear();
   }
 
 
   private void resetIndices() {
-    indices = new HashMap<>(count);
+    indices = new HashIndex(count);
     for (int i = 0; i < count; i++) {
-      indices.put(keys[i], i);
+      indices.put(keys, i);
     }
   }
 
@@ -592,8 +591,7 @@ public class IntDict {
 
 
   public int index(String what) {
-    Integer found = indices.get(what);
-    return (found == null) ? -1 : found.intValue();
+    return indices.find(keys, what);
   }
 
 
@@ -602,7 +600,7 @@ public class IntDict {
       keys = PApplet.expand(keys);
       values = PApplet.expand(values);
     }
-    indices.put(what, Integer.valueOf(count));
+    indices.add(HashIndex.hash(what), count);
     keys[count] = what;
     values[count] = much;
     count++;
@@ -630,11 +628,10 @@ public class IntDict {
       throw new ArrayIndexOutOfBoundsException(index);
     }
     int value = values[index];
-    indices.remove(keys[index]);
+    indices.remove(HashIndex.hash(keys[index]), index);
     for (int i = index; i < count-1; i++) {
       keys[i] = keys[i+1];
       values[i] = values[i+1];
-      indices.put(keys[i], i);
     }
     count--;
     keys[count] = null;
@@ -718,35 +715,41 @@ public class IntDict {
 
   protected void sortImpl(final boolean useKeys, final boolean reverse,
                           final boolean stable) {
-    Sort s = new Sort() {
-      @Override
-      public int size() {
-        return count;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        int diff = 0;
-        if (useKeys) {
-          diff = keys[a].compareToIgnoreCase(keys[b]);
-          if (diff == 0) {
-            diff = values[a] - values[b];
-          }
-        } else {  // sort values
-          diff = values[a] - values[b];
-          if (diff == 0 && stable) {
-            diff = keys[a].compareToIgnoreCase(keys[b]);
-          }
-        }
-        return reverse ? -diff : diff;
+    TableSort.Key byKey = new TableSort.Key() {
+      int compare(int a, int b) {
+        return keys[a].compareToIgnoreCase(keys[b]);
       }
-
-      @Override
-      public void swap(int a, int b) {
-        IntDict.this.swap(a, b);
+    };
+    TableSort.Key byValue = new TableSort.Key() {
+      int compare(int a, int b) {
+        return Integer.compare(values[a], values[b]);
       }
     };
-    s.run();
+    int[] order;
+    int stop = count;
+    if (useKeys) {
+      order = RadixSort.order(count, byKey, byValue);
+    } else {
+      // all the values are put in order at once, and then keys are
+      // compared only where values are equal
+      order = RadixSort.order(values, count);
+      if (stable) {
+        RadixSort.breakTies(order, count, byValue, byKey);
+      }
+    }
+    if (reverse) {
+      RadixSort.reverse(order, stop);
+    }
+
+    // move everything into place in one pass
+    String[] sortedKeys = new String[keys.length];
+    int[] sortedValues = new int[values.length];
+    for (int i = 0; i < count; i++) {
+      sortedKeys[i] = keys[order[i]];
+      sortedValues[i] = values[order[i]];
+    }
+    keys = sortedKeys;
+    values = sortedValues;
 
     // Set the indices after sort/swaps (performance fix 160411)
     resetIndices();
@@ -774,10 +777,8 @@ public class IntDict {
     IntDict outgoing = new IntDict(count);
     System.arraycopy(keys, 0, outgoing.keys, 0, count);
     System.arraycopy(values, 0, outgoing.values, 0, count);
-    for (int i = 0; i < count; i++) {
-      outgoing.indices.put(keys[i], i);
-    }
     outgoing.count = count;
+    outgoing.resetIndices();
     return outgoing;
   }
 
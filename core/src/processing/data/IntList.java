@@ -5,6 +5,7 @@ import java.io.PrintWriter;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Random;
+import java.util.function.IntUnaryOperator;
 
 import processing.core.PApplet;
 
@@ -538,6 +539,215 @@ public class IntList implements Iterable<Integer> {
   }
 
 
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  // Math on the whole list. Long lists are split up to run in parallel.
+
+
+  private void checkSameSize(IntList list, String functionName) {
+    if (list.count != count) {
+      String msg =
+        String.format("%s() needs lists of the same size, not %d and %d",
+                      functionName, count, list.count);
+      throw new IllegalArgumentException(msg);
+    }
+  }
+
+
+  /**
+   * Add an amount to every value.
+   */
+  public void add(int amount) {
+    final int[] d = data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] += amount;
+      }
+    });
+  }
+
+
+  /**
+   * Add each value from another list of the same size to the value
+   * at the same index in this one.
+   */
+  public void add(IntList list) {
+    checkSameSize(list, "add");
+    final int[] d = data;
+    final int[] other = list.data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] += other[i];
+      }
+    });
+  }
+
+
+  public void sub(int amount) {
+    add(-amount);
+  }
+
+
+  public void sub(IntList list) {
+    checkSameSize(list, "sub");
+    final int[] d = data;
+    final int[] other = list.data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] -= other[i];
+      }
+    });
+  }
+
+
+  /**
+   * Multiply every value by an amount.
+   */
+  public void mult(int amount) {
+    final int[] d = data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] *= amount;
+      }
+    });
+  }
+
+
+  public void mult(IntList list) {
+    checkSameSize(list, "mult");
+    final int[] d = data;
+    final int[] other = list.data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] *= other[i];
+      }
+    });
+  }
+
+
+  public void div(int amount) {
+    final int[] d = data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] /= amount;
+      }
+    });
+  }
+
+
+  public void div(IntList list) {
+    checkSameSize(list, "div");
+    final int[] d = data;
+    final int[] other = list.data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] /= other[i];
+      }
+    });
+  }
+
+
+  /**
+   * Replace every value with the result of a function, for instance
+   * <b>list.map(v -&gt; v * v)</b> to square each value.
+   */
+  public void map(IntUnaryOperator function) {
+    final int[] d = data;
+    ListMath.each(count, (start, stop) -> {
+      for (int i = start; i < stop; i++) {
+        d[i] = function.applyAsInt(d[i]);
+      }
+    });
+  }
+
+
+  /**
+   * Multiply each value by the value at the same index in another list of
+   * the same size, and add up the results.
+   */
+  public long dot(IntList list) {
+    checkSameSize(list, "dot");
+    final int[] d = data;
+    final int[] other = list.data;
+    return ListMath.reduce(count, (start, stop) -> {
+      long partial = 0;
+      for (int i = start; i < stop; i++) {
+        partial += (long) d[i] * other[i];
+      }
+      return partial;
+    }, Long::sum);
+  }
+
+
+  /**
+   * Replace each value with the sum of itself and all values before it.
+   */
+  public void cumulativeSum() {
+    // each value depends on the one before, so this one isn't split up
+    int sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += data[i];
+      data[i] = sum;
+    }
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * between min() and max().
+   */
+  public IntList histogram(int bins) {
+    checkMinMax("histogram");
+    return histogram(bins, min(), max());
+  }
+
+
+  /**
+   * Count how many values fall into each of a number of equal-sized bins
+   * from low to high, including high. Values outside the range aren't
+   * counted.
+   */
+  public IntList histogram(int bins, int low, int high) {
+    if (bins < 1) {
+      throw new IllegalArgumentException("histogram() needs at least 1 bin");
+    }
+    final int[] d = data;
+    // the number of whole numbers in the range, which may not fit an int
+    final long span = Math.max((long) high - low + 1, 1);
+    int[] counts = ListMath.reduce(count, (start, stop) -> {
+      int[] partial = new int[bins];
+      for (int i = start; i < stop; i++) {
+        int value = d[i];
+        if (value >= low && value <= high) {
+          partial[(int) (((long) value - low) * bins / span)]++;
+        }
+      }
+      return partial;
+    }, (a, b) -> {
+      for (int i = 0; i < bins; i++) {
+        a[i] += b[i];
+      }
+      return a;
+    });
+    return new IntList(counts);
+  }
+
+
+  /**
+   * Return the value that p percent of the values are below, from 0 to 100,
+   * interpolating between the two closest values. percentile(50) is the
+   * median.
+   */
+  public float percentile(float p) {
+    double[] copy = new double[count];
+    for (int i = 0; i < count; i++) {
+      copy[i] = data[i];
+    }
+    return (float) ListMath.percentile(copy, p);
+  }
+
+
   private void checkMinMax(String functionName) {
     if (count == 0) {
       String msg =
@@ -640,7 +850,7 @@ public class IntList implements Iterable<Integer> {
    * @webBrief Sorts the array, lowest to highest
    */
   public void sort() {
-    Arrays.sort(data, 0, count);
+    RadixSort.sort(data, count);
   }
 
 
@@ -652,24 +862,8 @@ public class IntList implements Iterable<Integer> {
    * @webBrief Reverse sort, orders values from highest to lowest
    */
   public void sortReverse() {
-    new Sort() {
-      @Override
-      public int size() {
-        return count;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        return data[b] - data[a];
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        int temp = data[a];
-        data[a] = data[b];
-        data[b] = temp;
-      }
-    }.run();
+    sort();
+    reverse();
   }
 
 
@@ -36,6 +36,7 @@ SOFTWARE.
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringWriter;
@@ -123,7 +124,8 @@ public class JSONArray {
    * @nowebref
    */
   public JSONArray(Reader reader) {
-    this(new JSONTokener(reader));
+    this();
+    new JSONParser(reader).readArray(this);
   }
 
 
@@ -209,7 +211,7 @@ public class JSONArray {
    */
   static public JSONArray parse(String source) {
     try {
-      return new JSONArray(new JSONTokener(source));
+      return new JSONParser(source).readArray(new JSONArray());
     } catch (Exception e) {
       return null;
     }
@@ -1123,7 +1125,15 @@ public class JSONArray {
 //  }
 
 
+  /**
+   * @param options "compact" and "indent=N", replace N with the number of
+   * spaces, or "cbor" to save as binary CBOR data, which is also used when
+   * the file name ends with .cbor
+   */
   public boolean save(File file, String options) {
+    if (JSONBinary.isBinary(file.getName(), options)) {
+      return JSONObject.saveBinary(file, this);
+    }
     PrintWriter writer = PApplet.createWriter(file);
     boolean success = write(writer, options);
     writer.close();
@@ -1131,30 +1141,31 @@ public class JSONArray {
   }
 
 
+  /**
+   * Read a JSONArray from binary CBOR data, as written by save() to a
+   * file ending in .cbor.
+   */
+  static public JSONArray parseBinary(InputStream input) throws IOException {
+    Object value = new JSONBinary(input).read();
+    if (value instanceof JSONArray) {
+      return (JSONArray) value;
+    }
+    throw new RuntimeException("The CBOR data is not a JSONArray");
+  }
+
+
   public boolean write(PrintWriter output) {
     return write(output, null);
   }
 
 
+  /**
+   * Write the JSON text straight to the output as it's produced, rather than
+   * making a String of the whole thing first.
+   * @param options "compact" and "indent=N", replace N with the number of spaces
+   */
   public boolean write(PrintWriter output, String options) {
-    int indentFactor = 2;
-    if (options != null) {
-      String[] opts = PApplet.split(options, ',');
-      for (String opt : opts) {
-        if (opt.equals("compact")) {
-          indentFactor = -1;
-        } else if (opt.startsWith("indent=")) {
-          indentFactor = PApplet.parseInt(opt.substring(7), -2);
-          if (indentFactor == -2) {
-            throw new IllegalArgumentException("Could not read a number from " + opt);
-          }
-        } else {
-          System.err.println("Ignoring " + opt);
-        }
-      }
-    }
-    output.print(format(indentFactor));
-    output.flush();
+    JSONObject.writeTo(output, options, this);
     return true;
   }
 
@@ -0,0 +1,537 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+import processing.core.PApplet;
+
+
+/**
+ * Reads and writes JSONObject and JSONArray data as CBOR (RFC 8949), a
+ * binary form of JSON that other languages can read as well. Numbers are
+ * stored in binary, so ints stay ints and doubles are exact, and strings
+ * are stored with their length, so nothing has to be parsed or escaped.
+ * <p/>
+ * Objects and arrays are written with definite lengths. When reading, the
+ * indefinite-length forms, half and single precision floats, and tags (which
+ * are skipped) are also accepted. Byte strings and other simple values
+ * aren't part of JSON, and throw an exception.
+ */
+class JSONBinary {
+  static final String EXTENSION = "cbor";
+
+  static final int UNSIGNED = 0;
+  static final int NEGATIVE = 1;
+  static final int BYTES = 2;
+  static final int TEXT = 3;
+  static final int ARRAY = 4;
+  static final int MAP = 5;
+  static final int TAG = 6;
+  static final int SIMPLE = 7;
+
+  static final int FALSE = 0xf4;
+  static final int TRUE = 0xf5;
+  static final int NULL = 0xf6;
+  static final int HALF = 0xf9;
+  static final int FLOAT = 0xfa;
+  static final int DOUBLE = 0xfb;
+  static final int BREAK = 0xff;
+  /** Additional info for the indefinite-length forms. */
+  static final int INDEFINITE = 31;
+
+  byte[] buffer = new byte[1 << 16];
+  int pos;
+  int limit;
+  InputStream input;
+  OutputStream output;
+
+  /** Recently read keys, so that repeated keys are the same String. */
+  String[] keys = new String[256];
+
+
+  JSONBinary(InputStream input) {
+    this.input = input;
+  }
+
+
+  JSONBinary(OutputStream output) {
+    this.output = output;
+  }
+
+
+  /**
+   * True if the data should be CBOR, because of the file's extension or
+   * a "cbor" option.
+   */
+  static boolean isBinary(String filename, String options) {
+    if (EXTENSION.equals(PApplet.checkExtension(filename))) {
+      return true;
+    }
+    if (options != null) {
+      for (String opt : PApplet.trim(PApplet.split(options, ','))) {
+        if (opt.equals(EXTENSION)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Write a JSONObject or JSONArray and everything inside it. */
+  void write(Object value) throws IOException {
+    writeValue(value);
+    flush();
+  }
+
+
+  private void writeValue(Object value) throws IOException {
+    if (value == null || value.equals(null)) {
+      writeByte(NULL);
+    } else if (value instanceof JSONObject) {
+      writeObject((JSONObject) value);
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      int size = array.size();
+      writeHead(ARRAY, size);
+      for (int i = 0; i < size; i++) {
+        writeValue(array.get(i));
+      }
+    } else if (value instanceof String) {
+      writeString((String) value);
+    } else if (value instanceof Integer || value instanceof Long ||
+               value instanceof Short || value instanceof Byte) {
+      writeLong(((Number) value).longValue());
+    } else if (value instanceof Float) {
+      writeFloat((Float) value);
+    } else if (value instanceof Number) {
+      writeDouble(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      writeByte((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Map) {
+      // the same conversions as JSONObject.writeValue()
+      writeObject(new JSONObject(value));
+    } else if (value instanceof Collection || value.getClass().isArray()) {
+      writeValue(new JSONArray(value));
+    } else {
+      writeString(value.toString());
+    }
+  }
+
+
+  private void writeObject(JSONObject object) throws IOException {
+    JSONShape shape = object.shape;
+    writeHead(MAP, shape.size);
+    for (int i = 0; i < shape.size; i++) {
+      writeString(shape.key(i));
+      Object value = object.values[i];
+      if (value == JSONObject.INT || value == JSONObject.LONG) {
+        writeLong(object.numbers[i]);
+      } else if (value == JSONObject.DOUBLE) {
+        writeDouble(Double.longBitsToDouble(object.numbers[i]));
+      } else {
+        writeValue(value);
+      }
+    }
+  }
+
+
+  private void writeLong(long value) throws IOException {
+    if (value >= 0) {
+      writeHead(UNSIGNED, value);
+    } else {
+      writeHead(NEGATIVE, -1 - value);
+    }
+  }
+
+
+  private void writeFloat(float value) throws IOException {
+    ensure(5);
+    buffer[pos++] = (byte) FLOAT;
+    writeBits(Float.floatToIntBits(value), 4);
+  }
+
+
+  private void writeDouble(double value) throws IOException {
+    ensure(9);
+    buffer[pos++] = (byte) DOUBLE;
+    writeBits(Double.doubleToLongBits(value), 8);
+  }
+
+
+  private void writeString(String s) throws IOException {
+    int length = s.length();
+    boolean ascii = true;
+    for (int i = 0; i < length; i++) {
+      if (s.charAt(i) >= 0x80) {
+        ascii = false;
+        break;
+      }
+    }
+    if (ascii) {
+      writeHead(TEXT, length);
+      int offset = 0;
+      while (offset < length) {
+        ensure(1);
+        int count = Math.min(length - offset, buffer.length - pos);
+        for (int i = 0; i < count; i++) {
+          buffer[pos++] = (byte) s.charAt(offset++);
+        }
+      }
+    } else {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      writeHead(TEXT, bytes.length);
+      writeBytes(bytes);
+    }
+  }
+
+
+  /** The initial byte with the major type, and the length or value. */
+  private void writeHead(int major, long value) throws IOException {
+    ensure(9);
+    int type = major << 5;
+    if (value < 24) {
+      buffer[pos++] = (byte) (type | (int) value);
+    } else if (value < 0x100) {
+      buffer[pos++] = (byte) (type | 24);
+      writeBits(value, 1);
+    } else if (value < 0x10000) {
+      buffer[pos++] = (byte) (type | 25);
+      writeBits(value, 2);
+    } else if (value < 0x100000000L) {
+      buffer[pos++] = (byte) (type | 26);
+      writeBits(value, 4);
+    } else {
+      buffer[pos++] = (byte) (type | 27);
+      writeBits(value, 8);
+    }
+  }
+
+
+  /** Big-endian, the caller has already made room. */
+  private void writeBits(long bits, int count) {
+    for (int shift = (count - 1) * 8; shift >= 0; shift -= 8) {
+      buffer[pos++] = (byte) (bits >>> shift);
+    }
+  }
+
+
+  private void writeByte(int b) throws IOException {
+    ensure(1);
+    buffer[pos++] = (byte) b;
+  }
+
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    if (bytes.length > buffer.length - pos) {
+      flush();
+      if (bytes.length > buffer.length) {
+        output.write(bytes);
+        return;
+      }
+    }
+    System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+    pos += bytes.length;
+  }
+
+
+  private void ensure(int count) throws IOException {
+    if (buffer.length - pos < count) {
+      flush();
+    }
+  }
+
+
+  private void flush() throws IOException {
+    output.write(buffer, 0, pos);
+    pos = 0;
+    output.flush();
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Read a single value.
+   * @return a JSONObject, JSONArray, String, Integer, Long, Double,
+   * Boolean, or JSONObject.NULL
+   */
+  Object read() throws IOException {
+    return readValue(readByte());
+  }
+
+
+  private Object readValue(int initial) throws IOException {
+    int major = initial >>> 5;
+    int info = initial & 0x1f;
+    switch (major) {
+    case UNSIGNED:
+    case NEGATIVE: {
+      long value = readNumber(info);
+      if (value < 0) {
+        throw new RuntimeException("CBOR integer is too large for a long");
+      }
+      if (major == NEGATIVE) {
+        value = -1 - value;
+      }
+      if (value == (int) value) {
+        return Integer.valueOf((int) value);
+      }
+      return Long.valueOf(value);
+    }
+    case TEXT:
+      return readString(info);
+    case ARRAY: {
+      JSONArray array = new JSONArray();
+      if (info == INDEFINITE) {
+        int b;
+        while ((b = readByte()) != BREAK) {
+          array.append(readValue(b));
+        }
+      } else {
+        for (long i = readLength(info); i > 0; i--) {
+          array.append(readValue(readByte()));
+        }
+      }
+      return array;
+    }
+    case MAP: {
+      JSONObject object = new JSONObject();
+      if (info == INDEFINITE) {
+        int b;
+        while ((b = readByte()) != BREAK) {
+          readEntry(object, b);
+        }
+      } else {
+        for (long i = readLength(info); i > 0; i--) {
+          readEntry(object, readByte());
+        }
+      }
+      return object;
+    }
+    case TAG:
+      readNumber(info);  // dates, bignums, etc. are read as what they wrap
+      return readValue(readByte());
+    case SIMPLE:
+      switch (initial) {
+      case FALSE:
+        return Boolean.FALSE;
+      case TRUE:
+        return Boolean.TRUE;
+      case NULL:
+        return JSONObject.NULL;
+      case HALF:
+        return Double.valueOf(halfToFloat((int) readBits(2)));
+      case FLOAT:
+        return Double.valueOf(Float.intBitsToFloat((int) readBits(4)));
+      case DOUBLE:
+        return Double.valueOf(Double.longBitsToDouble(readBits(8)));
+      }
+    }
+    throw new RuntimeException("CBOR data type 0x" + PApplet.hex(initial, 2) +
+                               " can't be used with JSON");
+  }
+
+
+  /** Read a key and value, storing numbers without making objects. */
+  private void readEntry(JSONObject object, int initial) throws IOException {
+    String name;
+    if ((initial >>> 5) == TEXT && (initial & 0x1f) < 24) {
+      name = readKey(initial & 0x1f);
+    } else {
+      name = readValue(initial).toString();
+    }
+    int b = readByte();
+    int major = b >>> 5;
+    if (major == UNSIGNED || major == NEGATIVE) {
+      long value = readNumber(b & 0x1f);
+      if (value < 0) {
+        throw new RuntimeException("CBOR integer is too large for a long");
+      }
+      if (major == NEGATIVE) {
+        value = -1 - value;
+      }
+      if (value == (int) value) {
+        object.setInt(name, (int) value);
+      } else {
+        object.setLong(name, value);
+      }
+    } else if (b == DOUBLE) {
+      double value = Double.longBitsToDouble(readBits(8));
+      object.put(name, Double.valueOf(value));
+    } else {
+      object.put(name, readValue(b));
+    }
+  }
+
+
+  private String readString(int info) throws IOException {
+    if (info == INDEFINITE) {
+      StringBuilder sb = new StringBuilder();
+      int b;
+      while ((b = readByte()) != BREAK) {
+        if ((b >>> 5) != TEXT) {
+          throw new RuntimeException("Bad chunk in a CBOR string");
+        }
+        sb.append(readString(b & 0x1f));
+      }
+      return sb.toString();
+    }
+    long length = readLength(info);
+    if (length > Integer.MAX_VALUE) {
+      throw new RuntimeException("CBOR string is too long");
+    }
+    int count = (int) length;
+    if (count <= buffer.length) {
+      require(count);
+      String s = new String(buffer, pos, count, StandardCharsets.UTF_8);
+      pos += count;
+      return s;
+    }
+    byte[] bytes = new byte[count];
+    int offset = limit - pos;
+    System.arraycopy(buffer, pos, bytes, 0, offset);
+    pos = limit;
+    while (offset < count) {
+      int read = input.read(bytes, offset, count - offset);
+      if (read == -1) {
+        throw new EOFException();
+      }
+      offset += read;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  /** A short key, which is likely to have been read before. */
+  private String readKey(int count) throws IOException {
+    require(count);
+    int hash = count;
+    for (int i = 0; i < count; i++) {
+      hash = 31 * hash + buffer[pos + i];
+    }
+    int index = (hash ^ (hash >>> 8)) & (keys.length - 1);
+    String key = keys[index];
+    if (key != null && key.length() == count) {
+      int i = 0;
+      while (i < count && key.charAt(i) == buffer[pos + i]) {
+        i++;
+      }
+      if (i == count) {
+        pos += count;
+        return key;
+      }
+    }
+    key = new String(buffer, pos, count, StandardCharsets.UTF_8);
+    pos += count;
+    keys[index] = key;
+    return key;
+  }
+
+
+  private long readLength(int info) throws IOException {
+    long length = readNumber(info);
+    if (length < 0) {
+      throw new RuntimeException("CBOR length is too large");
+    }
+    return length;
+  }
+
+
+  /** The value that follows an initial byte, or -1 if it's past a long. */
+  private long readNumber(int info) throws IOException {
+    if (info < 24) {
+      return info;
+    }
+    switch (info) {
+    case 24:
+      return readBits(1);
+    case 25:
+      return readBits(2);
+    case 26:
+      return readBits(4);
+    case 27:
+      long value = readBits(8);
+      return (value < 0) ? -1 : value;
+    }
+    throw new RuntimeException("Bad CBOR length 0x" + PApplet.hex(info, 2));
+  }
+
+
+  private long readBits(int count) throws IOException {
+    require(count);
+    long bits = 0;
+    for (int i = 0; i < count; i++) {
+      bits = (bits << 8) | (buffer[pos++] & 0xff);
+    }
+    return bits;
+  }
+
+
+  private int readByte() throws IOException {
+    require(1);
+    return buffer[pos++] & 0xff;
+  }
+
+
+  /** Make sure that count bytes are in the buffer. */
+  private void require(int count) throws IOException {
+    if (limit - pos >= count) {
+      return;
+    }
+    System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+    limit -= pos;
+    pos = 0;
+    while (limit < count) {
+      int read = input.read(buffer, limit, buffer.length - limit);
+      if (read == -1) {
+        throw new EOFException("Unexpected end of CBOR data");
+      }
+      limit += read;
+    }
+  }
+
+
+  static float halfToFloat(int half) {
+    int exponent = (half >> 10) & 0x1f;
+    int mantissa = half & 0x3ff;
+    float value;
+    if (exponent == 0) {
+      value = mantissa * (1f / (1 << 24));
+    } else if (exponent == 31) {
+      value = (mantissa == 0) ? Float.POSITIVE_INFINITY : Float.NaN;
+    } else {
+      value = (mantissa + 1024) * (float) Math.pow(2, exponent - 25);
+    }
+    return ((half & 0x8000) != 0) ? -value : value;
+  }
+}
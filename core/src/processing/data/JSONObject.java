@@ -34,19 +34,25 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
  */
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import processing.core.PApplet;
 
@@ -133,10 +139,23 @@ public class JSONObject {
    * Key pooling is like string interning, but without permanently tying up
    * memory. To help conserve memory, storage of duplicated key strings in
    * JSONObjects will be avoided by using a key pool to manage unique key
-   * string objects. This is used by JSONObject.put(string, object).
+   * string objects. This is used by JSONShape when keys are added, which
+   * may happen on several threads at once.
    */
-  private static HashMap<String, Object> keyPool =
-    new HashMap<>(keyPoolSize);
+  private static final ConcurrentHashMap<String, String> keyPool =
+    new ConcurrentHashMap<>(keyPoolSize);
+
+
+  static String pool(String key) {
+    String pooled = keyPool.putIfAbsent(key, key);
+    if (pooled != null) {
+      return pooled;
+    }
+    if (keyPool.size() > keyPoolSize) {
+      keyPool.clear();
+    }
+    return key;
+  }
 
 
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
@@ -190,10 +209,23 @@ public class JSONObject {
 
 
   /**
-   * The map where the JSONObject's properties are kept.
+   * The keys, in the order they were added. Objects with the same keys
+   * share the same JSONShape, so only the values are stored per object.
    */
-//  private final Map map;
-  private final HashMap<String, Object> map;
+  JSONShape shape = JSONShape.EMPTY;
+
+  /**
+   * The values, in the same order as the keys. Int, long, and double
+   * values are kept in numbers instead, and marked here with INT, LONG,
+   * or DOUBLE, so that they don't need an object each.
+   */
+  Object[] values = NO_VALUES;
+  long[] numbers;
+
+  private static final Object[] NO_VALUES = new Object[0];
+  static final Object INT = new Object();
+  static final Object LONG = new Object();
+  static final Object DOUBLE = new Object();
 
 
   /**
@@ -210,7 +242,6 @@ public class JSONObject {
    * @nowebref
    */
   public JSONObject() {
-    this.map = new HashMap<>();
   }
 
 
@@ -236,7 +267,8 @@ public class JSONObject {
    * @nowebref
    */
   public JSONObject(Reader reader) {
-    this(new JSONTokener(reader));
+    this();
+    new JSONParser(reader).readObject(this);
   }
 
 
@@ -304,14 +336,11 @@ public class JSONObject {
    *  the JSONObject.
    */
   protected JSONObject(HashMap<String, Object> map) {
-    this.map = new HashMap<>();
     if (map != null) {
-      Iterator i = map.entrySet().iterator();
-      while (i.hasNext()) {
-        Map.Entry e = (Map.Entry) i.next();
+      for (Map.Entry<String, Object> e : map.entrySet()) {
         Object value = e.getValue();
         if (value != null) {
-          map.put((String) e.getKey(), wrap(value));
+          this.put(e.getKey(), wrap(value));
         }
       }
     }
@@ -322,7 +351,6 @@ public class JSONObject {
    * @nowebref
    */
   public JSONObject(IntDict dict) {
-    map = new HashMap<>();
     for (int i = 0; i < dict.size(); i++) {
       setInt(dict.key(i), dict.value(i));
     }
@@ -333,7 +361,6 @@ public class JSONObject {
    * @nowebref
    */
   public JSONObject(FloatDict dict) {
-    map = new HashMap<>();
     for (int i = 0; i < dict.size(); i++) {
       setFloat(dict.key(i), dict.value(i));
     }
@@ -344,7 +371,6 @@ public class JSONObject {
    * @nowebref
    */
   public JSONObject(StringDict dict) {
-    map = new HashMap<>();
     for (int i = 0; i < dict.size(); i++) {
       setString(dict.key(i), dict.value(i));
     }
@@ -411,7 +437,7 @@ public class JSONObject {
    *  string or a duplicated key.
    */
   static public JSONObject parse(String source) {
-    return new JSONObject(new JSONTokener(source));
+    return new JSONParser(source).readObject(new JSONObject());
   }
 
 
@@ -619,6 +645,10 @@ public class JSONObject {
    * @see JSONObject#getBoolean(String)
    */
   public int getInt(String key) {
+    int index = indexOf(key);
+    if (index != -1 && values[index] == INT) {
+      return (int) numbers[index];
+    }
     Object object = this.get(key);
     if (object == null) {
       throw new RuntimeException("JSONObject[" + quote(key) + "] not found");
@@ -660,6 +690,10 @@ public class JSONObject {
    *  be converted to a long.
    */
   public long getLong(String key) {
+    int index = indexOf(key);
+    if (index != -1 && (values[index] == INT || values[index] == LONG)) {
+      return numbers[index];
+    }
     Object object = this.get(key);
     try {
       return object instanceof Number
@@ -722,6 +756,14 @@ public class JSONObject {
    *  if the value is not a Number object and cannot be converted to a number.
    */
   public double getDouble(String key) {
+    int index = indexOf(key);
+    if (index != -1) {
+      if (values[index] == DOUBLE) {
+        return Double.longBitsToDouble(numbers[index]);
+      } else if (values[index] == INT || values[index] == LONG) {
+        return numbers[index];
+      }
+    }
     Object object = this.get(key);
     try {
       return object instanceof Number
@@ -895,7 +937,7 @@ public class JSONObject {
    * @return      true if the key exists in the JSONObject.
    */
   public boolean hasKey(String key) {
-    return map.containsKey(key);
+    return indexOf(key) != -1;
   }
 
 
@@ -949,18 +991,22 @@ public class JSONObject {
    * @return An iterator of the keys.
    */
   public Iterator keyIterator() {
-//    return this.keySet().iterator();
-    return map.keySet().iterator();
+    return keys().iterator();
   }
 
 
   /**
-   * Get a set of keys of the JSONObject.
+   * Get a set of keys of the JSONObject, in the order they were added.
+   * Changing the set doesn't change the JSONObject.
    *
    * @return A keySet.
    */
   public Set keys() {
-    return this.map.keySet();
+    Set<String> keys = new LinkedHashSet<>();
+    for (int i = 0; i < shape.size; i++) {
+      keys.add(shape.key(i));
+    }
+    return keys;
   }
 
 
@@ -970,7 +1016,7 @@ public class JSONObject {
    * @return The number of keys in the JSONObject.
    */
   public int size() {
-    return this.map.size();
+    return shape.size;
   }
 
 
@@ -1024,7 +1070,27 @@ public class JSONObject {
    * @return      An object which is the value, or null if there is no value.
    */
   private Object opt(String key) {
-    return key == null ? null : this.map.get(key);
+    int index = indexOf(key);
+    return (index == -1) ? null : valueAt(index);
+  }
+
+
+  private int indexOf(String key) {
+    return (key == null) ? -1 : shape.indexOf(key);
+  }
+
+
+  /** The value at an index, with numbers as Integer, Long, or Double. */
+  private Object valueAt(int index) {
+    Object value = values[index];
+    if (value == INT) {
+      return Integer.valueOf((int) numbers[index]);
+    } else if (value == LONG) {
+      return Long.valueOf(numbers[index]);
+    } else if (value == DOUBLE) {
+      return Double.valueOf(Double.longBitsToDouble(numbers[index]));
+    }
+    return value;
   }
 
 
@@ -1162,7 +1228,7 @@ public class JSONObject {
 
               Object result = method.invoke(bean, (Object[])null);
               if (result != null) {
-                this.map.put(key, wrap(result));
+                this.put(key, wrap(result));
               }
             }
           }
@@ -1204,7 +1270,10 @@ public class JSONObject {
    * @see JSONObject#setBoolean(String, boolean)
    */
   public JSONObject setInt(String key, int value) {
-    this.put(key, Integer.valueOf(value));
+    if (key == null) {
+      throw new RuntimeException("Null key.");
+    }
+    putNumber(key, INT, value);
     return this;
   }
 
@@ -1218,7 +1287,10 @@ public class JSONObject {
    * @throws RuntimeException If the key is null.
    */
   public JSONObject setLong(String key, long value) {
-    this.put(key, Long.valueOf(value));
+    if (key == null) {
+      throw new RuntimeException("Null key.");
+    }
+    putNumber(key, LONG, value);
     return this;
   }
 
@@ -1236,8 +1308,7 @@ public class JSONObject {
    * @see JSONObject#setBoolean(String, boolean)
    */
   public JSONObject setFloat(String key, float value) {
-    this.put(key, Double.valueOf(value));
-    return this;
+    return setDouble(key, value);
   }
 
 
@@ -1250,7 +1321,13 @@ public class JSONObject {
    * @throws RuntimeException If the key is null or if the number is NaN or infinite.
    */
   public JSONObject setDouble(String key, double value) {
-    this.put(key, Double.valueOf(value));
+    if (key == null) {
+      throw new RuntimeException("Null key.");
+    }
+    if (Double.isInfinite(value) || Double.isNaN(value)) {
+      throw new RuntimeException("JSON does not allow non-finite numbers.");
+    }
+    putNumber(key, DOUBLE, Double.doubleToRawLongBits(value));
     return this;
   }
 
@@ -1346,22 +1423,22 @@ public class JSONObject {
    *  or if the key is null.
    */
   public JSONObject put(String key, Object value) {
-    String pooled;
     if (key == null) {
       throw new RuntimeException("Null key.");
     }
     if (value != null) {
       testValidity(value);
-      pooled = (String)keyPool.get(key);
-      if (pooled == null) {
-        if (keyPool.size() >= keyPoolSize) {
-          keyPool = new HashMap<>(keyPoolSize);
-        }
-        keyPool.put(key, key);
+      Class<?> c = value.getClass();
+      if (c == Integer.class) {
+        putNumber(key, INT, (Integer) value);
+      } else if (c == Long.class) {
+        putNumber(key, LONG, (Long) value);
+      } else if (c == Double.class) {
+        putNumber(key, DOUBLE, Double.doubleToRawLongBits((Double) value));
       } else {
-        key = pooled;
+        int index = slot(key);
+        values[index] = value;
       }
-      this.map.put(key, value);
     } else {
       this.remove(key);
     }
@@ -1369,6 +1446,37 @@ public class JSONObject {
   }
 
 
+  private void putNumber(String key, Object kind, long bits) {
+    int index = slot(key);
+    if (numbers == null) {
+      numbers = new long[values.length];
+    }
+    values[index] = kind;
+    numbers[index] = bits;
+  }
+
+
+  /** Index for the value of key, adding the key if it's not present. */
+  private int slot(String key) {
+    int index = shape.indexOf(key);
+    if (index == -1) {
+      index = shape.size;
+      JSONShape next = shape.add(key);
+      if (index == values.length) {
+        // other objects with this shape show how many keys are likely
+        int length = next.shared ?
+          Math.min(next.hint, (index << 1) + 4) : Math.max(4, index << 1);
+        values = Arrays.copyOf(values, Math.max(length, index + 1));
+        if (numbers != null) {
+          numbers = Arrays.copyOf(numbers, values.length);
+        }
+      }
+      shape = next;
+    }
+    return index;
+  }
+
+
   /**
    * Put a key/value pair in the JSONObject, but only if the key and the
    * value are both non-null, and only if there is not already a member
@@ -1379,9 +1487,9 @@ public class JSONObject {
    * @throws RuntimeException if the key is a duplicate, or if
    * {@link #put(String,Object)} throws.
    */
-  private JSONObject putOnce(String key, Object value) {
+  JSONObject putOnce(String key, Object value) {
     if (key != null && value != null) {
-      if (this.opt(key) != null) {
+      if (shape.indexOf(key) != -1) {
         throw new RuntimeException("Duplicate key \"" + key + "\"");
       }
       this.put(key, value);
@@ -1439,11 +1547,24 @@ public class JSONObject {
     String hhhh;
     int i;
     int len = string.length();
+    // chars that don't need escaping are written in runs
+    int run = 0;
 
     w.write('"');
     for (i = 0; i < len; i += 1) {
       b = c;
       c = string.charAt(i);
+      if (c >= ' ' && c != '\\' && c != '"' && c != '/' && c < '\u0080') {
+        continue;
+      }
+      if (c == '/' && b != '<') {
+        continue;
+      }
+      if (c >= '\u00a0' && (c < '\u2000' || c >= '\u2100')) {
+        continue;
+      }
+      w.write(string, run, i - run);
+      run = i + 1;
       switch (c) {
       case '\\':
       case '"':
@@ -1451,10 +1572,7 @@ public class JSONObject {
         w.write(c);
         break;
       case '/':
-        if (b == '<') {
-          w.write('\\');
-        }
-        w.write(c);
+        w.write("\\/");
         break;
       case '\b':
         w.write("\\b");
@@ -1472,17 +1590,13 @@ public class JSONObject {
         w.write("\\r");
         break;
       default:
-        if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
-          || (c >= '\u2000' && c < '\u2100')) {
-          w.write("\\u");
-          hhhh = Integer.toHexString(c);
-          w.write("0000", 0, 4 - hhhh.length());
-          w.write(hhhh);
-        } else {
-          w.write(c);
-        }
+        w.write("\\u");
+        hhhh = Integer.toHexString(c);
+        w.write("0000", 0, 4 - hhhh.length());
+        w.write(hhhh);
       }
     }
+    w.write(string, run, len - run);
     w.write('"');
     return w;
   }
@@ -1495,7 +1609,19 @@ public class JSONObject {
    * or null if there was no value.
    */
   public Object remove(String key) {
-    return this.map.remove(key);
+    int index = indexOf(key);
+    if (index == -1) {
+      return null;
+    }
+    Object outgoing = valueAt(index);
+    int count = shape.size - index - 1;
+    shape = shape.remove(index);
+    System.arraycopy(values, index + 1, values, index, count);
+    values[shape.size] = null;
+    if (numbers != null) {
+      System.arraycopy(numbers, index + 1, numbers, index, count);
+    }
+    return outgoing;
   }
 
 
@@ -1600,7 +1726,15 @@ public class JSONObject {
 //  }
 
 
+  /**
+   * @param options "compact" and "indent=N", replace N with the number of
+   * spaces, or "cbor" to save as binary CBOR data, which is also used when
+   * the file name ends with .cbor
+   */
   public boolean save(File file, String options) {
+    if (JSONBinary.isBinary(file.getName(), options)) {
+      return saveBinary(file, this);
+    }
     PrintWriter writer = PApplet.createWriter(file);
     boolean success = write(writer, options);
     writer.close();
@@ -1608,12 +1742,55 @@ public class JSONObject {
   }
 
 
+  /** Save a JSONObject or JSONArray as CBOR. */
+  static boolean saveBinary(File file, Object value) {
+    OutputStream output = PApplet.createOutput(file);
+    if (output == null) {
+      return false;
+    }
+    try {
+      new JSONBinary(output).write(value);
+      output.close();
+      return true;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return false;
+    }
+  }
+
+
+  /**
+   * Read a JSONObject from binary CBOR data, as written by save() to a
+   * file ending in .cbor.
+   */
+  static public JSONObject parseBinary(InputStream input) throws IOException {
+    Object value = new JSONBinary(input).read();
+    if (value instanceof JSONObject) {
+      return (JSONObject) value;
+    }
+    throw new RuntimeException("The CBOR data is not a JSONObject");
+  }
+
+
   public boolean write(PrintWriter output) {
     return write(output, null);
   }
 
 
+  /**
+   * Write the JSON text straight to the output as it's produced, rather than
+   * making a String of the whole thing first, so that large data doesn't
+   * need a second copy in memory.
+   * @param options "compact" and "indent=N", replace N with the number of spaces
+   */
   public boolean write(PrintWriter output, String options) {
+    writeTo(output, options, this);
+    return true;
+  }
+
+
+  /** Write a JSONObject or JSONArray, see write(PrintWriter, String). */
+  static void writeTo(PrintWriter output, String options, Object value) {
     int indentFactor = 2;
     if (options != null) {
       String[] opts = PApplet.split(options, ',');
@@ -1630,9 +1807,14 @@ public class JSONObject {
         }
       }
     }
-    output.print(format(indentFactor));
-    output.flush();
-    return true;
+    // most writes are a char or two, so collect them before they're encoded
+    BufferedWriter writer = new BufferedWriter(output, 1 << 16);
+    try {
+      writeValue(writer, value, indentFactor, 0);
+      writer.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
 
@@ -1830,10 +2012,14 @@ public class JSONObject {
   }
 
 
+  static private final String SPACES = "                                ";
+
   static final void indent(Writer writer, int indent) throws IOException {
-    for (int i = 0; i < indent; i += 1) {
-      writer.write(' ');
+    while (indent > SPACES.length()) {
+      writer.write(SPACES);
+      indent -= SPACES.length();
     }
+    writer.write(SPACES, 0, indent);
   }
 
   /**
@@ -1848,24 +2034,20 @@ public class JSONObject {
     try {
       boolean commanate = false;
       final int length = this.size();
-      Iterator keys = this.keyIterator();
       writer.write('{');
 
       int actualFactor = (indentFactor == -1) ? 0 : indentFactor;
 
       if (length == 1) {
-        Object key = keys.next();
-        writer.write(quote(key.toString()));
+        quote(shape.key(0), writer);
         writer.write(':');
         if (actualFactor > 0) {
           writer.write(' ');
         }
-        //writeValue(writer, this.map.get(key), actualFactor, indent);
-        writeValue(writer, this.map.get(key), indentFactor, indent);
+        writeValue(writer, valueAt(0), indentFactor, indent);
       } else if (length != 0) {
         final int newIndent = indent + actualFactor;
-        while (keys.hasNext()) {
-          Object key = keys.next();
+        for (int i = 0; i < length; i++) {
           if (commanate) {
             writer.write(',');
           }
@@ -1873,13 +2055,12 @@ public class JSONObject {
             writer.write('\n');
           }
           indent(writer, newIndent);
-          writer.write(quote(key.toString()));
+          quote(shape.key(i), writer);
           writer.write(':');
           if (actualFactor > 0) {
             writer.write(' ');
           }
-          //writeValue(writer, this.map.get(key), actualFactor, newIndent);
-          writeValue(writer, this.map.get(key), indentFactor, newIndent);
+          writeValue(writer, valueAt(i), indentFactor, newIndent);
           commanate = true;
         }
         if (indentFactor != -1) {
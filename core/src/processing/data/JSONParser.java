@@ -0,0 +1,474 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.IOException;
+import java.io.Reader;
+
+
+/**
+ * Parses JSON text into JSONObject and JSONArray objects. This accepts the
+ * same (somewhat forgiving) syntax as JSONTokener, and produces the same
+ * values and error messages, but works on a block of chars at a time: most
+ * strings and numbers are taken straight out of the buffer, rather than
+ * being read one char at a time and copied through a StringBuilder.
+ * <p/>
+ * Errors end with the position where they happened, in the same form as
+ * JSONTokener.toString().
+ */
+class JSONParser {
+  static final int BUFFER_SIZE = 1 << 16;
+
+  /** Chars that end unquoted text, see JSONTokener.nextValue(). */
+  static final boolean[] TERMINATOR = new boolean[128];
+  static {
+    for (char c : ",:]}/\\\"[{;=#".toCharArray()) {
+      TERMINATOR[c] = true;
+    }
+  }
+
+  /** Exact powers of ten, for numbers that can be converted without rounding. */
+  static final double[] POWERS = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  Reader reader;
+  char[] buffer;
+  int pos;
+  int limit;
+  /** Start of a string or token that has to stay in the buffer, or -1. */
+  int mark = -1;
+  boolean eof;
+
+  /** Chars that have been dropped from the start of the buffer. */
+  long dropped;
+  /** Line breaks in the dropped chars. */
+  long droppedLines;
+  /** Dropped chars since the last line break (or the start). */
+  long droppedColumn;
+
+  StringBuilder scratch = new StringBuilder();
+
+
+  JSONParser(Reader reader) {
+    this.reader = reader;
+    buffer = new char[BUFFER_SIZE];
+  }
+
+
+  JSONParser(String source) {
+    buffer = source.toCharArray();
+    limit = buffer.length;
+    eof = true;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Read more of the input, keeping anything from the mark onward.
+   * @return false if there's nothing left
+   */
+  private boolean fill() {
+    if (eof) {
+      return false;
+    }
+    int keep = (mark == -1) ? pos : mark;
+    if (keep > 0) {
+      countLines(keep);
+      System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+      limit -= keep;
+      pos -= keep;
+      if (mark != -1) {
+        mark = 0;
+      }
+      dropped += keep;
+    } else if (limit == buffer.length) {
+      // a single token longer than the buffer
+      char[] temp = new char[buffer.length << 1];
+      System.arraycopy(buffer, 0, temp, 0, limit);
+      buffer = temp;
+    }
+    try {
+      int count = reader.read(buffer, limit, buffer.length - limit);
+      if (count > 0) {
+        limit += count;
+        return true;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    eof = true;
+    return false;
+  }
+
+
+  /** Keep track of line numbers for chars about to leave the buffer. */
+  private void countLines(int count) {
+    int last = -1;
+    for (int i = 0; i < count; i++) {
+      if (buffer[i] <= '\r' && isLineBreak(i)) {
+        droppedLines++;
+        last = i;
+      }
+    }
+    droppedColumn = (last == -1) ? droppedColumn + count : count - last - 1;
+  }
+
+
+  /** A \n, or a \r that isn't followed by one. */
+  private boolean isLineBreak(int i) {
+    char c = buffer[i];
+    return c == '\n' || (c == '\r' && (i + 1 == limit || buffer[i + 1] != '\n'));
+  }
+
+
+  /**
+   * Next char that isn't whitespace, consuming it.
+   * @return the char, or 0 at the end of the input
+   */
+  char nextClean() {
+    while (true) {
+      char c = next();
+      if (c == 0 || c > ' ') {
+        return c;
+      }
+    }
+  }
+
+
+  /**
+   * Next char, or 0 at the end of the input. Like a real char, the 0 is
+   * consumed, so that back() can be used after it.
+   */
+  char next() {
+    if (pos >= limit && !fill()) {
+      pos = limit + 1;
+      return 0;
+    }
+    return buffer[pos++];
+  }
+
+
+  void back() {
+    pos--;
+  }
+
+
+  RuntimeException error(String message) {
+    return new RuntimeException(message + location());
+  }
+
+
+  /** Position of the last char read, formatted like JSONTokener.toString(). */
+  String location() {
+    long line = 1 + droppedLines;
+    long column = droppedColumn;
+    int end = Math.min(pos, limit);
+    for (int i = 0; i < end; i++) {
+      if (isLineBreak(i)) {
+        line++;
+        column = 0;
+      } else {
+        column++;
+      }
+    }
+    if (line == 1) {
+      column++;  // JSONTokener starts counting at 1
+    }
+    return " at " + (dropped + pos) + " [character " + column +
+      " line " + line + "]";
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Read the next value: a Boolean, Double, Integer, JSONArray, JSONObject,
+   * Long, String, or JSONObject.NULL.
+   */
+  Object nextValue() {
+    char c = nextClean();
+    switch (c) {
+    case '"':
+    case '\'':
+      return nextString(c);
+    case '{':
+      back();
+      return readObject(new JSONObject());
+    case '[':
+      back();
+      return readArray(new JSONArray());
+    }
+    back();
+    return nextUnquoted();
+  }
+
+
+  JSONObject readObject(JSONObject object) {
+    if (nextClean() != '{') {
+      throw error("A JSONObject text must begin with '{'");
+    }
+    while (true) {
+      char c = nextClean();
+      switch (c) {
+      case 0:
+        throw error("A JSONObject text must end with '}'");
+      case '}':
+        return object;
+      }
+      back();
+      String key = nextValue().toString();
+
+      // The key is followed by ':'. We will also tolerate '=' or '=>'.
+      c = nextClean();
+      if (c == '=') {
+        if (next() != '>') {
+          back();
+        }
+      } else if (c != ':') {
+        throw error("Expected a ':' after a key");
+      }
+      object.putOnce(key, nextValue());
+
+      // Pairs are separated by ','. We will also tolerate ';'.
+      switch (nextClean()) {
+      case ';':
+      case ',':
+        if (nextClean() == '}') {
+          return object;
+        }
+        back();
+        break;
+      case '}':
+        return object;
+      default:
+        throw error("Expected a ',' or '}'");
+      }
+    }
+  }
+
+
+  JSONArray readArray(JSONArray array) {
+    if (nextClean() != '[') {
+      throw error("A JSONArray text must start with '['");
+    }
+    if (nextClean() == ']') {
+      return array;
+    }
+    back();
+    while (true) {
+      if (nextClean() == ',') {
+        back();
+        array.append(JSONObject.NULL);
+      } else {
+        back();
+        array.append(nextValue());
+      }
+      switch (nextClean()) {
+      case ';':
+      case ',':
+        if (nextClean() == ']') {
+          return array;
+        }
+        back();
+        break;
+      case ']':
+        return array;
+      default:
+        throw error("Expected a ',' or ']'");
+      }
+    }
+  }
+
+
+  /**
+   * Read up to the closing quote. Without escapes, the String is made
+   * straight from the buffer.
+   */
+  private String nextString(char quote) {
+    mark = pos;
+    while (true) {
+      if (pos >= limit && !fill()) {
+        mark = -1;
+        throw error("Unterminated string");
+      }
+      char c = buffer[pos++];
+      if (c == quote) {
+        String s = new String(buffer, mark, pos - 1 - mark);
+        mark = -1;
+        return s;
+      }
+      if (c == '\\' || c == '\n' || c == '\r' || c == 0) {
+        pos--;
+        scratch.setLength(0);
+        scratch.append(buffer, mark, pos - mark);
+        mark = -1;
+        return nextEscaped(quote);
+      }
+    }
+  }
+
+
+  /** The rest of a string that has escapes, see JSONTokener.nextString(). */
+  private String nextEscaped(char quote) {
+    StringBuilder sb = scratch;
+    while (true) {
+      char c = next();
+      switch (c) {
+      case 0:
+      case '\n':
+      case '\r':
+        throw error("Unterminated string");
+      case '\\':
+        c = next();
+        switch (c) {
+        case 'b':
+          sb.append('\b');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 'u':
+          char[] hex = new char[4];
+          for (int i = 0; i < 4; i++) {
+            hex[i] = next();
+            if (pos > limit) {
+              throw error("Substring bounds error");
+            }
+          }
+          sb.append((char) Integer.parseInt(new String(hex), 16));
+          break;
+        case '"':
+        case '\'':
+        case '\\':
+        case '/':
+          sb.append(c);
+          break;
+        default:
+          throw error("Illegal escape.");
+        }
+        break;
+      default:
+        if (c == quote) {
+          return sb.toString();
+        }
+        sb.append(c);
+      }
+    }
+  }
+
+
+  /**
+   * Unquoted text: true, false, null, a number, or (as JSONTokener allows)
+   * anything else up to the next formatting char. Plain integers and short
+   * decimals are converted without making a String.
+   */
+  private Object nextUnquoted() {
+    mark = pos;
+    while (true) {
+      if (pos >= limit && !fill()) {
+        break;
+      }
+      char c = buffer[pos];
+      if (c < ' ' || (c < 128 && TERMINATOR[c])) {
+        break;
+      }
+      pos++;
+    }
+    int start = mark;
+    int stop = pos;
+    mark = -1;
+    while (start < stop && buffer[start] <= ' ') {
+      start++;
+    }
+    while (stop > start && buffer[stop - 1] <= ' ') {
+      stop--;
+    }
+    if (start == stop) {
+      throw error("Missing value");
+    }
+    Object number = parseNumber(start, stop);
+    if (number != null) {
+      return number;
+    }
+    return JSONObject.stringToValue(new String(buffer, start, stop - start));
+  }
+
+
+  /**
+   * The same Integer, Long, or Double that JSONObject.stringToValue() would
+   * give for simple numbers, or null to leave it to stringToValue().
+   */
+  private Object parseNumber(int start, int stop) {
+    int i = start;
+    boolean negative = false;
+    if (buffer[i] == '-') {
+      negative = true;
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int decimals = -1;
+    for (; i < stop; i++) {
+      char c = buffer[i];
+      if (c >= '0' && c <= '9') {
+        mantissa = mantissa * 10 + (c - '0');
+        digits++;
+        if (decimals != -1) {
+          decimals++;
+        }
+      } else if (c == '.' && decimals == -1) {
+        decimals = 0;
+      } else {
+        return null;  // exponents, hex, words, etc.
+      }
+    }
+    if (digits == 0 || digits > 15) {
+      return null;  // might not fit, or might not be exact
+    }
+    if (negative) {
+      mantissa = -mantissa;
+    }
+    if (decimals == -1) {
+      if (mantissa == (int) mantissa) {
+        return Integer.valueOf((int) mantissa);
+      }
+      return Long.valueOf(mantissa);
+    }
+    // both values are exact, so the division rounds the same way as
+    // Double.parseDouble(); -0.0 needs the sign that the long doesn't have
+    double value = (mantissa == 0 && negative) ? -0.0 : mantissa;
+    return Double.valueOf(value / POWERS[decimals]);
+  }
+}
@@ -0,0 +1,327 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+
+/**
+ * Reads JSON text as a series of events (the start or end of an object or
+ * array, a key, or a value) rather than building the objects, so that
+ * files of any size can be read without holding them in memory:
+ * <pre>
+ * JSONReader reader = new JSONReader(createReader("huge.json"));
+ * int event;
+ * while ((event = reader.next()) != JSONReader.END_DOCUMENT) {
+ *   if (event == JSONReader.KEY &amp;&amp; reader.getKey().equals("id")) {
+ *     reader.next();
+ *     println(reader.getValue());
+ *   }
+ * }
+ * </pre>
+ * The two styles can be mixed: readValue() reads the next value whole, as
+ * a JSONObject, JSONArray, String, number, Boolean, or JSONObject.NULL.
+ * The syntax accepted is the same as with parseJSONObject() and the like.
+ *
+ * @nowebref
+ * @see JSONStream
+ */
+public class JSONReader implements Closeable {
+  /** A '{', after which come KEY and value events, then END_OBJECT. */
+  static public final int START_OBJECT = 1;
+  static public final int END_OBJECT = 2;
+  static public final int START_ARRAY = 3;
+  static public final int END_ARRAY = 4;
+  /** The key of an object entry, see getKey(). */
+  static public final int KEY = 5;
+  /** A String, number, Boolean, or JSONObject.NULL, see getValue(). */
+  static public final int VALUE = 6;
+  /** No more input. */
+  static public final int END_DOCUMENT = 7;
+
+  /** A value is next, but none of it has been read yet. */
+  static final int VALUE_START = 0;
+  static final int NONE = -1;
+
+  Reader input;
+  JSONParser parser;
+
+  /** START_OBJECT or START_ARRAY for each level of nesting. */
+  int[] stack = new int[16];
+  /** True for levels where nothing has been read since the opening '{' or '['. */
+  boolean[] first = new boolean[16];
+  int depth;
+  /** A key was just read, so the ':' and a value come next. */
+  boolean afterKey;
+  /** The top-level value has been read, or at least started. */
+  boolean started;
+
+  /** The event found by peek(), which next() returns. */
+  int pending = NONE;
+  String key;
+  Object value;
+
+
+  public JSONReader(Reader input) {
+    this.input = input;
+    parser = new JSONParser(input);
+  }
+
+
+  /**
+   * Read the next event.
+   * @return one of START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, KEY,
+   * VALUE, or END_DOCUMENT
+   */
+  public int next() {
+    int event = (pending == NONE) ? prepare() : pending;
+    pending = NONE;
+    if (event != VALUE_START) {
+      return event;
+    }
+    value = null;
+    char c = parser.nextClean();
+    if (c == '{') {
+      push(START_OBJECT);
+      return START_OBJECT;
+    } else if (c == '[') {
+      push(START_ARRAY);
+      return START_ARRAY;
+    }
+    parser.back();
+    value = parser.nextValue();
+    return VALUE;
+  }
+
+
+  /** The event that next() will return, without moving past it. */
+  public int peek() {
+    if (pending == NONE) {
+      pending = prepare();
+    }
+    if (pending != VALUE_START) {
+      return pending;
+    }
+    char c = parser.nextClean();
+    parser.back();
+    if (c == '{') {
+      return START_OBJECT;
+    } else if (c == '[') {
+      return START_ARRAY;
+    }
+    return VALUE;
+  }
+
+
+  /**
+   * True if the current object or array has more entries, or for the top
+   * level, if the value hasn't been read yet.
+   */
+  public boolean hasNext() {
+    int event = peek();
+    return event != END_OBJECT && event != END_ARRAY && event != END_DOCUMENT;
+  }
+
+
+  /**
+   * Read the next value in its entirety, including everything nested
+   * inside it. Only the value itself is kept in memory.
+   * @return a JSONObject, JSONArray, String, Integer, Long, Double,
+   * Boolean, or JSONObject.NULL
+   */
+  public Object readValue() {
+    int event = (pending == NONE) ? prepare() : pending;
+    if (event == VALUE) {
+      pending = NONE;
+      return value;  // the empty element in [1,,2]
+    }
+    if (event != VALUE_START) {
+      pending = event;
+      throw parser.error("Expected a value");
+    }
+    pending = NONE;
+    value = parser.nextValue();
+    return value;
+  }
+
+
+  /** Skip over the next value, along with anything nested inside it. */
+  public void skipValue() {
+    int event = next();
+    if (event == START_OBJECT || event == START_ARRAY) {
+      int level = depth;
+      while (depth >= level) {
+        next();
+      }
+    } else if (event != VALUE) {
+      throw parser.error("Expected a value");
+    }
+  }
+
+
+  /** The key read by the last KEY event. */
+  public String getKey() {
+    return key;
+  }
+
+
+  /** The value read by the last VALUE event, or by readValue(). */
+  public Object getValue() {
+    return value;
+  }
+
+
+  /** Number of objects and arrays that the reader is inside of. */
+  public int getDepth() {
+    return depth;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Read up to the next event, following the same rules as
+   * JSONObject(JSONTokener) and JSONArray(JSONTokener). Ends and keys are
+   * read completely, values are left for the caller.
+   */
+  private int prepare() {
+    if (depth == 0) {
+      if (started) {
+        return END_DOCUMENT;
+      }
+      started = true;
+      return VALUE_START;
+    }
+    if (stack[depth - 1] == START_ARRAY) {
+      return prepareArray();
+    }
+    return prepareObject();
+  }
+
+
+  private int prepareArray() {
+    char c = parser.nextClean();
+    if (first[depth - 1]) {
+      first[depth - 1] = false;
+      if (c == ']') {
+        return pop(END_ARRAY);
+      }
+    } else {
+      switch (c) {
+      case ';':
+      case ',':
+        c = parser.nextClean();
+        if (c == ']') {
+          return pop(END_ARRAY);
+        }
+        break;
+      case ']':
+        return pop(END_ARRAY);
+      default:
+        throw parser.error("Expected a ',' or ']'");
+      }
+    }
+    parser.back();
+    if (c == ',') {
+      // an empty element, as in [1,,2]
+      value = JSONObject.NULL;
+      return VALUE;
+    }
+    return VALUE_START;
+  }
+
+
+  private int prepareObject() {
+    if (afterKey) {
+      // The key is followed by ':'. We will also tolerate '=' or '=>'.
+      afterKey = false;
+      char c = parser.nextClean();
+      if (c == '=') {
+        if (parser.next() != '>') {
+          parser.back();
+        }
+      } else if (c != ':') {
+        throw parser.error("Expected a ':' after a key");
+      }
+      return VALUE_START;
+    }
+
+    char c = parser.nextClean();
+    if (first[depth - 1]) {
+      first[depth - 1] = false;
+    } else {
+      // Pairs are separated by ','. We will also tolerate ';'.
+      switch (c) {
+      case ';':
+      case ',':
+        c = parser.nextClean();
+        break;
+      case '}':
+        return pop(END_OBJECT);
+      default:
+        throw parser.error("Expected a ',' or '}'");
+      }
+    }
+    switch (c) {
+    case 0:
+      throw parser.error("A JSONObject text must end with '}'");
+    case '}':
+      return pop(END_OBJECT);
+    }
+    parser.back();
+    key = parser.nextValue().toString();
+    afterKey = true;
+    return KEY;
+  }
+
+
+  private void push(int kind) {
+    if (depth == stack.length) {
+      int[] temp = new int[depth << 1];
+      System.arraycopy(stack, 0, temp, 0, depth);
+      stack = temp;
+      boolean[] tempFirst = new boolean[depth << 1];
+      System.arraycopy(first, 0, tempFirst, 0, depth);
+      first = tempFirst;
+    }
+    stack[depth] = kind;
+    first[depth] = true;
+    depth++;
+  }
+
+
+  private int pop(int event) {
+    depth--;
+    return event;
+  }
+
+
+  public void close() {
+    try {
+      input.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+}
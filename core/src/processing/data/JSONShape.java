@@ -0,0 +1,226 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+
+
+/**
+ * The keys of a JSONObject, in the order they were added. Objects that
+ * have the same keys in the same order (like the records in a large array)
+ * share a single JSONShape, so that each object only needs to store its
+ * values. Adding a key moves an object to the next shape along, which is
+ * found through a table of transitions.
+ * <p/>
+ * Shared shapes never change once they're made, except for the table of
+ * transitions, which is synchronized so that objects can be built on
+ * several threads. Transitions are weak, so shapes that no object uses
+ * any more are collected. Objects with many keys, or with keys that vary
+ * from one object to the next (e.g. using ids as keys), or that have had
+ * keys removed, get an unshared shape of their own, which is changed in
+ * place.
+ */
+class JSONShape {
+  /** Objects with more keys than this get their own shape. */
+  static final int MAX_SHARED_SIZE = 64;
+  /** Shapes with this many transitions stop adding more. */
+  static final int MAX_TRANSITIONS = 64;
+  /** Above this size, keys are found with a hash table. */
+  static final int LINEAR_SIZE = 8;
+
+  /** The shape for an empty object, at the root of all shared shapes. */
+  static final JSONShape EMPTY = new JSONShape(null, new String[0], 0, true);
+
+  final boolean shared;
+  String[] keys;
+  int size;
+  /** Open addressing table of (index + 1) entries, or null when small. */
+  int[] table;
+
+  /** Keeps the chain of shapes leading to this one from being collected. */
+  final JSONShape parent;
+  /** Largest size of any shape made from this one, to size new objects. */
+  int hint;
+  HashMap<String, WeakReference<JSONShape>> transitions;
+  /** The last transition made, checked before taking the lock. */
+  volatile WeakReference<JSONShape> recent;
+
+
+  private JSONShape(JSONShape parent, String[] keys, int size, boolean shared) {
+    this.parent = parent;
+    this.keys = keys;
+    this.size = size;
+    this.shared = shared;
+    hint = size;
+    if (size > LINEAR_SIZE) {
+      rehash();
+    }
+  }
+
+
+  int indexOf(String key) {
+    if (table == null) {
+      for (int i = 0; i < size; i++) {
+        if (keys[i] == key) {
+          return i;
+        }
+      }
+      for (int i = 0; i < size; i++) {
+        if (keys[i].equals(key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int mask = table.length - 1;
+    int slot = spread(key.hashCode()) & mask;
+    while (true) {
+      int entry = table[slot];
+      if (entry == 0) {
+        return -1;
+      }
+      String found = keys[entry - 1];
+      if (found == key || found.equals(key)) {
+        return entry - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+
+  String key(int index) {
+    return keys[index];
+  }
+
+
+  /**
+   * The shape after adding a key that's not already present. Unshared
+   * shapes add it in place and return themselves.
+   */
+  JSONShape add(String key) {
+    if (!shared) {
+      append(key);
+      return this;
+    }
+    WeakReference<JSONShape> ref = recent;
+    if (ref != null) {
+      JSONShape next = ref.get();
+      if (next != null && next.keys[size].equals(key)) {
+        return next;
+      }
+    }
+    synchronized (this) {
+      if (transitions == null) {
+        transitions = new HashMap<>();
+      }
+      ref = transitions.get(key);
+      JSONShape next = (ref == null) ? null : ref.get();
+      if (next == null) {
+        if (ref == null && transitions.size() >= MAX_TRANSITIONS) {
+          // drop the ones for shapes that have been collected
+          transitions.values().removeIf(r -> r.get() == null);
+        }
+        if (size == MAX_SHARED_SIZE ||
+            (ref == null && transitions.size() >= MAX_TRANSITIONS)) {
+          JSONShape own = copy(size + 1);
+          own.append(key);
+          return own;
+        }
+        String[] nextKeys = new String[size + 1];
+        System.arraycopy(keys, 0, nextKeys, 0, size);
+        nextKeys[size] = JSONObject.pool(key);
+        next = new JSONShape(this, nextKeys, size + 1, true);
+        transitions.put(nextKeys[size], new WeakReference<>(next));
+        for (JSONShape s = this; s != null && s.hint < next.size; s = s.parent) {
+          s.hint = next.size;
+        }
+      }
+      recent = transitions.get(key);
+      return next;
+    }
+  }
+
+
+  /** An unshared copy of this shape without the key at index. */
+  JSONShape remove(int index) {
+    JSONShape own = copy(size);
+    System.arraycopy(own.keys, index + 1, own.keys, index, size - index - 1);
+    own.size--;
+    own.keys[own.size] = null;
+    if (own.table != null) {
+      own.rehash();
+    }
+    return own;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  private JSONShape copy(int capacity) {
+    String[] ownKeys = new String[Math.max(capacity, size)];
+    System.arraycopy(keys, 0, ownKeys, 0, size);
+    return new JSONShape(null, ownKeys, size, false);
+  }
+
+
+  private void append(String key) {
+    if (size == keys.length) {
+      String[] temp = new String[Math.max(4, size << 1)];
+      System.arraycopy(keys, 0, temp, 0, size);
+      keys = temp;
+    }
+    keys[size++] = JSONObject.pool(key);
+    if (table != null && size * 2 <= table.length) {
+      insert(size - 1);
+    } else if (size > LINEAR_SIZE) {
+      rehash();
+    }
+  }
+
+
+  private void rehash() {
+    int length = 16;
+    while (length < size * 2) {
+      length <<= 1;
+    }
+    table = new int[length];
+    for (int i = 0; i < size; i++) {
+      insert(i);
+    }
+  }
+
+
+  private void insert(int index) {
+    int mask = table.length - 1;
+    int slot = spread(keys[index].hashCode()) & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = index + 1;
+  }
+
+
+  static private int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
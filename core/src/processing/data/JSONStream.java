@@ -0,0 +1,131 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.Closeable;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Reads the objects in a JSON array one at a time, for files that are a
+ * single huge array of records:
+ * <pre>
+ * for (JSONObject record : streamJSONArray("export.json")) {
+ *   total += record.getFloat("amount");
+ * }
+ * </pre>
+ * Only the current object is kept in memory, so unlike loadJSONArray(),
+ * memory use stays the same no matter how large the file is.
+ * <p/>
+ * A JSONStream can only be read once. The file is closed when the end of
+ * the array is reached, or with close() when stopping early.
+ *
+ * @nowebref
+ * @see JSONReader
+ */
+public class JSONStream implements Iterable<JSONObject>, Closeable {
+  JSONReader reader;
+  boolean iterated;
+  boolean closed;
+  int index;
+
+
+  public JSONStream(Reader input) {
+    reader = new JSONReader(input);
+    if (reader.peek() != JSONReader.START_ARRAY) {
+      reader.close();
+      throw reader.parser.error("A JSONArray text must start with '['");
+    }
+    reader.next();
+  }
+
+
+  /**
+   * Read the next element of the array.
+   * @return the object, or null once the end of the array is reached
+   */
+  protected JSONObject advance() {
+    if (closed) {
+      return null;
+    }
+    try {
+      if (reader.hasNext()) {
+        Object value = reader.readValue();
+        if (!(value instanceof JSONObject)) {
+          throw new RuntimeException("JSONArray[" + index + "] is not a JSONObject.");
+        }
+        index++;
+        return (JSONObject) value;
+      }
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+    close();
+    return null;
+  }
+
+
+  public Iterator<JSONObject> iterator() {
+    if (iterated) {
+      throw new IllegalStateException("A JSONStream can only be read once");
+    }
+    iterated = true;
+
+    return new Iterator<JSONObject>() {
+      JSONObject upcoming;
+
+      public boolean hasNext() {
+        if (upcoming == null) {
+          upcoming = advance();
+        }
+        return upcoming != null;
+      }
+
+      public JSONObject next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        JSONObject outgoing = upcoming;
+        upcoming = null;
+        return outgoing;
+      }
+    };
+  }
+
+
+  /** The objects as a java.util.stream.Stream, which closes this when closed. */
+  public Stream<JSONObject> stream() {
+    return StreamSupport.stream(spliterator(), false).onClose(this::close);
+  }
+
+
+  public void close() {
+    if (!closed) {
+      closed = true;
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BinaryOperator;
+
+
+/**
+ * Runs the whole-list math in IntList, FloatList, and DoubleList. Each
+ * operation is a plain loop over a range of the array, and long lists are
+ * split into blocks that run in parallel. As with TableGroups, the blocks
+ * don't depend on the number of threads, and results are combined in
+ * order, so that sums come out the same from one run to the next.
+ */
+class ListMath {
+  /** Number of values handled by each task. */
+  static final int BLOCK_SIZE = 1 << 16;
+
+
+  interface Block {
+    void run(int start, int stop);
+  }
+
+
+  interface Reduction<T> {
+    T run(int start, int stop);
+  }
+
+
+  static private boolean serial(int count) {
+    return count <= BLOCK_SIZE ||
+      Runtime.getRuntime().availableProcessors() == 1;
+  }
+
+
+  static void each(int count, Block block) {
+    if (serial(count)) {
+      block.run(0, count);
+    } else {
+      List<ForkJoinTask<?>> tasks = new ArrayList<>();
+      for (int start = 0; start < count; start += BLOCK_SIZE) {
+        final int first = start;
+        final int last = Math.min(start + BLOCK_SIZE, count);
+        tasks.add(ForkJoinPool.commonPool().submit(() -> block.run(first, last)));
+      }
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+    }
+  }
+
+
+  static <T> T reduce(int count, Reduction<T> reduction, BinaryOperator<T> combine) {
+    if (count <= BLOCK_SIZE) {
+      return reduction.run(0, count);
+    }
+    List<ForkJoinTask<T>> tasks = new ArrayList<>();
+    T result = null;
+    for (int start = 0; start < count; start += BLOCK_SIZE) {
+      final int first = start;
+      final int last = Math.min(start + BLOCK_SIZE, count);
+      if (serial(count)) {
+        // same blocks as in parallel, so the result is the same too
+        T value = reduction.run(first, last);
+        result = (result == null) ? value : combine.apply(result, value);
+      } else {
+        tasks.add(ForkJoinPool.commonPool().submit(() -> reduction.run(first, last)));
+      }
+    }
+    for (ForkJoinTask<T> task : tasks) {
+      T value = task.join();
+      result = (result == null) ? value : combine.apply(result, value);
+    }
+    return result;
+  }
+
+
+  /**
+   * The p-th percentile (from 0 to 100) of a copy of a list's values,
+   * interpolating between the two closest values, the same as NumPy does
+   * by default. NaN values are ignored. The copy is rearranged rather
+   * than sorted, which takes linear time.
+   */
+  static double percentile(double[] values, double p) {
+    if (!(p >= 0 && p <= 100)) {
+      throw new IllegalArgumentException("percentile() should be between 0 and 100, not " + p);
+    }
+    int count = values.length;
+    for (int i = 0; i < count; ) {
+      if (Double.isNaN(values[i])) {
+        values[i] = values[--count];
+      } else {
+        i++;
+      }
+    }
+    if (count == 0) {
+      return Double.NaN;
+    }
+    double rank = p / 100 * (count - 1);
+    int below = (int) rank;
+    double low = select(values, count, below);
+    if (below == count - 1) {
+      return low;
+    }
+    // everything after 'below' is at least as large, so the next value
+    // up is the smallest of those
+    double high = values[below + 1];
+    for (int i = below + 2; i < count; i++) {
+      high = Math.min(high, values[i]);
+    }
+    return low + (rank - below) * (high - low);
+  }
+
+
+  /**
+   * Quickselect: move the k-th smallest value to index k, with smaller
+   * values before it and larger values after it, and return it.
+   */
+  static private double select(double[] a, int count, int k) {
+    int lo = 0;
+    int hi = count - 1;
+    while (lo < hi) {
+      // median of three for the pivot, so sorted input isn't a worst case
+      int mid = (lo + hi) >>> 1;
+      if (a[mid] < a[lo]) swap(a, lo, mid);
+      if (a[hi] < a[lo]) swap(a, lo, hi);
+      if (a[hi] < a[mid]) swap(a, mid, hi);
+      double pivot = a[mid];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (a[i] < pivot) i++;
+        while (a[j] > pivot) j--;
+        if (i <= j) {
+          swap(a, i++, j--);
+        }
+      }
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        break;  // k is among the values equal to the pivot
+      }
+    }
+    return a[k];
+  }
+
+
+  static private void swap(double[] a, int i, int j) {
+    double temp = a[i];
+    a[i] = a[j];
+    a[j] = temp;
+  }
+}
@@ -0,0 +1,309 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import processing.core.PApplet;
+
+
+/**
+ * A Table backed by a memory-mapped file in the columnar "cbin" format
+ * (see Table.saveColumnar). Opening the file only reads its header, and
+ * getInt(), getFloat(), getFloatColumn() and the rest read straight from
+ * the mapped file, so only the columns (and pages) that are actually used
+ * get loaded by the operating system.
+ * <p/>
+ * The table can still be modified like any other. The first time a column
+ * is written (or the table is resized or its columns rearranged), the
+ * affected columns are copied onto the heap, and the file is never changed.
+ * <p/>
+ * Each column is mapped separately, so a single column is limited to 2 GB.
+ *
+ * @nowebref
+ * @see PApplet#loadTable(String, String)
+ */
+public class MappedTable extends Table {
+  /** Mapped contents of each column, or null once it's been loaded. */
+  ByteBuffer[] mapped;
+
+
+  public MappedTable(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer header = readFully(channel, 0, 16);
+      int magic = header.getInt();
+      if (magic != COLUMNAR_MAGIC) {
+        throw new IOException("Not a compatible columnar table (magic was " + PApplet.hex(magic) + ")");
+      }
+      int newRowCount = header.getInt();
+      int columnCount = header.getInt();
+      int metadataLength = header.getInt();
+
+      ByteBuffer directory = readFully(channel, 16, 8 * (columnCount + 1) + metadataLength);
+      long[] offsets = new long[columnCount + 1];
+      for (int i = 0; i <= columnCount; i++) {
+        offsets[i] = directory.getLong();
+      }
+      readColumnarMetadata(new DataInputStream(new ByteArrayInputStream(directory.array(), directory.position(), metadataLength)),
+                           columnCount);
+      rowCount = newRowCount;
+
+      // Mapping only reserves address space, nothing is read until a page
+      // is touched. The mappings stay valid after the channel is closed.
+      mapped = new ByteBuffer[columnCount];
+      for (int col = 0; col < columnCount; col++) {
+        long size = offsets[col + 1] - offsets[col];
+        if (size > Integer.MAX_VALUE) {
+          throw new IOException("Column " + col + " is too large to be mapped");
+        }
+        mapped[col] = channel.map(FileChannel.MapMode.READ_ONLY, offsets[col], size);
+      }
+    }
+  }
+
+
+  static private ByteBuffer readFully(FileChannel channel, long position,
+                                      int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) == -1) {
+        throw new EOFException("Columnar table file is truncated");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+
+  /** True if this column is still only in the mapped file. */
+  protected boolean isMapped(int column) {
+    return column >= 0 && column < columns.length && columns[column] == null;
+  }
+
+
+  @Override
+  protected Object columnData(int column) {
+    if (columns[column] == null) {
+      columns[column] = loadColumn(column);
+      mapped[column] = null;
+    }
+    return columns[column];
+  }
+
+
+  /** Copy every column that's still mapped onto the heap. */
+  protected void loadColumns() {
+    for (int col = 0; col < columns.length; col++) {
+      columnData(col);
+    }
+  }
+
+
+  protected Object loadColumn(int column) {
+    ByteBuffer buffer = mapped[column];
+    switch (columnTypes[column]) {
+      case INT:
+      case CATEGORY:
+        int[] intData = new int[rowCount];
+        buffer.asIntBuffer().get(intData);
+        return intData;
+      case LONG:
+        long[] longData = new long[rowCount];
+        buffer.asLongBuffer().get(longData);
+        return longData;
+      case FLOAT:
+        float[] floatData = new float[rowCount];
+        buffer.asFloatBuffer().get(floatData);
+        return floatData;
+      case DOUBLE:
+        double[] doubleData = new double[rowCount];
+        buffer.asDoubleBuffer().get(doubleData);
+        return doubleData;
+      default:  // STRING
+        String[] stringData = new String[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+          stringData[row] = readString(buffer, row);
+        }
+        return stringData;
+    }
+  }
+
+
+  private String readString(ByteBuffer buffer, int row) {
+    long start = buffer.getLong(row * 8);
+    if (start < 0) {
+      return null;
+    }
+    long stop = buffer.getLong((row + 1) * 8);
+    if (stop < 0) {
+      stop = ~stop;
+    }
+    byte[] bytes = new byte[(int) (stop - start)];
+    ByteBuffer view = buffer.duplicate();
+    view.position((int) (8L * (rowCount + 1) + start));
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  @Override
+  public int getInt(int row, int column) {
+    if (isMapped(column) &&
+        (columnTypes[column] == INT || columnTypes[column] == CATEGORY)) {
+      checkRow(row);
+      return mapped[column].getInt(row * 4);
+    }
+    return super.getInt(row, column);
+  }
+
+
+  @Override
+  public int[] getIntColumn(int col) {
+    if (isMapped(col) && columnTypes[col] == INT) {
+      int[] outgoing = new int[rowCount];
+      mapped[col].asIntBuffer().get(outgoing);
+      return outgoing;
+    }
+    return super.getIntColumn(col);
+  }
+
+
+  @Override
+  public long getLong(int row, int column) {
+    if (isMapped(column) && columnTypes[column] == LONG) {
+      checkRow(row);
+      return mapped[column].getLong(row * 8);
+    }
+    return super.getLong(row, column);
+  }
+
+
+  @Override
+  public long[] getLongColumn(int col) {
+    if (isMapped(col) && columnTypes[col] == LONG) {
+      long[] outgoing = new long[rowCount];
+      mapped[col].asLongBuffer().get(outgoing);
+      return outgoing;
+    }
+    return super.getLongColumn(col);
+  }
+
+
+  @Override
+  public float getFloat(int row, int column) {
+    if (isMapped(column) && columnTypes[column] == FLOAT) {
+      checkRow(row);
+      return mapped[column].getFloat(row * 4);
+    }
+    return super.getFloat(row, column);
+  }
+
+
+  @Override
+  public float[] getFloatColumn(int col) {
+    if (isMapped(col) && columnTypes[col] == FLOAT) {
+      float[] outgoing = new float[rowCount];
+      mapped[col].asFloatBuffer().get(outgoing);
+      return outgoing;
+    }
+    return super.getFloatColumn(col);
+  }
+
+
+  @Override
+  public double getDouble(int row, int column) {
+    if (isMapped(column) && columnTypes[column] == DOUBLE) {
+      checkRow(row);
+      return mapped[column].getDouble(row * 8);
+    }
+    return super.getDouble(row, column);
+  }
+
+
+  @Override
+  public double[] getDoubleColumn(int col) {
+    if (isMapped(col) && columnTypes[col] == DOUBLE) {
+      double[] outgoing = new double[rowCount];
+      mapped[col].asDoubleBuffer().get(outgoing);
+      return outgoing;
+    }
+    return super.getDoubleColumn(col);
+  }
+
+
+  @Override
+  public String getString(int row, int column) {
+    if (isMapped(column)) {
+      checkRow(row);
+      switch (columnTypes[column]) {
+        case STRING:
+          return readString(mapped[column], row);
+        case INT:
+          return String.valueOf(getInt(row, column));
+        case LONG:
+          return String.valueOf(getLong(row, column));
+        case FLOAT:
+          float f = getFloat(row, column);
+          return Float.isNaN(f) ? null : String.valueOf(f);
+        case DOUBLE:
+          double d = getDouble(row, column);
+          return Double.isNaN(d) ? null : String.valueOf(d);
+      }
+      // CATEGORY is looked up through getInt()
+    }
+    return super.getString(row, column);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  // These shuffle the columns around, so bring everything onto the heap
+  // before the mapped[] indices stop lining up with the columns.
+
+
+  @Override
+  public void insertColumn(int index, String title, int type) {
+    loadColumns();
+    super.insertColumn(index, title, type);
+  }
+
+
+  @Override
+  public void removeColumn(int column) {
+    loadColumns();
+    super.removeColumn(column);
+  }
+
+
+  @Override
+  public void setColumnCount(int newCount) {
+    loadColumns();
+    super.setColumnCount(newCount);
+  }
+}
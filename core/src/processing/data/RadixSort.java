@@ -0,0 +1,345 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Sorting for the lists and dictionaries. Numbers are sorted with an LSD
+ * radix sort, one byte at a time, skipping any byte that's the same for
+ * all the values. Short arrays go to Arrays.sort(), and very long ones to
+ * Arrays.parallelSort(), which is a parallel merge sort.
+ * <p/>
+ * The order() methods don't move anything, but return the permutation
+ * (the index of the value that goes first, then second, and so on) so that
+ * a dictionary can put its keys and values in place in a single pass.
+ * These are stable, so equal values stay in the order they were in.
+ * Floats and doubles sort the same as Float.compare() and Double.compare():
+ * -0 before 0, and NaN at the end.
+ */
+class RadixSort {
+  /** Arrays shorter than this use Arrays.sort() instead. */
+  static final int RADIX_THRESHOLD = 1 << 9;
+  /** Arrays at least this long use Arrays.parallelSort() instead. */
+  static final int PARALLEL_THRESHOLD = 1 << 21;
+
+
+  static boolean parallel(int count) {
+    return count >= PARALLEL_THRESHOLD &&
+      Runtime.getRuntime().availableProcessors() > 1;
+  }
+
+
+  static void sort(int[] data, int count) {
+    if (count < RADIX_THRESHOLD) {
+      Arrays.sort(data, 0, count);
+    } else if (parallel(count)) {
+      Arrays.parallelSort(data, 0, count);
+    } else {
+      radix(data, count);
+    }
+  }
+
+
+  static void sort(long[] data, int count) {
+    if (count < RADIX_THRESHOLD) {
+      Arrays.sort(data, 0, count);
+    } else if (parallel(count)) {
+      Arrays.parallelSort(data, 0, count);
+    } else {
+      radix(data, new long[count], count, 0, 64);
+    }
+  }
+
+
+  static void sort(float[] data, int count) {
+    if (count < RADIX_THRESHOLD) {
+      Arrays.sort(data, 0, count);
+    } else if (parallel(count)) {
+      Arrays.parallelSort(data, 0, count);
+    } else {
+      int[] bits = new int[count];
+      for (int i = 0; i < count; i++) {
+        bits[i] = sortable(data[i]);
+      }
+      radix(bits, count);
+      for (int i = 0; i < count; i++) {
+        data[i] = unsortable(bits[i]);
+      }
+    }
+  }
+
+
+  static void sort(double[] data, int count) {
+    if (count < RADIX_THRESHOLD) {
+      Arrays.sort(data, 0, count);
+    } else if (parallel(count)) {
+      Arrays.parallelSort(data, 0, count);
+    } else {
+      long[] bits = new long[count];
+      for (int i = 0; i < count; i++) {
+        bits[i] = sortable(data[i]);
+      }
+      radix(bits, new long[count], count, 0, 64);
+      for (int i = 0; i < count; i++) {
+        data[i] = unsortable(bits[i]);
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  static int[] order(int[] keys, int count) {
+    long[] packed = new long[count];
+    for (int i = 0; i < count; i++) {
+      packed[i] = ((long) keys[i] << 32) | i;
+    }
+    return unpack(packed, count);
+  }
+
+
+  static int[] order(float[] keys, int count) {
+    long[] packed = new long[count];
+    for (int i = 0; i < count; i++) {
+      packed[i] = ((long) sortable(keys[i]) << 32) | i;
+    }
+    return unpack(packed, count);
+  }
+
+
+  static int[] order(double[] keys, int count) {
+    long[] bits = new long[count];
+    for (int i = 0; i < count; i++) {
+      bits[i] = sortable(keys[i]);
+    }
+    return order(bits, count);
+  }
+
+
+  static int[] order(long[] keys, int count) {
+    int[] order = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    if (count < 2) {
+      return order;
+    }
+    // same as radix(long[]), but the index comes along with each key
+    long[] k = Arrays.copyOf(keys, count);
+    long[] kTemp = new long[count];
+    int[] oTemp = new int[count];
+    int[] counts = new int[256];
+    for (int shift = 0; shift < 64; shift += 8) {
+      Arrays.fill(counts, 0);
+      int top = (shift == 56) ? 0x80 : 0;
+      for (int i = 0; i < count; i++) {
+        counts[((int) (k[i] >>> shift) & 0xff) ^ top]++;
+      }
+      if (!offsets(counts, count)) {
+        continue;  // the same byte everywhere, so nothing to do
+      }
+      for (int i = 0; i < count; i++) {
+        int digit = ((int) (k[i] >>> shift) & 0xff) ^ top;
+        int at = counts[digit]++;
+        kTemp[at] = k[i];
+        oTemp[at] = order[i];
+      }
+      long[] kSwap = k; k = kTemp; kTemp = kSwap;
+      int[] oSwap = order; order = oTemp; oTemp = oSwap;
+    }
+    return order;
+  }
+
+
+  /**
+   * Stable merge sort of the positions up to count, for keys that aren't
+   * numbers. The halves of large ranges are sorted in parallel.
+   */
+  static int[] order(int count, TableSort.Key... keys) {
+    int[] order = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    TableSort.MergeSort sorter =
+      new TableSort.MergeSort(keys, false, order, new int[count], 0, count);
+    if (count < TableSort.PARALLEL_THRESHOLD) {
+      sorter.compute();
+    } else {
+      ForkJoinPool.commonPool().invoke(sorter);
+    }
+    return order;
+  }
+
+
+  /** Sort on the upper 32 bits, and return the lower 32 bits. */
+  static private int[] unpack(long[] packed, int count) {
+    if (count < RADIX_THRESHOLD) {
+      Arrays.sort(packed, 0, count);
+    } else if (parallel(count)) {
+      // the index in the lower half breaks ties, so this is stable too
+      Arrays.parallelSort(packed, 0, count);
+    } else {
+      radix(packed, new long[count], count, 32, 64);
+    }
+    int[] order = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = (int) packed[i];
+    }
+    return order;
+  }
+
+
+  /**
+   * Reverse the first part of an order. The dictionaries leave out
+   * any NaN values at the end, so that those stay at the end.
+   */
+  static void reverse(int[] order, int stop) {
+    for (int i = 0, j = stop - 1; i < j; i++, j--) {
+      int temp = order[i];
+      order[i] = order[j];
+      order[j] = temp;
+    }
+  }
+
+
+  /**
+   * Sort each run of equal values (by first) in order using second,
+   * which is how the dictionaries break ties with their keys.
+   */
+  static void breakTies(int[] order, int stop,
+                        TableSort.Key first, TableSort.Key second) {
+    TableSort.Key[] keys = { second };
+    int[] temp = null;
+    int start = 0;
+    for (int i = 1; i <= stop; i++) {
+      if (i == stop || first.compare(order[start], order[i]) != 0) {
+        if (i - start > 1) {
+          if (temp == null) {
+            temp = new int[order.length];
+          }
+          new TableSort.MergeSort(keys, false, order, temp, start, i).compute();
+        }
+        start = i;
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Float bits that sort as signed ints in the order of Float.compare(). */
+  static int sortable(float value) {
+    int bits = Float.floatToIntBits(value);
+    return bits ^ ((bits >> 31) & 0x7fffffff);
+  }
+
+
+  static float unsortable(int bits) {
+    return Float.intBitsToFloat(bits ^ ((bits >> 31) & 0x7fffffff));
+  }
+
+
+  static long sortable(double value) {
+    long bits = Double.doubleToLongBits(value);
+    return bits ^ ((bits >> 63) & 0x7fffffffffffffffL);
+  }
+
+
+  static double unsortable(long bits) {
+    return Double.longBitsToDouble(bits ^ ((bits >> 63) & 0x7fffffffffffffffL));
+  }
+
+
+  /**
+   * Turn counts for each digit into the place where that digit starts.
+   * Returns false if every value has the same digit.
+   */
+  static private boolean offsets(int[] counts, int count) {
+    int sum = 0;
+    for (int digit = 0; digit < 256; digit++) {
+      int c = counts[digit];
+      if (c == count) {
+        return false;
+      }
+      counts[digit] = sum;
+      sum += c;
+    }
+    return true;
+  }
+
+
+  static private void radix(int[] data, int count) {
+    int[] src = data;
+    int[] dst = new int[count];
+    int[] counts = new int[256];
+    for (int shift = 0; shift < 32; shift += 8) {
+      Arrays.fill(counts, 0);
+      // flip the sign bit on the last pass, so negative numbers go first
+      int top = (shift == 24) ? 0x80 : 0;
+      for (int i = 0; i < count; i++) {
+        counts[((src[i] >>> shift) & 0xff) ^ top]++;
+      }
+      if (!offsets(counts, count)) {
+        continue;
+      }
+      for (int i = 0; i < count; i++) {
+        int v = src[i];
+        dst[counts[((v >>> shift) & 0xff) ^ top]++] = v;
+      }
+      int[] swap = src; src = dst; dst = swap;
+    }
+    if (src != data) {
+      System.arraycopy(src, 0, data, 0, count);
+    }
+  }
+
+
+  /** Sort on bits fromBit to toBit of each value, toBit being the sign. */
+  static private void radix(long[] data, long[] temp, int count,
+                            int fromBit, int toBit) {
+    long[] src = data;
+    long[] dst = temp;
+    int[] counts = new int[256];
+    for (int shift = fromBit; shift < toBit; shift += 8) {
+      Arrays.fill(counts, 0);
+      int top = (shift == 56) ? 0x80 : 0;
+      for (int i = 0; i < count; i++) {
+        counts[((int) (src[i] >>> shift) & 0xff) ^ top]++;
+      }
+      if (!offsets(counts, count)) {
+        continue;
+      }
+      for (int i = 0; i < count; i++) {
+        long v = src[i];
+        dst[counts[((int) (v >>> shift) & 0xff) ^ top]++] = v;
+      }
+      long[] swap = src; src = dst; dst = swap;
+    }
+    if (src != data) {
+      System.arraycopy(src, 0, data, 0, count);
+    }
+  }
+}
@@ -3,6 +3,8 @@ package processing.data;
 import java.io.File;
 import java.io.PrintWriter;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Random;
 
@@ -515,25 +517,14 @@ public class StringList implements Iterable<String> {
 
 
   private void sortImpl(final boolean reverse) {
-    new Sort() {
-      @Override
-      public int size() {
-        return count;
-      }
-
-      @Override
-      public int compare(int a, int b) {
-        int diff = data[a].compareToIgnoreCase(data[b]);
-        return reverse ? -diff : diff;
-      }
-
-      @Override
-      public void swap(int a, int b) {
-        String temp = data[a];
-        data[a] = data[b];
-        data[b] = temp;
-      }
-    }.run();
+    Comparator<String> order = reverse ?
+      Collections.reverseOrder(String.CASE_INSENSITIVE_ORDER) :
+      String.CASE_INSENSITIVE_ORDER;
+    if (RadixSort.parallel(count)) {
+      Arrays.parallelSort(data, 0, count, order);
+    } else {
+      Arrays.sort(data, 0, count, order);
+    }
   }
 
 
@@ -25,7 +25,9 @@ package processing.data;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -33,14 +35,12 @@ import java.sql.Types;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.xml.sax.SAXException;
-
 import processing.core.PApplet;
 import processing.core.PConstants;
 
@@ -108,6 +108,9 @@ public class Table {
 
   protected RowIterator rowIterator;
 
+  /** Indexes added with createIndex(), or null if there are none. */
+  TableIndex[] indexes;
+
   // 0 for doubling each time, otherwise the number of rows to increment on
   // each expansion.
   protected int expandIncrement;
@@ -316,8 +319,8 @@ public class Table {
   */
 
 
-  static final String[] loadExtensions = { "csv", "tsv", "ods", "bin" };
-  static final String[] saveExtensions = { "csv", "tsv", "ods", "bin", "html" };
+  static final String[] loadExtensions = { "csv", "tsv", "ods", "bin", "cbin" };
+  static final String[] saveExtensions = { "csv", "tsv", "ods", "bin", "cbin", "html" };
 
   static public String extensionOptions(boolean loading, String filename, String options) {
     String extension = PApplet.checkExtension(filename);
@@ -343,6 +346,7 @@ public class Table {
     boolean header = false;
     String extension = null;
     boolean binary = false;
+    boolean parallel = false;
     String encoding = "UTF-8";
 
     String worksheet = null;
@@ -365,8 +369,14 @@ public class Table {
         } else if (opt.equals("bin")) {
           binary = true;
           extension = "bin";
+        } else if (opt.equals("cbin")) {
+          extension = "cbin";
+        } else if (opt.equals("mapped")) {
+          // only handled by PApplet, a stream is always read onto the heap
         } else if (opt.equals("header")) {
           header = true;
+        } else if (opt.equals("parallel")) {
+          parallel = true;
         } else if (opt.startsWith(sheetParam)) {
           worksheet = opt.substring(sheetParam.length());
         } else if (opt.startsWith("dictionary=")) {
@@ -386,6 +396,9 @@ public class Table {
     if (binary) {
       loadBinary(input);
 
+    } else if (extension.equals("cbin")) {
+      loadColumnar(input);
+
     } else if (extension.equals("ods")) {
       odsParse(input, worksheet, header);
 
@@ -410,53 +423,41 @@ public class Table {
         parseBasic(reader, header, false);
       }
       */
-      parseBasic(reader, header, "tsv".equals(extension));
+      if (parallel) {
+        parseParallel(reader, header, "tsv".equals(extension));
+      } else {
+        parseBasic(reader, header, "tsv".equals(extension));
+      }
     }
   }
 
 
   protected void parseBasic(BufferedReader reader,
                             boolean header, boolean tsv) throws IOException {
-    String line = null;
+    parseBasic(new TableTokenizer(reader, tsv), header);
+  }
+
+
+  void parseBasic(TableTokenizer tokenizer, boolean header) {
     int row = 0;
     if (rowCount == 0) {
       setRowCount(10);
     }
-    //int prev = 0;  //-1;
     try {
-      while ((line = reader.readLine()) != null) {
-        if (row == getRowCount()) {
-          setRowCount(row << 1);
-        }
-        if (row == 0 && header) {
-          setColumnTitles(tsv ? PApplet.split(line, '\t') : splitLineCSV(line, reader));
+      while (tokenizer.readRecord()) {
+        if (header) {
+          setColumnTitles(tokenizer.getStrings());
           header = false;
         } else {
-          setRow(row, tsv ? PApplet.split(line, '\t') : splitLineCSV(line, reader));
-          row++;
-        }
-
-        if (row % 10000 == 0) {
-        /*
-        // this is problematic unless we're going to calculate rowCount first
-        if (row < rowCount) {
-          int pct = (100 * row) / rowCount;
-          if (pct != prev) {  // also prevents "0%" from showing up
-            System.out.println(pct + "%");
-            prev = pct;
-          }
-        }
-         */
-          try {
-            // Sleep this thread so that the GC can catch up
-            Thread.sleep(10);
-          } catch (InterruptedException e) {
-            e.printStackTrace();
+          if (row == getRowCount()) {
+            setRowCount(row << 1);
           }
+          setRow(row, tokenizer);
+          row++;
         }
       }
     } catch (Exception e) {
-      throw new RuntimeException("Error reading table on line " + row, e);
+      throw new RowException(row, e);
     }
     // shorten or lengthen based on what's left
     if (row != getRowCount()) {
@@ -465,6 +466,188 @@ public class Table {
   }
 
 
+  /** Number of chars read from the input for each chunk parsed in parallel. */
+  static final int PARALLEL_CHUNK_SIZE = 1 << 22;
+
+
+  /**
+   * Parse CSV or TSV data on multiple threads. The input is read in blocks
+   * that are cut at the last line ending outside of quotes, each block is
+   * parsed into its own Table on the common fork-join pool while the next
+   * one is being read, and the pieces are copied back together in order.
+   * Reading waits for the oldest block once a couple of blocks per thread
+   * are queued, so a file that reads faster than it parses isn't held in
+   * memory all at once.
+   */
+  protected void parseParallel(BufferedReader reader,
+                               boolean header, final boolean tsv) throws IOException {
+    int limit = 2 * ForkJoinPool.commonPool().getParallelism();
+    Deque<ForkJoinTask<Table>> tasks = new ArrayDeque<>();
+    List<Table> chunks = new ArrayList<>();
+    char[] block = new char[PARALLEL_CHUNK_SIZE];
+    int length = 0;
+    boolean done = false;
+    while (!done) {
+      while (length < block.length) {
+        int count = reader.read(block, length, block.length - length);
+        if (count == -1) {
+          done = true;
+          break;
+        }
+        length += count;
+      }
+      int stop = done ? length : TableTokenizer.lastRecordEnd(block, length, tsv);
+      if (stop == 0 && !done) {
+        // a single record that's larger than the block, make room for more
+        block = PApplet.expand(block);
+        continue;
+      }
+      int start = 0;
+      if (header) {
+        TableTokenizer tokenizer = new TableTokenizer(block, 0, stop, tsv);
+        if (tokenizer.readRecord()) {
+          setColumnTitles(tokenizer.getStrings());
+        }
+        start = tokenizer.bufferIndex;
+        header = false;
+      }
+      if (start < stop) {
+        if (tasks.size() >= limit) {
+          chunks.add(joinChunk(tasks.removeFirst(), chunks));
+        }
+        TableTokenizer tokenizer = new TableTokenizer(block, start, stop, tsv);
+        tasks.add(ForkJoinPool.commonPool().submit(new ChunkParser(createChunk(), tokenizer)));
+      }
+      // leftover chars go to the front of a new block,
+      // the old one belongs to the tokenizer now
+      char[] next = new char[block.length];
+      System.arraycopy(block, stop, next, 0, length - stop);
+      block = next;
+      length -= stop;
+    }
+
+    for (ForkJoinTask<Table> task : tasks) {
+      chunks.add(joinChunk(task, chunks));
+    }
+    mergeChunks(chunks.toArray(new Table[0]));
+  }
+
+
+  /**
+   * Wait for the next chunk. An error has its line number counted from the
+   * start of its own block, so it's moved past the rows of the chunks
+   * before it, which are all finished since chunks are joined in order.
+   */
+  private Table joinChunk(ForkJoinTask<Table> task, List<Table> before) {
+    try {
+      return task.join();
+    } catch (RuntimeException e) {
+      // join() may wrap what was thrown on the other thread
+      for (Throwable t = e; t != null; t = t.getCause()) {
+        if (t instanceof RowException) {
+          int row = ((RowException) t).row;
+          for (Table chunk : before) {
+            row += chunk.rowCount;
+          }
+          throw new RowException(row, t.getCause());
+        }
+      }
+      throw e;
+    }
+  }
+
+
+  /** Error from parseBasic(), with the row where it happened. */
+  @SuppressWarnings("serial")
+  static class RowException extends RuntimeException {
+    final int row;
+
+    RowException(int row, Throwable cause) {
+      super("Error reading table on line " + row, cause);
+      this.row = row;
+    }
+  }
+
+
+  /**
+   * Parses one block for parseParallel(). The tokenizer (and the block it
+   * reads from) is dropped as soon as it's done, so that finished blocks
+   * waiting to be merged only hold on to their rows.
+   */
+  @SuppressWarnings("serial")
+  static class ChunkParser extends RecursiveTask<Table> {
+    Table chunk;
+    TableTokenizer tokenizer;
+
+    ChunkParser(Table chunk, TableTokenizer tokenizer) {
+      this.chunk = chunk;
+      this.tokenizer = tokenizer;
+    }
+
+    @Override
+    protected Table compute() {
+      try {
+        chunk.parseBasic(tokenizer, false);
+        return chunk;
+      } finally {
+        tokenizer = null;
+        chunk = null;
+      }
+    }
+  }
+
+
+  /** An empty table with the same column types and missing values. */
+  protected Table createChunk() {
+    Table chunk = new Table();
+    chunk.setColumnTypes(columnTypes);
+    chunk.missingString = missingString;
+    chunk.missingInt = missingInt;
+    chunk.missingLong = missingLong;
+    chunk.missingFloat = missingFloat;
+    chunk.missingDouble = missingDouble;
+    chunk.missingCategory = missingCategory;
+    return chunk;
+  }
+
+
+  /**
+   * Replace the rows of this table with the rows of each chunk, in order.
+   * CATEGORY codes are remapped through this table's dictionary, which is
+   * filled in chunk order so that codes come out the same as they would
+   * from a single-threaded parse.
+   */
+  protected void mergeChunks(Table[] chunks) {
+    int total = 0;
+    for (Table chunk : chunks) {
+      ensureColumn(chunk.getColumnCount() - 1);
+      total += chunk.rowCount;
+    }
+    setRowCount(total);
+
+    int offset = 0;
+    for (Table chunk : chunks) {
+      int count = chunk.rowCount;
+      for (int col = 0; col < chunk.getColumnCount(); col++) {
+        if (columnTypes[col] == CATEGORY) {
+          int[] remap = chunk.columnCategories[col].remap(columnCategories[col]);
+          int[] source = (int[]) chunk.columns[col];
+          int[] target = (int[]) columnData(col);
+          for (int row = 0; row < count; row++) {
+            int code = source[row];
+            target[offset + row] =
+              (code >= 0 && code < remap.length) ? remap[code] : code;
+          }
+        } else {
+          System.arraycopy(chunk.columns[col], 0, columns[col], offset, count);
+        }
+      }
+      offset += count;
+    }
+    indexReset(-1);
+  }
+
+
 //  public void convertTSV(BufferedReader reader, File outputFile) throws IOException {
 //    convertBasic(reader, true, outputFile);
 //  }
@@ -836,194 +1019,55 @@ public class Table {
 
 
   /**
-   * Read a .ods (OpenDoc spreadsheet) zip file from an InputStream, and
-   * return the InputStream for content.xml contained inside.
+   * Read the first sheet of a .ods (OpenDoc spreadsheet) zip file, or the
+   * sheet with the specified name. The rows are streamed from content.xml
+   * and set as they're read, so the XML for the file is never held in memory.
    */
-  private InputStream odsFindContentXML(InputStream input) {
-    ZipInputStream zis = new ZipInputStream(input);
-    ZipEntry entry = null;
-    try {
-      while ((entry = zis.getNextEntry()) != null) {
-        if (entry.getName().equals("content.xml")) {
-          return zis;
-        }
-      }
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-    return null;
-  }
-
-
   protected void odsParse(InputStream input, String worksheet, boolean header) {
+    TableODSReader reader = null;
     try {
-      InputStream contentStream = odsFindContentXML(input);
-      XML xml = new XML(contentStream);
-
-      // table files will have multiple sheets..
-      // <table:table table:name="Sheet1" table:style-name="ta1" table:print="false">
-      // <table:table table:name="Sheet2" table:style-name="ta1" table:print="false">
-      // <table:table table:name="Sheet3" table:style-name="ta1" table:print="false">
-      XML[] sheets =
-        xml.getChildren("office:body/office:spreadsheet/table:table");
-
-      boolean found = false;
-      for (XML sheet : sheets) {
-//        System.out.println(sheet.getAttribute("table:name"));
-        if (worksheet == null || worksheet.equals(sheet.getString("table:name"))) {
-          odsParseSheet(sheet, header);
-          found = true;
-          if (worksheet == null) {
-            break;  // only read the first sheet
+      reader = new TableODSReader(input, worksheet);
+
+      int rowIndex = 0;
+      // rows are allocated by doubling, and trimmed once the sheet is read
+      int used = 0;
+      while (reader.readRow()) {
+        String[] strings = reader.getStrings();
+        if (header) {
+          if (strings.length < getColumnCount()) {
+            strings = PApplet.expand(strings, getColumnCount());
           }
+          setColumnTitles(strings);
+          header = false;
+          continue;
         }
-      }
-      if (!found) {
-        if (worksheet == null) {
-          throw new RuntimeException("No worksheets found in the ODS file.");
-        } else {
-          throw new RuntimeException("No worksheet named " + worksheet +
-                                     " found in the ODS file.");
-        }
-      }
-    } catch (UnsupportedEncodingException e) {
-      e.printStackTrace();
-    } catch (IOException e) {
-      e.printStackTrace();
-    } catch (ParserConfigurationException e) {
-      e.printStackTrace();
-    } catch (SAXException e) {
-      e.printStackTrace();
-    }
-  }
-
 
-  /**
-   * Parses a single sheet of XML from this file.
-   * @param The XML object for a single worksheet from the ODS file
-   */
-  private void odsParseSheet(XML sheet, boolean header) {
-    // Extra <p> or <a> tags inside the text tag for the cell will be stripped.
-    // Different from showing formulas, and not quite the same as 'save as
-    // displayed' option when saving from inside OpenOffice. Only time we
-    // wouldn't want this would be so that we could parse hyperlinks and
-    // styling information intact, but that's out of scope for the p5 version.
-    final boolean ignoreTags = true;
-
-    XML[] rows = sheet.getChildren("table:table-row");
-    //xml.getChildren("office:body/office:spreadsheet/table:table/table:table-row");
-
-    int rowIndex = 0;
-    for (XML row : rows) {
-      int rowRepeat = row.getInt("table:number-rows-repeated", 1);
-//      if (rowRepeat != 1) {
-//          System.out.println(rowRepeat + " " + rowCount + " " + (rowCount + rowRepeat));
-//      }
-      boolean rowNotNull = false;
-      XML[] cells = row.getChildren();
-      int columnIndex = 0;
-
-      for (XML cell : cells) {
-        int cellRepeat = cell.getInt("table:number-columns-repeated", 1);
-
-//        <table:table-cell table:formula="of:=SUM([.E7:.E8])" office:value-type="float" office:value="4150">
-//        <text:p>4150.00</text:p>
-//        </table:table-cell>
-
-        String cellData = ignoreTags ? cell.getString("office:value") : null;
-
-        // if there's an office:value in the cell, just roll with that
-        if (cellData == null) {
-          int cellKids = cell.getChildCount();
-          if (cellKids != 0) {
-            XML[] paragraphElements = cell.getChildren("text:p");
-            if (paragraphElements.length != 1) {
-              for (XML el : paragraphElements) {
-                System.err.println(el.toString());
-              }
-              throw new RuntimeException("found more than one text:p element");
-            }
-            XML textp = paragraphElements[0];
-            String textpContent = textp.getContent();
-            // if there are sub-elements, the content shows up as a child element
-            // (for which getName() returns null.. which seems wrong)
-            if (textpContent != null) {
-              cellData = textpContent;  // nothing fancy, the text is in the text:p element
-            } else {
-              XML[] textpKids = textp.getChildren();
-              StringBuilder cellBuffer = new StringBuilder();
-              for (XML kid : textpKids) {
-                String kidName = kid.getName();
-                if (kidName == null) {
-                  odsAppendNotNull(kid, cellBuffer);
-
-                } else if (kidName.equals("text:s")) {
-                  int spaceCount = kid.getInt("text:c", 1);
-                  for (int space = 0; space < spaceCount; space++) {
-                    cellBuffer.append(' ');
-                  }
-                } else if (kidName.equals("text:span")) {
-                  odsAppendNotNull(kid, cellBuffer);
-
-                } else if (kidName.equals("text:a")) {
-                  // <text:a xlink:href="http://blah.com/">blah.com</text:a>
-                  if (ignoreTags) {
-                    cellBuffer.append(kid.getString("xlink:href"));
-                  } else {
-                    odsAppendNotNull(kid, cellBuffer);
-                  }
-
-                } else {
-                  odsAppendNotNull(kid, cellBuffer);
-                  System.err.println(getClass().getName() + ": don't understand: " + kid);
-                  //throw new RuntimeException("I'm not used to this.");
-                }
-              }
-              cellData = cellBuffer.toString();
-            }
-            //setString(rowIndex, columnIndex, c); //text[0].getContent());
-            //columnIndex++;
+        // empty rows (like the repeat at the end of a sheet) aren't added
+        // unless there's something after them
+        if (strings.length != 0) {
+          int last = rowIndex + reader.rowRepeat;
+          if (last > getRowCount()) {
+            setRowCount(Math.max(last, getRowCount() << 1));
           }
-        }
-        for (int r = 0; r < cellRepeat; r++) {
-          if (cellData != null) {
-            //System.out.println("setting " + rowIndex + "," + columnIndex + " to " + cellData);
-            setString(rowIndex, columnIndex, cellData);
-          }
-          columnIndex++;
-          if (cellData != null) {
-//            if (columnIndex > columnMax) {
-//              columnMax = columnIndex;
-//            }
-            rowNotNull = true;
+          for (int row = rowIndex; row < last; row++) {
+            setRow(row, strings);  // parsed for typed columns
           }
+          used = last;
         }
+        rowIndex += reader.rowRepeat;
       }
-      if (header) {
-        removeTitleRow();  // efficient enough on the first row
-        header = false;  // avoid infinite loop
+      setRowCount(used);
 
-      } else {
-        if (rowNotNull && rowRepeat > 1) {
-          String[] rowStrings = getStringRow(rowIndex);
-          for (int r = 1; r < rowRepeat; r++) {
-            addRow(rowStrings);
-          }
-        }
-        rowIndex += rowRepeat;
+    } catch (IOException e) {
+      e.printStackTrace();
+    } finally {
+      if (reader != null) {
+        reader.close();
       }
     }
   }
 
 
-  private void odsAppendNotNull(XML kid, StringBuilder buffer) {
-    String content = kid.getContent();
-    if (content != null) {
-      buffer.append(content);
-    }
-  }
-
-
   // A 'Class' object is used here, so the syntax for this function is:
   // Table t = loadTable("cars3.tsv", "header");
   // Record[] records = (Record[]) t.parse(Record.class);
@@ -1239,6 +1283,13 @@ public class Table {
         e.printStackTrace();
         return false;
       }
+    } else if (extension.equals("cbin")) {
+      try {
+        saveColumnar(output);
+      } catch (IOException e) {
+        e.printStackTrace();
+        return false;
+      }
     }
     writer.flush();
     writer.close();
@@ -1248,68 +1299,88 @@ public class Table {
 
   protected void writeTSV(PrintWriter writer) {
     if (columnTitles != null) {
-      for (int col = 0; col < columns.length; col++) {
-        if (col != 0) {
-          writer.print('\t');
-        }
-        if (columnTitles[col] != null) {
-          writer.print(columnTitles[col]);
-        }
-      }
-      writer.println();
+      writeTitlesTSV(writer);
     }
     for (int row = 0; row < rowCount; row++) {
-      for (int col = 0; col < getColumnCount(); col++) {
-        if (col != 0) {
-          writer.print('\t');
-        }
-        String entry = getString(row, col);
-        // just write null entries as blanks, rather than spewing 'null'
-        // all over the spreadsheet file.
-        if (entry != null) {
-          writer.print(entry);
-        }
-      }
-      writer.println();
+      writeRowTSV(writer, row);
     }
     writer.flush();
   }
 
 
+  protected void writeTitlesTSV(PrintWriter writer) {
+    for (int col = 0; col < columns.length; col++) {
+      if (col != 0) {
+        writer.print('\t');
+      }
+      if (columnTitles[col] != null) {
+        writer.print(columnTitles[col]);
+      }
+    }
+    writer.println();
+  }
+
+
+  protected void writeRowTSV(PrintWriter writer, int row) {
+    for (int col = 0; col < getColumnCount(); col++) {
+      if (col != 0) {
+        writer.print('\t');
+      }
+      String entry = getString(row, col);
+      // just write null entries as blanks, rather than spewing 'null'
+      // all over the spreadsheet file.
+      if (entry != null) {
+        writer.print(entry);
+      }
+    }
+    writer.println();
+  }
+
+
   protected void writeCSV(PrintWriter writer) {
     if (columnTitles != null) {
-      for (int col = 0; col < getColumnCount(); col++) {
-        if (col != 0) {
-          writer.print(',');
-        }
-        try {
-          if (columnTitles[col] != null) {  // col < columnTitles.length &&
-            writeEntryCSV(writer, columnTitles[col]);
-          }
-        } catch (ArrayIndexOutOfBoundsException e) {
-          PApplet.printArray(columnTitles);
-          PApplet.printArray(columns);
-          throw e;
-        }
-      }
-      writer.println();
+      writeTitlesCSV(writer);
     }
     for (int row = 0; row < rowCount; row++) {
-      for (int col = 0; col < getColumnCount(); col++) {
-        if (col != 0) {
-          writer.print(',');
-        }
-        String entry = getString(row, col);
-        // just write null entries as blanks, rather than spewing 'null'
-        // all over the spreadsheet file.
-        if (entry != null) {
-          writeEntryCSV(writer, entry);
+      writeRowCSV(writer, row);
+    }
+    writer.flush();
+  }
+
+
+  protected void writeTitlesCSV(PrintWriter writer) {
+    for (int col = 0; col < getColumnCount(); col++) {
+      if (col != 0) {
+        writer.print(',');
+      }
+      try {
+        if (columnTitles[col] != null) {  // col < columnTitles.length &&
+          writeEntryCSV(writer, columnTitles[col]);
         }
+      } catch (ArrayIndexOutOfBoundsException e) {
+        PApplet.printArray(columnTitles);
+        PApplet.printArray(columns);
+        throw e;
       }
-      // Prints the newline for the row, even if it's missing
-      writer.println();
     }
-    writer.flush();
+    writer.println();
+  }
+
+
+  protected void writeRowCSV(PrintWriter writer, int row) {
+    for (int col = 0; col < getColumnCount(); col++) {
+      if (col != 0) {
+        writer.print(',');
+      }
+      String entry = getString(row, col);
+      // just write null entries as blanks, rather than spewing 'null'
+      // all over the spreadsheet file.
+      if (entry != null) {
+        writeEntryCSV(writer, entry);
+      }
+    }
+    // Prints the newline for the row, even if it's missing
+    writer.println();
   }
 
 
@@ -1626,8 +1697,19 @@ public class Table {
 
   protected void saveBinary(OutputStream os) throws IOException {
     DataOutputStream output = new DataOutputStream(new BufferedOutputStream(os));
+    writeBinaryHeader(output, getRowCount());
+    for (int row = 0; row < getRowCount(); row++) {
+      writeBinaryRow(output, row);
+    }
+    output.flush();
+    output.close();
+  }
+
+
+  protected void writeBinaryHeader(DataOutputStream output,
+                                   int rows) throws IOException {
     output.writeInt(0x9007AB1E);  // version
-    output.writeInt(getRowCount());
+    output.writeInt(rows);
     output.writeInt(getColumnCount());
     if (columnTitles != null) {
       output.writeBoolean(true);
@@ -1658,57 +1740,64 @@ public class Table {
     output.writeFloat(missingFloat);
     output.writeDouble(missingDouble);
     output.writeInt(missingCategory);
+  }
 
-    for (TableRow row : rows()) {
-      for (int col = 0; col < getColumnCount(); col++) {
-        switch (columnTypes[col]) {
-        case STRING:
-          String str = row.getString(col);
-          if (str == null) {
-            output.writeBoolean(false);
-          } else {
-            output.writeBoolean(true);
-            output.writeUTF(str);
-          }
-          break;
-        case INT:
-          output.writeInt(row.getInt(col));
-          break;
-        case LONG:
-          output.writeLong(row.getLong(col));
-          break;
-        case FLOAT:
-          output.writeFloat(row.getFloat(col));
-          break;
-        case DOUBLE:
-          output.writeDouble(row.getDouble(col));
-          break;
-        case CATEGORY:
-          String peace = row.getString(col);
-          if (peace.equals(missingString)) {
-            output.writeInt(missingCategory);
-          } else {
-            output.writeInt(columnCategories[col].index(peace));
-          }
-          break;
+
+  protected void writeBinaryRow(DataOutputStream output,
+                                int row) throws IOException {
+    for (int col = 0; col < getColumnCount(); col++) {
+      switch (columnTypes[col]) {
+      case STRING:
+        String str = getString(row, col);
+        if (str == null) {
+          output.writeBoolean(false);
+        } else {
+          output.writeBoolean(true);
+          output.writeUTF(str);
         }
+        break;
+      case INT:
+        output.writeInt(getInt(row, col));
+        break;
+      case LONG:
+        output.writeLong(getLong(row, col));
+        break;
+      case FLOAT:
+        output.writeFloat(getFloat(row, col));
+        break;
+      case DOUBLE:
+        output.writeDouble(getDouble(row, col));
+        break;
+      case CATEGORY:
+        // the codes are indices into the categories written in the header
+        output.writeInt(getInt(row, col));
+        break;
       }
     }
-
-    output.flush();
-    output.close();
   }
 
 
   protected void loadBinary(InputStream is) throws IOException {
     DataInputStream input = new DataInputStream(new BufferedInputStream(is));
+    int rowCount = readBinaryHeader(input);
+    setRowCount(rowCount);
+    for (int row = 0; row < rowCount; row++) {
+      readBinaryRow(input, row);
+    }
+    input.close();
+  }
+
 
+  /**
+   * Read the header of a binary table and set up the columns to match.
+   * @return the number of rows that follow
+   */
+  protected int readBinaryHeader(DataInputStream input) throws IOException {
     int magic = input.readInt();
     if (magic != 0x9007AB1E) {
       throw new IOException("Not a compatible binary table (magic was " + PApplet.hex(magic) + ")");
     }
-    int rowCount = input.readInt();
-    setRowCount(rowCount);
+    int newRowCount = input.readInt();
     int columnCount = input.readInt();
     setColumnCount(columnCount);
 
@@ -1763,42 +1852,386 @@ public class Table {
     missingFloat = input.readFloat();
     missingDouble = input.readDouble();
     missingCategory = input.readInt();
+    return newRowCount;
+  }
 
-    for (int row = 0; row < rowCount; row++) {
-      for (int col = 0; col < columnCount; col++) {
-        switch (columnTypes[col]) {
-        case STRING:
-          String str = null;
-          if (input.readBoolean()) {
-            str = input.readUTF();
-          }
-          setString(row, col, str);
-          break;
-        case INT:
-          setInt(row, col, input.readInt());
-          break;
-        case LONG:
-          setLong(row, col, input.readLong());
-          break;
-        case FLOAT:
-          setFloat(row, col, input.readFloat());
-          break;
-        case DOUBLE:
-          setDouble(row, col, input.readDouble());
-          break;
-        case CATEGORY:
-          int index = input.readInt();
-          //String name = columnCategories[col].key(index);
-          setInt(row, col, index);
-          break;
+
+  protected void readBinaryRow(DataInputStream input, int row) throws IOException {
+    for (int col = 0; col < getColumnCount(); col++) {
+      switch (columnTypes[col]) {
+      case STRING:
+        String str = null;
+        if (input.readBoolean()) {
+          str = input.readUTF();
+        }
+        setString(row, col, str);
+        break;
+      case INT:
+        setInt(row, col, input.readInt());
+        break;
+      case LONG:
+        setLong(row, col, input.readLong());
+        break;
+      case FLOAT:
+        setFloat(row, col, input.readFloat());
+        break;
+      case DOUBLE:
+        setDouble(row, col, input.readDouble());
+        break;
+      case CATEGORY:
+        int index = input.readInt();
+        //String name = columnCategories[col].key(index);
+        setInt(row, col, index);
+        break;
+      }
+    }
+  }
+
+
+  /**
+   * Magic number for the columnar binary format ("cbin"). Unlike "bin",
+   * which writes one row after another, each column is stored as a single
+   * block of big-endian values starting on an 8-byte boundary, so that a
+   * column can be read (or mapped, see MappedTable) without touching the
+   * rest of the file. The layout is:
+   * <pre>
+   * int magic, int rowCount, int columnCount, int metadataLength
+   * long[columnCount + 1] file offset of each column, then the end of file
+   * metadata: titles, types, categories, missing values (same as "bin")
+   * column data: int, long, float, or double values, CATEGORY as int codes,
+   *   STRING as rowCount + 1 long offsets into the UTF-8 bytes that follow
+   *   (a null entry is stored as the ones' complement of its offset)
+   * </pre>
+   */
+  static final int COLUMNAR_MAGIC = 0x9007C0DE;
+
+  /** Values are read and written in bulk, this many bytes at a time. */
+  static final int COLUMNAR_BLOCK = 1 << 16;
+
+
+  protected void saveColumnar(OutputStream os) throws IOException {
+    int columnCount = getColumnCount();
+
+    ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+    writeColumnarMetadata(new DataOutputStream(metadata));
+
+    long[] offsets = new long[columnCount + 1];
+    long position = columnarAlign(16 + 8L * (columnCount + 1) + metadata.size());
+    for (int col = 0; col < columnCount; col++) {
+      offsets[col] = position;
+      position = columnarAlign(position + columnarSize(col));
+    }
+    offsets[columnCount] = position;
+
+    DataOutputStream output =
+      new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+    output.writeInt(COLUMNAR_MAGIC);
+    output.writeInt(rowCount);
+    output.writeInt(columnCount);
+    output.writeInt(metadata.size());
+    for (long offset : offsets) {
+      output.writeLong(offset);
+    }
+    metadata.writeTo(output);
+
+    long written = 16 + 8L * (columnCount + 1) + metadata.size();
+    for (int col = 0; col < columnCount; col++) {
+      for (; written < offsets[col]; written++) {
+        output.write(0);
+      }
+      writeColumnarData(output, col);
+      written = offsets[col] + columnarSize(col);
+    }
+    for (; written < offsets[columnCount]; written++) {
+      output.write(0);
+    }
+    output.flush();
+    output.close();
+  }
+
+
+  static long columnarAlign(long position) {
+    return (position + 7) & ~7L;
+  }
+
+
+  /** Number of bytes used by a column in the "cbin" format. */
+  protected long columnarSize(int col) {
+    switch (columnTypes[col]) {
+      case INT:
+      case FLOAT:
+      case CATEGORY:
+        return 4L * rowCount;
+      case LONG:
+      case DOUBLE:
+        return 8L * rowCount;
+      case STRING:
+        long size = 8L * (rowCount + 1);
+        for (int row = 0; row < rowCount; row++) {
+          size += utf8Length(getString(row, col));
         }
+        return size;
+    }
+    throw new IllegalArgumentException("That's not a valid column type.");
+  }
+
+
+  /** Same as getBytes(UTF-8).length, without creating the bytes. */
+  static int utf8Length(String str) {
+    if (str == null) {
+      return 0;
+    }
+    int length = 0;
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < str.length() &&
+                 Character.isLowSurrogate(str.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        length++;  // unpaired surrogates are written as '?'
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+
+  protected void writeColumnarMetadata(DataOutputStream output) throws IOException {
+    if (columnTitles != null) {
+      output.writeBoolean(true);
+      for (String title : columnTitles) {
+        output.writeUTF(title);
+      }
+    } else {
+      output.writeBoolean(false);
+    }
+    for (int col = 0; col < getColumnCount(); col++) {
+      output.writeInt(columnTypes[col]);
+    }
+    for (int col = 0; col < getColumnCount(); col++) {
+      if (columnTypes[col] == CATEGORY) {
+        columnCategories[col].write(output);
       }
     }
+    if (missingString == null) {
+      output.writeBoolean(false);
+    } else {
+      output.writeBoolean(true);
+      output.writeUTF(missingString);
+    }
+    output.writeInt(missingInt);
+    output.writeLong(missingLong);
+    output.writeFloat(missingFloat);
+    output.writeDouble(missingDouble);
+    output.writeInt(missingCategory);
+  }
+
+
+  protected void writeColumnarData(DataOutputStream output, int col) throws IOException {
+    ByteBuffer block = ByteBuffer.allocate(COLUMNAR_BLOCK);
+    switch (columnTypes[col]) {
+      case INT:
+      case CATEGORY:
+        int[] intData = (int[]) columnData(col);
+        for (int row = 0; row < rowCount; row += COLUMNAR_BLOCK / 4) {
+          int count = Math.min(rowCount - row, COLUMNAR_BLOCK / 4);
+          block.clear();
+          block.asIntBuffer().put(intData, row, count);
+          output.write(block.array(), 0, count * 4);
+        }
+        break;
+      case LONG:
+        long[] longData = (long[]) columnData(col);
+        for (int row = 0; row < rowCount; row += COLUMNAR_BLOCK / 8) {
+          int count = Math.min(rowCount - row, COLUMNAR_BLOCK / 8);
+          block.clear();
+          block.asLongBuffer().put(longData, row, count);
+          output.write(block.array(), 0, count * 8);
+        }
+        break;
+      case FLOAT:
+        float[] floatData = (float[]) columnData(col);
+        for (int row = 0; row < rowCount; row += COLUMNAR_BLOCK / 4) {
+          int count = Math.min(rowCount - row, COLUMNAR_BLOCK / 4);
+          block.clear();
+          block.asFloatBuffer().put(floatData, row, count);
+          output.write(block.array(), 0, count * 4);
+        }
+        break;
+      case DOUBLE:
+        double[] doubleData = (double[]) columnData(col);
+        for (int row = 0; row < rowCount; row += COLUMNAR_BLOCK / 8) {
+          int count = Math.min(rowCount - row, COLUMNAR_BLOCK / 8);
+          block.clear();
+          block.asDoubleBuffer().put(doubleData, row, count);
+          output.write(block.array(), 0, count * 8);
+        }
+        break;
+      case STRING:
+        String[] stringData = (String[]) columnData(col);
+        long offset = 0;
+        for (int row = 0; row < rowCount; row++) {
+          output.writeLong(stringData[row] == null ? ~offset : offset);
+          offset += utf8Length(stringData[row]);
+        }
+        output.writeLong(offset);
+        for (int row = 0; row < rowCount; row++) {
+          if (stringData[row] != null) {
+            output.write(stringData[row].getBytes(StandardCharsets.UTF_8));
+          }
+        }
+        break;
+    }
+  }
+
 
+  /**
+   * Read a "cbin" table completely onto the heap. To only read the parts
+   * of a file that are used, open it with MappedTable instead.
+   */
+  protected void loadColumnar(InputStream is) throws IOException {
+    DataInputStream input = new DataInputStream(new BufferedInputStream(is, 1 << 16));
+
+    int magic = input.readInt();
+    if (magic != COLUMNAR_MAGIC) {
+      throw new IOException("Not a compatible columnar table (magic was " + PApplet.hex(magic) + ")");
+    }
+    int newRowCount = input.readInt();
+    int columnCount = input.readInt();
+    int metadataLength = input.readInt();
+    long[] offsets = new long[columnCount + 1];
+    for (int i = 0; i <= columnCount; i++) {
+      offsets[i] = input.readLong();
+    }
+    byte[] metadata = new byte[metadataLength];
+    input.readFully(metadata);
+    readColumnarMetadata(new DataInputStream(new ByteArrayInputStream(metadata)),
+                         columnCount);
+    rowCount = newRowCount;
+
+    long position = 16 + 8L * (columnCount + 1) + metadataLength;
+    for (int col = 0; col < columnCount; col++) {
+      input.readFully(new byte[(int) (offsets[col] - position)]);  // padding
+      columns[col] = readColumnarData(input, col);
+      position = offsets[col] + columnarSize(col);
+    }
     input.close();
   }
 
 
+  /**
+   * Set the titles, types, categories, and missing values of this table
+   * from a "cbin" header. The columns themselves are left empty (null).
+   */
+  protected void readColumnarMetadata(DataInputStream input,
+                                      int columnCount) throws IOException {
+    columns = new Object[columnCount];
+    columnTypes = new int[columnCount];
+    columnCategories = new HashMapBlows[columnCount];
+    columnIndices = null;
+
+    if (input.readBoolean()) {
+      columnTitles = new String[columnCount];
+      for (int col = 0; col < columnCount; col++) {
+        columnTitles[col] = input.readUTF();
+      }
+    } else {
+      columnTitles = null;
+    }
+    for (int col = 0; col < columnCount; col++) {
+      columnTypes[col] = input.readInt();
+      if (columnTypes[col] < STRING || columnTypes[col] > CATEGORY) {
+        throw new IOException(columnTypes[col] + " is not a valid column type.");
+      }
+    }
+    for (int col = 0; col < columnCount; col++) {
+      if (columnTypes[col] == CATEGORY) {
+        columnCategories[col] = new HashMapBlows(input);
+      }
+    }
+    if (input.readBoolean()) {
+      missingString = input.readUTF();
+    } else {
+      missingString = null;
+    }
+    missingInt = input.readInt();
+    missingLong = input.readLong();
+    missingFloat = input.readFloat();
+    missingDouble = input.readDouble();
+    missingCategory = input.readInt();
+  }
+
+
+  private Object readColumnarData(DataInputStream input, int col) throws IOException {
+    ByteBuffer block = ByteBuffer.allocate(COLUMNAR_BLOCK);
+    switch (columnTypes[col]) {
+      case INT:
+      case CATEGORY:
+        int[] intData = new int[rowCount];
+        for (int row = 0; row < rowCount; row += COLUMNAR_BLOCK / 4) {
+          int count = Math.min(rowCount - row, COLUMNAR_BLOCK / 4);
+          input.readFully(block.array(), 0, count * 4);
+          block.clear();
+          block.asIntBuffer().get(intData, row, count);
+        }
+        return intData;
+      case LONG:
+        long[] longData = new long[rowCount];
+        for (int row = 0; row < rowCount; row += COLUMNAR_BLOCK / 8) {
+          int count = Math.min(rowCount - row, COLUMNAR_BLOCK / 8);
+          input.readFully(block.array(), 0, count * 8);
+          block.clear();
+          block.asLongBuffer().get(longData, row, count);
+        }
+        return longData;
+      case FLOAT:
+        float[] floatData = new float[rowCount];
+        for (int row = 0; row < rowCount; row += COLUMNAR_BLOCK / 4) {
+          int count = Math.min(rowCount - row, COLUMNAR_BLOCK / 4);
+          input.readFully(block.array(), 0, count * 4);
+          block.clear();
+          block.asFloatBuffer().get(floatData, row, count);
+        }
+        return floatData;
+      case DOUBLE:
+        double[] doubleData = new double[rowCount];
+        for (int row = 0; row < rowCount; row += COLUMNAR_BLOCK / 8) {
+          int count = Math.min(rowCount - row, COLUMNAR_BLOCK / 8);
+          input.readFully(block.array(), 0, count * 8);
+          block.clear();
+          block.asDoubleBuffer().get(doubleData, row, count);
+        }
+        return doubleData;
+      default:  // STRING
+        long[] offsets = new long[rowCount + 1];
+        for (int row = 0; row <= rowCount; row++) {
+          offsets[row] = input.readLong();
+        }
+        String[] stringData = new String[rowCount];
+        byte[] bytes = new byte[64];
+        for (int row = 0; row < rowCount; row++) {
+          long start = offsets[row] < 0 ? ~offsets[row] : offsets[row];
+          long stop = offsets[row+1] < 0 ? ~offsets[row+1] : offsets[row+1];
+          int length = (int) (stop - start);
+          if (length > bytes.length) {
+            bytes = new byte[length];
+          }
+          input.readFully(bytes, 0, length);
+          if (offsets[row] >= 0) {
+            stringData[row] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+          }
+        }
+        return stringData;
+    }
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -1868,6 +2301,14 @@ public class Table {
     }
     columnCategories = catTemp;
 
+    if (indexes != null) {
+      for (TableIndex tableIndex : indexes) {
+        if (tableIndex.column >= index) {
+          tableIndex.column++;
+        }
+      }
+    }
+
     Object[] temp = new Object[columns.length + 1];
     System.arraycopy(columns, 0, temp, 0, index);
     System.arraycopy(columns, index, temp, index+1, columns.length - index);
@@ -1904,6 +2345,14 @@ public class Table {
    */
   public void removeColumn(int column) {
     int newCount = columns.length - 1;
+    removeIndex(column);
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        if (index.column > column) {
+          index.column--;
+        }
+      }
+    }
 
     Object[] columnsTemp = new Object[newCount];
     HashMapBlows[] catTemp = new HashMapBlows[newCount];
@@ -1954,6 +2403,9 @@ public class Table {
    */
   public void setColumnCount(int newCount) {
     int oldCount = columns.length;
+    for (int c = newCount; c < oldCount; c++) {
+      removeIndex(c);
+    }
     if (oldCount != newCount) {
       columns = (Object[]) PApplet.expand(columns, newCount);
       // create new columns, default to String as the data type
@@ -2092,6 +2544,7 @@ public class Table {
     }
 //    System.out.println("new type is " + newType);
     columnTypes[column] = newType;
+    indexReset(column);
   }
 
 
@@ -2159,6 +2612,45 @@ public class Table {
   }
 
 
+  /**
+   * Make a column use the same categories as a CATEGORY column from another
+   * Table (converting it to CATEGORY first if necessary). The category codes
+   * returned by getInt() then mean the same thing in both tables, so they
+   * can be compared directly, and each category name is only kept in memory
+   * once, no matter how many tables use it. A category added to either table
+   * is added for both, so avoid adding rows to tables that share categories
+   * from separate threads at the same time.
+   */
+  public void shareColumnCategories(int column, Table source, int sourceColumn) {
+    if (source.getColumnType(sourceColumn) != CATEGORY) {
+      throw new IllegalArgumentException("Column " + sourceColumn + " is not a CATEGORY column.");
+    }
+    HashMapBlows shared = source.columnCategories[sourceColumn];
+    if (columnTypes[column] != CATEGORY) {
+      setColumnType(column, CATEGORY);
+    }
+    if (columnCategories[column] != shared) {
+      int[] remap = columnCategories[column].remap(shared);
+      int[] indexData = (int[]) columnData(column);
+      for (int row = 0; row < rowCount; row++) {
+        int code = indexData[row];
+        if (code >= 0 && code < remap.length) {
+          indexData[row] = remap[code];
+        }
+      }
+      columnCategories[column] = shared;
+      indexReset(column);
+    }
+  }
+
+
+  public void shareColumnCategories(String columnName, Table source,
+                                    String sourceColumnName) {
+    shareColumnCategories(checkColumnIndex(columnName), source,
+                          source.checkColumnIndex(sourceColumnName));
+  }
+
+
   public int getColumnType(String columnName) {
     return getColumnType(getColumnIndex(columnName));
   }
@@ -2323,19 +2815,12 @@ public class Table {
       long t = System.currentTimeMillis();
       for (int col = 0; col < columns.length; col++) {
         switch (columnTypes[col]) {
-          case INT: columns[col] = PApplet.expand((int[]) columns[col], newCount); break;
-          case LONG: columns[col] = PApplet.expand((long[]) columns[col], newCount); break;
-          case FLOAT: columns[col] = PApplet.expand((float[]) columns[col], newCount); break;
-          case DOUBLE: columns[col] = PApplet.expand((double[]) columns[col], newCount); break;
-          case STRING: columns[col] = PApplet.expand((String[]) columns[col], newCount); break;
-          case CATEGORY: columns[col] = PApplet.expand((int[]) columns[col], newCount); break;
-        }
-        if (newCount > 1000000) {
-          try {
-            Thread.sleep(10);  // gc time!
-          } catch (InterruptedException e) {
-            e.printStackTrace();
-          }
+          case INT: columns[col] = PApplet.expand((int[]) columnData(col), newCount); break;
+          case LONG: columns[col] = PApplet.expand((long[]) columnData(col), newCount); break;
+          case FLOAT: columns[col] = PApplet.expand((float[]) columnData(col), newCount); break;
+          case DOUBLE: columns[col] = PApplet.expand((double[]) columnData(col), newCount); break;
+          case STRING: columns[col] = PApplet.expand((String[]) columnData(col), newCount); break;
+          case CATEGORY: columns[col] = PApplet.expand((int[]) columnData(col), newCount); break;
         }
       }
       if (newCount > 1000000) {
@@ -2344,6 +2829,11 @@ public class Table {
       }
     }
     rowCount = newCount;
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        index.resize(newCount);
+      }
+    }
   }
 
 
@@ -2436,36 +2926,36 @@ public class Table {
         case CATEGORY:
         case INT: {
           int[] intTemp = new int[rowCount+1];
-          System.arraycopy(columns[col], 0, intTemp, 0, insert);
-          System.arraycopy(columns[col], insert, intTemp, insert+1, rowCount - insert);
+          System.arraycopy(columnData(col), 0, intTemp, 0, insert);
+          System.arraycopy(columnData(col), insert, intTemp, insert+1, rowCount - insert);
           columns[col] = intTemp;
           break;
         }
         case LONG: {
           long[] longTemp = new long[rowCount+1];
-          System.arraycopy(columns[col], 0, longTemp, 0, insert);
-          System.arraycopy(columns[col], insert, longTemp, insert+1, rowCount - insert);
+          System.arraycopy(columnData(col), 0, longTemp, 0, insert);
+          System.arraycopy(columnData(col), insert, longTemp, insert+1, rowCount - insert);
           columns[col] = longTemp;
           break;
         }
         case FLOAT: {
           float[] floatTemp = new float[rowCount+1];
-          System.arraycopy(columns[col], 0, floatTemp, 0, insert);
-          System.arraycopy(columns[col], insert, floatTemp, insert+1, rowCount - insert);
+          System.arraycopy(columnData(col), 0, floatTemp, 0, insert);
+          System.arraycopy(columnData(col), insert, floatTemp, insert+1, rowCount - insert);
           columns[col] = floatTemp;
           break;
         }
         case DOUBLE: {
           double[] doubleTemp = new double[rowCount+1];
-          System.arraycopy(columns[col], 0, doubleTemp, 0, insert);
-          System.arraycopy(columns[col], insert, doubleTemp, insert+1, rowCount - insert);
+          System.arraycopy(columnData(col), 0, doubleTemp, 0, insert);
+          System.arraycopy(columnData(col), insert, doubleTemp, insert+1, rowCount - insert);
           columns[col] = doubleTemp;
           break;
         }
         case STRING: {
           String[] stringTemp = new String[rowCount+1];
-          System.arraycopy(columns[col], 0, stringTemp, 0, insert);
-          System.arraycopy(columns[col], insert, stringTemp, insert+1, rowCount - insert);
+          System.arraycopy(columnData(col), 0, stringTemp, 0, insert);
+          System.arraycopy(columnData(col), insert, stringTemp, insert+1, rowCount - insert);
           columns[col] = stringTemp;
           break;
         }
@@ -2474,6 +2964,7 @@ public class Table {
     // Need to increment before setRow(), because it calls ensureBounds()
     // https://github.com/processing/processing/issues/5406
     ++rowCount;
+    indexReset(-1);
     setRow(insert, columnData);
   }
 
@@ -2493,53 +2984,54 @@ public class Table {
         case CATEGORY:
         case INT: {
           int[] intTemp = new int[rowCount-1];
-//          int[] intData = (int[]) columns[col];
+//          int[] intData = (int[]) columnData(col);
 //          System.arraycopy(intData, 0, intTemp, 0, dead);
 //          System.arraycopy(intData, dead+1, intTemp, dead, (rowCount - dead) + 1);
-          System.arraycopy(columns[col], 0, intTemp, 0, row);
-          System.arraycopy(columns[col], row+1, intTemp, row, (rowCount - row) - 1);
+          System.arraycopy(columnData(col), 0, intTemp, 0, row);
+          System.arraycopy(columnData(col), row+1, intTemp, row, (rowCount - row) - 1);
           columns[col] = intTemp;
           break;
         }
         case LONG: {
           long[] longTemp = new long[rowCount-1];
-//          long[] longData = (long[]) columns[col];
+//          long[] longData = (long[]) columnData(col);
 //          System.arraycopy(longData, 0, longTemp, 0, dead);
 //          System.arraycopy(longData, dead+1, longTemp, dead, (rowCount - dead) + 1);
-          System.arraycopy(columns[col], 0, longTemp, 0, row);
-          System.arraycopy(columns[col], row+1, longTemp, row, (rowCount - row) - 1);
+          System.arraycopy(columnData(col), 0, longTemp, 0, row);
+          System.arraycopy(columnData(col), row+1, longTemp, row, (rowCount - row) - 1);
           columns[col] = longTemp;
           break;
         }
         case FLOAT: {
           float[] floatTemp = new float[rowCount-1];
-//          float[] floatData = (float[]) columns[col];
+//          float[] floatData = (float[]) columnData(col);
 //          System.arraycopy(floatData, 0, floatTemp, 0, dead);
 //          System.arraycopy(floatData, dead+1, floatTemp, dead, (rowCount - dead) + 1);
-          System.arraycopy(columns[col], 0, floatTemp, 0, row);
-          System.arraycopy(columns[col], row+1, floatTemp, row, (rowCount - row) - 1);
+          System.arraycopy(columnData(col), 0, floatTemp, 0, row);
+          System.arraycopy(columnData(col), row+1, floatTemp, row, (rowCount - row) - 1);
           columns[col] = floatTemp;
           break;
         }
         case DOUBLE: {
           double[] doubleTemp = new double[rowCount-1];
-//          double[] doubleData = (double[]) columns[col];
+//          double[] doubleData = (double[]) columnData(col);
 //          System.arraycopy(doubleData, 0, doubleTemp, 0, dead);
 //          System.arraycopy(doubleData, dead+1, doubleTemp, dead, (rowCount - dead) + 1);
-          System.arraycopy(columns[col], 0, doubleTemp, 0, row);
-          System.arraycopy(columns[col], row+1, doubleTemp, row, (rowCount - row) - 1);
+          System.arraycopy(columnData(col), 0, doubleTemp, 0, row);
+          System.arraycopy(columnData(col), row+1, doubleTemp, row, (rowCount - row) - 1);
           columns[col] = doubleTemp;
           break;
         }
         case STRING: {
           String[] stringTemp = new String[rowCount-1];
-          System.arraycopy(columns[col], 0, stringTemp, 0, row);
-          System.arraycopy(columns[col], row+1, stringTemp, row, (rowCount - row) - 1);
+          System.arraycopy(columnData(col), 0, stringTemp, 0, row);
+          System.arraycopy(columnData(col), row+1, stringTemp, row, (rowCount - row) - 1);
           columns[col] = stringTemp;
         }
       }
     }
     rowCount--;
+    indexReset(-1);
   }
 
 
@@ -2556,15 +3048,15 @@ public class Table {
   protected void setRowCol(int row, int col, String piece) {
     switch (columnTypes[col]) {
     case STRING:
-      String[] stringData = (String[]) columns[col];
+      String[] stringData = (String[]) columnData(col);
       stringData[row] = piece;
       break;
     case INT:
-      int[] intData = (int[]) columns[col];
+      int[] intData = (int[]) columnData(col);
       intData[row] = PApplet.parseInt(piece, missingInt);
       break;
     case LONG:
-      long[] longData = (long[]) columns[col];
+      long[] longData = (long[]) columnData(col);
       try {
         longData[row] = Long.parseLong(piece);
       } catch (NumberFormatException nfe) {
@@ -2572,11 +3064,11 @@ public class Table {
       }
       break;
     case FLOAT:
-      float[] floatData = (float[]) columns[col];
+      float[] floatData = (float[]) columnData(col);
       floatData[row] = PApplet.parseFloat(piece, missingFloat);
       break;
     case DOUBLE:
-      double[] doubleData = (double[]) columns[col];
+      double[] doubleData = (double[]) columnData(col);
       try {
         doubleData[row] = Double.parseDouble(piece);
       } catch (NumberFormatException nfe) {
@@ -2584,7 +3076,7 @@ public class Table {
       }
       break;
     case CATEGORY:
-      int[] indexData = (int[]) columns[col];
+      int[] indexData = (int[]) columnData(col);
       indexData[row] = columnCategories[col].index(piece);
       break;
     default:
@@ -2606,7 +3098,7 @@ public class Table {
   protected void setRowCol(int row, int col, Object piece) {
     switch (columnTypes[col]) {
       case STRING:
-        String[] stringData = (String[]) columns[col];
+        String[] stringData = (String[]) columnData(col);
         if (piece == null) {
           stringData[row] = null;
 //        } else if (piece instanceof String) {
@@ -2617,7 +3109,7 @@ public class Table {
         }
         break;
       case INT:
-        int[] intData = (int[]) columns[col];
+        int[] intData = (int[]) columnData(col);
         //intData[row] = PApplet.parseInt(piece, missingInt);
         if (piece == null) {
           intData[row] = missingInt;
@@ -2628,7 +3120,7 @@ public class Table {
         }
         break;
       case LONG:
-        long[] longData = (long[]) columns[col];
+        long[] longData = (long[]) columnData(col);
         if (piece == null) {
           longData[row] = missingLong;
         } else if (piece instanceof Long) {
@@ -2642,7 +3134,7 @@ public class Table {
         }
         break;
       case FLOAT:
-        float[] floatData = (float[]) columns[col];
+        float[] floatData = (float[]) columnData(col);
         if (piece == null) {
           floatData[row] = missingFloat;
         } else if (piece instanceof Float) {
@@ -2652,7 +3144,7 @@ public class Table {
         }
         break;
       case DOUBLE:
-        double[] doubleData = (double[]) columns[col];
+        double[] doubleData = (double[]) columnData(col);
         if (piece == null) {
           doubleData[row] = missingDouble;
         } else if (piece instanceof Double) {
@@ -2666,7 +3158,7 @@ public class Table {
         }
         break;
       case CATEGORY:
-        int[] indexData = (int[]) columns[col];
+        int[] indexData = (int[]) columnData(col);
         if (piece == null) {
           indexData[row] = missingCategory;
         } else {
@@ -2681,6 +3173,45 @@ public class Table {
       default:
         throw new IllegalArgumentException("That's not a valid column type.");
     }
+    indexUpdate(row, col);
+  }
+
+
+  /**
+   * Set a row from the current record of a tokenizer. Numeric columns are
+   * parsed straight out of its char buffer, so only STRING and CATEGORY
+   * columns need to create String objects.
+   */
+  void setRow(int row, TableTokenizer tokens) {
+    int count = tokens.fieldCount;
+    ensureBounds(row, count - 1);
+    for (int col = 0; col < count; col++) {
+      switch (columnTypes[col]) {
+        case STRING:
+          ((String[]) columnData(col))[row] = tokens.getString(col);
+          break;
+        case INT:
+          ((int[]) columnData(col))[row] = tokens.getInt(col, missingInt);
+          break;
+        case LONG:
+          ((long[]) columnData(col))[row] = tokens.getLong(col, missingLong);
+          break;
+        case FLOAT:
+          ((float[]) columnData(col))[row] = tokens.getFloat(col, missingFloat);
+          break;
+        case DOUBLE:
+          ((double[]) columnData(col))[row] = tokens.getDouble(col, missingDouble);
+          break;
+        case CATEGORY:
+          String piece = tokens.getString(col);
+          ((int[]) columnData(col))[row] = piece.equals(missingString) ?
+            missingCategory : columnCategories[col].index(piece);
+          break;
+        default:
+          throw new IllegalArgumentException("That's not a valid column type.");
+      }
+      indexUpdate(row, col);
+    }
   }
 
 
@@ -3115,7 +3646,7 @@ public class Table {
     checkBounds(row, column);
     if (columnTypes[column] == INT ||
         columnTypes[column] == CATEGORY) {
-      int[] intData = (int[]) columns[column];
+      int[] intData = (int[]) columnData(column);
       return intData[row];
     }
     String str = getString(row, column);
@@ -3163,8 +3694,9 @@ public class Table {
           columnTypes[column] != CATEGORY) {
         throw new IllegalArgumentException("Column " + column + " is not an int column.");
       }
-      int[] intData = (int[]) columns[column];
+      int[] intData = (int[]) columnData(column);
       intData[row] = value;
+      indexUpdate(row, column);
     }
   }
 
@@ -3207,7 +3739,7 @@ public class Table {
   public long getLong(int row, int column) {
     checkBounds(row, column);
     if (columnTypes[column] == LONG) {
-      long[] longData = (long[]) columns[column];
+      long[] longData = (long[]) columnData(column);
       return longData[row];
     }
     String str = getString(row, column);
@@ -3241,8 +3773,9 @@ public class Table {
       if (columnTypes[column] != LONG) {
         throw new IllegalArgumentException("Column " + column + " is not a 'long' column.");
       }
-      long[] longData = (long[]) columns[column];
+      long[] longData = (long[]) columnData(column);
       longData[row] = value;
+      indexUpdate(row, column);
     }
   }
 
@@ -3298,7 +3831,7 @@ public class Table {
   public float getFloat(int row, int column) {
     checkBounds(row, column);
     if (columnTypes[column] == FLOAT) {
-      float[] floatData = (float[]) columns[column];
+      float[] floatData = (float[]) columnData(column);
       return floatData[row];
     }
     String str = getString(row, column);
@@ -3347,8 +3880,9 @@ public class Table {
       if (columnTypes[column] != FLOAT) {
         throw new IllegalArgumentException("Column " + column + " is not a float column.");
       }
-      float[] longData = (float[]) columns[column];
+      float[] longData = (float[]) columnData(column);
       longData[row] = value;
+      indexUpdate(row, column);
     }
   }
 
@@ -3390,7 +3924,7 @@ public class Table {
   public double getDouble(int row, int column) {
     checkBounds(row, column);
     if (columnTypes[column] == DOUBLE) {
-      double[] doubleData = (double[]) columns[column];
+      double[] doubleData = (double[]) columnData(column);
       return doubleData[row];
     }
     String str = getString(row, column);
@@ -3424,8 +3958,9 @@ public class Table {
       if (columnTypes[column] != DOUBLE) {
         throw new IllegalArgumentException("Column " + column + " is not a 'double' column.");
       }
-      double[] doubleData = (double[]) columns[column];
+      double[] doubleData = (double[]) columnData(column);
       doubleData[row] = value;
+      indexUpdate(row, column);
     }
   }
 
@@ -3537,7 +4072,7 @@ public class Table {
   public String getString(int row, int column) {
     checkBounds(row, column);
     if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
+      String[] stringData = (String[]) columnData(column);
       return stringData[row];
     } else if (columnTypes[column] == CATEGORY) {
       int cat = getInt(row, column);
@@ -3550,11 +4085,11 @@ public class Table {
         return null;
       }
     } else if (columnTypes[column] == DOUBLE) {
-      if (Double.isNaN(getFloat(row, column))) {
+      if (Double.isNaN(getDouble(row, column))) {
         return null;
       }
     }
-    return String.valueOf(Array.get(columns[column], row));
+    return String.valueOf(Array.get(columnData(column), row));
   }
 
 
@@ -3596,8 +4131,9 @@ public class Table {
     if (columnTypes[column] != STRING) {
       throw new IllegalArgumentException("Column " + column + " is not a String column.");
     }
-    String[] stringData = (String[]) columns[column];
+    String[] stringData = (String[]) columnData(column);
     stringData[row] = value;
+    indexUpdate(row, column);
   }
 
   /**
@@ -3652,6 +4188,108 @@ public class Table {
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
+  /**
+   * Add an index to a column so that findRow(), findRowIndex() and the
+   * other find methods can look up values without searching every row,
+   * and so that findRowIndicesInRange() can be used on numeric columns.
+   * The index is kept up to date as the table is modified, at the cost of
+   * some extra work (and memory) for each change.
+   *
+   * @param columnName title of the column to index
+   * @see Table#removeIndex(String)
+   */
+  public void createIndex(String columnName) {
+    createIndex(checkColumnIndex(columnName));
+  }
+
+
+  /**
+   * @param column ID number of the column to index
+   */
+  public void createIndex(int column) {
+    checkColumn(column);
+    if (getIndex(column) == null) {
+      TableIndex index = new TableIndex(this, column);
+      if (indexes == null) {
+        indexes = new TableIndex[] { index };
+      } else {
+        indexes = (TableIndex[]) PApplet.append(indexes, index);
+      }
+    }
+  }
+
+
+  public void removeIndex(String columnName) {
+    removeIndex(getColumnIndex(columnName));
+  }
+
+
+  public void removeIndex(int column) {
+    if (indexes != null) {
+      for (int i = 0; i < indexes.length; i++) {
+        if (indexes[i].column == column) {
+          if (indexes.length == 1) {
+            indexes = null;
+          } else {
+            TableIndex[] temp = new TableIndex[indexes.length - 1];
+            System.arraycopy(indexes, 0, temp, 0, i);
+            System.arraycopy(indexes, i+1, temp, i, temp.length - i);
+            indexes = temp;
+          }
+          return;
+        }
+      }
+    }
+  }
+
+
+  public boolean hasIndex(int column) {
+    return getIndex(column) != null;
+  }
+
+
+  protected TableIndex getIndex(int column) {
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        if (index.column == column) {
+          return index;
+        }
+      }
+    }
+    return null;
+  }
+
+
+  /** Keep any index on this column current after one entry has changed. */
+  protected void indexUpdate(int row, int column) {
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        if (index.column == column) {
+          index.update(row);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Mark the index on a column (or all indexes, if column is -1) to be
+   * rebuilt the next time it's used, after changes too big to track.
+   */
+  protected void indexReset(int column) {
+    if (indexes != null) {
+      for (TableIndex index : indexes) {
+        if (column == -1 || index.column == column) {
+          index.stale = true;
+        }
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
   /**
    * Return the row that contains the first String that matches.
    * @param value the String to match
@@ -3659,8 +4297,17 @@ public class Table {
    */
   public int findRowIndex(String value, int column) {
     checkColumn(column);
+    if (indexes != null) {
+      TableIndex index = getIndex(column);
+      if (index != null) {
+        int row = index.findRowIndex(value);
+        if (row != -2) {
+          return row;
+        }
+      }
+    }
     if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
+      String[] stringData = (String[]) columnData(column);
       if (value == null) {
         for (int row = 0; row < rowCount; row++) {
           if (stringData[row] == null) return row;
@@ -3705,12 +4352,21 @@ public class Table {
    * @param column ID number of the column to search
    */
   public int[] findRowIndices(String value, int column) {
+    checkColumn(column);
+    if (indexes != null) {
+      TableIndex index = getIndex(column);
+      if (index != null) {
+        int[] rows = index.findRowIndices(value);
+        if (rows != null) {
+          return rows;
+        }
+      }
+    }
+
     int[] outgoing = new int[rowCount];
     int count = 0;
-
-    checkColumn(column);
     if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
+      String[] stringData = (String[]) columnData(column);
       if (value == null) {
         for (int row = 0; row < rowCount; row++) {
           if (stringData[row] == null) {
@@ -3751,6 +4407,77 @@ public class Table {
   }
 
 
+  /**
+   * Return the rows whose values in a numeric (INT, LONG, FLOAT or DOUBLE)
+   * column are between min and max, inclusive. Uses the index on the column
+   * if there is one, otherwise every row is checked.
+   * @param min lowest value to include
+   * @param max highest value to include
+   * @param column ID number of the column to search
+   */
+  public int[] findRowIndicesInRange(double min, double max, int column) {
+    checkColumn(column);
+    int type = columnTypes[column];
+    if (type != INT && type != LONG && type != FLOAT && type != DOUBLE) {
+      throw new IllegalArgumentException("Column " + column + " is not a numeric column.");
+    }
+    if (indexes != null) {
+      TableIndex index = getIndex(column);
+      if (index != null) {
+        return index.findRowIndicesInRange(min, max);
+      }
+    }
+
+    int[] outgoing = new int[rowCount];
+    int count = 0;
+    for (int row = 0; row < rowCount; row++) {
+      double value;
+      switch (type) {
+        case INT: value = getInt(row, column); break;
+        case LONG: value = getLong(row, column); break;
+        case FLOAT: value = getFloat(row, column); break;
+        default: value = getDouble(row, column); break;
+      }
+      if (value >= min && value <= max) {
+        outgoing[count++] = row;
+      }
+    }
+    return PApplet.subset(outgoing, 0, count);
+  }
+
+
+  /**
+   * @param columnName title of the column to search
+   */
+  public int[] findRowIndicesInRange(double min, double max, String columnName) {
+    return findRowIndicesInRange(min, max, checkColumnIndex(columnName));
+  }
+
+
+  /**
+   * Finds the rows with values in a numeric column from min to max.
+   * @param min lowest value to include
+   * @param max highest value to include
+   * @param column ID number of the column to search
+   */
+  public Iterable<TableRow> findRowsInRange(final double min, final double max,
+                                            final int column) {
+    return new Iterable<>() {
+      public Iterator<TableRow> iterator() {
+        return new RowIndexIterator(Table.this, findRowIndicesInRange(min, max, column));
+      }
+    };
+  }
+
+
+  /**
+   * @param columnName title of the column to search
+   */
+  public Iterable<TableRow> findRowsInRange(double min, double max, String columnName) {
+    return findRowsInRange(min, max, checkColumnIndex(columnName));
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
   /**
@@ -3845,7 +4572,7 @@ public class Table {
   public int matchRowIndex(String regexp, int column) {
     checkColumn(column);
     if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
+      String[] stringData = (String[]) columnData(column);
       for (int row = 0; row < rowCount; row++) {
         if (stringData[row] != null &&
             PApplet.match(stringData[row], regexp) != null) {
@@ -3887,7 +4614,7 @@ public class Table {
 
     checkColumn(column);
     if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
+      String[] stringData = (String[]) columnData(column);
       for (int row = 0; row < rowCount; row++) {
         if (stringData[row] != null &&
             PApplet.match(stringData[row], regexp) != null) {
@@ -4023,7 +4750,7 @@ public class Table {
 
   public void replace(String orig, String replacement, int col) {
     if (columnTypes[col] == STRING) {
-      String[] stringData = (String[]) columns[col];
+      String[] stringData = (String[]) columnData(col);
 
       if (orig != null) {
         for (int row = 0; row < rowCount; row++) {
@@ -4038,6 +4765,7 @@ public class Table {
           }
         }
       }
+      indexReset(col);
     }
   }
 
@@ -4060,12 +4788,13 @@ public class Table {
   public void replaceAll(String regex, String replacement, int column) {
     checkColumn(column);
     if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
+      String[] stringData = (String[]) columnData(column);
       for (int row = 0; row < rowCount; row++) {
         if (stringData[row] != null) {
           stringData[row] = stringData[row].replaceAll(regex, replacement);
         }
       }
+      indexReset(column);
     } else {
       throw new IllegalArgumentException("replaceAll() can only be used on String columns");
     }
@@ -4227,12 +4956,13 @@ public class Table {
    */
   public void trim(int column) {
     if (columnTypes[column] == STRING) {
-      String[] stringData = (String[]) columns[column];
+      String[] stringData = (String[]) columnData(column);
       for (int row = 0; row < rowCount; row++) {
         if (stringData[row] != null) {
           stringData[row] = PApplet.trim(stringData[row]);
         }
       }
+      indexReset(column);
     }
   }
 
@@ -4247,6 +4977,16 @@ public class Table {
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
+  /**
+   * Returns the array holding the data for a column. Everything that reads
+   * column data goes through here so that subclasses that don't keep every
+   * column on the heap (i.e. MappedTable) can load it on first use.
+   */
+  protected Object columnData(int column) {
+    return columns[column];
+  }
+
+
   /** Make sure this is a legit column, and if not, expand the table. */
   protected void ensureColumn(int col) {
     if (col >= columns.length) {
@@ -4296,59 +5036,238 @@ public class Table {
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
+  /**
+   * Dictionary for a CATEGORY column, which maps each category name to an
+   * int code (its position in the keys array) and back again. Codes are
+   * stored in an open-addressing hash table of plain ints, next to the hash
+   * of their name so that most mismatches don't have to look at the String.
+   * Nothing is boxed, and each category costs a String reference plus 16 to
+   * 32 bytes of table, rather than a HashMap entry, an Integer, and a list
+   * element. The name is historical.
+   */
   static class HashMapBlows {
-    HashMap<String,Integer> dataToIndex = new HashMap<>();
-    ArrayList<String> indexToData = new ArrayList<>();
+    /** Category names, indexed by code. */
+    String[] keys;
+    /** Number of codes in use (including unset ones from setCategory). */
+    int count;
+    /**
+     * Pairs of (hash, code + 1) for each slot, with a code of 0 for an empty
+     * slot. The number of slots is a power of 2, at least twice the number
+     * that are used.
+     */
+    int[] slots;
+    int used;
+    /** Code used for a null category, since it can't be hashed. */
+    int nullCode = -1;
 
-    HashMapBlows() { }
+    HashMapBlows() {
+      this(16);
+    }
+
+    HashMapBlows(int capacity) {
+      keys = new String[Math.max(capacity, 16)];
+      slots = new int[slotsFor(keys.length)];
+    }
 
     HashMapBlows(DataInputStream input) throws IOException {
+      this(16);
       read(input);
     }
 
+    HashMapBlows(HashMapBlows original) {
+      keys = original.keys.clone();
+      count = original.count;
+      slots = original.slots.clone();
+      used = original.used;
+      nullCode = original.nullCode;
+    }
+
     /** gets the index, and creates one if it doesn't already exist. */
     int index(String key) {
-      Integer value = dataToIndex.get(key);
-      if (value != null) {
-        return value;
+      if (key == null) {
+        if (nullCode == -1) {
+          nullCode = append(null);
+        }
+        return nullCode;
       }
+      int hash = hash(key);
+      int slot = findSlot(key, hash);
+      int code = slots[slot + 1];
+      if (code != 0) {
+        return code - 1;
+      }
+      code = append(key);
+      insert(slot, hash, code);
+      return code;
+    }
 
-      int v = dataToIndex.size();
-      dataToIndex.put(key, v);
-      indexToData.add(key);
-      return v;
+    /** gets the index, or -1 if there isn't one (without creating it). */
+    int find(String key) {
+      if (key == null) {
+        return nullCode;
+      }
+      return slots[findSlot(key, hash(key)) + 1] - 1;
     }
 
     String key(int index) {
-      return indexToData.get(index);
+      if (index >= count) {
+        throw new IndexOutOfBoundsException("No category with index " + index);
+      }
+      return keys[index];
     }
 
     boolean hasCategory(int index) {
-      return index < size() && indexToData.get(index) != null;
+      return index < count && keys[index] != null;
     }
 
     void setCategory(int index, String name) {
-      while (indexToData.size() <= index) {
-        indexToData.add(null);
+      if (index >= keys.length) {
+        keys = PApplet.expand(keys, Math.max(index + 1, keys.length << 1));
+      }
+      if (index < count) {
+        // take out the old name, so it no longer leads to this code
+        String old = keys[index];
+        if (old != null) {
+          if (find(old) == index) {
+            remove(old);
+          }
+        } else if (nullCode == index) {
+          nullCode = -1;
+        }
+      }
+      count = Math.max(count, index + 1);
+      keys[index] = name;
+      if (name == null) {
+        nullCode = index;
+      } else {
+        int hash = hash(name);
+        int slot = findSlot(name, hash);
+        if (slots[slot + 1] != 0) {
+          slots[slot + 1] = index + 1;
+        } else {
+          insert(slot, hash, index);
+        }
       }
-      indexToData.set(index, name);
-      dataToIndex.put(name, index);
     }
 
     int size() {
-      return dataToIndex.size();
+      return count;
+    }
+
+    /** The code in another dictionary for each code in this one. */
+    int[] remap(HashMapBlows target) {
+      int[] outgoing = new int[count];
+      for (int i = 0; i < count; i++) {
+        outgoing[i] = target.index(keys[i]);
+      }
+      return outgoing;
+    }
+
+    /** Length of the slots array for this many categories. */
+    static private int slotsFor(int capacity) {
+      return Integer.highestOneBit(capacity * 2 - 1) << 2;
+    }
+
+    /** Spread the bits of String.hashCode(), which are poor in the low bits. */
+    static private int hash(String key) {
+      int h = key.hashCode() * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+    /** Slot holding this key, or the empty slot where it would go. */
+    private int findSlot(String key, int hash) {
+      int mask = slots.length - 2;
+      int slot = (hash << 1) & mask;
+      int code;
+      while ((code = slots[slot + 1]) != 0) {
+        if (slots[slot] == hash && key.equals(keys[code - 1])) {
+          break;
+        }
+        slot = (slot + 2) & mask;
+      }
+      return slot;
+    }
+
+    private int append(String key) {
+      if (count == keys.length) {
+        keys = PApplet.expand(keys);
+      }
+      keys[count] = key;
+      return count++;
+    }
+
+    private void insert(int slot, int hash, int code) {
+      slots[slot] = hash;
+      slots[slot + 1] = code + 1;
+      if (++used * 4 > slots.length) {
+        rehash(slots.length << 1);
+      }
+    }
+
+    /**
+     * Take a key out of the slots. Later entries in the same run are moved
+     * back to fill the gap, so that no lookup stops short of them.
+     */
+    private void remove(String key) {
+      int mask = slots.length - 2;
+      int slot = findSlot(key, hash(key));
+      if (slots[slot + 1] == 0) {
+        return;
+      }
+      used--;
+      int next = slot;
+      while (true) {
+        slots[slot + 1] = 0;
+        while (true) {
+          next = (next + 2) & mask;
+          if (slots[next + 1] == 0) {
+            return;
+          }
+          // an entry can move back to the gap unless its own first
+          // slot comes after the gap (going around the end if needed)
+          int home = (slots[next] << 1) & mask;
+          boolean after = (slot <= next) ?
+            (home > slot && home <= next) : (home > slot || home <= next);
+          if (!after) {
+            break;
+          }
+        }
+        slots[slot] = slots[next];
+        slots[slot + 1] = slots[next + 1];
+        slot = next;
+      }
+    }
+
+    private void rehash(int length) {
+      int[] old = slots;
+      slots = new int[length];
+      used = 0;
+      int mask = length - 2;
+      for (int i = 1; i < old.length; i += 2) {
+        int code = old[i];
+        if (code != 0) {
+          int hash = hash(keys[code - 1]);
+          int slot = (hash << 1) & mask;
+          while (slots[slot + 1] != 0) {
+            slot = (slot + 2) & mask;
+          }
+          slots[slot] = hash;
+          slots[slot + 1] = code;
+          used++;
+        }
+      }
     }
 
     void write(DataOutputStream output) throws IOException {
       output.writeInt(size());
-      for (String str : indexToData) {
-        output.writeUTF(str);
+      for (int i = 0; i < count; i++) {
+        output.writeUTF(keys[i]);
       }
     }
 
     private void writeln(PrintWriter writer) throws IOException {
-      for (String str : indexToData) {
-        writer.println(str);
+      for (int i = 0; i < count; i++) {
+        writer.println(keys[i]);
       }
       writer.flush();
       writer.close();
@@ -4357,12 +5276,14 @@ public class Table {
     void read(DataInputStream input) throws IOException {
       int count = input.readInt();
       //System.out.println("found " + count + " entries in category map");
-      dataToIndex = new HashMap<>(count);
+      if (count > keys.length) {
+        keys = new String[count];
+        slots = new int[slotsFor(count)];
+      }
       for (int i = 0; i < count; i++) {
         String str = input.readUTF();
         //System.out.println(i + " " + str);
-        dataToIndex.put(str, i);
-        indexToData.add(str);
+        setCategory(i, str);
       }
     }
   }
@@ -4412,6 +5333,24 @@ public class Table {
   }
 
 
+  /**
+   * Sort on several columns: rows are ordered by the first column, rows
+   * with the same value in the first column by the second, and so on.
+   * The sort is stable, so rows that are the same in every sort column
+   * keep the order they were already in.
+   *
+   * @param columnNames the names of the columns to sort on, in order
+   */
+  public void sort(String... columnNames) {
+    sort(getColumnIndices(columnNames), false);
+  }
+
+
+  public void sort(int... columns) {
+    sort(columns, false);
+  }
+
+
   public void sortReverse(String columnName) {
     sort(getColumnIndex(columnName), true);
   }
@@ -4422,65 +5361,49 @@ public class Table {
   }
 
 
-  protected void sort(final int column, final boolean reverse) {
-    final int[] order = IntList.fromRange(getRowCount()).array();
-    Sort s = new Sort() {
+  public void sortReverse(String... columnNames) {
+    sort(getColumnIndices(columnNames), true);
+  }
 
-      @Override
-      public int size() {
-        return getRowCount();
-      }
 
-      @Override
-      public int compare(int index1, int index2) {
-        int a = reverse ? order[index2] : order[index1];
-        int b = reverse ? order[index1] : order[index2];
+  public void sortReverse(int... columns) {
+    sort(columns, true);
+  }
 
-        switch (getColumnType(column)) {
-        case INT:
-          return getInt(a, column) - getInt(b, column);
-        case LONG:
-          long diffl = getLong(a, column) - getLong(b, column);
-          return diffl == 0 ? 0 : (diffl < 0 ? -1 : 1);
-        case FLOAT:
-          float difff = getFloat(a, column) - getFloat(b, column);
-          return difff == 0 ? 0 : (difff < 0 ? -1 : 1);
-        case DOUBLE:
-          double diffd = getDouble(a, column) - getDouble(b, column);
-          return diffd == 0 ? 0 : (diffd < 0 ? -1 : 1);
-        case STRING:
-          String string1 = getString(a, column);
-          if (string1 == null) {
-            string1 = "";  // avoid NPE when cells are left empty
-          }
-          String string2 = getString(b, column);
-          if (string2 == null) {
-            string2 = "";
-          }
-          return string1.compareToIgnoreCase(string2);
-        case CATEGORY:
-          return getInt(a, column) - getInt(b, column);
-        default:
-          throw new IllegalArgumentException("Invalid column type: " + getColumnType(column));
-        }
-      }
 
-      @Override
-      public void swap(int a, int b) {
-        int temp = order[a];
-        order[a] = order[b];
-        order[b] = temp;
-      }
+  private int[] getColumnIndices(String[] columnNames) {
+    int[] columns = new int[columnNames.length];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = getColumnIndex(columnNames[i]);
+    }
+    return columns;
+  }
 
-    };
-    s.run();
+
+  protected void sort(int column, boolean reverse) {
+    sort(new int[] { column }, reverse);
+  }
+
+
+  /**
+   * Sorts by finding the order of the rows first (see TableSort), then
+   * moving the data in each column exactly once. STRING columns are
+   * compared ignoring case, with empty cells treated as empty strings.
+   * CATEGORY columns sort by their codes, which is the order in which the
+   * categories were first seen. NaN values go last (first when reversed).
+   */
+  protected void sort(int[] sortColumns, boolean reverse) {
+    for (int column : sortColumns) {
+      checkColumn(column);
+    }
+    int[] order = TableSort.order(this, sortColumns, reverse);
 
     //Object[] newColumns = new Object[getColumnCount()];
     for (int col = 0; col < getColumnCount(); col++) {
       switch (getColumnType(col)) {
       case INT:
       case CATEGORY:
-        int[] oldInt = (int[]) columns[col];
+        int[] oldInt = (int[]) columnData(col);
         int[] newInt = new int[rowCount];
         for (int row = 0; row < getRowCount(); row++) {
           newInt[row] = oldInt[order[row]];
@@ -4488,7 +5411,7 @@ public class Table {
         columns[col] = newInt;
         break;
       case LONG:
-        long[] oldLong = (long[]) columns[col];
+        long[] oldLong = (long[]) columnData(col);
         long[] newLong = new long[rowCount];
         for (int row = 0; row < getRowCount(); row++) {
           newLong[row] = oldLong[order[row]];
@@ -4496,7 +5419,7 @@ public class Table {
         columns[col] = newLong;
         break;
       case FLOAT:
-        float[] oldFloat = (float[]) columns[col];
+        float[] oldFloat = (float[]) columnData(col);
         float[] newFloat = new float[rowCount];
         for (int row = 0; row < getRowCount(); row++) {
           newFloat[row] = oldFloat[order[row]];
@@ -4504,7 +5427,7 @@ public class Table {
         columns[col] = newFloat;
         break;
       case DOUBLE:
-        double[] oldDouble = (double[]) columns[col];
+        double[] oldDouble = (double[]) columnData(col);
         double[] newDouble = new double[rowCount];
         for (int row = 0; row < getRowCount(); row++) {
           newDouble[row] = oldDouble[order[row]];
@@ -4512,7 +5435,7 @@ public class Table {
         columns[col] = newDouble;
         break;
       case STRING:
-        String[] oldString = (String[]) columns[col];
+        String[] oldString = (String[]) columnData(col);
         String[] newString = new String[rowCount];
         for (int row = 0; row < getRowCount(); row++) {
           newString[row] = oldString[order[row]];
@@ -4521,6 +5444,7 @@ public class Table {
         break;
       }
     }
+    indexReset(-1);
   }
 
 
@@ -4563,6 +5487,101 @@ public class Table {
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
+  /**
+   * Add up the values in a numeric column. NaN values in FLOAT and DOUBLE
+   * columns are treated as missing and skipped.
+   */
+  public double sum(String columnName) {
+    return sum(getColumnIndex(columnName));
+  }
+
+
+  public double sum(int column) {
+    return aggregate(column, TableGroups.SUM);
+  }
+
+
+  /** Average of the values in a numeric column, or NaN if there are none. */
+  public double mean(String columnName) {
+    return mean(getColumnIndex(columnName));
+  }
+
+
+  public double mean(int column) {
+    return aggregate(column, TableGroups.MEAN);
+  }
+
+
+  /** Smallest value in a numeric column, or NaN if there are none. */
+  public double min(String columnName) {
+    return min(getColumnIndex(columnName));
+  }
+
+
+  public double min(int column) {
+    return aggregate(column, TableGroups.MIN);
+  }
+
+
+  /** Largest value in a numeric column, or NaN if there are none. */
+  public double max(String columnName) {
+    return max(getColumnIndex(columnName));
+  }
+
+
+  public double max(int column) {
+    return aggregate(column, TableGroups.MAX);
+  }
+
+
+  /**
+   * Number of entries in a column that aren't missing, meaning NaN in
+   * FLOAT and DOUBLE columns and null in STRING columns.
+   */
+  public int count(String columnName) {
+    return count(getColumnIndex(columnName));
+  }
+
+
+  public int count(int column) {
+    checkColumn(column);
+    return TableGroups.collect(this, column, null, 1).count[0];
+  }
+
+
+  protected double aggregate(int column, int function) {
+    checkColumn(column);
+    TableGroups.checkNumeric(this, column, TableGroups.functionNames[function]);
+    return TableGroups.collect(this, column, null, 1).get(function, 0);
+  }
+
+
+  /**
+   * Split the rows into groups that have the same values in the specified
+   * columns, so that each group can be summarized with agg().
+   *
+   * @see TableGroups#agg(String...)
+   */
+  public TableGroups groupBy(String... columnNames) {
+    int[] columns = new int[columnNames.length];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = getColumnIndex(columnNames[i]);
+    }
+    return groupBy(columns);
+  }
+
+
+  public TableGroups groupBy(int... columns) {
+    for (int column : columns) {
+      checkColumn(column);
+    }
+    return new TableGroups(this, columns);
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
   public IntList getIntList(String columnName) {
     return new IntList(getIntColumn(columnName));
   }
@@ -4982,15 +6001,15 @@ public class Table {
   private void convertRowCol(DataOutputStream output, int row, int col, String piece) {
     switch (columnTypes[col]) {
       case STRING:
-        String[] stringData = (String[]) columns[col];
+        String[] stringData = (String[]) columnData(col);
         stringData[row] = piece;
         break;
       case INT:
-        int[] intData = (int[]) columns[col];
+        int[] intData = (int[]) columnData(col);
         intData[row] = PApplet.parseInt(piece, missingInt);
         break;
       case LONG:
-        long[] longData = (long[]) columns[col];
+        long[] longData = (long[]) columnData(col);
         try {
           longData[row] = Long.parseLong(piece);
         } catch (NumberFormatException nfe) {
@@ -4998,11 +6017,11 @@ public class Table {
         }
         break;
       case FLOAT:
-        float[] floatData = (float[]) columns[col];
+        float[] floatData = (float[]) columnData(col);
         floatData[row] = PApplet.parseFloat(piece, missingFloat);
         break;
       case DOUBLE:
-        double[] doubleData = (double[]) columns[col];
+        double[] doubleData = (double[]) columnData(col);
         try {
           doubleData[row] = Double.parseDouble(piece);
         } catch (NumberFormatException nfe) {
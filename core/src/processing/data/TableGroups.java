@@ -0,0 +1,580 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+
+/**
+ * The rows of a Table split into groups by the values in one or more
+ * columns, as returned by Table.groupBy(). Use agg() to get a new Table
+ * with one row per group:
+ * <pre>
+ * Table totals = table.groupBy("country").agg("count", "sum(population)");
+ * </pre>
+ * Groups are numbered in the order that they first appear in the table.
+ * Values are read straight from the column arrays, and large tables are
+ * split into blocks of rows that are added up in parallel. The blocks
+ * don't depend on the number of threads, so the results are always the
+ * same from one run to the next.
+ *
+ * @nowebref
+ * @see Table#groupBy(String...)
+ */
+public class TableGroups {
+  static final int COUNT = 0;
+  static final int SUM = 1;
+  static final int MEAN = 2;
+  static final int MIN = 3;
+  static final int MAX = 4;
+  static final String[] functionNames = { "count", "sum", "mean", "min", "max" };
+
+  /** Minimum number of rows added up by each task. */
+  static final int BLOCK_SIZE = 1 << 16;
+
+  Table table;
+  int[] keyColumns;
+
+  /** The group for each row of the table. */
+  int[] group;
+  /** The first row in each group. */
+  int[] firstRow;
+  int groupCount;
+
+
+  TableGroups(Table table, int[] keyColumns) {
+    this.table = table;
+    this.keyColumns = keyColumns;
+
+    int rowCount = table.getRowCount();
+    if (keyColumns.length == 0) {
+      group = new int[rowCount];
+      groupCount = (rowCount == 0) ? 0 : 1;
+    } else {
+      group = new int[rowCount];
+      groupCount = columnCodes(table, keyColumns[0], group);
+      int[] codes = new int[rowCount];
+      for (int i = 1; i < keyColumns.length; i++) {
+        columnCodes(table, keyColumns[i], codes);
+        // renumber each (group, code) pair as a new group
+        KeyMap pairs = new KeyMap();
+        for (int row = 0; row < rowCount; row++) {
+          group[row] = pairs.add(((long) group[row] << 32) | codes[row]);
+        }
+        groupCount = pairs.size;
+      }
+    }
+
+    firstRow = new int[groupCount];
+    Arrays.fill(firstRow, -1);
+    for (int row = 0; row < rowCount; row++) {
+      if (firstRow[group[row]] == -1) {
+        firstRow[group[row]] = row;
+      }
+    }
+  }
+
+
+  public int getGroupCount() {
+    return groupCount;
+  }
+
+
+  /** The group that a row of the table belongs to. */
+  public int getGroup(int row) {
+    return group[row];
+  }
+
+
+  /** The rows in a group, in order. */
+  public int[] getRowIndices(int which) {
+    int count = 0;
+    for (int g : group) {
+      if (g == which) count++;
+    }
+    int[] outgoing = new int[count];
+    count = 0;
+    for (int row = 0; row < group.length; row++) {
+      if (group[row] == which) {
+        outgoing[count++] = row;
+      }
+    }
+    return outgoing;
+  }
+
+
+  /**
+   * Create a Table with a row for each group. It starts with the key
+   * columns, followed by a column for each aggregate, titled with the
+   * aggregate itself. The aggregates are one of:
+   * <ul>
+   * <li>"count" the number of rows in the group (an INT column)
+   * <li>"count(column)" the number of values that aren't missing (NaN or
+   * null) in a column (INT)
+   * <li>"sum(column)" and "mean(column)" (DOUBLE)
+   * <li>"min(column)" and "max(column)" (the same type as the column)
+   * </ul>
+   * Everything except a count needs a numeric column.
+   */
+  public Table agg(String... aggregates) {
+    Table outgoing = new Table();
+    for (int col : keyColumns) {
+      outgoing.addColumn(table.getColumnTitle(col), table.getColumnType(col));
+      if (table.getColumnType(col) == Table.CATEGORY) {
+        outgoing.columnCategories[outgoing.getColumnCount() - 1] =
+          new Table.HashMapBlows(table.columnCategories[col]);
+      }
+    }
+    outgoing.setRowCount(groupCount);
+    for (int i = 0; i < keyColumns.length; i++) {
+      copyKeys(keyColumns[i], outgoing.columns[i]);
+    }
+
+    // sum(x) and mean(x) and the rest all come from the same pass over x
+    Stats[] columnStats = new Stats[table.getColumnCount()];
+    for (String aggregate : aggregates) {
+      int function = -1;
+      int column = -1;
+      String name = aggregate.trim();
+      int paren = name.indexOf('(');
+      if (paren != -1 && name.endsWith(")")) {
+        column = parseColumn(name.substring(paren + 1, name.length() - 1).trim());
+        name = name.substring(0, paren).trim();
+      }
+      for (int i = 0; i < functionNames.length; i++) {
+        if (functionNames[i].equals(name)) {
+          function = i;
+        }
+      }
+      if (function == -1 || (column == -1 && function != COUNT)) {
+        throw new IllegalArgumentException("Unknown aggregate: " + aggregate);
+      }
+      if (function != COUNT) {
+        checkNumeric(table, column, name);
+      }
+
+      int type = Table.INT;
+      if (function == SUM || function == MEAN) {
+        type = Table.DOUBLE;
+      } else if (function != COUNT) {
+        type = table.getColumnType(column);
+      }
+      outgoing.addColumn(aggregate, type);
+      Object data = outgoing.columns[outgoing.getColumnCount() - 1];
+
+      if (column == -1) {
+        int[] counts = (int[]) data;
+        for (int g : group) {
+          counts[g]++;
+        }
+      } else {
+        if (columnStats[column] == null) {
+          columnStats[column] = collect(table, column, group, groupCount);
+        }
+        Stats stats = columnStats[column];
+        for (int g = 0; g < groupCount; g++) {
+          switch (type) {
+            case Table.INT: ((int[]) data)[g] = (int) stats.getLong(function, g); break;
+            case Table.LONG: ((long[]) data)[g] = stats.getLong(function, g); break;
+            case Table.FLOAT: ((float[]) data)[g] = (float) stats.get(function, g); break;
+            case Table.DOUBLE: ((double[]) data)[g] = stats.get(function, g); break;
+          }
+        }
+      }
+    }
+    return outgoing;
+  }
+
+
+  private int parseColumn(String name) {
+    int column = table.getColumnIndex(name, false);
+    if (column == -1) {
+      try {
+        column = Integer.parseInt(name);
+      } catch (NumberFormatException nfe) {
+        throw new IllegalArgumentException("This table has no column named '" + name + "'");
+      }
+      table.checkColumn(column);
+    }
+    return column;
+  }
+
+
+  /** Copy the key value from the first row of each group. */
+  private void copyKeys(int column, Object target) {
+    Object source = table.columnData(column);
+    for (int g = 0; g < groupCount; g++) {
+      int row = firstRow[g];
+      switch (table.getColumnType(column)) {
+        case Table.INT:
+        case Table.CATEGORY:
+          ((int[]) target)[g] = ((int[]) source)[row];
+          break;
+        case Table.LONG:
+          ((long[]) target)[g] = ((long[]) source)[row];
+          break;
+        case Table.FLOAT:
+          ((float[]) target)[g] = ((float[]) source)[row];
+          break;
+        case Table.DOUBLE:
+          ((double[]) target)[g] = ((double[]) source)[row];
+          break;
+        case Table.STRING:
+          ((String[]) target)[g] = ((String[]) source)[row];
+          break;
+      }
+    }
+  }
+
+
+  static void checkNumeric(Table table, int column, String function) {
+    int type = table.getColumnType(column);
+    if (type == Table.STRING || type == Table.CATEGORY) {
+      throw new IllegalArgumentException(function + "() only works with " +
+                                         "INT, LONG, FLOAT, or DOUBLE columns");
+    }
+  }
+
+
+  /**
+   * Number the distinct values of a column in the order they first appear.
+   * Fills codes with the number for each row and returns how many there are.
+   */
+  static int columnCodes(Table table, int column, int[] codes) {
+    int rowCount = table.getRowCount();
+    Object data = table.columnData(column);
+    if (table.getColumnType(column) == Table.STRING) {
+      String[] strings = (String[]) data;
+      HashMap<String, Integer> ids = new HashMap<>();
+      for (int row = 0; row < rowCount; row++) {
+        Integer id = ids.get(strings[row]);
+        if (id == null) {
+          id = ids.size();
+          ids.put(strings[row], id);  // null is a key of its own
+        }
+        codes[row] = id;
+      }
+      return ids.size();
+    }
+
+    KeyMap ids = new KeyMap();
+    switch (table.getColumnType(column)) {
+      case Table.INT:
+      case Table.CATEGORY:
+        int[] ints = (int[]) data;
+        int low = Integer.MAX_VALUE;
+        int high = Integer.MIN_VALUE;
+        for (int row = 0; row < rowCount; row++) {
+          low = Math.min(low, ints[row]);
+          high = Math.max(high, ints[row]);
+        }
+        if (rowCount > 0 && (long) high - low < Math.max(rowCount, 1024)) {
+          // CATEGORY codes and most INT columns are in a narrow range,
+          // so look the numbers up in an array instead of hashing
+          int[] lookup = new int[high - low + 1];
+          int count = 0;
+          for (int row = 0; row < rowCount; row++) {
+            int offset = ints[row] - low;
+            if (lookup[offset] == 0) {
+              lookup[offset] = ++count;
+            }
+            codes[row] = lookup[offset] - 1;
+          }
+          return count;
+        }
+        for (int row = 0; row < rowCount; row++) {
+          codes[row] = ids.add(ints[row]);
+        }
+        break;
+      case Table.LONG:
+        long[] longs = (long[]) data;
+        for (int row = 0; row < rowCount; row++) {
+          codes[row] = ids.add(longs[row]);
+        }
+        break;
+      case Table.FLOAT:
+        float[] floats = (float[]) data;
+        for (int row = 0; row < rowCount; row++) {
+          float f = floats[row];
+          // -0 and 0 go together, and all NaN values share the same bits
+          codes[row] = ids.add((f == 0) ? 0 : Float.floatToIntBits(f));
+        }
+        break;
+      case Table.DOUBLE:
+        double[] doubles = (double[]) data;
+        for (int row = 0; row < rowCount; row++) {
+          double d = doubles[row];
+          codes[row] = ids.add((d == 0) ? 0 : Double.doubleToLongBits(d));
+        }
+        break;
+    }
+    return ids.size;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Count, sum, min, and max of a column for each group. INT and LONG
+   * columns also keep their sum, min, and max as longs, so that values
+   * larger than a double can hold exactly (2^53) don't come back changed.
+   */
+  static class Stats {
+    int[] count;
+    double[] sum;
+    double[] min;
+    double[] max;
+
+    long[] longSum;
+    long[] longMin;
+    long[] longMax;
+
+    Stats(int groupCount, boolean integer) {
+      count = new int[groupCount];
+      sum = new double[groupCount];
+      if (integer) {
+        longSum = new long[groupCount];
+        longMin = new long[groupCount];
+        longMax = new long[groupCount];
+        Arrays.fill(longMin, Long.MAX_VALUE);
+        Arrays.fill(longMax, Long.MIN_VALUE);
+      } else {
+        min = new double[groupCount];
+        max = new double[groupCount];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+      }
+    }
+
+    void add(int g, double value) {
+      count[g]++;
+      sum[g] += value;
+      if (value < min[g]) min[g] = value;
+      if (value > max[g]) max[g] = value;
+    }
+
+    void add(int g, long value) {
+      count[g]++;
+      sum[g] += value;
+      longSum[g] += value;
+      if (value < longMin[g]) longMin[g] = value;
+      if (value > longMax[g]) longMax[g] = value;
+    }
+
+    void add(Stats other) {
+      for (int g = 0; g < count.length; g++) {
+        count[g] += other.count[g];
+        sum[g] += other.sum[g];
+        if (longSum != null) {
+          longSum[g] += other.longSum[g];
+          longMin[g] = Math.min(longMin[g], other.longMin[g]);
+          longMax[g] = Math.max(longMax[g], other.longMax[g]);
+        } else {
+          min[g] = Math.min(min[g], other.min[g]);
+          max[g] = Math.max(max[g], other.max[g]);
+        }
+      }
+    }
+
+    /**
+     * Sum of a group. The long sum is exact unless it wrapped around,
+     * which the (approximate) double sum is close enough to tell.
+     */
+    private double sum(int g) {
+      if (longSum != null && Math.abs(sum[g]) < 0x1p62) {
+        return longSum[g];
+      }
+      return sum[g];
+    }
+
+    /** Result of a function for a group, or NaN if it has no values. */
+    double get(int function, int g) {
+      if (function == COUNT) {
+        return count[g];
+      } else if (count[g] == 0) {
+        return Double.NaN;
+      }
+      switch (function) {
+        case SUM: return sum(g);
+        case MEAN: return sum(g) / count[g];
+        case MIN: return (longMin != null) ? longMin[g] : min[g];
+        default: return (longMax != null) ? longMax[g] : max[g];
+      }
+    }
+
+    /** COUNT, or MIN or MAX of an INT or LONG column, without rounding. */
+    long getLong(int function, int g) {
+      if (function == COUNT) {
+        return count[g];
+      } else if (count[g] == 0) {
+        return 0;
+      }
+      return (function == MIN) ? longMin[g] : longMax[g];
+    }
+  }
+
+
+  /**
+   * Collect the stats for a column, with rows sorted into groupCount groups
+   * by the group array (or all in a single group if it's null). Tables
+   * larger than a block are added up in parallel, one block per task, and
+   * the results are combined in order.
+   */
+  static Stats collect(final Table table, final int column,
+                       final int[] group, final int groupCount) {
+    int rowCount = table.getRowCount();
+    // keep the per-task arrays small compared to the rows they cover
+    int blockSize = Math.max(BLOCK_SIZE, groupCount * 8);
+    if (rowCount <= blockSize) {
+      return collect(table, column, group, groupCount, 0, rowCount);
+    }
+    List<ForkJoinTask<Stats>> tasks = new ArrayList<>();
+    for (int start = 0; start < rowCount; start += blockSize) {
+      final int first = start;
+      final int last = Math.min(start + blockSize, rowCount);
+      tasks.add(ForkJoinPool.commonPool().submit(() ->
+        collect(table, column, group, groupCount, first, last)));
+    }
+    Stats stats = tasks.get(0).join();
+    for (int i = 1; i < tasks.size(); i++) {
+      stats.add(tasks.get(i).join());
+    }
+    return stats;
+  }
+
+
+  static Stats collect(Table table, int column, int[] group, int groupCount,
+                       int start, int stop) {
+    int type = table.getColumnType(column);
+    Stats stats = new Stats(groupCount, type == Table.INT || type == Table.LONG);
+    Object data = table.columnData(column);
+    switch (type) {
+      case Table.INT:
+        int[] ints = (int[]) data;
+        for (int row = start; row < stop; row++) {
+          stats.add((group == null) ? 0 : group[row], (long) ints[row]);
+        }
+        break;
+      case Table.LONG:
+        long[] longs = (long[]) data;
+        for (int row = start; row < stop; row++) {
+          stats.add((group == null) ? 0 : group[row], longs[row]);
+        }
+        break;
+      case Table.FLOAT:
+        float[] floats = (float[]) data;
+        for (int row = start; row < stop; row++) {
+          float value = floats[row];
+          if (value == value) {  // skip NaN
+            stats.add((group == null) ? 0 : group[row], value);
+          }
+        }
+        break;
+      case Table.DOUBLE:
+        double[] doubles = (double[]) data;
+        for (int row = start; row < stop; row++) {
+          double value = doubles[row];
+          if (value == value) {
+            stats.add((group == null) ? 0 : group[row], value);
+          }
+        }
+        break;
+      case Table.STRING:
+        // only counted, the sum/min/max are meaningless
+        String[] strings = (String[]) data;
+        for (int row = start; row < stop; row++) {
+          if (strings[row] != null) {
+            stats.count[(group == null) ? 0 : group[row]]++;
+          }
+        }
+        break;
+      case Table.CATEGORY:
+        for (int row = start; row < stop; row++) {
+          stats.count[(group == null) ? 0 : group[row]]++;
+        }
+        break;
+    }
+    return stats;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Numbers long keys in the order they're added, by open addressing. */
+  static class KeyMap {
+    long[] keys = new long[16];
+    int[] ids = new int[16];
+    int size;
+
+    KeyMap() {
+      Arrays.fill(ids, -1);
+    }
+
+    /** The number for this key, or the next one if it's new. */
+    int add(long key) {
+      int mask = keys.length - 1;
+      int slot = slot(key, mask);
+      while (ids[slot] != -1) {
+        if (keys[slot] == key) {
+          return ids[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      ids[slot] = size;
+      if (++size * 2 > keys.length) {
+        grow();
+      }
+      return size - 1;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      int[] oldIds = ids;
+      keys = new long[oldKeys.length * 2];
+      ids = new int[oldIds.length * 2];
+      Arrays.fill(ids, -1);
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldIds[i] != -1) {
+          int slot = slot(oldKeys[i], mask);
+          while (ids[slot] != -1) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          ids[slot] = oldIds[i];
+        }
+      }
+    }
+
+    static private int slot(long key, int mask) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32)) & mask;
+    }
+  }
+}
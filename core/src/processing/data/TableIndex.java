@@ -0,0 +1,470 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * Secondary index on one column of a Table, created with createIndex().
+ * Every row gets a long key: the value itself for INT, LONG and CATEGORY
+ * columns, an order-preserving encoding of the bits for FLOAT and DOUBLE,
+ * and a dictionary id for STRING columns. Exact matches go through an
+ * open-addressing hash of those keys, with the rows for each key chained
+ * in ascending order, and numeric columns also keep the rows sorted by key
+ * for range queries.
+ * <p/>
+ * Changes to single entries are applied right away. Anything that moves
+ * rows around (sorting, inserting or removing rows, etc.) marks the index
+ * as stale, and it is rebuilt the next time it's used.
+ */
+class TableIndex {
+  static final int EMPTY = -1;
+  static final int DELETED = -2;
+
+  Table table;
+  int column;
+  int type;
+  boolean stale = true;
+
+  /** Key for each row. */
+  long[] keys;
+  int rowCount;
+
+  // hash of key -> first row with that key, next[] links the rest
+  long[] slotKeys;
+  int[] slotRows;
+  int slotsUsed;  // including DELETED
+  int[] next;
+
+  /** Rows sorted by key (then by row), only for numeric columns. */
+  int[] order;
+
+  /** Dictionary ids for STRING columns. */
+  HashMap<String, Integer> stringIds;
+
+
+  TableIndex(Table table, int column) {
+    this.table = table;
+    this.column = column;
+  }
+
+
+  /** Rebuild everything from the current contents of the table. */
+  void build() {
+    type = table.getColumnType(column);
+    rowCount = table.getRowCount();
+    stringIds = (type == Table.STRING) ? new HashMap<>() : null;
+    keys = new long[rowCount];
+    for (int row = 0; row < rowCount; row++) {
+      keys[row] = keyOf(row);
+    }
+    next = new int[rowCount];
+    rehash();
+
+    if (isNumeric()) {
+      order = new int[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        order[i] = i;
+      }
+      sortOrder(order, new int[rowCount], 0, rowCount);
+    } else {
+      order = null;
+    }
+    stale = false;
+  }
+
+
+  boolean isNumeric() {
+    return type == Table.INT || type == Table.LONG ||
+      type == Table.FLOAT || type == Table.DOUBLE;
+  }
+
+
+  /** Sorts on the same key as a double, with -0.0 before 0.0 and NaN last. */
+  static long sortable(double value) {
+    long bits = Double.doubleToLongBits(value);
+    return bits ^ ((bits >> 63) & 0x7fffffffffffffffL);
+  }
+
+
+  long keyOf(int row) {
+    switch (type) {
+      case Table.INT:
+      case Table.CATEGORY:
+        return table.getInt(row, column);
+      case Table.LONG:
+        return table.getLong(row, column);
+      case Table.FLOAT:
+        return sortable(table.getFloat(row, column));
+      case Table.DOUBLE:
+        return sortable(table.getDouble(row, column));
+      default:  // STRING
+        String value = table.getString(row, column);
+        if (value == null) {
+          return Long.MIN_VALUE;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+          id = stringIds.size();
+          stringIds.put(value, id);
+        }
+        return id;
+    }
+  }
+
+
+  /**
+   * Get the key that a String passed to findRow() and friends would match,
+   * keeping in mind that those compare against getString() for the column.
+   * Returns null when the index can't answer (e.g. looking for a null
+   * value), or a key that no row has when nothing can match.
+   */
+  Long keyOf(String value) {
+    if (value == null) {
+      return null;
+    }
+    long none = Long.MIN_VALUE + 1;  // never used as a key
+    try {
+      switch (type) {
+        case Table.INT:
+          int i = Integer.parseInt(value);
+          return String.valueOf(i).equals(value) ? i : none;
+        case Table.LONG:
+          long l = Long.parseLong(value);
+          return String.valueOf(l).equals(value) ? l : none;
+        case Table.FLOAT:
+          float f = Float.parseFloat(value);
+          return (!Float.isNaN(f) && String.valueOf(f).equals(value)) ?
+            sortable(f) : none;
+        case Table.DOUBLE:
+          double d = Double.parseDouble(value);
+          return (!Double.isNaN(d) && String.valueOf(d).equals(value)) ?
+            sortable(d) : none;
+        case Table.CATEGORY:
+          if (value.equals(table.missingString)) {
+            return null;  // missing entries would need a separate lookup
+          }
+          int code = table.columnCategories[column].find(value);
+          return (code == -1 || code == table.missingCategory) ? none : code;
+        default:  // STRING
+          Integer id = stringIds.get(value);
+          return (id == null) ? none : id;
+      }
+    } catch (NumberFormatException nfe) {
+      return none;
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+
+  private void rehash() {
+    int capacity = 16;
+    while (capacity < rowCount * 2) {
+      capacity <<= 1;
+    }
+    slotKeys = new long[capacity];
+    slotRows = new int[capacity];
+    Arrays.fill(slotRows, EMPTY);
+    slotsUsed = 0;
+    // going backwards means each row goes at the front of its chain
+    for (int row = rowCount - 1; row >= 0; row--) {
+      int slot = findSlot(keys[row]);
+      if (slot == -1) {
+        slot = claimSlot(keys[row]);
+        next[row] = -1;
+      } else {
+        next[row] = slotRows[slot];
+      }
+      slotRows[slot] = row;
+    }
+  }
+
+
+  private int findSlot(long key) {
+    int mask = slotRows.length - 1;
+    int slot = mix(key) & mask;
+    while (slotRows[slot] != EMPTY) {
+      if (slotRows[slot] != DELETED && slotKeys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+
+  /** Find a free slot for a key that isn't in the table yet. */
+  private int claimSlot(long key) {
+    int mask = slotRows.length - 1;
+    int slot = mix(key) & mask;
+    while (slotRows[slot] >= 0) {
+      slot = (slot + 1) & mask;
+    }
+    if (slotRows[slot] == EMPTY) {
+      slotsUsed++;
+    }
+    slotKeys[slot] = key;
+    return slot;
+  }
+
+
+  private void hashAdd(int row, long key) {
+    int slot = findSlot(key);
+    if (slot == -1) {
+      if ((slotsUsed + 1) * 4 > slotRows.length * 3) {
+        rehash();  // also picks up this row, since keys[row] is already set
+        return;
+      }
+      slot = claimSlot(key);
+      slotRows[slot] = row;
+      next[row] = -1;
+
+    } else if (slotRows[slot] > row) {
+      next[row] = slotRows[slot];
+      slotRows[slot] = row;
+
+    } else {
+      int prev = slotRows[slot];
+      while (next[prev] != -1 && next[prev] < row) {
+        prev = next[prev];
+      }
+      next[row] = next[prev];
+      next[prev] = row;
+    }
+  }
+
+
+  private void hashRemove(int row, long key) {
+    int slot = findSlot(key);
+    if (slotRows[slot] == row) {
+      slotRows[slot] = (next[row] == -1) ? DELETED : next[row];
+    } else {
+      int prev = slotRows[slot];
+      while (next[prev] != row) {
+        prev = next[prev];
+      }
+      next[prev] = next[row];
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  private int compare(int row1, int row2) {
+    int diff = Long.compare(keys[row1], keys[row2]);
+    return (diff != 0) ? diff : Integer.compare(row1, row2);
+  }
+
+
+  /** Stable merge sort of rows by key. */
+  private void sortOrder(int[] rows, int[] temp, int start, int stop) {
+    if (stop - start < 2) {
+      return;
+    }
+    int middle = (start + stop) >>> 1;
+    sortOrder(rows, temp, start, middle);
+    sortOrder(rows, temp, middle, stop);
+    if (compare(rows[middle - 1], rows[middle]) <= 0) {
+      return;  // already in order
+    }
+    System.arraycopy(rows, start, temp, start, stop - start);
+    int i = start;
+    int j = middle;
+    for (int k = start; k < stop; k++) {
+      if (j == stop || (i < middle && compare(temp[i], temp[j]) <= 0)) {
+        rows[k] = temp[i++];
+      } else {
+        rows[k] = temp[j++];
+      }
+    }
+  }
+
+
+  /** First position in order[0..count) whose key is at least this one. */
+  private int lowerBound(long key, int count) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (keys[order[middle]] < key) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+
+  /** Position of a row in order[0..count), found by its key. */
+  private int position(int row, int count) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compare(order[middle], row) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Called after an entry in the indexed column has been set. */
+  void update(int row) {
+    if (stale) {
+      return;
+    }
+    long oldKey = keys[row];
+    long newKey = keyOf(row);
+    if (newKey != oldKey) {
+      hashRemove(row, oldKey);
+      if (order != null) {
+        int pos = position(row, rowCount);
+        System.arraycopy(order, pos + 1, order, pos, rowCount - pos - 1);
+      }
+      keys[row] = newKey;
+      hashAdd(row, newKey);
+      if (order != null) {
+        int pos = position(row, rowCount - 1);
+        System.arraycopy(order, pos, order, pos + 1, rowCount - pos - 1);
+        order[pos] = row;
+      }
+    }
+  }
+
+
+  /** Called after rows have been added to or removed from the end. */
+  void resize(int newCount) {
+    if (stale) {
+      return;
+    }
+    if (newCount < rowCount || newCount - rowCount > 64) {
+      stale = true;  // cheaper to start over
+      return;
+    }
+    keys = Arrays.copyOf(keys, newCount);
+    next = Arrays.copyOf(next, newCount);
+    if (order != null) {
+      order = Arrays.copyOf(order, newCount);
+    }
+    for (int row = rowCount; row < newCount; row++) {
+      keys[row] = keyOf(row);
+      rowCount = row + 1;  // before hashAdd(), in case it rehashes
+      hashAdd(row, keys[row]);
+      if (order != null) {
+        // new rows are always last among equal keys
+        int pos = position(row, row);
+        System.arraycopy(order, pos, order, pos + 1, row - pos);
+        order[pos] = row;
+      }
+    }
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * First row matching the value, -1 if there is none, or -2 if the index
+   * can't answer this one and the caller has to search the table itself.
+   */
+  int findRowIndex(String value) {
+    if (stale) {
+      build();
+    }
+    Long key = keyOf(value);
+    if (key == null) {
+      return -2;
+    }
+    int slot = findSlot(key);
+    return (slot == -1) ? -1 : slotRows[slot];
+  }
+
+
+  /** All rows matching the value, in order, or null if the index can't help. */
+  int[] findRowIndices(String value) {
+    if (stale) {
+      build();
+    }
+    Long key = keyOf(value);
+    if (key == null) {
+      return null;
+    }
+    int slot = findSlot(key);
+    if (slot == -1) {
+      return new int[0];
+    }
+    int count = 0;
+    for (int row = slotRows[slot]; row != -1; row = next[row]) {
+      count++;
+    }
+    int[] outgoing = new int[count];
+    count = 0;
+    for (int row = slotRows[slot]; row != -1; row = next[row]) {
+      outgoing[count++] = row;
+    }
+    return outgoing;
+  }
+
+
+  /** Rows with values from min to max (inclusive), in order. */
+  int[] findRowIndicesInRange(double min, double max) {
+    if (stale) {
+      build();
+    }
+    if (Double.isNaN(min) || Double.isNaN(max)) {
+      return new int[0];
+    }
+    long low, high;
+    if (type == Table.INT || type == Table.LONG) {
+      low = (long) Math.ceil(min);
+      high = (long) Math.floor(max);
+    } else {
+      low = sortable(min == 0 ? -0.0 : min);
+      high = sortable(max == 0 ? 0.0 : max);
+    }
+    int start = lowerBound(low, rowCount);
+    int stop = (high == Long.MAX_VALUE) ? rowCount : lowerBound(high + 1, rowCount);
+    if (stop <= start) {
+      return new int[0];
+    }
+    int[] outgoing = Arrays.copyOfRange(order, start, stop);
+    Arrays.sort(outgoing);
+    return outgoing;
+  }
+}
@@ -0,0 +1,307 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import processing.core.PApplet;
+
+
+/**
+ * Reads the rows of a single worksheet from an ODS (OpenDocument
+ * spreadsheet) file, one table:table-row element at a time. The
+ * content.xml inside the zip file is read with a streaming (StAX) parser,
+ * so unlike building the XML document for the whole file, memory use
+ * doesn't depend on the size of the sheet.
+ * <p/>
+ * Repeats are not expanded: after readRow(), the row is used rowRepeat
+ * times, and each cell cellRepeat[i] times. A cell's value is its
+ * office:value attribute (for numbers) or otherwise the text of its
+ * text:p element, with text:s expanded to spaces and any other tags
+ * (links, styled spans) stripped. Cells with no text are null.
+ */
+class TableODSReader {
+  static final String OFFICE = "urn:oasis:names:tc:opendocument:xmlns:office:1.0";
+  static final String TABLE = "urn:oasis:names:tc:opendocument:xmlns:table:1.0";
+  static final String TEXT = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+
+  XMLStreamReader reader;
+  boolean finished;
+
+  /** Number of times the current row is repeated. */
+  int rowRepeat;
+  /** Number of cell elements in the current row. */
+  int cellCount;
+  String[] cells = new String[16];
+  int[] cellRepeat = new int[16];
+
+  StringBuilder buffer = new StringBuilder();
+
+
+  /**
+   * @param worksheet name of the sheet to read, or null for the first one
+   */
+  TableODSReader(InputStream input, String worksheet) throws IOException {
+    ZipInputStream zis = new ZipInputStream(input);
+    ZipEntry entry;
+    while ((entry = zis.getNextEntry()) != null) {
+      if (entry.getName().equals("content.xml")) {
+        break;
+      }
+    }
+    if (entry == null) {
+      throw new IOException("No content.xml found in the ODS file.");
+    }
+
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    try {
+      reader = factory.createXMLStreamReader(zis);
+      if (!findSheet(worksheet)) {
+        if (worksheet == null) {
+          throw new RuntimeException("No worksheets found in the ODS file.");
+        } else {
+          throw new RuntimeException("No worksheet named " + worksheet +
+                                     " found in the ODS file.");
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+
+  /**
+   * Move to the start of the matching office:body/office:spreadsheet/table:table
+   * element, skipping over everything else (styles, other sheets) unread.
+   */
+  private boolean findSheet(String worksheet) throws XMLStreamException {
+    int depth = 0;
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        if (depth == 4 && is(TABLE, "table") &&
+            (worksheet == null ||
+             worksheet.equals(reader.getAttributeValue(TABLE, "name")))) {
+          return true;
+        }
+        boolean descend = depth == 1 ||
+          (depth == 2 && is(OFFICE, "body")) ||
+          (depth == 3 && is(OFFICE, "spreadsheet"));
+        if (!descend) {
+          skipElement();
+          depth--;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+    return false;
+  }
+
+
+  /**
+   * Read the next table:table-row of the sheet.
+   * @return false once the end of the sheet is reached
+   */
+  boolean readRow() throws IOException {
+    if (finished) {
+      return false;
+    }
+    try {
+      while (reader.hasNext()) {
+        int event = reader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          if (is(TABLE, "table-row")) {
+            rowRepeat = getInt(TABLE, "number-rows-repeated", 1);
+            readCells();
+            return true;
+          }
+          // columns, header rows, row groups, etc.
+          skipElement();
+
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          break;  // end of the table:table
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+    finished = true;
+    return false;
+  }
+
+
+  /**
+   * The values of the current row, with repeated cells expanded. Empty
+   * cells at the end of the row (often a long repeat that fills out the
+   * sheet) are left off, so an empty row has length zero.
+   */
+  String[] getStrings() {
+    int count = 0;
+    int columnIndex = 0;
+    for (int i = 0; i < cellCount; i++) {
+      columnIndex += cellRepeat[i];
+      if (cells[i] != null) {
+        count = columnIndex;
+      }
+    }
+    String[] strings = new String[count];
+    columnIndex = 0;
+    for (int i = 0; i < cellCount && columnIndex < count; i++) {
+      for (int r = 0; r < cellRepeat[i] && columnIndex < count; r++) {
+        strings[columnIndex++] = cells[i];
+      }
+    }
+    return strings;
+  }
+
+
+  private void readCells() throws XMLStreamException {
+    cellCount = 0;
+    while (true) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        int repeat = getInt(TABLE, "number-columns-repeated", 1);
+        // if there's an office:value in the cell, just roll with that
+        String value = reader.getAttributeValue(OFFICE, "value");
+        if (value == null) {
+          value = readCellText();
+        } else {
+          skipElement();
+        }
+        if (cellCount == cells.length) {
+          cells = PApplet.expand(cells);
+          cellRepeat = PApplet.expand(cellRepeat);
+        }
+        cells[cellCount] = value;
+        cellRepeat[cellCount] = repeat;
+        cellCount++;
+
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        return;  // end of the table:table-row
+      }
+    }
+  }
+
+
+  /** Read the text:p inside a cell, leaving the reader at the cell's end. */
+  private String readCellText() throws XMLStreamException {
+    String text = null;
+    while (true) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        if (is(TEXT, "p")) {
+          if (text != null) {
+            throw new RuntimeException("found more than one text:p element");
+          }
+          text = readParagraph();
+        } else {
+          skipElement();  // annotations and the like
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        return text;
+      }
+    }
+  }
+
+
+  private String readParagraph() throws XMLStreamException {
+    buffer.setLength(0);
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      switch (event) {
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          buffer.append(reader.getTextCharacters(),
+                        reader.getTextStart(), reader.getTextLength());
+          break;
+
+        case XMLStreamConstants.START_ELEMENT:
+          if (is(TEXT, "s")) {
+            // runs of spaces are stored as <text:s text:c="4"/>
+            int spaceCount = getInt(TEXT, "c", 1);
+            for (int space = 0; space < spaceCount; space++) {
+              buffer.append(' ');
+            }
+          }
+          // the text inside links and spans is kept, the tags are not
+          depth++;
+          break;
+
+        case XMLStreamConstants.END_ELEMENT:
+          depth--;
+          break;
+      }
+    }
+    return buffer.toString();
+  }
+
+
+  /** Skip past the end of the element that was just started. */
+  private void skipElement() throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+
+  private boolean is(String namespace, String name) {
+    return name.equals(reader.getLocalName()) &&
+      namespace.equals(reader.getNamespaceURI());
+  }
+
+
+  private int getInt(String namespace, String name, int otherwise) {
+    String value = reader.getAttributeValue(namespace, name);
+    return (value == null) ? otherwise : Integer.parseInt(value.trim());
+  }
+
+
+  /** Stops parsing. Doesn't close the InputStream that was passed in. */
+  void close() {
+    finished = true;
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      e.printStackTrace();
+    }
+  }
+}
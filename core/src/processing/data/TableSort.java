@@ -0,0 +1,249 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Works out the sorted order of the rows in a Table, without moving any
+ * of the data. The result is a permutation (the row that goes first, then
+ * the row that goes second, and so on) that the Table applies to each
+ * column in a single pass. The sort is stable: rows with equal keys stay
+ * in the order they were in, also when sorting in reverse.
+ * <p/>
+ * A single INT, CATEGORY, or FLOAT column is sorted as 64-bit numbers that
+ * hold the key in the upper half and the row in the lower half, so the
+ * rows break ties and Arrays.parallelSort() does all the work. Everything
+ * else is a merge sort of row indices with one comparator per column,
+ * with the halves of large tables sorted in parallel.
+ */
+class TableSort {
+  /** Ranges smaller than this are sorted on the current thread. */
+  static final int PARALLEL_THRESHOLD = 1 << 13;
+  /** Ranges smaller than this use an insertion sort. */
+  static final int INSERTION_THRESHOLD = 32;
+
+
+  static int[] order(Table table, int[] columns, boolean reverse) {
+    int rowCount = table.getRowCount();
+    if (columns.length == 1) {
+      int[] order = packedOrder(table, columns[0], rowCount, reverse);
+      if (order != null) {
+        return order;
+      }
+    }
+
+    Key[] keys = new Key[columns.length];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = createKey(table, columns[i]);
+    }
+    int[] order = new int[rowCount];
+    for (int row = 0; row < rowCount; row++) {
+      order[row] = row;
+    }
+    MergeSort sorter =
+      new MergeSort(keys, reverse, order, new int[rowCount], 0, rowCount);
+    if (rowCount < PARALLEL_THRESHOLD) {
+      sorter.compute();
+    } else {
+      ForkJoinPool.commonPool().invoke(sorter);
+    }
+    return order;
+  }
+
+
+  /**
+   * Sort on a 32-bit key and row packed together into a long,
+   * or return null if the column's values don't fit in 32 bits.
+   */
+  static private int[] packedOrder(Table table, int column,
+                                   int rowCount, boolean reverse) {
+    int type = table.getColumnType(column);
+    if (type != Table.INT && type != Table.CATEGORY && type != Table.FLOAT) {
+      return null;
+    }
+    Object data = table.columnData(column);
+    long[] packed = new long[rowCount];
+    for (int row = 0; row < rowCount; row++) {
+      int key;
+      if (type == Table.FLOAT) {
+        // same order as Float.compare(): -0 before 0, and NaN at the end
+        int bits = Float.floatToIntBits(((float[]) data)[row]);
+        key = bits ^ ((bits >> 31) & 0x7fffffff);
+      } else {
+        key = ((int[]) data)[row];
+      }
+      if (reverse) {
+        key = ~key;  // flips the order, and unlike -key can't overflow
+      }
+      packed[row] = ((long) key << 32) | row;
+    }
+    Arrays.parallelSort(packed);
+
+    int[] order = new int[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      order[i] = (int) packed[i];
+    }
+    return order;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** Compares two rows on the values of a single column. */
+  static abstract class Key {
+    abstract int compare(int a, int b);
+  }
+
+
+  static Key createKey(Table table, int column) {
+    Object data = table.columnData(column);
+    switch (table.getColumnType(column)) {
+      case Table.INT:
+      case Table.CATEGORY:
+        final int[] ints = (int[]) data;
+        return new Key() {
+          int compare(int a, int b) {
+            return Integer.compare(ints[a], ints[b]);
+          }
+        };
+      case Table.LONG:
+        final long[] longs = (long[]) data;
+        return new Key() {
+          int compare(int a, int b) {
+            return Long.compare(longs[a], longs[b]);
+          }
+        };
+      case Table.FLOAT:
+        final float[] floats = (float[]) data;
+        return new Key() {
+          int compare(int a, int b) {
+            return Float.compare(floats[a], floats[b]);
+          }
+        };
+      case Table.DOUBLE:
+        final double[] doubles = (double[]) data;
+        return new Key() {
+          int compare(int a, int b) {
+            return Double.compare(doubles[a], doubles[b]);
+          }
+        };
+      case Table.STRING:
+        final String[] strings = (String[]) data;
+        return new Key() {
+          int compare(int a, int b) {
+            // empty cells sort as if they were empty strings
+            String s1 = (strings[a] == null) ? "" : strings[a];
+            String s2 = (strings[b] == null) ? "" : strings[b];
+            return s1.compareToIgnoreCase(s2);
+          }
+        };
+      default:
+        throw new IllegalArgumentException("Invalid column type: " + table.getColumnType(column));
+    }
+  }
+
+
+  /**
+   * Stable merge sort of rows[start, stop), using temp as scratch space.
+   * Both halves of a large range are sorted in parallel before merging.
+   */
+  @SuppressWarnings("serial")
+  static class MergeSort extends RecursiveAction {
+    Key[] keys;
+    boolean reverse;
+    int[] rows;
+    int[] temp;
+    int start;
+    int stop;
+
+    MergeSort(Key[] keys, boolean reverse,
+              int[] rows, int[] temp, int start, int stop) {
+      this.keys = keys;
+      this.reverse = reverse;
+      this.rows = rows;
+      this.temp = temp;
+      this.start = start;
+      this.stop = stop;
+    }
+
+    @Override
+    protected void compute() {
+      if (stop - start < PARALLEL_THRESHOLD) {
+        sort(start, stop);
+      } else {
+        int middle = (start + stop) >>> 1;
+        invokeAll(new MergeSort(keys, reverse, rows, temp, start, middle),
+                  new MergeSort(keys, reverse, rows, temp, middle, stop));
+        merge(start, middle, stop);
+      }
+    }
+
+    int compare(int a, int b) {
+      for (Key key : keys) {
+        int result = key.compare(a, b);
+        if (result != 0) {
+          return reverse ? -result : result;
+        }
+      }
+      return 0;
+    }
+
+    void sort(int lo, int hi) {
+      if (hi - lo < INSERTION_THRESHOLD) {
+        for (int i = lo + 1; i < hi; i++) {
+          int row = rows[i];
+          int j = i;
+          while (j > lo && compare(rows[j - 1], row) > 0) {
+            rows[j] = rows[j - 1];
+            j--;
+          }
+          rows[j] = row;
+        }
+      } else {
+        int middle = (lo + hi) >>> 1;
+        sort(lo, middle);
+        sort(middle, hi);
+        merge(lo, middle, hi);
+      }
+    }
+
+    void merge(int lo, int middle, int hi) {
+      if (compare(rows[middle - 1], rows[middle]) <= 0) {
+        return;  // already in order, which makes sorted input linear
+      }
+      System.arraycopy(rows, lo, temp, lo, hi - lo);
+      int i = lo;
+      int j = middle;
+      for (int k = lo; k < hi; k++) {
+        if (j == hi || (i < middle && compare(temp[i], temp[j]) <= 0)) {
+          rows[k] = temp[i++];
+        } else {
+          rows[k] = temp[j++];
+        }
+      }
+    }
+  }
+}
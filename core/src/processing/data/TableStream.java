@@ -0,0 +1,284 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import processing.core.PApplet;
+
+
+/**
+ * Reads the rows of a CSV, TSV, ODS, or binary table file one at a time, so
+ * that files far larger than memory can be filtered or added up:
+ * <pre>
+ * float total = 0;
+ * for (TableRow row : streamTable("huge.csv", "header")) {
+ *   total += row.getFloat("amount");
+ * }
+ * </pre>
+ * Only a single row is kept in memory. It's parsed the same way that
+ * loadTable() would, using the column types from a "dictionary=" file if
+ * one is given. The same TableRow object is reused for every row, so copy
+ * out any values that are needed later (or add the row to another Table).
+ * <p/>
+ * A TableStream can only be read once. The file is closed when the last
+ * row has been read, or with close() when stopping early.
+ *
+ * @nowebref
+ * @see PApplet#streamTable(String, String)
+ */
+public class TableStream implements Iterable<TableRow>, Closeable {
+  InputStream input;
+  boolean iterated;
+  boolean closed;
+
+  /** Holds the current row, with the same columns as the file. */
+  Table current;
+  TableRow row;
+  int rowIndex;
+
+  TableTokenizer tokenizer;
+  DataInputStream binary;
+  int binaryRemaining;
+  TableODSReader ods;
+  /** Values for the rows that repeat the last table:table-row. */
+  String[] odsStrings;
+  int odsRepeat;
+  /** Empty rows, which are only returned if a row follows them. */
+  int odsSkipped;
+  int odsEmpty;
+
+
+  public TableStream(InputStream input, String options) throws IOException {
+    this(input, options, null);
+  }
+
+
+  /**
+   * @param template a Table whose column types (and titles) are used to
+   * parse the rows, as with Table.typedParse(), or null to read everything
+   * as STRING columns
+   */
+  public TableStream(InputStream input, String options,
+                     Table template) throws IOException {
+    this.input = input;
+    current = new Table();
+    if (template != null) {
+      current.setColumnTypes(template.getColumnTypes());
+      if (template.columnTitles != null) {
+        current.setColumnTitles(template.getColumnTitles());
+      }
+    }
+
+    boolean header = false;
+    String extension = null;
+    String encoding = "UTF-8";
+    String worksheet = null;
+    final String sheetParam = "worksheet=";
+    if (options != null) {
+      for (String opt : PApplet.trim(PApplet.split(options, ','))) {
+        if (opt.equals("tsv") || opt.equals("csv") ||
+            opt.equals("bin") || opt.equals("ods")) {
+          extension = opt;
+        } else if (opt.equals("header")) {
+          header = true;
+        } else if (opt.startsWith(sheetParam)) {
+          worksheet = opt.substring(sheetParam.length());
+        } else if (opt.startsWith("dictionary=")) {
+          // handled by PApplet, which passes in the template
+        } else if (opt.startsWith("encoding=")) {
+          encoding = opt.substring(9);
+        } else {
+          throw new IllegalArgumentException("'" + opt + "' is not a valid option for streaming a Table");
+        }
+      }
+    }
+    if (extension == null) {
+      throw new IllegalArgumentException("No extension specified for this Table");
+    }
+
+    if (extension.equals("bin")) {
+      binary = new DataInputStream(new BufferedInputStream(input));
+      binaryRemaining = current.readBinaryHeader(binary);
+
+    } else if (extension.equals("ods")) {
+      ods = new TableODSReader(input, worksheet);
+      if (header && ods.readRow()) {
+        current.setColumnTitles(ods.getStrings());
+      }
+
+    } else {
+      BufferedReader reader =
+        new BufferedReader(new InputStreamReader(input, encoding));
+      // strip out the Unicode BOM, if present
+      reader.mark(1);
+      if (reader.read() != '\uFEFF') {
+        reader.reset();
+      }
+      tokenizer = new TableTokenizer(reader, extension.equals("tsv"));
+      if (header && tokenizer.readRecord()) {
+        current.setColumnTitles(tokenizer.getStrings());
+      }
+    }
+
+    current.setRowCount(1);
+    row = current.getRow(0);
+  }
+
+
+  public int getColumnCount() {
+    return current.getColumnCount();
+  }
+
+
+  public String[] getColumnTitles() {
+    return current.getColumnTitles();
+  }
+
+
+  public int[] getColumnTypes() {
+    return current.getColumnTypes();
+  }
+
+
+  /**
+   * Move on to the next row.
+   * @return false once there are no rows left
+   */
+  protected boolean advance() {
+    if (closed) {
+      return false;
+    }
+    boolean found = false;
+    try {
+      if (ods != null) {
+        found = advanceODS();
+
+      } else if (binary != null) {
+        if (binaryRemaining > 0) {
+          current.readBinaryRow(binary, 0);
+          binaryRemaining--;
+          found = true;
+        }
+
+      } else if (tokenizer.readRecord()) {
+        current.setRow(0, tokenizer);
+        // a short line shouldn't keep the end of the line before it
+        for (int col = tokenizer.fieldCount; col < current.getColumnCount(); col++) {
+          current.setRowCol(0, col, null);
+        }
+        found = true;
+      }
+    } catch (IOException e) {
+      close();
+      throw new RuntimeException("Error reading table on line " + rowIndex, e);
+    }
+    if (found) {
+      rowIndex++;
+    } else {
+      close();
+    }
+    return found;
+  }
+
+
+  private boolean advanceODS() throws IOException {
+    while (odsEmpty == 0 && odsRepeat == 0) {
+      if (!ods.readRow()) {
+        return false;
+      }
+      String[] strings = ods.getStrings();
+      if (strings.length == 0) {
+        odsSkipped += ods.rowRepeat;
+      } else {
+        odsStrings = strings;
+        odsRepeat = ods.rowRepeat;
+        odsEmpty = odsSkipped;
+        odsSkipped = 0;
+      }
+    }
+    if (odsEmpty > 0) {
+      odsEmpty--;
+      for (int col = 0; col < current.getColumnCount(); col++) {
+        current.setRowCol(0, col, null);
+      }
+    } else {
+      odsRepeat--;
+      current.setRow(0, odsStrings);
+      for (int col = odsStrings.length; col < current.getColumnCount(); col++) {
+        current.setRowCol(0, col, null);
+      }
+    }
+    return true;
+  }
+
+
+  public Iterator<TableRow> iterator() {
+    if (iterated) {
+      throw new IllegalStateException("A TableStream can only be read once");
+    }
+    iterated = true;
+
+    return new Iterator<TableRow>() {
+      boolean ready;
+
+      public boolean hasNext() {
+        if (!ready) {
+          ready = advance();
+        }
+        return ready;
+      }
+
+      public TableRow next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        ready = false;
+        return row;
+      }
+    };
+  }
+
+
+  /** The rows as a java.util.stream.Stream, which closes this when closed. */
+  public Stream<TableRow> stream() {
+    return StreamSupport.stream(spliterator(), false).onClose(this::close);
+  }
+
+
+  public void close() {
+    if (!closed) {
+      closed = true;
+      if (ods != null) {
+        ods.close();
+      }
+      try {
+        input.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
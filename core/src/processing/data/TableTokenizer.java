@@ -0,0 +1,411 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import processing.core.PApplet;
+
+
+/**
+ * Splits CSV or TSV text into records and fields using a single reusable
+ * char buffer. Unlike readLine() + split(), no String objects are created
+ * for a record unless one is asked for with getString(), so numeric columns
+ * can be parsed straight into the typed arrays of a Table.
+ * <p/>
+ * Quoting follows the rules of the older CommaSeparatedLine parser: quoted
+ * fields may contain commas and newlines (converted to \n), "" is an escaped
+ * quote, and a stray quote in the middle of a quoted field is kept as-is.
+ */
+class TableTokenizer {
+  static final int BUFFER_SIZE = 1 << 16;
+
+  Reader reader;
+  boolean tsv;
+
+  char[] buffer = new char[BUFFER_SIZE];
+  int bufferIndex;
+  int bufferLength;
+
+  /** Unescaped contents of the current record, fields back to back. */
+  char[] record = new char[256];
+  int recordLength;
+
+  int[] fieldStart = new int[16];
+  int[] fieldStop = new int[16];
+  int fieldCount;
+
+
+  TableTokenizer(Reader reader, boolean tsv) {
+    this.reader = reader;
+    this.tsv = tsv;
+  }
+
+
+  /** Tokenize chars from start up to (not including) stop, without a copy. */
+  TableTokenizer(char[] chars, int start, int stop, boolean tsv) {
+    buffer = chars;
+    bufferIndex = start;
+    bufferLength = stop;
+    this.tsv = tsv;
+  }
+
+
+  private int read() throws IOException {
+    if (bufferIndex == bufferLength) {
+      if (reader == null) {
+        return -1;
+      }
+      bufferLength = reader.read(buffer, 0, buffer.length);
+      bufferIndex = 0;
+      if (bufferLength <= 0) {
+        bufferLength = 0;
+        return -1;
+      }
+    }
+    return buffer[bufferIndex++];
+  }
+
+
+  private void append(char c) {
+    if (recordLength == record.length) {
+      record = PApplet.expand(record);
+    }
+    record[recordLength++] = c;
+  }
+
+
+  private void addField(int start, int stop) {
+    if (fieldCount == fieldStart.length) {
+      fieldStart = PApplet.expand(fieldStart);
+      fieldStop = PApplet.expand(fieldStop);
+    }
+    fieldStart[fieldCount] = start;
+    fieldStop[fieldCount] = stop;
+    fieldCount++;
+  }
+
+
+  /** Consume the \n of a \r\n pair, after c has ended a record. */
+  private void endLine(int c) throws IOException {
+    if (c == '\r') {
+      int next = read();
+      if (next != '\n' && next != -1) {
+        bufferIndex--;  // not part of this line ending, step back
+      }
+    }
+  }
+
+
+  /**
+   * Read the next record from the input.
+   * @return false if the end of the input has been reached
+   */
+  boolean readRecord() throws IOException {
+    recordLength = 0;
+    fieldCount = 0;
+
+    int c = read();
+    if (c == -1) {
+      return false;
+    }
+
+    if (tsv) {
+      int start = 0;
+      while (c != '\n' && c != '\r' && c != -1) {
+        if (c == '\t') {
+          addField(start, recordLength);
+          start = recordLength;
+        } else {
+          append((char) c);
+        }
+        c = read();
+      }
+      addField(start, recordLength);
+      endLine(c);
+      return true;
+    }
+
+    while (true) {
+      int start = recordLength;
+      if (c == '\"') {
+        c = read();
+        while (true) {
+          if (c == -1) {
+            throw new IOException("Found a quoted line that wasn't terminated properly.");
+
+          } else if (c == '\"') {
+            c = read();
+            if (c == '\"') {
+              // an escaped quote inside a quoted field
+              append('\"');
+              c = read();
+            } else if (c == ',' || c == '\n' || c == '\r' || c == -1) {
+              break;  // closing quote for this field
+            } else {
+              // A lone-wolf quote in the middle of some other text,
+              // not escaped properly. Keep it and pray for the best.
+              append('\"');
+            }
+
+          } else if (c == '\r' || c == '\n') {
+            // newline inside a quoted field, always stored as \n
+            append('\n');
+            if (c == '\r') {
+              c = read();
+              if (c == '\n') {
+                c = read();
+              }
+            } else {
+              c = read();
+            }
+
+          } else {
+            append((char) c);
+            c = read();
+          }
+        }
+
+      } else {
+        while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+          if (c == '\"') {
+            // only legal as the "" escape inside an unquoted field
+            c = read();
+            if (c != '\"') {
+              throw new RuntimeException("Unterminated quoted field mid-line");
+            }
+          }
+          append((char) c);
+          c = read();
+        }
+      }
+      addField(start, recordLength);
+
+      if (c == ',') {
+        c = read();
+      } else {
+        endLine(c);
+        return true;
+      }
+    }
+  }
+
+
+  String getString(int field) {
+    return new String(record, fieldStart[field],
+                      fieldStop[field] - fieldStart[field]);
+  }
+
+
+  String[] getStrings() {
+    String[] outgoing = new String[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      outgoing[i] = getString(i);
+    }
+    return outgoing;
+  }
+
+
+  /** Same result as PApplet.parseInt(getString(field), missing). */
+  int getInt(int field, int missing) {
+    return parseInt(record, fieldStart[field], fieldStop[field], missing);
+  }
+
+
+  long getLong(int field, long missing) {
+    return parseLong(record, fieldStart[field], fieldStop[field], missing);
+  }
+
+
+  /** Same result as PApplet.parseFloat(getString(field), missing). */
+  float getFloat(int field, float missing) {
+    return parseFloat(record, fieldStart[field], fieldStop[field], missing);
+  }
+
+
+  double getDouble(int field, double missing) {
+    return parseDouble(record, fieldStart[field], fieldStop[field], missing);
+  }
+
+
+  /**
+   * Find the position just past the last line ending in the first length
+   * chars that is not inside a quoted field, or 0 if there is none. This is
+   * a safe spot to split the input, since only the quote parity matters.
+   * (A stray unescaped quote in a quoted field will throw this off, so files
+   * that need the "lone-wolf" quote handling can't be split this way.)
+   */
+  static int lastRecordEnd(char[] c, int length, boolean tsv) {
+    int boundary = 0;
+    boolean quoted = false;
+    for (int i = 0; i < length; i++) {
+      char ch = c[i];
+      if (ch == '\"') {
+        if (!tsv) {
+          quoted = !quoted;
+        }
+      } else if (!quoted) {
+        if (ch == '\n') {
+          boundary = i + 1;
+        } else if (ch == '\r' && i + 1 < length && c[i + 1] != '\n') {
+          boundary = i + 1;
+        }
+      }
+    }
+    return boundary;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  // Powers of ten that are exactly representable, so that a mantissa small
+  // enough to also be exact can be divided once and get the same correctly
+  // rounded result as Float.parseFloat() or Double.parseDouble().
+  static private final float[] floatPow10 = {
+    1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+  static private final double[] doublePow10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+
+  static int parseInt(char[] c, int start, int stop, int missing) {
+    if (start == stop) {
+      return missing;
+    }
+    int i = start;
+    boolean negative = c[i] == '-';
+    if (negative || c[i] == '+') {
+      i++;
+    }
+    int digits = i;
+    int value = 0;
+    // nine digits can't overflow, anything longer goes the slow way
+    while (i < stop && i - digits < 9 && c[i] >= '0' && c[i] <= '9') {
+      value = value*10 + (c[i++] - '0');
+    }
+    // parseInt() ignores everything after a decimal point
+    if (i != digits && (i == stop || c[i] == '.')) {
+      return negative ? -value : value;
+    }
+    return PApplet.parseInt(new String(c, start, stop - start), missing);
+  }
+
+
+  static long parseLong(char[] c, int start, int stop, long missing) {
+    if (start == stop) {
+      return missing;
+    }
+    int i = start;
+    boolean negative = c[i] == '-';
+    if (negative || c[i] == '+') {
+      i++;
+    }
+    int digits = i;
+    long value = 0;
+    while (i < stop && i - digits < 18 && c[i] >= '0' && c[i] <= '9') {
+      value = value*10 + (c[i++] - '0');
+    }
+    if (i != digits && i == stop) {
+      return negative ? -value : value;
+    }
+    try {
+      return Long.parseLong(new String(c, start, stop - start));
+    } catch (NumberFormatException nfe) {
+      return missing;
+    }
+  }
+
+
+  static float parseFloat(char[] c, int start, int stop, float missing) {
+    if (start == stop) {
+      return missing;
+    }
+    long packed = decimalMantissa(c, start, stop, 1 << 24);
+    int places = (int) (packed & 31);
+    if (packed >= 0 && places < floatPow10.length) {
+      float value = (packed >> 5) / floatPow10[places];
+      return (c[start] == '-') ? -value : value;
+    }
+    return PApplet.parseFloat(new String(c, start, stop - start), missing);
+  }
+
+
+  static double parseDouble(char[] c, int start, int stop, double missing) {
+    if (start == stop) {
+      return missing;
+    }
+    long packed = decimalMantissa(c, start, stop, 1L << 53);
+    int places = (int) (packed & 31);
+    if (packed >= 0 && places < doublePow10.length) {
+      double value = (packed >> 5) / doublePow10[places];
+      return (c[start] == '-') ? -value : value;
+    }
+    try {
+      return Double.parseDouble(new String(c, start, stop - start));
+    } catch (NumberFormatException nfe) {
+      return missing;
+    }
+  }
+
+
+  /**
+   * Parse [+-]digits[.digits] into an integer mantissa, packed together with
+   * the number of digits after the decimal point in the low five bits (the
+   * mantissa never needs more than 53 bits, so the shift is safe). Returns -1 for
+   * anything else (exponents, whitespace, NaN) or if the mantissa would go
+   * past limit, so that the caller falls back to the JDK parser.
+   */
+  static private long decimalMantissa(char[] c, int start, int stop, long limit) {
+    int i = start;
+    if (c[i] == '-' || c[i] == '+') {
+      i++;
+    }
+    long mantissa = 0;
+    int places = 0;
+    boolean digits = false;
+    boolean point = false;
+    while (i < stop) {
+      char ch = c[i++];
+      if (ch >= '0' && ch <= '9') {
+        mantissa = mantissa*10 + (ch - '0');
+        if (mantissa > limit) {
+          return -1;
+        }
+        if (point) {
+          places++;
+        }
+        digits = true;
+      } else if (ch == '.' && !point) {
+        point = true;
+      } else {
+        return -1;
+      }
+    }
+    if (!digits || places > 31) {
+      return -1;
+    }
+    return (mantissa << 5) | places;
+  }
+}
@@ -0,0 +1,413 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import processing.core.PApplet;
+
+
+/**
+ * Adds rows to the end of a CSV, TSV, or binary ("bin") table file, one at
+ * a time, without keeping them in memory. This is for logging: calling
+ * saveTable() over and over rewrites the whole file each time, so it gets
+ * slower as the file grows, while adding a row here always takes the same
+ * amount of time.
+ * <p/>
+ * The columns (titles, types, and categories) come from a Table, which is
+ * only used as a template: its rows are not written, and changing it later
+ * has no effect on the writer. Rows are converted to text (or bytes) right
+ * away, collected into batches, and written by a background thread. A
+ * batch is handed off once it's 64 KB, or when a second has passed since
+ * the last one (the background thread checks for rows that have been
+ * waiting, so this happens even if no more rows are added), so the file
+ * doesn't fall far behind. Call flush() to wait for everything so far to
+ * be written, and close() when finished. Rows should be added from one
+ * thread at a time.
+ * <p/>
+ * Options are "csv", "tsv", or "bin" (taken from the file name when not
+ * specified), and "append" to add to the end of an existing CSV or TSV file
+ * instead of replacing it (the column titles are only written to an empty
+ * file). A ".gz" file name compresses the output. Binary files can't be
+ * compressed or appended to, and because their categories are stored at
+ * the start of the file, CATEGORY values have to be categories that the
+ * template Table already has.
+ *
+ * @nowebref
+ * @see PApplet#createTableWriter(String, Table, String)
+ */
+public class TableWriter {
+  /** Size at which a batch of rows is handed to the background thread. */
+  static final int BATCH_SIZE = 1 << 16;
+  /** Longest time (in millis) that a row waits before it's handed off. */
+  static final int FLUSH_INTERVAL = 1000;
+  /** Batches waiting to be written before addRow() waits for the disk. */
+  static final int MAX_PENDING = 8;
+
+  String format;
+  /** A single row with the template's columns, for converting values. */
+  Table scratch;
+  int columnCount;
+
+  OutputStream output;
+  /** Binary files update the row count at the start of the file. */
+  FileChannel channel;
+
+  StringWriter text;
+  PrintWriter textWriter;
+  ByteArrayOutputStream bytes;
+  DataOutputStream dataWriter;
+
+  int rowCount;
+  long lastHandoff;
+
+  /** Sketch that dispose() is registered with, until close() is called. */
+  PApplet parent;
+
+  ScheduledExecutorService writerThread;
+  /** Writes handed off so far, guarded by this object's lock. */
+  ArrayDeque<Future<?>> pending = new ArrayDeque<>();
+  boolean closed;
+
+
+  public TableWriter(File file, Table table) throws IOException {
+    this(file, table, null);
+  }
+
+
+  /**
+   * Create a writer that's closed when the sketch quits, if it hasn't been
+   * closed already. See PApplet.createTableWriter().
+   */
+  public TableWriter(PApplet parent, File file, Table table,
+                     String options) throws IOException {
+    this(file, table, options);
+    this.parent = parent;
+    parent.registerMethod("dispose", this);
+  }
+
+
+  public TableWriter(File file, Table table, String options) throws IOException {
+    boolean append = false;
+    options = Table.extensionOptions(false, file.getName(), options);
+    if (options != null) {
+      for (String opt : PApplet.trim(PApplet.split(options, ','))) {
+        if (opt.equals("csv") || opt.equals("tsv") || opt.equals("bin")) {
+          format = opt;
+        } else if (opt.equals("append")) {
+          append = true;
+        } else {
+          throw new IllegalArgumentException("'" + opt + "' is not a valid option for TableWriter");
+        }
+      }
+    }
+    if (format == null) {
+      throw new IllegalArgumentException("No extension specified for this TableWriter");
+    }
+    boolean compressed = file.getName().toLowerCase().endsWith(".gz");
+    if (format.equals("bin") && (append || compressed)) {
+      throw new IllegalArgumentException("Binary tables can't be compressed or appended to while writing");
+    }
+    boolean titles = table.columnTitles != null && !(append && file.length() > 0);
+
+    scratch = table.createChunk();
+    if (table.columnTitles != null) {
+      scratch.columnTitles = table.columnTitles.clone();
+    }
+    columnCount = table.getColumnCount();
+    for (int col = 0; col < columnCount; col++) {
+      if (table.columnTypes[col] == Table.CATEGORY) {
+        scratch.columnCategories[col] =
+          new Table.HashMapBlows(table.columnCategories[col]);
+      }
+    }
+    scratch.setRowCount(1);
+
+    PApplet.createPath(file);
+    FileOutputStream fos = new FileOutputStream(file, append);
+    output = fos;
+    if (compressed) {
+      // sync flush so that each batch makes it to the file right away
+      output = new GZIPOutputStream(fos, BATCH_SIZE, true);
+    }
+
+    if (format.equals("bin")) {
+      channel = fos.getChannel();
+      bytes = new ByteArrayOutputStream(BATCH_SIZE * 2);
+      dataWriter = new DataOutputStream(bytes);
+      scratch.writeBinaryHeader(dataWriter, 0);
+    } else {
+      text = new StringWriter(BATCH_SIZE * 2);
+      textWriter = new PrintWriter(text);
+      if (titles) {
+        if (format.equals("csv")) {
+          scratch.writeTitlesCSV(textWriter);
+        } else {
+          scratch.writeTitlesTSV(textWriter);
+        }
+      }
+    }
+
+    writerThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "TableWriter " + file.getName());
+      thread.setDaemon(true);
+      return thread;
+    });
+    handoff();
+    // hand off rows that have been sitting there, once nothing more is added
+    writerThread.scheduleWithFixedDelay(this::handoffIdle, FLUSH_INTERVAL,
+                                        FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+
+  /** Number of rows added so far. */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+
+  /**
+   * Add a row, with values in the same order as the columns. Values are
+   * converted the same way as Table.setRow(), and columns past the end of
+   * the array are left empty.
+   */
+  public void addRow(Object... values) {
+    if (closed) {
+      throw new IllegalStateException("This TableWriter has been closed");
+    }
+    if (values.length > columnCount) {
+      throw new IllegalArgumentException("Row has " + values.length +
+                                         " values, but there are only " +
+                                         columnCount + " columns");
+    }
+    if (channel != null) {
+      checkCategories(values);
+    }
+    for (int col = 0; col < columnCount; col++) {
+      scratch.setRowCol(0, col, (col < values.length) ? values[col] : null);
+    }
+    writeRow();
+  }
+
+
+  /** Binary files can only use the categories written in their header. */
+  private void checkCategories(Object[] values) {
+    for (int col = 0; col < values.length; col++) {
+      if (scratch.columnTypes[col] == Table.CATEGORY && values[col] != null) {
+        String value = String.valueOf(values[col]);
+        if (!value.equals(scratch.missingString) &&
+            scratch.columnCategories[col].find(value) == -1) {
+          throw new IllegalArgumentException("'" + value + "' is not a category in column " + col +
+                                             ", and a binary table can't add categories while it's being written");
+        }
+      }
+    }
+  }
+
+
+  /** Add a copy of a row from a Table with the same columns. */
+  public void addRow(TableRow row) {
+    Object[] values = new Object[columnCount];
+    for (int col = 0; col < columnCount; col++) {
+      switch (scratch.columnTypes[col]) {
+        case Table.INT: values[col] = row.getInt(col); break;
+        case Table.LONG: values[col] = row.getLong(col); break;
+        case Table.FLOAT: values[col] = row.getFloat(col); break;
+        case Table.DOUBLE: values[col] = row.getDouble(col); break;
+        default: values[col] = row.getString(col); break;
+      }
+    }
+    addRow(values);
+  }
+
+
+  /** Add all the rows of a Table with the same columns. */
+  public void addRows(Table table) {
+    for (TableRow row : table.rows()) {
+      addRow(row);
+    }
+  }
+
+
+  private void writeRow() {
+    synchronized (this) {
+      writeBatchRow();
+    }
+    waitForPending(MAX_PENDING);
+  }
+
+
+  private void writeBatchRow() {
+    if (format.equals("csv")) {
+      scratch.writeRowCSV(textWriter, 0);
+    } else if (format.equals("tsv")) {
+      scratch.writeRowTSV(textWriter, 0);
+    } else {
+      try {
+        scratch.writeBinaryRow(dataWriter, 0);
+      } catch (IOException e) {
+        throw new RuntimeException(e);  // writing to memory, won't happen
+      }
+    }
+    rowCount++;
+
+    if (batchSize() >= BATCH_SIZE ||
+        System.currentTimeMillis() - lastHandoff >= FLUSH_INTERVAL) {
+      handoff();
+    }
+  }
+
+
+  private int batchSize() {
+    return (text != null) ? text.getBuffer().length() : bytes.size();
+  }
+
+
+  /**
+   * Runs on the writer thread. Only takes the lock for long enough to pass
+   * the batch along, and never waits for writes, which run on this thread.
+   */
+  private synchronized void handoffIdle() {
+    if (!closed && batchSize() > 0 &&
+        System.currentTimeMillis() - lastHandoff >= FLUSH_INTERVAL) {
+      handoff();
+    }
+  }
+
+
+  /**
+   * Pass the current batch to the background thread. Called with the lock
+   * held, so that rows can't be added halfway through.
+   */
+  private void handoff() {
+    final byte[] batch;
+    if (text != null) {
+      textWriter.flush();
+      batch = text.toString().getBytes(StandardCharsets.UTF_8);
+      text.getBuffer().setLength(0);
+    } else {
+      batch = bytes.toByteArray();
+      bytes.reset();
+    }
+    final int rows = rowCount;
+    lastHandoff = System.currentTimeMillis();
+
+    pending.add(writerThread.submit(() -> {
+      output.write(batch);
+      output.flush();
+      if (channel != null) {
+        // the row count comes right after the magic number
+        ByteBuffer count = ByteBuffer.allocate(4).putInt(0, rows);
+        channel.write(count, 4);
+      }
+      return null;
+    }));
+  }
+
+
+  /**
+   * Wait until no more than max writes are left. The lock isn't held
+   * while waiting, so handoffIdle() can't get stuck behind it.
+   */
+  private void waitForPending(int max) {
+    while (true) {
+      Future<?> task;
+      synchronized (this) {
+        if (pending.size() <= max) break;
+        task = pending.poll();
+      }
+      finish(task);
+    }
+  }
+
+
+  private void finish(Future<?> task) {
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Could not write table", e.getCause());
+    }
+  }
+
+
+  /** Write everything that's been added so far, and wait until it's done. */
+  public void flush() {
+    if (!closed) {
+      synchronized (this) {
+        handoff();
+      }
+      waitForPending(0);
+    }
+  }
+
+
+  /** Write any remaining rows, and close the file. */
+  public void close() {
+    try {
+      finishFile();
+    } finally {
+      // so a sketch that makes lots of writers doesn't hold on to them all
+      if (parent != null) {
+        parent.unregisterMethod("dispose", this);
+        parent = null;
+      }
+    }
+  }
+
+
+  private void finishFile() {
+    if (!closed) {
+      flush();
+      Future<?> task;
+      synchronized (this) {
+        closed = true;
+        task = writerThread.submit(() -> {
+          output.close();
+          return null;
+        });
+      }
+      writerThread.shutdown();
+      finish(task);
+    }
+  }
+
+
+  /**
+   * Same as close(), so that the file is finished properly when a sketch
+   * quits, see PApplet.registerMethod(). Doesn't unregister, since the
+   * sketch is going through its list of dispose() methods at the time.
+   */
+  public void dispose() {
+    finishFile();
+  }
+}
@@ -24,6 +24,7 @@
 package processing.data;
 
 import java.io.*;
+import java.util.HashMap;
 
 import javax.xml.parsers.*;
 
@@ -69,6 +70,12 @@ public class XML implements Serializable {
   /** Child elements, once loaded. */
   protected XML[] children;
 
+  /**
+   * Child elements by name, made the first time that getChild() or
+   * getChildren() looks for a name, and cleared when children change.
+   */
+  protected transient HashMap<String, XML[]> childIndex;
+
   /**
    * @nowebref
    */
@@ -343,6 +350,9 @@ public class XML implements Serializable {
   public void setName(String newName) {
     Document document = node.getOwnerDocument();
     node = document.renameNode(node, null, newName);
+    if (parent != null) {
+      parent.childIndex = null;
+    }
 //    name = node.getNodeName();
   }
 
@@ -474,17 +484,20 @@ public class XML implements Serializable {
       throw new IllegalArgumentException("getChild() should not begin with a slash");
     }
     if (name.indexOf('/') != -1) {
-      return getChildRecursive(PApplet.split(name, '/'), 0);
-    }
-    int childCount = getChildCount();
-    for (int i = 0; i < childCount; i++) {
-      XML kid = getChild(i);
-      String kidName = kid.getName();
-      if (kidName != null && kidName.equals(name)) {
-        return kid;
-      }
+      return new XMLPath(name).first(this);
     }
-    return null;
+    XML[] matches = getIndexedChildren(name);
+    return (matches == null) ? null : matches[0];
+  }
+
+
+  /**
+   * Get a child using a path from compile().
+   *
+   * @return the first matching element or null if no match
+   */
+  public XML getChild(XMLPath path) {
+    return path.first(this);
   }
 
 
@@ -535,24 +548,66 @@ public class XML implements Serializable {
       throw new IllegalArgumentException("getChildren() should not begin with a slash");
     }
     if (name.indexOf('/') != -1) {
-      return getChildrenRecursive(PApplet.split(name, '/'), 0);
+      return new XMLPath(name).all(this);
     }
     // if it's a number, do an index instead
     // (returns a single element array, since this will be a single match
     if (Character.isDigit(name.charAt(0))) {
       return new XML[] { getChild(Integer.parseInt(name)) };
     }
-    int childCount = getChildCount();
-    XML[] matches = new XML[childCount];
-    int matchCount = 0;
-    for (int i = 0; i < childCount; i++) {
-      XML kid = getChild(i);
-      String kidName = kid.getName();
-      if (kidName != null && kidName.equals(name)) {
-        matches[matchCount++] = kid;
+    XML[] matches = getIndexedChildren(name);
+    // a copy, so that changes to the array don't affect the index
+    return (matches == null) ? new XML[0] : matches.clone();
+  }
+
+
+  /**
+   * Get the children matching a path from compile().
+   *
+   * @return array of child elements that match
+   */
+  public XML[] getChildren(XMLPath path) {
+    return path.all(this);
+  }
+
+
+  /**
+   * Take apart a path like "a/b/c" ahead of time, for use with getChild()
+   * and getChildren() when the same path is used many times.
+   */
+  static public XMLPath compile(String path) {
+    return new XMLPath(path);
+  }
+
+
+  /** The children with a name, or null if there are none. */
+  XML[] getIndexedChildren(String name) {
+    if (childIndex == null) {
+      checkChildren();
+      // count first, so that each array is made at its final size
+      HashMap<String, int[]> counts = new HashMap<>();
+      for (XML kid : children) {
+        int[] count = counts.get(kid.getName());
+        if (count == null) {
+          counts.put(kid.getName(), new int[] { 1 });
+        } else {
+          count[0]++;
+        }
       }
+      HashMap<String, XML[]> index = new HashMap<>();
+      for (XML kid : children) {
+        String kidName = kid.getName();
+        XML[] matches = index.get(kidName);
+        int[] count = counts.get(kidName);
+        if (matches == null) {
+          matches = new XML[count[0]];
+          index.put(kidName, matches);
+        }
+        matches[matches.length - count[0]--] = kid;
+      }
+      childIndex = index;
     }
-    return (XML[]) PApplet.subset(matches, 0, matchCount);
+    return childIndex.get(name);
   }
 
 
@@ -601,6 +656,11 @@ public class XML implements Serializable {
     if (children != null) {
       children = (XML[]) PApplet.concat(children, new XML[] { newbie });
     }
+    if (childIndex != null) {
+      XML[] matches = childIndex.get(newbie.getName());
+      childIndex.put(newbie.getName(), (matches == null) ?
+                     new XML[] { newbie } : (XML[]) PApplet.append(matches, newbie));
+    }
     return newbie;
   }
 
@@ -616,6 +676,7 @@ public class XML implements Serializable {
   public void removeChild(XML kid) {
     node.removeChild(kid.node);
     children = null;  // TODO not efficient
+    childIndex = null;
   }
 
   /**
@@ -1026,6 +1087,9 @@ public class XML implements Serializable {
    */
   public void setContent(String text) {
     node.setTextContent(text);
+    // the text replaces any children
+    children = null;
+    childIndex = null;
   }
 
 
@@ -0,0 +1,112 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import processing.core.PApplet;
+
+
+/**
+ * A path like "channel/item/title" for getChild() and getChildren() that
+ * has already been taken apart, so it can be used over and over (e.g. in
+ * draw()) without splitting the String each time:
+ * <pre>
+ * XMLPath titles = XML.compile("channel/item/title");
+ * ...
+ * for (XML title : rss.getChildren(titles)) {
+ * </pre>
+ * As with a String path, a part that starts with a digit is used as the
+ * index of a child rather than a name.
+ *
+ * @nowebref
+ */
+public class XMLPath {
+  final String path;
+  final String[] names;
+  /** Index for each part that's a number, or -1 for names. */
+  final int[] indices;
+
+
+  public XMLPath(String path) {
+    if (path.length() > 0 && path.charAt(0) == '/') {
+      throw new IllegalArgumentException("A path should not begin with a slash");
+    }
+    this.path = path;
+    names = PApplet.split(path, '/');
+    indices = new int[names.length];
+    for (int i = 0; i < names.length; i++) {
+      indices[i] = Character.isDigit(names[i].charAt(0)) ?
+        Integer.parseInt(names[i]) : -1;
+    }
+  }
+
+
+  /** The first element along the path, or null if there isn't one. */
+  XML first(XML xml) {
+    for (int i = 0; i < names.length && xml != null; i++) {
+      if (indices[i] != -1) {
+        xml = xml.getChild(indices[i]);
+      } else {
+        XML[] matches = xml.getIndexedChildren(names[i]);
+        xml = (matches == null) ? null : matches[0];
+      }
+    }
+    return xml;
+  }
+
+
+  /** Every element along the path, in document order. */
+  XML[] all(XML xml) {
+    List<XML> outgoing = new ArrayList<>();
+    all(xml, 0, outgoing);
+    return outgoing.toArray(new XML[0]);
+  }
+
+
+  private void all(XML xml, int offset, List<XML> outgoing) {
+    XML[] matches;
+    if (indices[offset] != -1) {
+      matches = new XML[] { xml.getChild(indices[offset]) };
+    } else {
+      matches = xml.getIndexedChildren(names[offset]);
+      if (matches == null) {
+        return;
+      }
+    }
+    if (offset == names.length - 1) {
+      for (XML match : matches) {
+        outgoing.add(match);
+      }
+    } else {
+      for (XML match : matches) {
+        all(match, offset + 1, outgoing);
+      }
+    }
+  }
+
+
+  @Override
+  public String toString() {
+    return path;
+  }
+}
@@ -0,0 +1,253 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License version 2.1 as published by the Free Software Foundation.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+ */
+
+package processing.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import processing.core.PApplet;
+
+
+/**
+ * Reads an XML file from start to end without loading all of it, and
+ * hands each element that matches a path to a callback, as a small XML
+ * object with everything inside that element:
+ * <pre>
+ * streamXML("map.osm")
+ *   .on("osm/node", node -&gt; {
+ *     points.add(node.getFloat("lon"), node.getFloat("lat"));
+ *   })
+ *   .on("osm/way/tag", tag -&gt; println(tag.getString("k")))
+ *   .read();
+ * </pre>
+ * Paths start at the root element, with names separated by slashes, and
+ * "*" matching any name. Only the matching elements are built, and each is
+ * let go once its callback returns, so memory use depends on the size of
+ * those elements, not the size of the file. If one match is inside
+ * another, both callbacks are called, the inner one first.
+ * <p/>
+ * Names, attributes, text, and comments are the same as with loadXML().
+ * The XML objects have no parent. Call close() from a callback to stop
+ * reading early.
+ *
+ * @nowebref
+ * @see PApplet#streamXML(String)
+ */
+public class XMLStream implements Closeable {
+  Closeable input;
+  XMLStreamReader reader;
+  boolean closed;
+
+  List<String[]> paths = new ArrayList<>();
+  List<Consumer<XML>> callbacks = new ArrayList<>();
+
+  /** Names of the elements that the reader is inside of. */
+  String[] names = new String[16];
+  int depth;
+
+  /** Used to make the nodes for matching elements. */
+  Document document;
+  /** The element being built, or null when outside of any match. */
+  Element current;
+
+
+  public XMLStream(InputStream input) throws IOException {
+    this.input = input;
+    try {
+      reader = createFactory().createXMLStreamReader(input);
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+
+  public XMLStream(Reader input) throws IOException {
+    this.input = input;
+    try {
+      reader = createFactory().createXMLStreamReader(input);
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+
+  static private XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    // names like "gpx:trkpt" are kept whole, as with loadXML()
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    // no DTDs or entities from elsewhere, so nothing is downloaded
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    return factory;
+  }
+
+
+  /**
+   * Call callback for every element that matches path.
+   * @param path element names from the root down, like "osm/node"
+   * @return this, so that calls can be chained
+   */
+  public XMLStream on(String path, Consumer<XML> callback) {
+    paths.add(PApplet.split(path, '/'));
+    callbacks.add(callback);
+    return this;
+  }
+
+
+  /** Read to the end of the file (or until closed), then close it. */
+  public void read() {
+    try {
+      while (!closed && reader.hasNext()) {
+        switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          startElement();
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          endElement();
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (current != null) {
+            current.appendChild(document.createTextNode(reader.getText()));
+          }
+          break;
+        case XMLStreamConstants.COMMENT:
+          if (current != null) {
+            current.appendChild(document.createComment(reader.getText()));
+          }
+          break;
+        }
+      }
+    } catch (XMLStreamException e) {
+      int line = (e.getLocation() == null) ? -1 : e.getLocation().getLineNumber();
+      close();
+      throw new RuntimeException("Error reading XML on line " + line, e);
+    }
+    close();
+  }
+
+
+  private void startElement() {
+    String name = reader.getLocalName();
+    if (depth == names.length) {
+      names = PApplet.expand(names);
+    }
+    names[depth++] = name;
+
+    if (current == null && !matchesAny()) {
+      return;  // nothing to build
+    }
+    if (document == null) {
+      try {
+        document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      } catch (ParserConfigurationException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    Element element = document.createElement(name);
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String prefix = reader.getAttributePrefix(i);
+      String attr = reader.getAttributeLocalName(i);
+      if (prefix != null && prefix.length() != 0) {
+        attr = prefix + ":" + attr;
+      }
+      element.setAttribute(attr, reader.getAttributeValue(i));
+    }
+    if (current != null) {
+      current.appendChild(element);
+    }
+    current = element;
+  }
+
+
+  private void endElement() {
+    if (current != null) {
+      // the document doesn't hold on to elements, so once the outermost
+      // match is done with, it can be collected
+      Element element = current;
+      Node parent = element.getParentNode();
+      current = (parent instanceof Element) ? (Element) parent : null;
+
+      for (int i = 0; i < paths.size(); i++) {
+        if (matches(paths.get(i))) {
+          XML xml = new XML();
+          xml.node = element;
+          callbacks.get(i).accept(xml);
+        }
+      }
+    }
+    depth--;
+  }
+
+
+  private boolean matchesAny() {
+    for (String[] path : paths) {
+      if (matches(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  private boolean matches(String[] path) {
+    if (path.length != depth) {
+      return false;
+    }
+    for (int i = 0; i < depth; i++) {
+      if (!path[i].equals("*") && !path[i].equals(names[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  public void close() {
+    if (!closed) {
+      closed = true;
+      try {
+        reader.close();
+        input.close();
+      } catch (XMLStreamException | IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
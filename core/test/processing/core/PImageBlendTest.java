@@ -0,0 +1,87 @@
+package processing.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class PImageBlendTest implements PConstants {
+
+  static final int[] MODES = {
+    REPLACE, BLEND, ADD, SUBTRACT, LIGHTEST, DARKEST, DIFFERENCE, EXCLUSION,
+    MULTIPLY, SCREEN, OVERLAY, HARD_LIGHT, SOFT_LIGHT, DODGE, BURN
+  };
+
+  // sx, sy, sw, sh, dx, dy, dw, dh
+  static final int[][] REGIONS = {
+    { 0, 0, 120, 90, 0, 0, 120, 90 },      // same size
+    { 10, 5, 100, 80, -7, -3, 260, 190 },  // scaled up, clipped on both sides
+    { 0, 0, 120, 90, 13, 21, 37, 29 },     // scaled down
+    { 5, 5, 60, 40, 300, 250, 80, 80 },    // past the right and bottom
+    { 0, 0, 1, 1, 0, 0, 400, 300 },        // single pixel
+    { 30, 20, 200, 200, 0, 0, 333, 211 },  // source clipped
+    { 0, 0, 60, 40, -80, 10, 60, 40 },     // all off the left edge
+    { 0, 0, 60, 40, 50, -50, 60, 40 },     // all off the top edge
+  };
+
+  // Arrays.hashCode() of the destination from before blit_resize() was
+  // split into rows; one row per mode, one column per region.
+  static final int[][] EXPECTED = {
+    { -832896767, -1390470686, -1400851609, 497095027, 1052122311, -1862067716, -2082086723, -2082086723 },
+    { 82231849, 574604815, 942863082, -563167577, -696877323, -843894542, -2082086723, -2082086723 },
+    { -1558415726, 1158486618, -311492091, 1285916222, 1444229450, 451910515, -2082086723, -2082086723 },
+    { -364190688, -1395071451, -1153349283, -1751003469, -2135388754, 1953031365, -2082086723, -2082086723 },
+    { -1785129094, -309003221, -1262009042, -805898370, 1774427104, 1055078152, -2082086723, -2082086723 },
+    { 1815317356, 126921377, 122785401, -1470257178, 1452852178, -508175705, -2082086723, -2082086723 },
+    { 1961688893, 257444292, 1194321045, -761432441, -1150332503, -978164910, -2082086723, -2082086723 },
+    { -262920116, 1540313668, -306423388, 1147310428, 1679899062, 1279319967, -2082086723, -2082086723 },
+    { -1956266699, -1381064744, -1870038158, 1597067516, -375840330, -79389789, -2082086723, -2082086723 },
+    { -207245876, 26279867, -1153314944, 969044352, -201912481, -1960433431, -2082086723, -2082086723 },
+    { 1761940613, 1436577790, 1366915233, -1132687426, 1571902996, 1396277039, -2082086723, -2082086723 },
+    { 451146761, 772084219, 620830178, 1922882853, -1066653004, -1395126831, -2082086723, -2082086723 },
+    { 1386785047, -1155536460, 1752074353, -5872169, -1520940222, -1898514147, -2082086723, -2082086723 },
+    { -1070262138, -640899306, 1984321614, 1627126600, -469892507, 195461451, -2082086723, -2082086723 },
+    { -1096931411, 971109752, 434609466, 1288407694, 379251785, 2016342342, -2082086723, -2082086723 },
+  };
+
+
+  static PImage noise(int w, int h, long seed) {
+    PImage img = new PImage(w, h, ARGB);
+    Random random = new Random(seed);
+    img.loadPixels();
+    for (int i = 0; i < img.pixels.length; i++) {
+      img.pixels[i] = random.nextInt();
+    }
+    img.updatePixels();
+    return img;
+  }
+
+
+  @Test
+  public void testSameAsBefore() {
+    for (int m = 0; m < MODES.length; m++) {
+      for (int i = 0; i < REGIONS.length; i++) {
+        int[] r = REGIONS[i];
+        PImage dest = noise(400, 300, 1);
+        PImage src = noise(120, 90, 2);
+        dest.blend(src, r[0], r[1], r[2], r[3], r[4], r[5], r[6], r[7], MODES[m]);
+        dest.loadPixels();
+        Assert.assertEquals("mode " + MODES[m] + " " + Arrays.toString(r),
+                            EXPECTED[m][i], Arrays.hashCode(dest.pixels));
+      }
+    }
+  }
+
+
+  @Test
+  public void testCopySelf() {
+    PImage img = noise(400, 300, 3);
+    img.copy(0, 0, 100, 100, 50, 50, 150, 120);  // overlapping
+    img.copy(200, 0, 100, 100, 200, 100, 70, 50);
+    img.blend(0, 0, 200, 150, 200, 150, 200, 150, MULTIPLY);
+    img.loadPixels();
+    Assert.assertEquals(-1481399972, Arrays.hashCode(img.pixels));
+  }
+}
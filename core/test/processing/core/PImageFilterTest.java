@@ -0,0 +1,143 @@
+package processing.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class PImageFilterTest implements PConstants {
+
+  static final int[][] SIZES = { { 97, 61 }, { 640, 480 } };
+  static final int[] FORMATS = { RGB, ARGB, ALPHA };
+
+  // Arrays.hashCode() of the pixels after each filter, as they came out
+  // before the filters were split into bands; one row per size and format,
+  // one column per filter in the order used by apply() below.
+  static final int[][] EXPECTED = {
+    { 1423603339, 741224485, 154912984, -427263988, -1706333932, 6315612, -1731057705, -363293713, -440237801, 521637606 },
+    { -1399462410, 1910315649, 1972166268, 871581061, -493063319, 1221747100, -480160864, 1469629432, -1657063527, 1832032552 },
+    { -330145054, -1755521310, 235739675, -1281792120, -963924068, 1141041677, -2026496342, -697111562, 555168632, 1988940925 },
+    { -1585030132, 2015018762, -196198152, 214843375, 2057838875, -1154610234, 1249031136, -1735910944, -1267519729, -272180696 },
+    { -1552245883, -1027128833, 1470217731, 1067857911, -813914625, -1218517324, -1711457407, 558278668, 938746490, -1284085473 },
+    { -913254266, 481842054, -1146049412, 2140738055, 56921971, -1300830231, -1500790817, -1768649501, 1411281832, -1595678008 },
+  };
+
+
+  static PImage noise(int w, int h, int format) {
+    PImage img = new PImage(w, h, format);
+    Random random = new Random(w * 31 + format);
+    img.loadPixels();
+    for (int i = 0; i < img.pixels.length; i++) {
+      img.pixels[i] = (format == ALPHA) ? random.nextInt(256) : random.nextInt();
+    }
+    img.updatePixels();
+    return img;
+  }
+
+
+  static void apply(PImage img, int which) {
+    switch (which) {
+      case 0: img.filter(GRAY); break;
+      case 1: img.filter(INVERT); break;
+      case 2: img.filter(OPAQUE); break;
+      case 3: img.filter(ERODE); break;
+      case 4: img.filter(DILATE); break;
+      case 5: img.filter(BLUR); break;
+      case 6: img.filter(POSTERIZE, 4); break;
+      case 7: img.filter(THRESHOLD, 0.4f); break;
+      case 8: img.filter(BLUR, 2.5f); break;
+      case 9: img.filter(BLUR, 6); break;
+    }
+  }
+
+
+  @Test
+  public void testSameAsBefore() {
+    int row = 0;
+    for (int[] size : SIZES) {
+      for (int format : FORMATS) {
+        for (int which = 0; which < 10; which++) {
+          PImage img = noise(size[0], size[1], format);
+          apply(img, which);
+          img.loadPixels();
+          Assert.assertEquals(size[0] + "x" + size[1] + " format " + format +
+                              " filter " + which,
+                              EXPECTED[row][which], Arrays.hashCode(img.pixels));
+        }
+        row++;
+      }
+    }
+  }
+
+
+  @Test
+  public void testReusedScratch() {
+    // a large image followed by a smaller one gets a scratch array that's
+    // longer than needed and full of old values
+    PImage large = noise(640, 480, ARGB);
+    large.filter(BLUR, 3);
+    for (int i = 0; i < 3; i++) {
+      PImage small = noise(97, 61, ARGB);
+      small.filter(BLUR, 6);
+      small.loadPixels();
+      Assert.assertEquals(EXPECTED[1][9], Arrays.hashCode(small.pixels));
+    }
+  }
+
+
+  static PImage scene(int w, int h, int format) {
+    PImage img = new PImage(w, h, format);
+    img.loadPixels();
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        int checker = ((x / 16 + y / 16) % 2) * 255;
+        img.pixels[y*w + x] = (format == ALPHA) ? checker :
+          0xff000000 | (x * 255 / w) << 16 | (y * 255 / h) << 8 | checker;
+      }
+    }
+    img.updatePixels();
+    return img;
+  }
+
+
+  @Test
+  public void testFastBlurNearBlur() {
+    for (int format : FORMATS) {
+      for (float r : new float[] { 2, 5, 15 }) {
+        PImage exact = scene(200, 150, format);
+        PImage fast = scene(200, 150, format);
+        exact.filter(BLUR, r);
+        fast.filter(FAST_BLUR, r);
+        exact.loadPixels();
+        fast.loadPixels();
+        double error = 0;
+        for (int i = 0; i < fast.pixels.length; i++) {
+          for (int shift = 0; shift < 32; shift += 8) {
+            error += Math.abs(((exact.pixels[i] >>> shift) & 0xff) -
+                              ((fast.pixels[i] >>> shift) & 0xff));
+          }
+        }
+        error /= fast.pixels.length * 4;
+        Assert.assertTrue("format " + format + " r=" + r + " off by " + error,
+                          error < 2);
+      }
+    }
+  }
+
+
+  @Test
+  public void testFastBlurFlat() {
+    // a box larger than the image still averages only what's inside
+    PImage img = new PImage(31, 17, RGB);
+    img.loadPixels();
+    Arrays.fill(img.pixels, 0x00336699);
+    img.updatePixels();
+    img.filter(FAST_BLUR, 40);
+    img.loadPixels();
+    for (int c : img.pixels) {
+      Assert.assertEquals(0xff336699, c);
+    }
+  }
+}
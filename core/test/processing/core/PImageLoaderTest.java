@@ -0,0 +1,148 @@
+package processing.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class PImageLoaderTest {
+
+  /**
+   * Makes up an image for each file instead of reading it. The filename
+   * is the size, "missing" fails, "huge" runs out of memory, and nothing
+   * loads until 'start' opens.
+   */
+  static class Sketch extends PApplet {
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger loading = new AtomicInteger();
+    volatile int mostLoading;
+
+    @Override
+    public PImage loadImage(String filename, String extension) {
+      try {
+        start.await();
+      } catch (InterruptedException e) {
+        return null;
+      }
+      order.add(filename);
+      int now = loading.incrementAndGet();
+      mostLoading = Math.max(mostLoading, now);
+      try {
+        Thread.sleep(5);
+      } catch (InterruptedException e) { }
+      loading.decrementAndGet();
+      if (filename.equals("missing")) {
+        return null;
+      }
+      if (filename.equals("huge")) {
+        throw new OutOfMemoryError("Java heap space");
+      }
+      int size = Integer.parseInt(filename);
+      return new PImage(size, size, ARGB);
+    }
+  }
+
+
+  @Test
+  public void testPriorityOrder() throws Exception {
+    Sketch sketch = new Sketch();
+    PImageLoader loader = new PImageLoader(sketch, 1, Long.MAX_VALUE);
+    // the first one takes the only thread, the rest wait in the queue
+    List<CompletableFuture<PImage>> futures = new ArrayList<>();
+    futures.add(loader.request("1"));
+    while (loader.pending() > 0) Thread.sleep(1);
+    futures.add(loader.request("2", 0));
+    futures.add(loader.request("3", 5));
+    futures.add(loader.request("4", 0));
+    futures.add(loader.request("5", 9));
+    sketch.start.countDown();
+    for (CompletableFuture<PImage> f : futures) {
+      f.get(10, TimeUnit.SECONDS);
+    }
+    Assert.assertEquals("[1, 5, 3, 2, 4]", sketch.order.toString());
+    Assert.assertEquals(5, loader.completed());
+    Assert.assertEquals(1, loader.progress(), 0);
+    Assert.assertEquals(0, loader.bytesInFlight());
+    loader.dispose();
+  }
+
+
+  @Test
+  public void testFailAndCancel() throws Exception {
+    Sketch sketch = new Sketch();
+    PImageLoader loader = new PImageLoader(sketch, 1, Long.MAX_VALUE);
+    CompletableFuture<PImage> missing = loader.request("missing");
+    while (loader.pending() > 0) Thread.sleep(1);
+    CompletableFuture<PImage> skipped = loader.request("8");
+    CompletableFuture<PImage> loaded = loader.request("9");
+    Assert.assertTrue(skipped.cancel(false));
+    Assert.assertEquals(1, loader.pending());
+    sketch.start.countDown();
+
+    Assert.assertEquals(9, loaded.get(10, TimeUnit.SECONDS).width);
+    try {
+      missing.get();
+      Assert.fail("missing image should not load");
+    } catch (ExecutionException e) { }
+    Assert.assertEquals("[missing, 9]", sketch.order.toString());
+    Assert.assertEquals(1, loader.completed());
+    Assert.assertEquals(1, loader.failed());
+    Assert.assertEquals(1, loader.cancelled());
+    loader.dispose();
+  }
+
+
+  @Test
+  public void testError() throws Exception {
+    Sketch sketch = new Sketch();
+    PImageLoader loader = new PImageLoader(sketch, 1, Long.MAX_VALUE);
+    sketch.start.countDown();
+    CompletableFuture<PImage> huge = loader.request("huge");
+    try {
+      huge.get(10, TimeUnit.SECONDS);
+      Assert.fail("huge image should not load");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause().getCause() instanceof OutOfMemoryError);
+    }
+    // the thread is still there for the next one
+    Assert.assertEquals(3, loader.request("3").get(10, TimeUnit.SECONDS).width);
+    Assert.assertEquals(1, loader.failed());
+    Assert.assertEquals(0, loader.bytesInFlight());
+    loader.dispose();
+  }
+
+
+  @Test
+  public void testBudget() throws Exception {
+    Sketch sketch = new Sketch();
+    // room for two 100x100 images at a time
+    long budget = 2 * 100 * 100 * PImageLoader.BYTES_PER_PIXEL;
+    PImageLoader loader = new PImageLoader(sketch, 8, budget);
+    sketch.start.countDown();
+    // the first image sets the estimate
+    loader.request("100").get(10, TimeUnit.SECONDS);
+    sketch.mostLoading = 0;
+
+    List<CompletableFuture<PImage>> futures = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      futures.add(loader.request("100"));
+    }
+    // larger than the whole budget, but still loads
+    futures.add(loader.request("400"));
+    for (CompletableFuture<PImage> f : futures) {
+      Assert.assertNotNull(f.get(10, TimeUnit.SECONDS));
+    }
+    Assert.assertTrue(sketch.mostLoading <= 2);
+    Assert.assertEquals(0, loader.bytesInFlight());
+    loader.dispose();
+  }
+}
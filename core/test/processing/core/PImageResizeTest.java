@@ -0,0 +1,113 @@
+package processing.core;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class PImageResizeTest implements PConstants {
+
+  static final int[] FILTERS = { BILINEAR, BICUBIC, LANCZOS, AREA };
+
+
+  static PImage flat(int w, int h, int color) {
+    PImage img = new PImage(w, h, ARGB);
+    img.loadPixels();
+    Arrays.fill(img.pixels, color);
+    img.updatePixels();
+    return img;
+  }
+
+
+  @Test
+  public void testFlatStaysFlat() {
+    int[][] sizes = { { 37, 23 }, { 300, 200 }, { 1, 1 }, { 640, 7 } };
+    for (int filter : FILTERS) {
+      for (int[] size : sizes) {
+        PImage img = flat(200, 150, 0x80336699);
+        img.resize(size[0], size[1], filter);
+        Assert.assertEquals(size[0], img.width);
+        Assert.assertEquals(size[1], img.height);
+        img.loadPixels();
+        Assert.assertEquals(size[0] * size[1], img.pixels.length);
+        for (int c : img.pixels) {
+          Assert.assertEquals(0x80336699, c);
+        }
+      }
+    }
+  }
+
+
+  @Test
+  public void testAreaBlocks() {
+    PImage img = new PImage(6, 4, ARGB);
+    img.loadPixels();
+    for (int i = 0; i < img.pixels.length; i++) {
+      img.pixels[i] = 0xff000000 | (i * 10);
+    }
+    img.updatePixels();
+    img.resize(2, 2, AREA);
+    img.loadPixels();
+    // each result is the average of a 3x2 block: top left is 0, 10, 20,
+    // 60, 70, 80 (the blue channel), which is 40
+    Assert.assertEquals(0xff000000 | 40, img.pixels[0]);
+    Assert.assertEquals(0xff000000 | 70, img.pixels[1]);
+    Assert.assertEquals(0xff000000 | 160, img.pixels[2]);
+    Assert.assertEquals(0xff000000 | 190, img.pixels[3]);
+  }
+
+
+  @Test
+  public void testNoAliasing() {
+    // single pixel stripes, shrunk by a factor that isn't a whole number,
+    // should come out as an even gray rather than a beat pattern
+    PImage img = new PImage(1000, 10, RGB);
+    img.loadPixels();
+    for (int i = 0; i < img.pixels.length; i++) {
+      img.pixels[i] = (i % 2 == 0) ? 0xff000000 : 0xffffffff;
+    }
+    img.updatePixels();
+    for (int filter : FILTERS) {
+      PImage small = img.copy();
+      small.resize(77, 0, filter);
+      small.loadPixels();
+      for (int x = 1; x < small.pixelWidth - 1; x++) {
+        int gray = small.pixels[x] & 0xff;
+        Assert.assertTrue("filter " + filter + " at " + x + " is " + gray,
+                          Math.abs(gray - 128) < 24);
+      }
+    }
+  }
+
+
+  @Test
+  public void testProportional() {
+    PImage img = flat(400, 300, 0xff000000);
+    img.resize(0, 75, LANCZOS);
+    Assert.assertEquals(100, img.width);
+    Assert.assertEquals(75, img.height);
+    img.resize(50, 0, BICUBIC);
+    Assert.assertEquals(50, img.width);
+    Assert.assertEquals(38, img.height);
+  }
+
+
+  @Test
+  public void testLargeBlock() {
+    // the one result pixel averages 8.8 million pixels, enough that
+    // 255 times the count doesn't fit in an int
+    PImage img = flat(4200, 2100, 0xfff0e0d0);
+    img.resize(1, 1, AREA);
+    img.loadPixels();
+    for (int c : img.pixels) {
+      Assert.assertEquals(0xfff0e0d0, c);
+    }
+  }
+
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadFilter() {
+    flat(10, 10, 0).resize(5, 5, BLUR);
+  }
+}
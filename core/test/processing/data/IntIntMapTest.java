@@ -0,0 +1,125 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntIntMapTest {
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(5);
+        IntIntMap map = new IntIntMap();
+        Map<Integer, Integer> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            // few enough keys that there are plenty of repeats and removals
+            int key = random.nextInt(3000) - 1500;
+            if (random.nextInt(4) == 0) {
+                if (expected.containsKey(key)) {
+                    assertEquals((int) expected.remove(key), map.remove(key));
+                } else {
+                    assertFalse(map.hasKey(key));
+                }
+            } else {
+                map.add(key, i);
+                expected.merge(key, i, Integer::sum);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        int index = 0;
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+            assertEquals((int) e.getKey(), map.key(index));
+            assertEquals((int) e.getValue(), map.value(index));
+            assertEquals(index, map.index(e.getKey()));
+            index++;
+        }
+
+        map.sortValuesReverse();
+        for (int i = 1; i < map.size(); i++) {
+            assertTrue(map.value(i - 1) >= map.value(i));
+        }
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+            assertEquals((int) e.getValue(), map.get(e.getKey()));
+        }
+    }
+
+    @Test
+    public void dictIndices() {
+        Random random = new Random(7);
+        IntDict dict = new IntDict();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            String key = "k" + random.nextInt(500);
+            if (random.nextInt(3) == 0 && expected.containsKey(key)) {
+                dict.remove(key);
+                expected.remove(key);
+            } else {
+                dict.increment(key);
+                expected.merge(key, 1, Integer::sum);
+            }
+        }
+        dict.sortKeys();
+        IntDict copy = dict.copy();
+        assertEquals(expected.size(), copy.size());
+        for (Map.Entry<String, Integer> e : expected.entrySet()) {
+            assertEquals((int) e.getValue(), copy.get(e.getKey()));
+            assertEquals(e.getKey(), copy.key(copy.index(e.getKey())));
+        }
+        assertFalse(copy.hasKey(null));
+        assertEquals(-1, copy.index("missing"));
+    }
+
+    @Test
+    public void swapThenGet() {
+        IntIntMap map = new IntIntMap();
+        map.set(10, 100);
+        map.set(20, 200);
+        map.set(30, 300);
+        map.swap(0, 1);
+        map.swap(2, 2);
+        assertArrayEquals(new int[] { 20, 10, 30 }, map.keyArray());
+        assertEquals(100, map.get(10));
+        assertEquals(200, map.get(20));
+        assertEquals(1, map.index(10));
+        assertEquals(300, map.remove(30));
+        assertEquals(200, map.remove(20));
+        assertTrue(map.hasKey(10));
+        assertEquals(0, map.index(10));
+
+        LongIntMap ids = new LongIntMap(new long[] { 1L << 40, -1 }, new int[] { 3, 1 });
+        ids.swap(0, 1);
+        assertEquals(3, ids.get(1L << 40));
+        IntFloatMap sizes = new IntFloatMap();
+        sizes.set(1, 0.5f);
+        sizes.set(2, 1.5f);
+        sizes.swap(1, 0);
+        assertEquals(0.5f, sizes.get(1), 0);
+        assertEquals(1, sizes.index(1));
+    }
+
+    @Test
+    public void otherTypes() {
+        LongIntMap ids = new LongIntMap(new long[] { 1L << 40, -1, 7 }, new int[] { 3, 1, 2 });
+        ids.increment(1L << 40);
+        assertEquals(4, ids.get(1L << 40));
+        ids.sortValues();
+        assertArrayEquals(new long[] { -1, 7, 1L << 40 }, ids.keyArray());
+
+        IntFloatMap sizes = new IntFloatMap();
+        sizes.set(10, 2.5f);
+        sizes.set(20, Float.NaN);
+        sizes.set(30, -1);
+        sizes.add(10, 1);
+        assertEquals(3.5f, sizes.get(10), 0);
+        assertEquals(30, sizes.minKey());
+        assertEquals(10, sizes.maxKey());
+        sizes.sortValuesReverse();
+        assertArrayEquals(new int[] { 10, 30, 20 }, sizes.keyArray());
+        assertEquals(0f, sizes.get(99, 0), 0);
+    }
+}
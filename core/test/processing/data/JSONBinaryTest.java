@@ -0,0 +1,105 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import processing.core.PApplet;
+
+import static org.junit.Assert.*;
+
+public class JSONBinaryTest {
+
+    static byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new JSONBinary(bytes).write(value);
+        return bytes.toByteArray();
+    }
+
+    static Object decode(byte[] data) throws IOException {
+        return new JSONBinary(new ByteArrayInputStream(data)).read();
+    }
+
+    static byte[] hex(String hex) {
+        byte[] data = new byte[hex.length() / 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return data;
+    }
+
+    @Test
+    public void matchesText() throws IOException {
+        Random random = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            String text = "[" + JSONParserTest.randomValue(random, 5) + "]";
+            JSONArray array = JSONArray.parse(text);
+            assertEquals(text, array.format(-1), ((JSONArray) decode(encode(array))).format(-1));
+        }
+    }
+
+    @Test
+    public void typedNumbers() throws IOException {
+        JSONObject object = new JSONObject();
+        object.setInt("int", -7);
+        object.setLong("long", -1L << 50);
+        object.setDouble("double", 2.0);
+        object.setFloat("float", 0.1f);
+        object.setJSONArray("list", new JSONArray().append(Long.MAX_VALUE).append(1.5).append(Integer.MIN_VALUE));
+        object.put("string", "café 中");
+        object.put("null", JSONObject.NULL);
+
+        JSONObject copy = (JSONObject) decode(encode(object));
+        assertEquals(Integer.valueOf(-7), copy.get("int"));
+        assertEquals(Long.valueOf(-1L << 50), copy.get("long"));
+        assertEquals(Double.valueOf(2.0), copy.get("double"));
+        assertEquals((double) 0.1f, copy.getDouble("float"), 0);
+        assertEquals(Long.valueOf(Long.MAX_VALUE), copy.getJSONArray("list").get(0));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), copy.getJSONArray("list").get(2));
+        assertEquals("café 中", copy.getString("string"));
+        assertTrue(copy.isNull("null"));
+        assertEquals(object.format(-1), copy.format(-1));
+    }
+
+    @Test
+    public void specExamples() throws IOException {
+        // from RFC 8949, appendix A
+        JSONObject object = JSONObject.parse("{\"a\": 1, \"b\": [2, 3]}");
+        assertArrayEquals(hex("a26161016162820203"), encode(object));
+        assertArrayEquals(hex("1903e8"), encode(1000));
+        assertArrayEquals(hex("3903e7"), encode(-1000));
+
+        assertEquals("[1,[2,3],[4,5]]", ((JSONArray) decode(hex("9f018202039f0405ffff"))).format(-1));
+        assertEquals("{\"Fun\":true,\"Amt\":-2}", ((JSONObject) decode(hex("bf6346756ef563416d7421ff"))).format(-1));
+        assertEquals("streaming", decode(hex("7f657374726561646d696e67ff")));
+        assertEquals(1.0, decode(hex("f93c00")));
+        assertEquals(-4.0, decode(hex("f9c400")));
+        assertEquals(5.960464477539063e-8, decode(hex("f90001")));
+        assertEquals(100000.0, decode(hex("fa47c35000")));
+    }
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < 10000; i++) {
+            array.append(new JSONObject().setInt("id", i).setString("name", "item " + i));
+        }
+        File file = File.createTempFile("json", ".cbor");
+        try {
+            assertTrue(array.save(file, null));
+            assertEquals(array.format(-1), PApplet.loadJSONArray(file).format(-1));
+            try {
+                PApplet.loadJSONObject(file);
+                fail();
+            } catch (RuntimeException e) {
+                assertEquals("The CBOR data is not a JSONObject", e.getMessage());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JSONObjectTest {
+
+    @Test
+    public void insertionOrder() {
+        JSONObject object = JSONObject.parse("{\"z\": 1, \"a\": 2.5, \"m\": \"x\", \"b\": true}");
+        assertEquals("{\"z\":1,\"a\":2.5,\"m\":\"x\",\"b\":true}", object.format(-1));
+        assertEquals(List.of("z", "a", "m", "b"), new ArrayList<Object>(object.keys()));
+
+        object.setInt("a", 7);
+        object.remove("m");
+        object.setString("c", "last");
+        assertEquals("{\"z\":1,\"a\":7,\"b\":true,\"c\":\"last\"}", object.format(-1));
+        assertNull(object.remove("m"));
+        assertEquals(4, object.size());
+    }
+
+    @Test
+    public void numbers() {
+        JSONObject object = new JSONObject();
+        object.setInt("i", -5);
+        object.setLong("l", 1L << 40);
+        object.setFloat("f", 0.25f);
+        object.put("n", Integer.valueOf(3));
+        assertEquals(Integer.valueOf(-5), object.get("i"));
+        assertEquals(Long.valueOf(1L << 40), object.get("l"));
+        assertEquals(Double.valueOf(0.25), object.get("f"));
+        assertEquals(-5, object.getLong("i"));
+        assertEquals(1L << 40, object.getDouble("l"), 0);
+        assertEquals(3, object.getInt("n"));
+
+        // numbers and other values can replace each other
+        object.setString("i", "12");
+        assertEquals(12, object.getInt("i"));
+        object.setInt("i", 4);
+        assertEquals("{\"i\":4,\"l\":1099511627776,\"f\":0.25,\"n\":3}", object.format(-1));
+
+        try {
+            object.setDouble("nan", Double.NaN);
+            fail();
+        } catch (RuntimeException e) {
+            assertFalse(object.hasKey("nan"));
+        }
+    }
+
+    @Test
+    public void manyKeys() {
+        // past the linear search, and past the largest shared shape
+        JSONObject object = new JSONObject();
+        for (int i = 0; i < 200; i++) {
+            object.setInt("key" + i, i);
+        }
+        for (int i = 0; i < 200; i += 2) {
+            object.remove("key" + i);
+        }
+        assertEquals(100, object.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i % 2 == 1, object.hasKey("key" + i));
+            assertEquals(i % 2 == 1 ? i : -1, object.getInt("key" + i, -1));
+        }
+
+        // keys that are different in every object (like ids)
+        JSONObject ids = new JSONObject();
+        for (int i = 0; i < 1000; i++) {
+            JSONObject entry = new JSONObject();
+            entry.setInt("id" + i, i);
+            ids.setJSONObject(String.valueOf(i), entry);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, ids.getJSONObject(String.valueOf(i)).getInt("id" + i));
+        }
+    }
+
+    @Test
+    public void buildOnThreads() throws InterruptedException {
+        final JSONArray[] arrays = new JSONArray[4];
+        Thread[] threads = new Thread[arrays.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int index = t;
+            threads[t] = new Thread(() -> {
+                JSONArray array = new JSONArray();
+                for (int i = 0; i < 20000; i++) {
+                    JSONObject object = new JSONObject();
+                    object.setInt("id", i);
+                    object.setString("k" + (i % 50), "v");
+                    object.setFloat("value", i);
+                    array.append(object);
+                }
+                arrays[index] = array;
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (JSONArray array : arrays) {
+            for (int i = 0; i < array.size(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                assertEquals(3, object.size());
+                assertEquals(i, object.getInt("id"));
+                assertEquals("v", object.getString("k" + (i % 50)));
+                assertEquals(i, object.getFloat("value"), 0);
+            }
+        }
+    }
+}
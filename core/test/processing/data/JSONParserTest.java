@@ -0,0 +1,148 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JSONParserTest {
+
+    /** Hands out a few chars at a time, so values cross the buffer edge. */
+    static class TrickleReader extends Reader {
+        String source;
+        int pos;
+        Random random = new Random(1);
+
+        TrickleReader(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (pos == source.length()) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, 1 + random.nextInt(7)), source.length() - pos);
+            source.getChars(pos, pos + count, buffer, offset);
+            pos += count;
+            return count;
+        }
+
+        @Override
+        public void close() { }
+    }
+
+    static String tokenized(String source) {
+        try {
+            Object value = new JSONTokener(source).nextValue();
+            return value.getClass().getSimpleName() + " " + value;
+        } catch (RuntimeException e) {
+            return "error " + e.getMessage();
+        }
+    }
+
+    static String parsed(JSONParser parser) {
+        try {
+            Object value = parser.nextValue();
+            return value.getClass().getSimpleName() + " " + value;
+        } catch (RuntimeException e) {
+            // the tokener's messages don't say where the error was
+            String message = e.getMessage();
+            int at = message.lastIndexOf(" at ");
+            return "error " + (at == -1 ? message : message.substring(0, at));
+        }
+    }
+
+    static void check(String source) {
+        String expected = tokenized(source);
+        assertEquals(source, expected, parsed(new JSONParser(source)));
+        assertEquals(source, expected, parsed(new JSONParser(new StringReader(source))));
+        assertEquals(source, expected, parsed(new JSONParser(new TrickleReader(source))));
+    }
+
+    @Test
+    public void matchesTokener() {
+        String[] sources = {
+            "{\"a\": 1, \"b\": [true, false, null], \"c\": {\"d\": \"e\"}}",
+            "[1, -2, 3000000000, 12345678901234567890, -0, 0.5, -0.0, 1e3, 1.5E-7, .25, 1., 00012]",
+            "[0.1, 0.3, 123456.789012345, 1234567890.123456, 2.5e400, +7, 0x1F, -]",
+            "[\"esc\\\"ape\\\\ \\/ \\b\\f\\n\\r\\t \\u00e9\\u4e2D\", 'single \"quoted\"', \"\"]",
+            "{a = 1; b => 'two', TRUE: Null, 3: x y z ,}",
+            "[1,,2,]", "[,]", "[]", "{}", "  [ 1 ]  trailing",
+            "{\"a\" 1}", "{\"a\": 1 \"b\": 2}", "[1 2]", "{\"a\": 1, \"a\": 2}",
+            "\"unterminated", "\"line\nbreak\"", "\"bad \\q escape\"", "\"\\u12\"",
+            "[", "{", "{\"a\":", "[1,", "", "   ", "x", "[\u0000]",
+        };
+        for (String source : sources) {
+            check(source);
+        }
+    }
+
+    @Test
+    public void randomDocuments() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            check(randomValue(random, 4));
+        }
+        // longer than the buffer, and a single string that's longer still
+        StringBuilder big = new StringBuilder("[");
+        while (big.length() < 3 * JSONParser.BUFFER_SIZE) {
+            big.append(randomValue(random, 3)).append(",\n");
+        }
+        big.append('"');
+        for (int i = 0; i < 2 * JSONParser.BUFFER_SIZE; i++) {
+            big.append((char) ('a' + i % 26));
+        }
+        big.append("\"]");
+        check(big.toString());
+    }
+
+    static String randomValue(Random random, int depth) {
+        int kind = random.nextInt(depth > 0 ? 8 : 6);
+        switch (kind) {
+            case 0: return String.valueOf(random.nextInt());
+            case 1: return String.valueOf(random.nextLong());
+            case 2: return String.valueOf(random.nextDouble() * Math.pow(10, random.nextInt(20) - 10));
+            case 3: return (random.nextInt(1000) - 500) / 100.0 + "";
+            case 4: return new String[] { "true", "false", "null" }[random.nextInt(3)];
+            case 5: {
+                StringBuilder sb = new StringBuilder("\"");
+                int length = random.nextInt(12);
+                for (int i = 0; i < length; i++) {
+                    int c = random.nextInt(10);
+                    sb.append(c == 0 ? "\\n" : c == 1 ? "\\u00fc" : c == 2 ? "\u00e9" : String.valueOf((char) ('a' + c)));
+                }
+                return sb.append('"').toString();
+            }
+            case 6: {
+                StringBuilder sb = new StringBuilder("[");
+                int count = random.nextInt(5);
+                for (int i = 0; i < count; i++) {
+                    sb.append(i == 0 ? "" : ", ").append(randomValue(random, depth - 1));
+                }
+                return sb.append(']').toString();
+            }
+            default: {
+                StringBuilder sb = new StringBuilder("{\n");
+                int count = random.nextInt(5);
+                for (int i = 0; i < count; i++) {
+                    sb.append(i == 0 ? "" : ",\n").append("\"k").append(i).append("\": ").append(randomValue(random, depth - 1));
+                }
+                return sb.append("\n}").toString();
+            }
+        }
+    }
+
+    @Test
+    public void errorLocation() {
+        try {
+            JSONObject.parse("{\n  \"a\": 1,\n  \"b\" 2\n}");
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Expected a ':' after a key at 19 [character 7 line 3]", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class JSONReaderTest {
+
+    /** Put a value back together from the events. */
+    static Object build(JSONReader reader, int event) {
+        if (event == JSONReader.START_OBJECT) {
+            JSONObject object = new JSONObject();
+            while ((event = reader.next()) != JSONReader.END_OBJECT) {
+                assertEquals(JSONReader.KEY, event);
+                String key = reader.getKey();
+                object.putOnce(key, build(reader, reader.next()));
+            }
+            return object;
+        } else if (event == JSONReader.START_ARRAY) {
+            JSONArray array = new JSONArray();
+            while ((event = reader.next()) != JSONReader.END_ARRAY) {
+                array.append(build(reader, event));
+            }
+            return array;
+        }
+        assertEquals(JSONReader.VALUE, event);
+        return reader.getValue();
+    }
+
+    static String describe(Object value) {
+        return value.getClass().getSimpleName() + " " + value;
+    }
+
+    static String withoutLocation(RuntimeException e) {
+        String message = e.getMessage();
+        int at = message.lastIndexOf(" at ");
+        return "error " + (at == -1 ? message : message.substring(0, at));
+    }
+
+    static void check(String source) {
+        String expected;
+        try {
+            expected = describe(new JSONParser(source).nextValue());
+        } catch (RuntimeException e) {
+            expected = withoutLocation(e);
+        }
+        String actual;
+        try {
+            JSONReader reader = new JSONReader(new JSONParserTest.TrickleReader(source));
+            actual = describe(build(reader, reader.next()));
+            assertEquals(source, JSONReader.END_DOCUMENT, reader.next());
+        } catch (RuntimeException e) {
+            actual = withoutLocation(e);
+        }
+        assertEquals(source, expected, actual);
+    }
+
+    @Test
+    public void matchesParser() {
+        String[] sources = {
+            "{\"a\": 1, \"b\": [true, false, null], \"c\": {\"d\": \"e\"}}",
+            "{a = 1; b => 'two', TRUE: Null, 3: x y z ,}",
+            "[1,,2,]", "[,]", "[]", "{}", "[[[]], {}, [{}]]", "  [ 1 ]  trailing", "42",
+            "{\"a\" 1}", "{\"a\": 1 \"b\": 2}", "[1 2]", "{\"a\": 1, \"a\": 2}",
+            "[", "{", "{\"a\":", "[1,", "{\"a\": 1,", "", "x",
+        };
+        for (String source : sources) {
+            check(source);
+        }
+        Random random = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            check(JSONParserTest.randomValue(random, 5));
+        }
+    }
+
+    @Test
+    public void mixedReading() {
+        JSONReader reader = new JSONReader(new StringReader(
+            "{\"meta\": {\"skip\": [1, {\"x\": []}]}, \"rows\": [{\"id\": 1}, {\"id\": 2}], \"n\": 2}"));
+        assertEquals(JSONReader.START_OBJECT, reader.next());
+        assertEquals(JSONReader.KEY, reader.next());
+        assertEquals("meta", reader.getKey());
+        reader.skipValue();
+        assertEquals(JSONReader.KEY, reader.next());
+        assertEquals("rows", reader.getKey());
+        assertEquals(JSONReader.START_ARRAY, reader.peek());
+        assertEquals(JSONReader.START_ARRAY, reader.next());
+        assertEquals(2, reader.getDepth());
+        List<Integer> ids = new ArrayList<>();
+        while (reader.hasNext()) {
+            ids.add(((JSONObject) reader.readValue()).getInt("id"));
+        }
+        assertEquals(List.of(1, 2), ids);
+        assertEquals(JSONReader.END_ARRAY, reader.next());
+        assertEquals(JSONReader.KEY, reader.next());
+        assertEquals(2, reader.readValue());
+        assertEquals(JSONReader.END_OBJECT, reader.next());
+        assertEquals(JSONReader.END_DOCUMENT, reader.next());
+    }
+
+    @Test
+    public void streamArray() {
+        String source = "[{\"id\": 0}, {\"id\": 1},\n{\"id\": 2, \"tags\": [\"a\"]}]";
+        JSONArray loaded = new JSONArray(new StringReader(source));
+        int index = 0;
+        for (JSONObject object : new JSONStream(new StringReader(source))) {
+            assertEquals(loaded.getJSONObject(index).toString(), object.toString());
+            index++;
+        }
+        assertEquals(loaded.size(), index);
+
+        JSONStream stream = new JSONStream(new StringReader("[{\"id\": 1}, 2]"));
+        try {
+            stream.stream().count();
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("JSONArray[1] is not a JSONObject.", e.getMessage());
+        }
+        assertTrue(stream.closed);
+    }
+}
@@ -0,0 +1,95 @@
+package processing.data;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class JSONWriterTest {
+
+    /** Counts what's written, and throws it away. */
+    static class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(String s, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void flush() { }
+
+        @Override
+        public void close() { }
+    }
+
+    static String written(Object json, String options) {
+        StringWriter sw = new StringWriter();
+        PrintWriter output = new PrintWriter(sw);
+        if (json instanceof JSONObject) {
+            ((JSONObject) json).write(output, options);
+        } else {
+            ((JSONArray) json).write(output, options);
+        }
+        return sw.toString();
+    }
+
+    @Test
+    public void matchesFormat() {
+        JSONObject object = JSONObject.parse(
+            "{\"name\":\"a \\\"quoted\\\" </tag> \\u0085\\u2028 \\u00e9\\t\",\"list\":[1,2.5,true,null,[],{}]," +
+            "\"nested\":{\"deep\":{\"deeper\":[{\"x\":-1}]}},\"empty\":\"\"}");
+        assertEquals(object.format(2), written(object, null));
+        assertEquals(object.format(-1), written(object, "compact"));
+        assertEquals(object.format(40), written(object, "indent=40"));
+
+        JSONArray array = new JSONArray().append(object).append("x").append(3);
+        assertEquals(array.format(2), written(array, null));
+        assertEquals(array.format(-1), written(array, "compact"));
+        assertEquals(array.format(4), written(array, "indent=4"));
+    }
+
+    @Test
+    public void streamLargeDocument() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() &&
+                          threads.isThreadAllocatedMemoryEnabled());
+
+        // the same 1 MB value a thousand times over: small in memory,
+        // but a gigabyte of text once it's written out
+        char[] chars = new char[1 << 20];
+        java.util.Arrays.fill(chars, 'x');
+        JSONObject item = new JSONObject();
+        item.setString("text", new String(chars));
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < 1024; i++) {
+            array.append(item);
+        }
+
+        CountingWriter counter = new CountingWriter();
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        array.write(new PrintWriter(counter), "compact");
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(counter.count > 1L << 30);
+        assertTrue("allocated " + allocated + " bytes", allocated < 16 << 20);
+    }
+}
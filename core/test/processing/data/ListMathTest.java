@@ -0,0 +1,101 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ListMathTest {
+
+    // more than one block, so that long lists get split up
+    static final int SIZE = ListMath.BLOCK_SIZE * 3 + 17;
+
+    @Test
+    public void floatOperations() {
+        Random random = new Random(17);
+        float[] a = new float[SIZE];
+        float[] b = new float[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            a[i] = random.nextFloat() * 10;
+            b[i] = random.nextFloat() + 1;
+        }
+        FloatList list = new FloatList(a);
+        FloatList other = new FloatList(b);
+        list.mult(2);
+        list.add(other);
+        list.sub(1);
+        list.div(other);
+        list.map(v -> -v);
+        double dot = 0;
+        for (int i = 0; i < SIZE; i++) {
+            float expected = -(((a[i] * 2) + b[i] - 1) / b[i]);
+            assertEquals(expected, list.get(i), 0);
+            dot += expected * b[i];
+        }
+        assertEquals((float) dot, list.dot(other), Math.abs(dot) * 1e-6);
+
+        try {
+            list.add(new FloatList(1, 2, 3));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("add() needs lists of the same size, not " + SIZE + " and 3", e.getMessage());
+        }
+    }
+
+    @Test
+    public void statistics() {
+        FloatList list = new FloatList(3, 1, Float.NaN, 4, 1, 5, 9, 2, 6);
+        assertEquals(3.5f, list.percentile(50), 0);
+        assertEquals(1, list.percentile(0), 0);
+        assertEquals(9, list.percentile(100), 0);
+        assertEquals(1.4f, list.percentile(20), 1e-6);
+        assertArrayEquals(new int[] { 3, 2, 2, 1 }, list.histogram(4).array());
+        assertArrayEquals(new int[] { 0, 3 }, list.histogram(2, 0, 2).array());
+
+        list.remove(2);
+        list.cumulativeSum();
+        assertArrayEquals(new float[] { 3, 4, 8, 9, 14, 23, 25, 31 }, list.array(), 0);
+
+        IntList ints = new IntList(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            ints.append(i % 10);
+        }
+        IntList counts = ints.histogram(5);
+        assertEquals(SIZE, counts.sum());
+        assertEquals(ints.histogram(10, 0, 9).get(0) * 2, counts.get(0), 2);
+        assertEquals(4, ints.percentile(50), 0);
+        assertEquals(285L * (SIZE / 10) + 1 + 4 + 9 + 16, ints.dot(ints));
+    }
+
+    @Test
+    public void percentileMatchesSorted() {
+        Random random = new Random(19);
+        for (int size = 1; size < 2000; size = size * 3 + 1) {
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                // plenty of repeated values
+                values[i] = random.nextInt(size / 2 + 1);
+            }
+            DoubleList list = new DoubleList(values.clone());
+            java.util.Arrays.sort(values);
+            for (int p = 0; p <= 100; p += 5) {
+                double rank = p / 100.0 * (size - 1);
+                int below = (int) rank;
+                double expected = (below == size - 1) ? values[below] :
+                    values[below] + (rank - below) * (values[below + 1] - values[below]);
+                assertEquals(expected, list.percentile(p), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void doubleOperations() {
+        DoubleList list = new DoubleList(1, 2, 3, 4);
+        list.mult(list);
+        list.add(0.5);
+        assertArrayEquals(new double[] { 1.5, 4.5, 9.5, 16.5 }, list.array(), 0);
+        assertEquals(1.5 + 9 + 28.5 + 66, list.dot(new DoubleList(1, 2, 3, 4)), 0);
+        assertEquals(7, list.percentile(50), 0);
+    }
+}
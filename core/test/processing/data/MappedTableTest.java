@@ -0,0 +1,88 @@
+package processing.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MappedTableTest {
+
+    Table table;
+    File file;
+
+    @Before
+    public void setUp() throws IOException {
+        table = new Table();
+        table.addColumn("name", Table.STRING);
+        table.addColumn("count", Table.INT);
+        table.addColumn("id", Table.LONG);
+        table.addColumn("x", Table.FLOAT);
+        table.addColumn("y", Table.DOUBLE);
+        table.addColumn("kind", Table.CATEGORY);
+        for (int i = 0; i < 1000; i++) {
+            table.addRow(new Object[] {
+                (i % 10 == 0) ? null : "réow " + i + " 😀",
+                i * 3, 10000000000L + i, i / 7f, -i / 13.0, "k" + (i % 4)
+            });
+        }
+        file = File.createTempFile("mapped", ".cbin");
+        file.deleteOnExit();
+        assertTrue(table.save(file, null));
+    }
+
+    void assertSameContents(Table expected, Table actual) {
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        assertArrayEquals(expected.getColumnTitles(), actual.getColumnTitles());
+        assertArrayEquals(expected.getColumnTypes(), actual.getColumnTypes());
+        for (int row = 0; row < expected.getRowCount(); row++) {
+            assertEquals(expected.getString(row, 0), actual.getString(row, 0));
+            assertEquals(expected.getInt(row, 1), actual.getInt(row, 1));
+            assertEquals(expected.getLong(row, 2), actual.getLong(row, 2));
+            assertEquals(expected.getFloat(row, 3), actual.getFloat(row, 3), 0);
+            assertEquals(expected.getDouble(row, 4), actual.getDouble(row, 4), 0);
+            assertEquals(expected.getString(row, 5), actual.getString(row, 5));
+        }
+    }
+
+    @Test
+    public void roundTripHeap() throws IOException {
+        assertSameContents(table, new Table(file));
+    }
+
+    @Test
+    public void roundTripMapped() throws IOException {
+        MappedTable mapped = new MappedTable(file);
+        assertSameContents(table, mapped);
+        assertArrayEquals(table.getFloatColumn("x"), mapped.getFloatColumn("x"), 0);
+        assertArrayEquals(table.getIntColumn("count"), mapped.getIntColumn("count"));
+        // nothing should have been copied onto the heap by reading
+        for (int col = 0; col < mapped.getColumnCount(); col++) {
+            assertTrue(mapped.isMapped(col));
+        }
+        assertEquals(5, mapped.findRowIndex("15", "count"));
+    }
+
+    @Test
+    public void modifyMapped() throws IOException {
+        MappedTable mapped = new MappedTable(file);
+        mapped.setFloat(3, "x", 99);
+        assertFalse(mapped.isMapped(3));
+        assertTrue(mapped.isMapped(4));
+        assertEquals(99, mapped.getFloat(3, "x"), 0);
+
+        mapped.addColumn("extra", Table.INT);
+        TableRow row = mapped.addRow();
+        row.setInt("count", -1);
+        assertEquals(1001, mapped.getRowCount());
+        assertEquals(-1, mapped.getInt(1000, "count"));
+        assertEquals(0, mapped.getInt(1000, "extra"));
+        assertEquals(table.getString(999, "name"), mapped.getString(999, "name"));
+        assertEquals(table.getDouble(500, "y"), mapped.getDouble(500, "y"), 0);
+
+        // the file itself is left alone
+        assertSameContents(table, new MappedTable(file));
+    }
+}
@@ -0,0 +1,113 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RadixSortTest {
+
+    static final int[] SIZES = { 0, 1, 100, 1000, 100000 };
+
+    @Test
+    public void matchesArraysSort() {
+        Random random = new Random(11);
+        for (int size : SIZES) {
+            int[] ints = new int[size];
+            long[] longs = new long[size];
+            float[] floats = new float[size];
+            double[] doubles = new double[size];
+            for (int i = 0; i < size; i++) {
+                ints[i] = (i % 3 == 0) ? random.nextInt(50) - 25 : random.nextInt();
+                longs[i] = (i % 3 == 0) ? random.nextInt(50) - 25 : random.nextLong();
+                floats[i] = (float) random.nextGaussian();
+                doubles[i] = random.nextGaussian();
+            }
+            if (size > 10) {
+                floats[3] = Float.NaN;
+                floats[5] = -0f;
+                floats[7] = 0f;
+                floats[9] = Float.NEGATIVE_INFINITY;
+                doubles[3] = Double.NaN;
+                doubles[5] = -0.0;
+            }
+            int[] ei = ints.clone();
+            long[] el = longs.clone();
+            float[] ef = floats.clone();
+            double[] ed = doubles.clone();
+            Arrays.sort(ei);
+            Arrays.sort(el);
+            Arrays.sort(ef);
+            Arrays.sort(ed);
+            RadixSort.sort(ints, size);
+            RadixSort.sort(longs, size);
+            RadixSort.sort(floats, size);
+            RadixSort.sort(doubles, size);
+            assertArrayEquals(ei, ints);
+            assertArrayEquals(el, longs);
+            assertArrayEquals(ef, floats, 0);
+            assertArrayEquals(ed, doubles, 0);
+        }
+    }
+
+    @Test
+    public void orderIsStable() {
+        Random random = new Random(13);
+        int[] keys = new int[5000];
+        long[] longKeys = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextInt(200) - 100;
+            longKeys[i] = (long) keys[i] << 33;
+        }
+        for (int[] order : new int[][] { RadixSort.order(keys, keys.length),
+                                         RadixSort.order(longKeys, keys.length) }) {
+            for (int i = 1; i < order.length; i++) {
+                int a = order[i - 1];
+                int b = order[i];
+                assertTrue(keys[a] < keys[b] || (keys[a] == keys[b] && a < b));
+            }
+        }
+    }
+
+    @Test
+    public void listsInReverse() {
+        IntList ints = new IntList(new int[] { 3, Integer.MIN_VALUE, 7, Integer.MAX_VALUE, -1 });
+        ints.sortReverse();
+        assertArrayEquals(new int[] { Integer.MAX_VALUE, 7, 3, -1, Integer.MIN_VALUE }, ints.array());
+
+        FloatList floats = new FloatList(new float[] { 2, Float.NaN, -1, 5, Float.NaN, 0 });
+        floats.sortReverse();
+        assertArrayEquals(new float[] { 5, 2, 0, -1, Float.NaN, Float.NaN }, floats.array(), 0);
+
+        StringList strings = new StringList("b", "C", "a", "D");
+        strings.sortReverse();
+        assertArrayEquals(new String[] { "D", "C", "b", "a" }, strings.array());
+    }
+
+    @Test
+    public void dictsBreakTiesWithKeys() {
+        IntDict dict = new IntDict();
+        String[] names = { "pear", "Apple", "fig", "banana", "kiwi", "cherry" };
+        int[] counts = { 2, 5, 2, 1, 5, 2 };
+        for (int i = 0; i < names.length; i++) {
+            dict.set(names[i], counts[i]);
+        }
+        dict.sortValues();
+        assertArrayEquals(new String[] { "banana", "cherry", "fig", "pear", "Apple", "kiwi" }, dict.keyArray());
+        dict.sortValuesReverse();
+        assertArrayEquals(new String[] { "kiwi", "Apple", "pear", "fig", "cherry", "banana" }, dict.keyArray());
+        assertEquals(2, dict.get("fig"));
+        dict.sortKeys();
+        assertArrayEquals(new String[] { "Apple", "banana", "cherry", "fig", "kiwi", "pear" }, dict.keyArray());
+
+        FloatDict floats = new FloatDict();
+        floats.set("a", Float.NaN);
+        floats.set("b", 1);
+        floats.set("c", 3);
+        floats.sortValuesReverse();
+        assertArrayEquals(new String[] { "c", "b", "a" }, floats.keyArray());
+        assertEquals(1, floats.get("b"), 0);
+    }
+}
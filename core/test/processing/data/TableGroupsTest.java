@@ -0,0 +1,150 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TableGroupsTest {
+
+    static Table createTable(int rows) {
+        Random random = new Random(11);
+        Table table = new Table();
+        table.addColumn("city", Table.CATEGORY);
+        table.addColumn("year", Table.INT);
+        table.addColumn("count", Table.LONG);
+        table.addColumn("temp", Table.FLOAT);
+        table.addColumn("note", Table.STRING);
+        table.setRowCount(rows);
+        for (int i = 0; i < rows; i++) {
+            table.setRow(i, new Object[] {
+                "c" + random.nextInt(7),
+                2000 + random.nextInt(3),
+                (long) random.nextInt(1000),
+                random.nextInt(20) == 0 ? Float.NaN : random.nextInt(400) / 8f,
+                random.nextBoolean() ? null : "x"
+            });
+        }
+        return table;
+    }
+
+    @Test
+    public void columnAggregates() {
+        Table table = createTable(1000);
+        double sum = 0;
+        int count = 0;
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (float value : table.getFloatColumn("temp")) {
+            if (!Float.isNaN(value)) {
+                sum += value;
+                count++;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        assertEquals(sum, table.sum("temp"), 0);
+        assertEquals(count, table.count("temp"));
+        assertEquals(sum / count, table.mean("temp"), 0);
+        assertEquals(min, table.min("temp"), 0);
+        assertEquals(max, table.max("temp"), 0);
+        assertEquals(1000, table.count("year"));
+
+        assertTrue(Double.isNaN(createTable(0).mean("temp")));
+        assertTrue(Double.isNaN(createTable(0).max("temp")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sumOfStrings() {
+        createTable(10).sum("note");
+    }
+
+    @Test
+    public void groupByMatchesTally() {
+        // large enough to be split into several blocks
+        Table table = createTable(300000);
+        Table result = table.groupBy("city", "year")
+            .agg("count", "count(temp)", "sum(count)", "mean(temp)", "min(temp)", "max(count)");
+        assertEquals(21, result.getRowCount());
+        assertEquals(Table.CATEGORY, result.getColumnType("city"));
+        assertEquals(Table.FLOAT, result.getColumnType("min(temp)"));
+        assertEquals(Table.LONG, result.getColumnType("max(count)"));
+
+        IntDict tally = new IntDict();
+        for (TableRow row : table.rows()) {
+            tally.increment(row.getString("city") + " " + row.getInt("year"));
+        }
+        for (TableRow row : result.rows()) {
+            String city = row.getString("city");
+            int year = row.getInt("year");
+            assertEquals(tally.get(city + " " + year), row.getInt("count"));
+
+            long total = 0;
+            long most = Long.MIN_VALUE;
+            double tempSum = 0;
+            int tempCount = 0;
+            float coldest = Float.MAX_VALUE;
+            for (TableRow match : table.findRows(city, "city")) {
+                if (match.getInt("year") == year) {
+                    total += match.getLong("count");
+                    most = Math.max(most, match.getLong("count"));
+                    float temp = match.getFloat("temp");
+                    if (!Float.isNaN(temp)) {
+                        tempSum += temp;
+                        tempCount++;
+                        coldest = Math.min(coldest, temp);
+                    }
+                }
+            }
+            assertEquals(total, row.getDouble("sum(count)"), 0);
+            assertEquals(most, row.getLong("max(count)"));
+            assertEquals(tempCount, row.getInt("count(temp)"));
+            assertEquals(tempSum / tempCount, row.getDouble("mean(temp)"), 1e-9);
+            assertEquals(coldest, row.getFloat("min(temp)"), 0);
+        }
+    }
+
+    @Test
+    public void groupOrder() {
+        Table table = new Table();
+        table.addColumn("name", Table.STRING);
+        table.addColumn("value", Table.DOUBLE);
+        table.addRow(new Object[] { "b", 1.0 });
+        table.addRow(new Object[] { null, 2.0 });
+        table.addRow(new Object[] { "a", 3.0 });
+        table.addRow(new Object[] { "b", 4.0 });
+        TableGroups groups = table.groupBy("name");
+        assertEquals(3, groups.getGroupCount());
+        assertArrayEquals(new int[] { 0, 3 }, groups.getRowIndices(0));
+        Table result = groups.agg("sum(value)");
+        assertArrayEquals(new String[] { "b", null, "a" }, result.getStringColumn("name"));
+        assertArrayEquals(new double[] { 5, 2, 3 }, result.getDoubleColumn("sum(value)"), 0);
+    }
+
+    @Test
+    public void largeLongs() {
+        // above 2^53, where neighboring longs round to the same double
+        long big = Long.MAX_VALUE - 10;
+        Table table = new Table();
+        table.addColumn("key", Table.INT);
+        table.addColumn("id", Table.LONG);
+        table.addRow(new Object[] { 1, big + 3 });
+        table.addRow(new Object[] { 1, big + 1 });
+        table.addRow(new Object[] { 2, big + 7 });
+        table.addRow(new Object[] { 1, big + 2 });
+        table.addRow(new Object[] { 2, Long.MAX_VALUE });
+        Table result = table.groupBy("key").agg("min(id)", "max(id)", "sum(id)");
+        assertArrayEquals(new long[] { big + 1, big + 7 }, result.getLongColumn("min(id)"));
+        assertArrayEquals(new long[] { big + 3, Long.MAX_VALUE }, result.getLongColumn("max(id)"));
+        // too large for a long, so it comes from the double sum
+        assertEquals(3.0 * big, result.getDouble(0, "sum(id)"), 1e4);
+
+        Table small = new Table();
+        small.addColumn("id", Table.LONG);
+        small.addRow(new Object[] { (1L << 60) + 1 });
+        small.addRow(new Object[] { -(1L << 60) });
+        assertEquals(1, small.sum("id"), 0);
+        assertEquals(-(1L << 60), (long) small.min("id"));
+    }
+}
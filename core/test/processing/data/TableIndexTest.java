@@ -0,0 +1,135 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TableIndexTest {
+
+    static Table createTable() {
+        Table table = new Table();
+        table.addColumn("id", Table.INT);
+        table.addColumn("value", Table.FLOAT);
+        table.addColumn("name", Table.STRING);
+        table.addColumn("kind", Table.CATEGORY);
+        table.addColumn("big", Table.LONG);
+        return table;
+    }
+
+    static Object[] randomRow(Random random) {
+        return new Object[] {
+            random.nextInt(50),
+            random.nextInt(40) / 4f - 5,
+            random.nextInt(10) == 0 ? null : "n" + random.nextInt(30),
+            "k" + random.nextInt(5),
+            (long) random.nextInt(20) << 33
+        };
+    }
+
+    static void assertSameFinds(Table plain, Table indexed, Random random) {
+        for (int i = 0; i < 20; i++) {
+            String[] queries = {
+                String.valueOf(random.nextInt(50)),
+                String.valueOf(random.nextInt(40) / 4f - 5),
+                "n" + random.nextInt(30),
+                "k" + random.nextInt(6),
+                String.valueOf((long) random.nextInt(20) << 33)
+            };
+            for (int col = 0; col < queries.length; col++) {
+                assertArrayEquals(plain.findRowIndices(queries[col], col),
+                                  indexed.findRowIndices(queries[col], col));
+                assertEquals(plain.findRowIndex(queries[col], col),
+                             indexed.findRowIndex(queries[col], col));
+            }
+            double min = random.nextInt(20) - 10;
+            double max = min + random.nextInt(8);
+            assertArrayEquals(plain.findRowIndicesInRange(min, max, 0),
+                              indexed.findRowIndicesInRange(min, max, 0));
+            assertArrayEquals(plain.findRowIndicesInRange(min, max, 1),
+                              indexed.findRowIndicesInRange(min, max, 1));
+        }
+        // values that can't match, or have to fall back to a search
+        assertEquals(plain.findRowIndex("07", 0), indexed.findRowIndex("07", 0));
+        assertEquals(plain.findRowIndex("1", 1), indexed.findRowIndex("1", 1));
+        assertArrayEquals(plain.findRowIndices(null, 2), indexed.findRowIndices(null, 2));
+    }
+
+    @Test
+    public void indexMatchesSearch() {
+        Random random = new Random(5);
+        Table plain = createTable();
+        Table indexed = createTable();
+        for (int col = 0; col < plain.getColumnCount(); col++) {
+            indexed.createIndex(col);
+        }
+        for (int i = 0; i < 500; i++) {
+            Object[] row = randomRow(random);
+            plain.addRow(row);
+            indexed.addRow(row);
+        }
+        assertSameFinds(plain, indexed, random);
+
+        for (int step = 0; step < 300; step++) {
+            int row = random.nextInt(plain.getRowCount());
+            switch (random.nextInt(7)) {
+                case 0:
+                    int id = random.nextInt(50);
+                    plain.setInt(row, 0, id);
+                    indexed.setInt(row, 0, id);
+                    break;
+                case 1:
+                    float value = random.nextInt(40) / 4f - 5;
+                    plain.setFloat(row, "value", value);
+                    indexed.setFloat(row, "value", value);
+                    break;
+                case 2:
+                    String name = "n" + random.nextInt(35);
+                    plain.setString(row, "name", name);
+                    indexed.setString(row, "name", name);
+                    break;
+                case 3:
+                    plain.removeRow(row);
+                    indexed.removeRow(row);
+                    break;
+                case 4:
+                    Object[] data = randomRow(random);
+                    plain.insertRow(row, data);
+                    indexed.insertRow(row, data);
+                    break;
+                case 5:
+                    data = randomRow(random);
+                    plain.addRow(data);
+                    indexed.addRow(data);
+                    break;
+                default:
+                    data = randomRow(random);
+                    plain.setRow(row, data);
+                    indexed.setRow(row, data);
+                    break;
+            }
+            assertSameFinds(plain, indexed, random);
+        }
+
+        plain.sort("value");
+        indexed.sort("value");
+        assertSameFinds(plain, indexed, random);
+    }
+
+    @Test
+    public void removeIndexedColumn() {
+        Table table = createTable();
+        table.createIndex("name");
+        table.createIndex("kind");
+        table.addRow(new Object[] { 1, 2f, "a", "x", 3L });
+        table.addRow(new Object[] { 4, 5f, "b", "y", 6L });
+        table.insertColumn(0, "first", Table.STRING);
+        assertEquals(1, table.findRowIndex("b", "name"));
+        assertTrue(table.hasIndex(3));
+        assertFalse(table.hasIndex(2));
+        table.removeIndex("name");
+        assertFalse(table.hasIndex(3));
+        assertEquals(1, table.findRowIndex("y", "kind"));
+    }
+}
@@ -0,0 +1,97 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TableStreamTest {
+
+    static final String CSV =
+        "name,count,price\n" +
+        "apple,3,0.5\n" +
+        "\"pear, green\",7,1.25\n" +
+        "plum\n" +
+        "fig,2,3\n";
+
+    static InputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void streamMatchesLoad() throws IOException {
+        Table loaded = new Table(input(CSV), "csv,header");
+        TableStream stream = new TableStream(input(CSV), "csv,header");
+        assertArrayEquals(loaded.getColumnTitles(), stream.getColumnTitles());
+        int row = 0;
+        for (TableRow streamed : stream) {
+            for (int col = 0; col < loaded.getColumnCount(); col++) {
+                assertEquals(loaded.getString(row, col), streamed.getString(col));
+            }
+            row++;
+        }
+        assertEquals(loaded.getRowCount(), row);
+    }
+
+    @Test
+    public void typedStream() throws IOException {
+        Table template = new Table();
+        template.addColumn("name", Table.STRING);
+        template.addColumn("count", Table.INT);
+        template.addColumn("price", Table.FLOAT);
+        TableStream stream = new TableStream(input(CSV), "csv,header", template);
+        double total = stream.stream()
+            .filter(row -> !Float.isNaN(row.getFloat("price")))
+            .mapToDouble(row -> row.getInt("count") * row.getFloat("price"))
+            .sum();
+        assertEquals(3 * 0.5 + 7 * 1.25 + 2 * 3, total, 1e-6);
+    }
+
+    @Test
+    public void streamBinary() throws IOException {
+        Table table = new Table();
+        table.addColumn("id", Table.LONG);
+        table.addColumn("kind", Table.CATEGORY);
+        for (int i = 0; i < 100; i++) {
+            table.addRow(new Object[] { (long) i << 40, "k" + (i % 3) });
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertTrue(table.save(bytes, "bin"));
+
+        TableStream stream = new TableStream(new ByteArrayInputStream(bytes.toByteArray()), "bin");
+        int row = 0;
+        for (TableRow streamed : stream) {
+            assertEquals(table.getLong(row, 0), streamed.getLong("id"));
+            assertEquals(table.getString(row, 1), streamed.getString("kind"));
+            row++;
+        }
+        assertEquals(100, row);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void onlyOnce() throws IOException {
+        TableStream stream = new TableStream(input(CSV), "csv");
+        stream.iterator();
+        stream.iterator();
+    }
+
+    @Test
+    public void streamODS() throws IOException {
+        byte[] ods = TableTest.createODS(TableTest.ODS_CONTENT);
+        Table loaded = new Table(new ByteArrayInputStream(ods), "ods,header,worksheet=Data");
+        TableStream stream = new TableStream(new ByteArrayInputStream(ods), "ods,header,worksheet=Data");
+        assertArrayEquals(loaded.getColumnTitles(), stream.getColumnTitles());
+        int row = 0;
+        for (TableRow streamed : stream) {
+            assertEquals(loaded.getString(row, "name"), streamed.getString("name"));
+            assertEquals(loaded.getString(row, "count"), streamed.getString("count"));
+            row++;
+        }
+        assertEquals(loaded.getRowCount(), row);
+    }
+}
@@ -4,6 +4,16 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
 import static org.junit.Assert.*;
 
 public class TableTest {
@@ -36,4 +46,352 @@ public class TableTest {
         Assert.assertEquals(people[0].name, "Person1");
         Assert.assertEquals(people[0].age, 30);
     }
+
+    static Table parse(String text, String options) throws IOException {
+        return new Table(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), options);
+    }
+
+    @Test
+    public void parseQuotedCSV() throws IOException {
+        Table table = parse("name,notes\r\n" +
+                            "a,\"one, two\"\r\n" +
+                            "b,\"say \"\"hi\"\"\"\r\n" +
+                            "c,\"multi\r\nline\"\n" +
+                            "d,\n", "csv,header");
+        assertEquals(4, table.getRowCount());
+        assertEquals("notes", table.getColumnTitle(1));
+        assertEquals("one, two", table.getString(0, 1));
+        assertEquals("say \"hi\"", table.getString(1, 1));
+        assertEquals("multi\nline", table.getString(2, 1));
+        assertEquals("", table.getString(3, 1));
+    }
+
+    @Test
+    public void parseTypedTSV() throws IOException {
+        Table table = new Table();
+        table.addColumn("i", Table.INT);
+        table.addColumn("f", Table.FLOAT);
+        table.addColumn("d", Table.DOUBLE);
+        table.addColumn("l", Table.LONG);
+        table.addColumn("c", Table.CATEGORY);
+        String tsv = "12\t-0.25\t3.5e2\t9000000000\tred\n" +
+                     "7.9\t\tx\t-4\tblue\n" +
+                     "-3\t1e-3\t0.1\t\tred\n";
+        table.parse(new ByteArrayInputStream(tsv.getBytes(StandardCharsets.UTF_8)), "tsv");
+        assertEquals(3, table.getRowCount());
+        assertEquals(12, table.getInt(0, 0));
+        assertEquals(7, table.getInt(1, 0));
+        assertEquals(-3, table.getInt(2, 0));
+        assertEquals(-0.25f, table.getFloat(0, 1), 0);
+        assertTrue(Float.isNaN(table.getFloat(1, 1)));
+        assertEquals(1e-3f, table.getFloat(2, 1), 0);
+        assertEquals(350, table.getDouble(0, 2), 0);
+        assertTrue(Double.isNaN(table.getDouble(1, 2)));
+        assertEquals(9000000000L, table.getLong(0, 3));
+        assertEquals(0, table.getLong(2, 3));
+        assertEquals("red", table.getString(2, 4));
+        assertEquals(table.getInt(0, 4), table.getInt(2, 4));
+    }
+
+    @Test
+    public void tokenizerNumbersMatchJDK() {
+        Random random = new Random(1234);
+        for (int i = 0; i < 100000; i++) {
+            String s;
+            switch (i % 4) {
+                case 0: s = Integer.toString(random.nextInt()); break;
+                case 1: s = Float.toString(random.nextFloat() * 1000 - 500); break;
+                case 2: s = String.format("%.4f", random.nextDouble() * 100); break;
+                default: s = (random.nextInt(2000) - 1000) + "." + random.nextInt(100000); break;
+            }
+            char[] c = s.toCharArray();
+            assertEquals(s, Float.parseFloat(s), TableTokenizer.parseFloat(c, 0, c.length, Float.NaN), 0);
+            assertEquals(s, Double.parseDouble(s), TableTokenizer.parseDouble(c, 0, c.length, Double.NaN), 0);
+            assertEquals(s, processing.core.PApplet.parseInt(s, -1), TableTokenizer.parseInt(c, 0, c.length, -1));
+        }
+    }
+
+    @Test
+    public void parseParallelMatchesSequential() throws IOException {
+        StringBuilder sb = new StringBuilder("id,value,label,notes\n");
+        Random random = new Random(99);
+        int rows = 3 * Table.PARALLEL_CHUNK_SIZE / 30;
+        for (int i = 0; i < rows; i++) {
+            sb.append(i).append(',').append(random.nextInt(100000) / 100f).append(',');
+            sb.append("cat").append(random.nextInt(i / 1000 + 1)).append(',');
+            sb.append((i % 7 == 0) ? "\"line\nbreak, quoted\"" : "plain").append("\r\n");
+        }
+        String csv = sb.toString();
+
+        Table sequential = new Table();
+        Table parallel = new Table();
+        for (Table table : new Table[] { sequential, parallel }) {
+            table.addColumn("id", Table.INT);
+            table.addColumn("value", Table.FLOAT);
+            table.addColumn("label", Table.CATEGORY);
+            table.addColumn("notes", Table.STRING);
+        }
+        sequential.parse(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "csv,header");
+        parallel.parse(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "csv,header,parallel");
+
+        assertEquals(rows, sequential.getRowCount());
+        assertEquals(rows, parallel.getRowCount());
+        assertArrayEquals(sequential.getColumnTitles(), parallel.getColumnTitles());
+        assertArrayEquals(sequential.getIntColumn(0), parallel.getIntColumn(0));
+        assertArrayEquals(sequential.getStringColumn(3), parallel.getStringColumn(3));
+        for (int row = 0; row < rows; row++) {
+            assertEquals(sequential.getFloat(row, 1), parallel.getFloat(row, 1), 0);
+            // category codes should come out identical, not just the labels
+            assertEquals(sequential.getInt(row, 2), parallel.getInt(row, 2));
+        }
+    }
+
+    @Test
+    public void parseParallelErrorLine() {
+        StringBuilder sb = new StringBuilder("id,label\n");
+        int rows = 3 * Table.PARALLEL_CHUNK_SIZE / 20;
+        int bad = rows - 10;  // well past the first block
+        for (int i = 0; i < rows; i++) {
+            sb.append(i).append(',').append(i == bad ? "x\"y\"z" : "plain label").append('\n');
+        }
+        byte[] csv = sb.toString().getBytes(StandardCharsets.UTF_8);
+        String[] messages = new String[2];
+        String[] options = { "csv,header", "csv,header,parallel" };
+        for (int i = 0; i < 2; i++) {
+            Table table = new Table();
+            table.addColumn("id", Table.INT);
+            table.addColumn("label", Table.STRING);
+            try {
+                table.parse(new ByteArrayInputStream(csv), options[i]);
+                fail("stray quote should not parse");
+            } catch (IOException | RuntimeException e) {
+                messages[i] = e.getMessage();
+            }
+        }
+        assertEquals("Error reading table on line " + bad, messages[0]);
+        assertEquals(messages[0], messages[1]);
+    }
+
+    @Test
+    public void sortStable() {
+        Random random = new Random(3);
+        Table table = new Table();
+        table.addColumn("group", Table.INT);
+        table.addColumn("name", Table.STRING);
+        table.addColumn("value", Table.DOUBLE);
+        table.addColumn("id", Table.INT);
+        int count = 20000;  // big enough for the parallel merge
+        table.setRowCount(count);
+        for (int row = 0; row < count; row++) {
+            table.setInt(row, "group", random.nextInt(5) - 2);
+            String name = "ab".substring(random.nextInt(2)) + random.nextInt(3);
+            table.setString(row, "name", random.nextInt(8) == 0 ? null : name);
+            table.setDouble(row, "value", random.nextInt(10) == 0 ? Double.NaN : random.nextInt(50) / 2.0);
+            table.setInt(row, "id", row);
+        }
+
+        table.sort("group", "name");
+        for (int row = 1; row < count; row++) {
+            int group = Integer.compare(table.getInt(row - 1, "group"), table.getInt(row, "group"));
+            assertTrue(group <= 0);
+            if (group == 0) {
+                String a = table.getString(row - 1, "name");
+                String b = table.getString(row, "name");
+                int name = (a == null ? "" : a).compareToIgnoreCase(b == null ? "" : b);
+                assertTrue(name <= 0);
+                if (name == 0) {
+                    assertTrue(table.getInt(row - 1, "id") < table.getInt(row, "id"));
+                }
+            }
+        }
+
+        table.sortReverse("value");
+        for (int row = 1; row < count; row++) {
+            int value = Double.compare(table.getDouble(row - 1, "value"), table.getDouble(row, "value"));
+            assertTrue(value >= 0);
+        }
+        assertTrue(Double.isNaN(table.getDouble(0, "value")));
+
+        // a single INT column takes the packed path, ties keep the last order
+        table.sort("id");
+        table.sort("value");
+        table.sortReverse("group");
+        for (int row = 1; row < count; row++) {
+            int group = Integer.compare(table.getInt(row - 1, "group"), table.getInt(row, "group"));
+            assertTrue(group >= 0);
+            if (group == 0) {
+                int value = Double.compare(table.getDouble(row - 1, "value"), table.getDouble(row, "value"));
+                assertTrue(value <= 0);
+                if (value == 0) {
+                    assertTrue(table.getInt(row - 1, "id") < table.getInt(row, "id"));
+                }
+            }
+        }
+    }
+
+    static final String ODS_CONTENT =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+        "<office:document-content" +
+        " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\"" +
+        " xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\"" +
+        " xmlns:table=\"urn:oasis:names:tc:opendocument:xmlns:table:1.0\"" +
+        " xmlns:xlink=\"http://www.w3.org/1999/xlink\">" +
+        "<office:automatic-styles/><office:body><office:spreadsheet>" +
+        "<table:table table:name=\"Notes\"><table:table-row><table:table-cell>" +
+        "<text:p>skipped</text:p></table:table-cell></table:table-row></table:table>" +
+        "<table:table table:name=\"Data\">" +
+        "<table:table-column table:number-columns-repeated=\"3\"/>" +
+        "<table:table-row>" +
+        "<table:table-cell><text:p>name</text:p></table:table-cell>" +
+        "<table:table-cell><text:p>count</text:p></table:table-cell>" +
+        "<table:table-cell table:number-columns-repeated=\"1000\"/>" +
+        "</table:table-row>" +
+        "<table:table-row table:number-rows-repeated=\"2\">" +
+        "<table:table-cell><text:p>a<text:s text:c=\"3\"/>b<text:s/>c</text:p></table:table-cell>" +
+        "<table:table-cell office:value-type=\"float\" office:value=\"12\"><text:p>12.00</text:p></table:table-cell>" +
+        "</table:table-row>" +
+        "<table:table-row table:number-rows-repeated=\"2\"><table:table-cell table:number-columns-repeated=\"1000\"/></table:table-row>" +
+        "<table:table-row>" +
+        "<table:table-cell><text:p><text:a xlink:href=\"http://processing.org/\">link</text:a></text:p></table:table-cell>" +
+        "<table:table-cell office:value-type=\"float\" office:value=\"7\"><text:p>7</text:p></table:table-cell>" +
+        "</table:table-row>" +
+        "<table:table-row table:number-rows-repeated=\"1048570\"><table:table-cell table:number-columns-repeated=\"1000\"/></table:table-row>" +
+        "</table:table></office:spreadsheet></office:body></office:document-content>";
+
+    static byte[] createODS(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bytes);
+        zos.putNextEntry(new ZipEntry("mimetype"));
+        zos.write("application/vnd.oasis.opendocument.spreadsheet".getBytes(StandardCharsets.UTF_8));
+        zos.putNextEntry(new ZipEntry("content.xml"));
+        zos.write(content.getBytes(StandardCharsets.UTF_8));
+        zos.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void parseODS() throws IOException {
+        byte[] ods = createODS(ODS_CONTENT);
+        Table table = new Table(new ByteArrayInputStream(ods), "ods,header,worksheet=Data");
+        assertArrayEquals(new String[] { "name", "count" }, table.getColumnTitles());
+        // repeats are expanded, but the empty rows at the end are dropped
+        assertEquals(5, table.getRowCount());
+        assertEquals("a   b c", table.getString(0, "name"));
+        assertEquals("a   b c", table.getString(1, "name"));
+        assertEquals("12", table.getString(1, "count"));
+        assertNull(table.getString(2, "name"));
+        assertEquals("link", table.getString(4, "name"));
+
+        Table typed = new Table();
+        typed.addColumn("name", Table.STRING);
+        typed.addColumn("count", Table.INT);
+        typed.odsParse(new ByteArrayInputStream(ods), "Data", true);
+        assertEquals(12 + 12 + 7, typed.sum("count"), 0);
+
+        Table first = new Table(new ByteArrayInputStream(ods), "ods");
+        assertEquals(1, first.getRowCount());
+        assertEquals("skipped", first.getString(0, 0));
+    }
+
+    @Test
+    public void saveODS() throws IOException {
+        Table table = new Table();
+        table.addColumn("label", Table.STRING);
+        table.addColumn("value", Table.FLOAT);
+        table.addRow(new Object[] { "x & y", 1.5f });
+        table.addRow(new Object[] { "z", -2f });
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertTrue(table.save(bytes, "ods"));
+
+        Table loaded = new Table(new ByteArrayInputStream(bytes.toByteArray()), "ods,header");
+        assertArrayEquals(table.getColumnTitles(), loaded.getColumnTitles());
+        assertEquals(2, loaded.getRowCount());
+        assertEquals("x & y", loaded.getString(0, "label"));
+        assertEquals(-2f, loaded.getFloat(1, "value"), 0);
+    }
+
+    @Test
+    public void categoryDictionary() throws IOException {
+        Table.HashMapBlows dict = new Table.HashMapBlows();
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, dict.index("id" + i));
+        }
+        assertEquals(count, dict.size());
+        assertEquals(1234, dict.index("id1234"));
+        assertEquals(-1, dict.find("missing"));
+        assertEquals("id99999", dict.key(99999));
+
+        // same layout as before: a count, then each name in code order
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(3);
+        output.writeUTF("red");
+        output.writeUTF("green");
+        output.writeUTF("blue");
+        byte[] expected = bytes.toByteArray();
+        Table.HashMapBlows colors =
+            new Table.HashMapBlows(new DataInputStream(new ByteArrayInputStream(expected)));
+        assertEquals(2, colors.find("blue"));
+        bytes.reset();
+        colors.write(output);
+        assertArrayEquals(expected, bytes.toByteArray());
+
+        colors.setCategory(5, "black");
+        assertTrue(colors.hasCategory(5));
+        assertFalse(colors.hasCategory(4));
+        assertEquals(5, colors.index("black"));
+        assertEquals(6, colors.index("white"));
+    }
+
+    @Test
+    public void renameCategory() {
+        Table.HashMapBlows dict = new Table.HashMapBlows();
+        for (int i = 0; i < 1000; i++) {
+            dict.index("id" + i);
+        }
+        int used = dict.used;
+        for (int i = 0; i < 1000; i += 3) {
+            dict.setCategory(i, "renamed" + i);
+        }
+        // the old names are gone, and renaming doesn't use more slots
+        assertEquals(used, dict.used);
+        for (int i = 0; i < 1000; i++) {
+            String name = (i % 3 == 0) ? "renamed" + i : "id" + i;
+            assertEquals(i, dict.find(name));
+            assertEquals(name, dict.key(i));
+            if (i % 3 == 0) {
+                assertEquals(-1, dict.find("id" + i));
+            }
+        }
+        // an old name is a new category again
+        assertEquals(1000, dict.index("id0"));
+        assertEquals(1001, dict.size());
+
+        dict.setCategory(5, null);
+        assertEquals(5, dict.index(null));
+        assertEquals(-1, dict.find("id5"));
+        dict.setCategory(5, "five");
+        assertEquals(1001, dict.index(null));
+        assertEquals(5, dict.find("five"));
+    }
+
+    @Test
+    public void shareCategories() {
+        Table a = new Table();
+        a.addColumn("kind", Table.CATEGORY);
+        a.addRow(new Object[] { "cat" });
+        a.addRow(new Object[] { "dog" });
+        Table b = new Table();
+        b.addColumn("kind", Table.STRING);
+        b.addRow(new Object[] { "dog" });
+        b.addRow(new Object[] { "eel" });
+
+        b.shareColumnCategories("kind", a, "kind");
+        assertEquals(Table.CATEGORY, b.getColumnType("kind"));
+        assertEquals(a.getInt(1, "kind"), b.getInt(0, "kind"));
+        assertEquals("eel", b.getString(1, "kind"));
+        a.addRow(new Object[] { "eel" });
+        assertEquals(b.getInt(1, "kind"), a.getInt(2, "kind"));
+    }
 }
@@ -0,0 +1,133 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import processing.core.PApplet;
+
+import static org.junit.Assert.*;
+
+public class TableWriterTest {
+
+    static Table createTemplate() {
+        Table table = new Table();
+        table.addColumn("frame", Table.INT);
+        table.addColumn("x", Table.FLOAT);
+        table.addColumn("label", Table.STRING);
+        table.addColumn("kind", Table.CATEGORY);
+        table.addRow(new Object[] { 0, 0f, "ignored", "a" });
+        table.addRow(new Object[] { 0, 0f, "ignored", "b" });
+        return table;
+    }
+
+    static File tempFile(String extension) throws IOException {
+        File file = File.createTempFile("writer", extension);
+        file.deleteOnExit();
+        return file;
+    }
+
+    static void writeRows(TableWriter writer, int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            writer.addRow(i, i / 2f, (i % 3 == 0) ? null : "row, \"" + i + "\"", (i % 2 == 0) ? "a" : "b");
+        }
+    }
+
+    static void checkRows(Table table, int count) {
+        assertEquals(count, table.getRowCount());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, table.getInt(i, "frame"));
+            assertEquals(i / 2f, table.getFloat(i, "x"), 0);
+            String label = table.getString(i, "label");
+            if (i % 3 == 0) {
+                assertTrue(label == null || label.isEmpty());
+            } else {
+                assertEquals("row, \"" + i + "\"", label);
+            }
+            assertEquals((i % 2 == 0) ? "a" : "b", table.getString(i, "kind"));
+        }
+    }
+
+    @Test
+    public void writeCSV() throws IOException {
+        File file = tempFile(".csv");
+        TableWriter writer = new TableWriter(file, createTemplate());
+        writeRows(writer, 0, 50000);
+        writer.flush();
+        // everything so far should be readable before the writer is closed
+        checkRows(new Table(file, "header"), 50000);
+        writer.close();
+    }
+
+    @Test
+    public void appendTSV() throws IOException {
+        File file = tempFile(".tsv.gz");
+        Table template = createTemplate();
+        TableWriter writer = new TableWriter(file, template);
+        writeRows(writer, 0, 100);
+        writer.close();
+
+        writer = new TableWriter(file, template, "append");
+        writeRows(writer, 100, 100);
+        writer.close();
+        checkRows(new Table(file, "header"), 200);
+    }
+
+    @Test
+    public void writeBinary() throws IOException {
+        File file = tempFile(".bin");
+        TableWriter writer = new TableWriter(file, createTemplate());
+        writeRows(writer, 0, 3000);
+        writer.flush();
+        checkRows(new Table(file), 3000);
+        try {
+            writer.addRow(1, 2f, "three", "c");
+            fail("Should not be able to add a category to a binary file");
+        } catch (IllegalArgumentException expected) { }
+        writeRows(writer, 3000, 10);
+        writer.close();
+        checkRows(new Table(file), 3010);
+    }
+
+    @Test
+    public void flushWhenIdle() throws Exception {
+        File file = tempFile(".csv");
+        TableWriter writer = new TableWriter(file, createTemplate());
+        writeRows(writer, 0, 5);
+        // no more rows, no flush(), so only the writer thread can write them
+        long stop = System.currentTimeMillis() + 5 * TableWriter.FLUSH_INTERVAL;
+        while (new Table(file, "header").getRowCount() < 5 &&
+               System.currentTimeMillis() < stop) {
+            Thread.sleep(50);
+        }
+        checkRows(new Table(file, "header"), 5);
+        writer.close();
+    }
+
+    @Test
+    public void unregisterOnClose() throws IOException {
+        List<Object> disposers = new ArrayList<>();
+        PApplet sketch = new PApplet() {
+            @Override
+            public void registerMethod(String name, Object target) {
+                super.registerMethod(name, target);
+                disposers.add(target);
+            }
+
+            @Override
+            public void unregisterMethod(String name, Object target) {
+                super.unregisterMethod(name, target);
+                disposers.remove(target);
+            }
+        };
+        TableWriter writer = new TableWriter(sketch, tempFile(".csv"), createTemplate(), null);
+        assertEquals(1, disposers.size());
+        writer.close();
+        // closed writers shouldn't be kept around until the sketch quits
+        assertTrue(disposers.isEmpty());
+        writer.close();
+    }
+}
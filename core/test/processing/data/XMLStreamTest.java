@@ -0,0 +1,63 @@
+package processing.data;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class XMLStreamTest {
+
+    static final String OSM =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<osm version=\"0.6\">\n" +
+        "  <bounds minlat=\"1\" maxlat=\"2\"/>\n" +
+        "  <node id=\"1\" lat=\"51.5\" lon=\"-0.1\"/>\n" +
+        "  <node id=\"2\" lat=\"51.6\" lon=\"-0.2\">\n" +
+        "    <tag k=\"name\" v=\"Fish &amp; Chips\"/>\n" +
+        "    <!-- a comment -->\n" +
+        "  </node>\n" +
+        "  <way id=\"3\"><nd ref=\"1\"/><nd ref=\"2\"/><tag k=\"highway\" v=\"path\"/></way>\n" +
+        "  <note><![CDATA[<raw>]]> text</note>\n" +
+        "</osm>\n";
+
+    @Test
+    public void matchesLoad() throws Exception {
+        XML loaded = XML.parse(OSM);
+        List<String> expected = new ArrayList<>();
+        for (XML node : loaded.getChildren("node")) {
+            expected.add(node.format(-1));
+        }
+        List<String> streamed = new ArrayList<>();
+        new XMLStream(new StringReader(OSM)).on("osm/node", node -> streamed.add(node.format(-1))).read();
+        assertEquals(expected, streamed);
+
+        List<String> notes = new ArrayList<>();
+        new XMLStream(new StringReader(OSM)).on("osm/note", note -> notes.add(note.getContent())).read();
+        assertEquals(List.of(loaded.getChild("note").getContent()), notes);
+    }
+
+    @Test
+    public void nestedPaths() throws Exception {
+        List<String> events = new ArrayList<>();
+        new XMLStream(new StringReader(OSM))
+            .on("osm/way", way -> events.add("way " + way.getChildren("nd").length))
+            .on("osm/*/tag", tag -> events.add("tag " + tag.getString("k")))
+            .read();
+        assertEquals(List.of("tag name", "tag highway", "way 2"), events);
+    }
+
+    @Test
+    public void stopEarly() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        XMLStream stream = new XMLStream(new StringReader(OSM));
+        stream.on("osm/node", node -> {
+            ids.add(node.getInt("id"));
+            stream.close();
+        }).read();
+        assertEquals(List.of(1), ids);
+        assertTrue(stream.closed);
+    }
+}
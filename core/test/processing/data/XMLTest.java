@@ -0,0 +1,63 @@
+package processing.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class XMLTest {
+
+    static final String RSS =
+        "<rss><channel>\n" +
+        "  <title>News</title>\n" +
+        "  <item><title>One</title><link>a</link></item>\n" +
+        "  <item><title>Two</title></item>\n" +
+        "  <item><link>c</link><title>Three</title></item>\n" +
+        "</channel></rss>";
+
+    static String names(XML[] elements) {
+        StringBuilder sb = new StringBuilder();
+        for (XML xml : elements) {
+            sb.append(xml.getContent()).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    @Test
+    public void compiledMatchesString() throws Exception {
+        XML rss = XML.parse(RSS);
+        String[] paths = { "channel", "channel/title", "channel/item/title",
+                           "channel/item/link", "channel/3/title", "channel/missing/title" };
+        for (String path : paths) {
+            XMLPath compiled = XML.compile(path);
+            assertEquals(path, names(rss.getChildren(path)), names(rss.getChildren(compiled)));
+            assertSame(path, rss.getChild(path), rss.getChild(compiled));
+        }
+        assertEquals("One Two Three", names(rss.getChildren("channel/item/title")));
+        assertEquals("a c", names(rss.getChildren("channel/item/link")));
+        // the first item has no title here, so there's no match
+        assertNull(rss.getChild("channel/item/missing"));
+    }
+
+    @Test
+    public void indexFollowsChanges() throws Exception {
+        XML channel = XML.parse(RSS).getChild("channel");
+        assertEquals(3, channel.getChildren("item").length);
+
+        XML added = channel.addChild("item");
+        added.setContent("Four");
+        assertEquals(4, channel.getChildren("item").length);
+        assertSame(added, channel.getChildren("item")[3]);
+
+        channel.removeChild(channel.getChild("item"));
+        assertEquals("Two", channel.getChildren("item")[0].getChild("title").getContent());
+        assertEquals(3, channel.getChildren("item").length);
+
+        added.setName("entry");
+        assertEquals(2, channel.getChildren("item").length);
+        assertEquals("Four", channel.getChild("entry").getContent());
+
+        // changing the returned array doesn't change the element
+        channel.getChildren("item")[0] = null;
+        assertNotNull(channel.getChildren("item")[0]);
+    }
+}